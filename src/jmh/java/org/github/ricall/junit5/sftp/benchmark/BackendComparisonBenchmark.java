@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.benchmark;
+
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+import org.apache.sshd.client.SshClient;
+import org.apache.sshd.client.session.ClientSession;
+import org.apache.sshd.sftp.client.SftpClient;
+import org.apache.sshd.sftp.client.SftpClientFactory;
+import org.github.ricall.junit5.sftp.FileSystemBackend;
+import org.github.ricall.junit5.sftp.RootFileSystemFactory;
+import org.github.ricall.junit5.sftp.implementation.DefaultEmbeddedSftpServer;
+import org.github.ricall.junit5.sftp.implementation.SftpConfiguration;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.github.ricall.junit5.sftp.FileSystemResource.resourceAt;
+
+/**
+ * Runs the same upload, download, listing and reset scenarios against every filesystem backend.
+ * <p>
+ * {@code JIMFS} is served through a {@link RootFileSystemFactory}, as an example of comparing a filesystem that isn't
+ * built in. Scores are operations per second. The {@code heapMegabytes} and {@code directMegabytes} secondary results
+ * are the memory in use after a full garbage collection at the start of each iteration, with the fixtures loaded.
+ * </p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class BackendComparisonBenchmark {
+
+    private static final String DIRECTORY = "/data";
+    private static final String UPLOAD = "upload.bin";
+    private static final String DOWNLOAD = "download.bin";
+    private static final int TRANSFER_SIZE = 1024 * 1024;
+    private static final int BUFFER_SIZE = 32 * 1024;
+    private static final int MEGABYTE = 1024 * 1024;
+
+    @Param({"HEAP", "IN_MEMORY", "OFF_HEAP", "DISK", "JIMFS"})
+    private String backend;
+
+    private Path fixtures;
+    private byte[] content;
+    private byte[] buffer;
+    private DefaultEmbeddedSftpServer server;
+    private SshClient client;
+    private ClientSession session;
+    private SftpClient sftpClient;
+
+    @Setup(Level.Trial)
+    public void connect() throws IOException {
+        fixtures = BenchmarkHelper.createFixtures(BenchmarkHelper.fileCount(BenchmarkHelper.MEDIUM));
+        content = BenchmarkHelper.randomBytes(TRANSFER_SIZE);
+        buffer = new byte[BUFFER_SIZE];
+        server = new DefaultEmbeddedSftpServer(configuration().withResources(resourceAt(DIRECTORY).fromPath(fixtures)));
+        server.startServer();
+        Files.write(server.pathFor(DIRECTORY, DOWNLOAD), content);
+
+        client = BenchmarkHelper.startClient();
+        session = BenchmarkHelper.connect(client, server);
+        sftpClient = SftpClientFactory.instance().createSftpClient(session);
+    }
+
+    private SftpConfiguration configuration() {
+        if ("JIMFS".equals(backend)) {
+            return BenchmarkHelper.configuration().withFileSystemFactory(BackendComparisonBenchmark::newJimfs);
+        }
+        return BenchmarkHelper.configuration().withFileSystemBackend(FileSystemBackend.valueOf(backend));
+    }
+
+    private static FileSystem newJimfs(final String name, final String homeDirectory) throws IOException {
+        final FileSystem fileSystem = Jimfs.newFileSystem(name, Configuration.unix().toBuilder()
+                .setWorkingDirectory(homeDirectory)
+                .setAttributeViews("basic", "owner", "posix")
+                .build());
+        Files.createDirectories(fileSystem.getPath(homeDirectory));
+        return fileSystem;
+    }
+
+    @TearDown(Level.Trial)
+    public void disconnect() throws IOException {
+        sftpClient.close();
+        session.close();
+        client.close();
+        server.stopServer();
+        BenchmarkHelper.deleteRecursively(fixtures);
+    }
+
+    @Benchmark
+    public int upload(final MemoryUse memoryUse) throws IOException {
+        try (OutputStream output = sftpClient.write(DIRECTORY + "/" + UPLOAD)) {
+            output.write(content);
+        }
+        return content.length;
+    }
+
+    @Benchmark
+    public long download(final MemoryUse memoryUse) throws IOException {
+        long total = 0;
+        try (InputStream input = sftpClient.read(DIRECTORY + "/" + DOWNLOAD)) {
+            int read = input.read(buffer);
+            while (read >= 0) {
+                total += read;
+                read = input.read(buffer);
+            }
+        }
+        return total;
+    }
+
+    @Benchmark
+    public int list(final MemoryUse memoryUse) throws IOException {
+        int count = 0;
+        for (final SftpClient.DirEntry entry : sftpClient.readDir(DIRECTORY + "/directory-000")) {
+            if (entry.getAttributes().isRegularFile()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int resetAfterUpload(final MemoryUse memoryUse) throws IOException {
+        upload(memoryUse);
+        server.resetFileSystem();
+        return server.getRevertedEntryCount();
+    }
+
+    /**
+     * The heap and direct memory in use, JMH reports the values next to the primary result.
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class MemoryUse {
+
+        @SuppressWarnings("checkstyle:VisibilityModifier")
+        public long heapMegabytes;
+
+        @SuppressWarnings("checkstyle:VisibilityModifier")
+        public long directMegabytes;
+
+        @Setup(Level.Iteration)
+        @SuppressWarnings("PMD.DoNotCallGarbageCollectionExplicitly")
+        public void measure() {
+            System.gc();
+            heapMegabytes = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() / MEGABYTE;
+            directMegabytes = 0;
+            for (final BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+                if ("direct".equals(pool.getName())) {
+                    directMegabytes = pool.getMemoryUsed() / MEGABYTE;
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.benchmark;
+
+import org.apache.sshd.client.SshClient;
+import org.apache.sshd.client.keyverifier.AcceptAllServerKeyVerifier;
+import org.apache.sshd.client.session.ClientSession;
+import org.apache.sshd.core.CoreModuleProperties;
+import org.apache.sshd.sftp.SftpModuleProperties;
+import org.github.ricall.junit5.sftp.EmbeddedSftpServer;
+import org.github.ricall.junit5.sftp.SftpServer;
+import org.github.ricall.junit5.sftp.ThroughputProfile;
+import org.github.ricall.junit5.sftp.implementation.SftpConfiguration;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Fixtures shared by the benchmarks.
+ */
+public final class BenchmarkHelper {
+
+    public static final String SMALL = "small";
+    public static final String MEDIUM = "medium";
+    public static final String LARGE = "large";
+    public static final int FILE_SIZE = 1024;
+
+    private static final int SMALL_FILE_COUNT = 10;
+    private static final int MEDIUM_FILE_COUNT = 1_000;
+    private static final int LARGE_FILE_COUNT = 10_000;
+    private static final int DIRECTORY_SIZE = 100;
+    private static final long TIMEOUT_MILLIS = 30_000;
+    private static final String LOCALHOST = "localhost";
+
+    private BenchmarkHelper() {
+    }
+
+    /**
+     * Number of files in a named fixture set.
+     *
+     * @param fixtureSet One of {@link #SMALL}, {@link #MEDIUM} or {@link #LARGE}
+     * @return The number of files in the fixture set
+     * @throws IllegalArgumentException If the fixture set is unknown
+     */
+    public static int fileCount(final String fixtureSet) {
+        switch (fixtureSet) {
+            case SMALL:
+                return SMALL_FILE_COUNT;
+            case MEDIUM:
+                return MEDIUM_FILE_COUNT;
+            case LARGE:
+                return LARGE_FILE_COUNT;
+            default:
+                throw new IllegalArgumentException("Unknown fixture set " + fixtureSet);
+        }
+    }
+
+    /**
+     * Create a temporary directory tree of {@link #FILE_SIZE} byte files, spread over directories of 100 files.
+     *
+     * @param fileCount The number of files to create
+     * @return The root of the tree
+     * @throws IOException If the tree could not be created
+     */
+    public static Path createFixtures(final int fileCount) throws IOException {
+        final Path root = Files.createTempDirectory("sftp-benchmark");
+        for (int index = 0; index < fileCount; index++) {
+            final Path directory = root.resolve(String.format("directory-%03d", index / DIRECTORY_SIZE));
+            Files.createDirectories(directory);
+            Files.write(directory.resolve(String.format("file-%05d.txt", index)), randomBytes(FILE_SIZE));
+        }
+        return root;
+    }
+
+    /**
+     * Delete a directory tree created by {@link #createFixtures(int)}.
+     *
+     * @param root The root of the tree
+     * @throws IOException If the tree could not be deleted
+     */
+    public static void deleteRecursively(final Path root) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(final Path dir, final IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Random (incompressible) content so that transfer benchmarks are not flattered by compression.
+     *
+     * @param size The number of bytes
+     * @return The content
+     */
+    public static byte[] randomBytes(final int size) {
+        final byte[] content = new byte[size];
+        ThreadLocalRandom.current().nextBytes(content);
+        return content;
+    }
+
+    /**
+     * A configuration that binds to any free port so benchmarks never clash with a running server.
+     *
+     * @return The configuration builder
+     */
+    public static SftpConfiguration configuration() {
+        return SftpConfiguration.configuration().withPort(SftpServer.ANY_FREE_PORT);
+    }
+
+    /**
+     * Start a sshd client that trusts any host key.
+     *
+     * @return The started client
+     */
+    public static SshClient startClient() {
+        return startClient(ThroughputProfile.DEFAULT);
+    }
+
+    /**
+     * Start a sshd client that trusts any host key and uses the sizes of a throughput profile.
+     * <p>
+     * Downloads are limited by the window of the client, so the client has to use the profile as well as the server
+     * for downloads to benefit from it.
+     * </p>
+     *
+     * @param profile The throughput profile
+     * @return The started client
+     */
+    public static SshClient startClient(final ThroughputProfile profile) {
+        final SshClient client = SshClient.setUpDefaultClient();
+        client.setServerKeyVerifier(AcceptAllServerKeyVerifier.INSTANCE);
+        CoreModuleProperties.WINDOW_SIZE.set(client, profile.getWindowSize());
+        CoreModuleProperties.MAX_PACKET_SIZE.set(client, (long) profile.getMaxPacketSize());
+        SftpModuleProperties.READ_BUFFER_SIZE.set(client, profile.getReadBufferSize());
+        // Upload blocks as large as the buffer the server reads them into
+        SftpModuleProperties.WRITE_BUFFER_SIZE.set(client, profile.getNio2ReadBufferSize());
+        client.start();
+        return client;
+    }
+
+    /**
+     * Open an authenticated session to the server over loopback.
+     *
+     * @param client The client to connect with
+     * @param server The server to connect to
+     * @return The authenticated session
+     * @throws IOException If the session could not be opened
+     */
+    public static ClientSession connect(final SshClient client, final EmbeddedSftpServer server) throws IOException {
+        final ClientSession session = client.connect(server.getUsername(), LOCALHOST, server.getPort())
+                .verify(TIMEOUT_MILLIS)
+                .getSession();
+        session.addPasswordIdentity(server.getPassword());
+        session.auth().verify(TIMEOUT_MILLIS);
+        return session;
+    }
+
+}
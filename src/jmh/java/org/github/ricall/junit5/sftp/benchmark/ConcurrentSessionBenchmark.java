@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.benchmark;
+
+import org.apache.sshd.client.SshClient;
+import org.apache.sshd.client.session.ClientSession;
+import org.apache.sshd.sftp.client.SftpClient;
+import org.apache.sshd.sftp.client.SftpClientFactory;
+import org.github.ricall.junit5.sftp.FileSystemBackend;
+import org.github.ricall.junit5.sftp.implementation.DefaultEmbeddedSftpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures how the filesystem backends scale with the number of sessions that work on the server at the same time.
+ * <p>
+ * Every JMH thread has its own session and directory, and repeats what a typical client does: upload a file under a
+ * temporary name, rename it, list the directory, download the file and delete it. Scores are rounds per second over
+ * all sessions, so a backend that scales keeps the score per session as the number of sessions grows.
+ * </p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ConcurrentSessionBenchmark {
+
+    private static final String UPLOAD = "upload.tmp";
+    private static final String FILE = "file.bin";
+    private static final int FILES_PER_DIRECTORY = 100;
+
+    @Param({"HEAP", "IN_MEMORY"})
+    private FileSystemBackend backend;
+
+    @Param({"16384", "1048576"})
+    private int size;
+
+    private final AtomicInteger sessions = new AtomicInteger();
+    private byte[] content;
+    private DefaultEmbeddedSftpServer server;
+    private SshClient client;
+
+    @Setup(Level.Trial)
+    public void startServer() throws IOException {
+        content = BenchmarkHelper.randomBytes(size);
+        server = new DefaultEmbeddedSftpServer(BenchmarkHelper.configuration().withFileSystemBackend(backend));
+        server.startServer();
+        client = BenchmarkHelper.startClient();
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServer() throws IOException {
+        client.close();
+        server.stopServer();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long oneSession(final Session session) throws IOException {
+        return session.round(content);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long fourSessions(final Session session) throws IOException {
+        return session.round(content);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public long sixteenSessions(final Session session) throws IOException {
+        return session.round(content);
+    }
+
+    /**
+     * A session and the directory it works in, one for every JMH thread.
+     */
+    @State(Scope.Thread)
+    public static class Session {
+
+        private final byte[] buffer = new byte[32 * 1024];
+        private ClientSession clientSession;
+        private SftpClient sftpClient;
+        private String directory;
+
+        @Setup(Level.Trial)
+        public void connect(final ConcurrentSessionBenchmark benchmark) throws IOException {
+            clientSession = BenchmarkHelper.connect(benchmark.client, benchmark.server);
+            sftpClient = SftpClientFactory.instance().createSftpClient(clientSession);
+            directory = "session-" + benchmark.sessions.incrementAndGet();
+            sftpClient.mkdir(directory);
+            for (int index = 0; index < FILES_PER_DIRECTORY; index++) {
+                try (OutputStream output = sftpClient.write(directory + "/existing-" + index)) {
+                    output.write(index);
+                }
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void disconnect() throws IOException {
+            sftpClient.close();
+            clientSession.close();
+        }
+
+        /* default */ long round(final byte[] content) throws IOException {
+            final String upload = directory + "/" + UPLOAD;
+            final String file = directory + "/" + FILE;
+            try (OutputStream output = sftpClient.write(upload)) {
+                output.write(content);
+            }
+            sftpClient.rename(upload, file);
+            long total = 0;
+            for (final SftpClient.DirEntry entry : sftpClient.readDir(directory)) {
+                total += entry.getAttributes().getSize();
+            }
+            try (InputStream input = sftpClient.read(file)) {
+                int read = input.read(buffer);
+                while (read >= 0) {
+                    total += read;
+                    read = input.read(buffer);
+                }
+            }
+            sftpClient.remove(file);
+            return total;
+        }
+
+    }
+
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.benchmark;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.JSch;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import com.jcraft.jsch.SftpException;
+import org.apache.sshd.client.SshClient;
+import org.apache.sshd.client.session.ClientSession;
+import org.apache.sshd.sftp.client.SftpClient;
+import org.apache.sshd.sftp.client.SftpClientFactory;
+import org.github.ricall.junit5.sftp.FileSystemBackend;
+import org.github.ricall.junit5.sftp.GeneratedFiles;
+import org.github.ricall.junit5.sftp.implementation.DefaultEmbeddedSftpServer;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Measures listing a directory of generated files over loopback with the sshd and JSch clients.
+ * <p>
+ * Scores are listings per second, the {@code entries} secondary result is the number of entries listed per second.
+ * Both clients read the attributes of every entry, as {@code ls -l} does.
+ * </p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class DirectoryListingBenchmark {
+
+    private static final String LISTING = "/listing";
+    private static final int TIMEOUT_MILLIS = 30_000;
+
+    @Param({"10000", "100000", "1000000"})
+    private int entries;
+
+    @Param({"HEAP", "OFF_HEAP"})
+    private FileSystemBackend backend;
+
+    private DefaultEmbeddedSftpServer server;
+    private SshClient client;
+    private ClientSession session;
+    private SftpClient sftpClient;
+    private Session jschSession;
+    private ChannelSftp jschChannel;
+
+    @Setup(Level.Trial)
+    public void connect() throws IOException, JSchException {
+        server = new DefaultEmbeddedSftpServer(BenchmarkHelper.configuration()
+                .withFileSystemBackend(backend)
+                .withGeneratedFiles(LISTING, GeneratedFiles.count(entries)
+                        .named("file-%07d.txt")
+                        .sized(BenchmarkHelper.FILE_SIZE)));
+        server.startServer();
+
+        client = BenchmarkHelper.startClient();
+        session = BenchmarkHelper.connect(client, server);
+        sftpClient = SftpClientFactory.instance().createSftpClient(session);
+
+        jschSession = new JSch().getSession(server.getUsername(), "localhost", server.getPort());
+        jschSession.setPassword(server.getPassword());
+        jschSession.setConfig("StrictHostKeyChecking", "no");
+        jschSession.connect(TIMEOUT_MILLIS);
+        jschChannel = (ChannelSftp) jschSession.openChannel("sftp");
+        jschChannel.connect(TIMEOUT_MILLIS);
+    }
+
+    @TearDown(Level.Trial)
+    public void disconnect() throws IOException {
+        jschChannel.disconnect();
+        jschSession.disconnect();
+        sftpClient.close();
+        session.close();
+        client.close();
+        server.stopServer();
+    }
+
+    @Benchmark
+    public int sshdReadDir(final Listed listed) throws IOException {
+        int count = 0;
+        for (final SftpClient.DirEntry entry : sftpClient.readDir(LISTING)) {
+            if (entry.getAttributes().isRegularFile()) {
+                count++;
+            }
+        }
+        return listed.add(count);
+    }
+
+    @Benchmark
+    public int jschLs(final Listed listed) throws SftpException {
+        final int[] count = new int[1];
+        jschChannel.ls(LISTING, entry -> {
+            if (entry.getAttrs().isReg()) {
+                count[0]++;
+            }
+            return ChannelSftp.LsEntrySelector.CONTINUE;
+        });
+        return listed.add(count[0]);
+    }
+
+    /**
+     * Counts the entries listed, JMH reports it as a rate (entries/s) next to the primary result.
+     */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Listed {
+
+        @SuppressWarnings("checkstyle:VisibilityModifier")
+        public long entries;
+
+        @Setup(Level.Iteration)
+        public void clear() {
+            entries = 0;
+        }
+
+        public final int add(final int count) {
+            if (count == 0) {
+                throw new IllegalStateException("No entries were listed");
+            }
+            entries += count;
+            return count;
+        }
+
+    }
+
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.benchmark;
+
+import org.apache.sshd.client.SshClient;
+import org.apache.sshd.client.session.ClientSession;
+import org.apache.sshd.sftp.client.SftpClient;
+import org.apache.sshd.sftp.client.SftpClientFactory;
+import org.github.ricall.junit5.sftp.IoBackend;
+import org.github.ricall.junit5.sftp.implementation.DefaultEmbeddedSftpServer;
+import org.github.ricall.junit5.sftp.implementation.ResettableFileSystem;
+import org.github.ricall.junit5.sftp.implementation.SftpConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the I/O backends for session heavy and transfer heavy workloads.
+ * <p>
+ * {@code session} opens a new authenticated SFTP session for every operation and {@code transfer} moves 1MB over a
+ * session per thread. Both run from several threads at once, with and without a shared pool of session threads.
+ * MINA and Netty need {@code sshd-mina} and {@code sshd-netty} on the benchmark classpath, which leaves sshd with
+ * several backends to choose from, so the client is pinned to NIO2.
+ * </p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.apache.sshd.common.io.IoServiceFactoryFactory="
+        + "org.apache.sshd.common.io.nio2.Nio2ServiceFactoryFactory")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Threads(4)
+public class IoBackendBenchmark {
+
+    private static final String DOWNLOAD = "download.bin";
+    private static final int TRANSFER_SIZE = 1024 * 1024;
+    private static final int BUFFER_SIZE = 32 * 1024;
+
+    @Param({"NIO2", "MINA", "NETTY"})
+    private IoBackend backend;
+
+    @Param({"0", "4"})
+    private int sessionThreads;
+
+    private byte[] content;
+    private DefaultEmbeddedSftpServer server;
+    private SshClient client;
+
+    @Setup(Level.Trial)
+    public void startServer() throws IOException {
+        content = BenchmarkHelper.randomBytes(TRANSFER_SIZE);
+        SftpConfiguration configuration = BenchmarkHelper.configuration().withIoBackend(backend);
+        if (sessionThreads > 0) {
+            configuration = configuration.withSessionThreads(sessionThreads);
+        }
+        server = new DefaultEmbeddedSftpServer(configuration);
+        server.startServer();
+        Files.write(server.pathFor(ResettableFileSystem.HOME_DIRECTORY, DOWNLOAD), content);
+
+        client = BenchmarkHelper.startClient();
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServer() throws IOException {
+        client.close();
+        server.stopServer();
+    }
+
+    @Benchmark
+    public boolean session() throws IOException {
+        try (ClientSession session = openSession();
+             SftpClient sftpClient = SftpClientFactory.instance().createSftpClient(session)) {
+            return sftpClient.isOpen();
+        }
+    }
+
+    @Benchmark
+    public long transfer(final Connection connection) throws IOException {
+        return connection.transfer(content);
+    }
+
+    /**
+     * Open an authenticated session to the server.
+     *
+     * @return The session
+     * @throws IOException If the session can't be opened
+     */
+    public final ClientSession openSession() throws IOException {
+        return BenchmarkHelper.connect(client, server);
+    }
+
+    /**
+     * A session per benchmark thread, so the transfers are spread over several sessions.
+     */
+    @State(Scope.Thread)
+    public static class Connection {
+
+        private ClientSession session;
+        private SftpClient sftpClient;
+        private String upload;
+        private byte[] buffer;
+
+        @Setup(Level.Trial)
+        public void connect(final IoBackendBenchmark benchmark) throws IOException {
+            session = benchmark.openSession();
+            sftpClient = SftpClientFactory.instance().createSftpClient(session);
+            upload = "upload-" + Thread.currentThread().getId() + ".bin";
+            buffer = new byte[BUFFER_SIZE];
+        }
+
+        @TearDown(Level.Trial)
+        public void disconnect() throws IOException {
+            sftpClient.close();
+            session.close();
+        }
+
+        /**
+         * Upload the content, then download a file of the same size.
+         *
+         * @param content The content to upload
+         * @return The number of bytes downloaded
+         * @throws IOException If the transfer fails
+         */
+        public final long transfer(final byte[] content) throws IOException {
+            try (OutputStream output = sftpClient.write(upload)) {
+                output.write(content);
+            }
+            long total = 0;
+            try (InputStream input = sftpClient.read(DOWNLOAD)) {
+                int read = input.read(buffer);
+                while (read >= 0) {
+                    total += read;
+                    read = input.read(buffer);
+                }
+            }
+            return total;
+        }
+
+    }
+
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.benchmark;
+
+import org.github.ricall.junit5.sftp.implementation.DefaultEmbeddedSftpServer;
+import org.github.ricall.junit5.sftp.implementation.SftpConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.github.ricall.junit5.sftp.FileSystemResource.resourceAt;
+
+/**
+ * Measures resetting the filesystem between tests for small (10), medium (1,000) and large (10,000) fixture sets.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ResetBenchmark {
+
+    private static final String DIRECTORY = "/data";
+    private static final byte[] CHANGED = "changed".getBytes(StandardCharsets.UTF_8);
+
+    @Param({BenchmarkHelper.SMALL, BenchmarkHelper.MEDIUM, BenchmarkHelper.LARGE})
+    private String fixtureSet;
+
+    @Param({"false", "true"})
+    private boolean backgroundReset;
+
+    private Path fixtures;
+    private DefaultEmbeddedSftpServer server;
+
+    @Setup(Level.Trial)
+    public void startServer() throws IOException {
+        fixtures = BenchmarkHelper.createFixtures(BenchmarkHelper.fileCount(fixtureSet));
+        SftpConfiguration configuration = BenchmarkHelper.configuration()
+                .withResources(resourceAt(DIRECTORY).fromPath(fixtures));
+        if (backgroundReset) {
+            configuration = configuration.withBackgroundReset();
+        }
+        server = new DefaultEmbeddedSftpServer(configuration);
+        server.startServer();
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServer() throws IOException {
+        server.stopServer();
+        BenchmarkHelper.deleteRecursively(fixtures);
+    }
+
+    @Benchmark
+    public int resetUnchanged() {
+        server.resetFileSystem();
+        return server.getRevertedEntryCount();
+    }
+
+    @Benchmark
+    public int resetAfterWrite() throws IOException {
+        Files.write(server.pathFor(DIRECTORY, "directory-000", "file-00000.txt"), CHANGED);
+        Files.write(server.pathFor(DIRECTORY, "new-file.txt"), CHANGED);
+        server.resetFileSystem();
+        return server.getRevertedEntryCount();
+    }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.benchmark;
+
+import org.apache.sshd.client.SshClient;
+import org.apache.sshd.client.session.ClientSession;
+import org.apache.sshd.server.keyprovider.SimpleGeneratorHostKeyProvider;
+import org.github.ricall.junit5.sftp.HostKeyAlgorithm;
+import org.github.ricall.junit5.sftp.implementation.DefaultEmbeddedSftpServer;
+import org.github.ricall.junit5.sftp.implementation.SftpConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of starting and stopping a server, with and without a client handshake.
+ * <p>
+ * The handshake is where the host key is generated, so {@code uncached} (a new key for every server) shows what
+ * the host key cache saves over {@code rsa} and {@code ecdsa}.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ServerLifecycleBenchmark {
+
+    private static final String UNCACHED = "uncached";
+
+    @Param({"rsa", "ecdsa", UNCACHED})
+    private String hostKey;
+
+    private SshClient client;
+
+    @Setup(Level.Trial)
+    public void startClient() {
+        client = BenchmarkHelper.startClient();
+    }
+
+    @TearDown(Level.Trial)
+    public void stopClient() throws IOException {
+        client.close();
+    }
+
+    @Benchmark
+    public int startStop() {
+        final DefaultEmbeddedSftpServer server = new DefaultEmbeddedSftpServer(configuration());
+        server.startServer();
+        try {
+            return server.getPort();
+        } finally {
+            server.stopServer();
+        }
+    }
+
+    @Benchmark
+    public boolean startConnectStop() throws IOException {
+        final DefaultEmbeddedSftpServer server = new DefaultEmbeddedSftpServer(configuration());
+        server.startServer();
+        try (ClientSession session = BenchmarkHelper.connect(client, server)) {
+            return session.isAuthenticated();
+        } finally {
+            server.stopServer();
+        }
+    }
+
+    private SftpConfiguration configuration() {
+        final SftpConfiguration configuration = BenchmarkHelper.configuration();
+        if (UNCACHED.equals(hostKey)) {
+            return configuration.withKeyPairProvider(new SimpleGeneratorHostKeyProvider());
+        }
+        return configuration.withHostKey(HostKeyAlgorithm.valueOf(hostKey.toUpperCase(Locale.ROOT)));
+    }
+
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.benchmark;
+
+import org.apache.sshd.client.SshClient;
+import org.apache.sshd.client.session.ClientSession;
+import org.apache.sshd.sftp.client.SftpClient;
+import org.apache.sshd.sftp.client.SftpClientFactory;
+import org.github.ricall.junit5.sftp.FileSystemBackend;
+import org.github.ricall.junit5.sftp.ThroughputProfile;
+import org.github.ricall.junit5.sftp.implementation.DefaultEmbeddedSftpServer;
+import org.github.ricall.junit5.sftp.implementation.ResettableFileSystem;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures SFTP upload and download throughput over loopback using the sshd client.
+ * <p>
+ * Scores are transfers per second, the {@code megabytes} secondary result is the throughput in MB/s. The server and
+ * the client both use the {@code profile} so the difference between the throughput profiles can be compared. Every
+ * transfer goes through the full SFTP path into the filesystem {@code backend}, run with {@code -prof gc} to compare
+ * the allocation rate of uploads into the heap backends.
+ * </p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class TransferBenchmark {
+
+    private static final String UPLOAD = "upload.bin";
+    private static final String DOWNLOAD = "download.bin";
+    private static final int BUFFER_SIZE = 32 * 1024;
+
+    @Param({"65536", "1048576", "8388608", "134217728"})
+    private int size;
+
+    @Param({"DEFAULT", "LARGE_FILES"})
+    private ThroughputProfile profile;
+
+    @Param({"HEAP", "IN_MEMORY", "OFF_HEAP"})
+    private FileSystemBackend backend;
+
+    private byte[] content;
+    private byte[] buffer;
+    private DefaultEmbeddedSftpServer server;
+    private SshClient client;
+    private ClientSession session;
+    private SftpClient sftpClient;
+
+    @Setup(Level.Trial)
+    public void connect() throws IOException {
+        content = BenchmarkHelper.randomBytes(size);
+        buffer = new byte[BUFFER_SIZE];
+        server = new DefaultEmbeddedSftpServer(BenchmarkHelper.configuration()
+                .withThroughputProfile(profile)
+                .withFileSystemBackend(backend));
+        server.startServer();
+        Files.write(server.pathFor(ResettableFileSystem.HOME_DIRECTORY, DOWNLOAD), content);
+
+        client = BenchmarkHelper.startClient(profile);
+        session = BenchmarkHelper.connect(client, server);
+        sftpClient = SftpClientFactory.instance().createSftpClient(session);
+    }
+
+    @TearDown(Level.Trial)
+    public void disconnect() throws IOException {
+        sftpClient.close();
+        session.close();
+        client.close();
+        server.stopServer();
+    }
+
+    @Benchmark
+    public int upload(final Transferred transferred) throws IOException {
+        try (OutputStream output = sftpClient.write(UPLOAD)) {
+            output.write(content);
+        }
+        transferred.add(content.length);
+        return content.length;
+    }
+
+    @Benchmark
+    public long download(final Transferred transferred) throws IOException {
+        long total = 0;
+        try (InputStream input = sftpClient.read(DOWNLOAD)) {
+            int read = input.read(buffer);
+            while (read >= 0) {
+                total += read;
+                read = input.read(buffer);
+            }
+        }
+        if (total != size) {
+            throw new IllegalStateException("Downloaded " + total + " of " + size + " bytes");
+        }
+        transferred.add(total);
+        return total;
+    }
+
+    /**
+     * Counts the megabytes transferred, JMH reports it as a rate (MB/s) next to the primary result.
+     */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Transferred {
+
+        private static final double MEGABYTE = 1024 * 1024;
+
+        @SuppressWarnings("checkstyle:VisibilityModifier")
+        public double megabytes;
+
+        @Setup(Level.Iteration)
+        public void clear() {
+            megabytes = 0;
+        }
+
+        public final void add(final long bytes) {
+            megabytes += bytes / MEGABYTE;
+        }
+
+    }
+
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.LongToIntFunction;
+
+/**
+ * Computes the bytes of a generated file from their offset, so the file never has to be stored.
+ * <p>
+ * Generators need to be deterministic, every call for the same offset returns the same bytes. That allows a file to
+ * be read from any offset and lets {@link #matches(InputStream, long, long)} check what a client received without
+ * keeping a copy of the file.
+ * </p>
+ */
+@FunctionalInterface
+public interface ContentGenerator {
+
+    /**
+     * Fill the remaining space of a buffer with the bytes starting at an offset.
+     *
+     * @param offset The offset of the first byte
+     * @param target The buffer to fill, its position is moved to its limit
+     */
+    void generate(long offset, ByteBuffer target);
+
+    /**
+     * Check that a stream holds the generated bytes of a range and then ends.
+     *
+     * @param input The stream to check, it is read to the end
+     * @param offset The offset of the first byte of the stream
+     * @param length The number of bytes the stream should hold
+     * @return {@code true} if the stream held exactly the generated bytes
+     * @throws IOException If the stream could not be read
+     */
+    default boolean matches(final InputStream input, final long offset, final long length) throws IOException {
+        final byte[] received = new byte[64 * 1024];
+        final ByteBuffer expected = ByteBuffer.allocate(received.length);
+        long position = 0;
+        int read = input.read(received);
+        while (read >= 0) {
+            if (position + read > length) {
+                return false;
+            }
+            expected.clear();
+            expected.limit(read);
+            generate(offset + position, expected);
+            for (int index = 0; index < read; index++) {
+                if (received[index] != expected.get(index)) {
+                    return false;
+                }
+            }
+            position += read;
+            read = input.read(received);
+        }
+        return position == length;
+    }
+
+    /**
+     * Repeat a pattern of bytes.
+     *
+     * @param pattern The bytes to repeat
+     * @return The generator
+     */
+    static ContentGenerator pattern(final byte[] pattern) {
+        if (pattern.length == 0) {
+            throw new IllegalArgumentException("The pattern needs at least one byte");
+        }
+        final byte[] bytes = pattern.clone();
+        return (offset, target) -> {
+            int index = (int) (offset % bytes.length);
+            while (target.hasRemaining()) {
+                final int length = Math.min(target.remaining(), bytes.length - index);
+                target.put(bytes, index, length);
+                index = 0;
+            }
+        };
+    }
+
+    /**
+     * Repeat a pattern of text.
+     *
+     * @param pattern The text to repeat, encoded as UTF-8
+     * @return The generator
+     */
+    static ContentGenerator pattern(final String pattern) {
+        return pattern(pattern.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Generate pseudo random bytes from a seed.
+     * <p>
+     * Every block of eight bytes is computed independently with the SplitMix64 mixing function, so any offset can be
+     * generated without generating the bytes before it.
+     * </p>
+     *
+     * @param seed The seed, generators with the same seed produce the same bytes
+     * @return The generator
+     */
+    static ContentGenerator random(final long seed) {
+        return (offset, target) -> {
+            long position = offset;
+            while (target.hasRemaining()) {
+                final long block = position >>> 3;
+                long value = seed + (block + 1) * 0x9E3779B97F4A7C15L;
+                value = (value ^ value >>> 30) * 0xBF58476D1CE4E5B9L;
+                value = (value ^ value >>> 27) * 0x94D049BB133111EBL;
+                value ^= value >>> 31;
+                for (int index = (int) (position & 7); index < 8 && target.hasRemaining(); index++) {
+                    target.put((byte) (value >>> (index * 8)));
+                    position++;
+                }
+            }
+        };
+    }
+
+    /**
+     * Compute every byte from its offset.
+     *
+     * @param function Returns the byte at an offset, only the lowest 8 bits are used
+     * @return The generator
+     */
+    static ContentGenerator ofOffset(final LongToIntFunction function) {
+        return (offset, target) -> {
+            long position = offset;
+            while (target.hasRemaining()) {
+                target.put((byte) function.applyAsInt(position++));
+            }
+        };
+    }
+
+}
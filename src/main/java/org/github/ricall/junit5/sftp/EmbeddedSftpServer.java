@@ -43,14 +43,39 @@ public interface EmbeddedSftpServer {
      */
     void addResources(List<FileSystemResource> resources);
 
+    /**
+     * Add a directory of generated files into the server.
+     *
+     * @param destination The path to the directory
+     * @param files The files to add
+     * @see SftpServer#withGeneratedFiles(String, GeneratedFiles)
+     */
+    void addGeneratedFiles(String destination, GeneratedFiles files);
+
     /**
      * Reset the filesystem back to its default state.
      * <p>
      * The filesystem is automatically reset after each test so you typically never need to call this method.
      * </p>
+     * <p>
+     * Sessions that are open when the filesystem is reset keep the tree they were using, they don't see the reset.
+     * Sessions opened afterwards are served the reset filesystem. While sessions are open the filesystem can't be
+     * reverted in place, so it is replaced by a newly populated filesystem instead.
+     * </p>
      */
     void resetFileSystem();
 
+    /**
+     * Get the number of filesystem entries that were reverted by the most recent reset.
+     * <p>
+     * Only the paths that have been created, written, renamed, deleted or had their attributes changed since the
+     * previous reset are reverted. A test that does not change the filesystem does not need any entries reverted.
+     * </p>
+     *
+     * @return The number of entries that were deleted, rewritten or recreated
+     */
+    int getRevertedEntryCount();
+
     /**
      * Get a resource from the embedded sftp servers FileSystem.
      *
@@ -61,4 +86,43 @@ public interface EmbeddedSftpServer {
      */
     Path pathFor(String filename, String... more);
 
+    /**
+     * Get the port the server is listening on.
+     * <p>
+     * This is the port that was actually bound, which is useful when the server was configured with
+     * {@link SftpServer#ANY_FREE_PORT}.
+     * </p>
+     *
+     * @return The port the server is listening on
+     */
+    int getPort();
+
+    /**
+     * Get the username a client should use to connect to the server.
+     * <p>
+     * When tests are isolated every test gets its own username, sessions that log in with it only see the tests
+     * own filesystem.
+     * </p>
+     *
+     * @return The username to connect with
+     */
+    String getUsername();
+
+    /**
+     * Get the password a client should use to connect to the server.
+     *
+     * @return The password to connect with, or {@code null} if only public key authentication is configured
+     */
+    String getPassword();
+
+    /**
+     * Get the counts and latencies of the sftp operations clients performed against the server.
+     * <p>
+     * The metrics are reset before every test, call {@link SftpMetrics#reset()} to reset them during a test.
+     * </p>
+     *
+     * @return The metrics of the server
+     */
+    SftpMetrics getMetrics();
+
 }
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp;
+
+/**
+ * The filesystems the embedded sftp server can serve its files from.
+ */
+public enum FileSystemBackend {
+
+    /** The default, file contents are held in heap byte arrays by MemoryFileSystem. */
+    HEAP,
+
+    /**
+     * File contents are held in fixed size heap chunks by a filesystem that is built for the embedded server.
+     * <p>
+     * Suited to tests that upload large files, growing a file adds chunks instead of copying it into a larger array, so
+     * uploads don't cause large array copies or garbage collection spikes. Writes that arrive out of order only
+     * allocate the chunks they touch.
+     * </p>
+     */
+    IN_MEMORY,
+
+    /**
+     * File contents are held in direct buffers outside the heap.
+     * <p>
+     * Suited to tests that transfer files of several gigabytes, the heap only holds the directory tree so the tests
+     * don't need a large {@code -Xmx} and don't put pressure on the garbage collector. The size of the files is
+     * limited by {@code -XX:MaxDirectMemorySize}, which defaults to the maximum heap size.
+     * </p>
+     */
+    OFF_HEAP,
+
+    /**
+     * Files are held in a temporary directory on disk.
+     * <p>
+     * Suited to the largest data sets, the server reads and writes the files with native file channels and resets
+     * by hard linking the baseline files back into place, so the bytes are never copied again. Point
+     * {@code java.io.tmpdir} at a tmpfs mount such as {@code /dev/shm} to keep the files in memory.
+     * </p>
+     */
+    DISK
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp;
+
+/**
+ * Counters of the pool that heap and in-memory filesystems are given back to and reused from.
+ * <p>
+ * There is a single pool in the JVM, so the counters include the filesystems of every server.
+ * </p>
+ */
+public interface FileSystemPoolMetrics {
+
+    /**
+     * Get the number of cleared filesystems of each kind the pool keeps.
+     *
+     * @return The maximum number of idle filesystems per kind
+     */
+    int getMaximumIdle();
+
+    /**
+     * Get the number of cleared filesystems that are waiting to be reused.
+     *
+     * @return The number of idle filesystems
+     */
+    int getIdle();
+
+    /**
+     * Get the number of filesystems that had to be built because none were idle.
+     *
+     * @return The number of created filesystems
+     */
+    long getCreated();
+
+    /**
+     * Get the number of filesystems that were taken from the pool rather than built.
+     *
+     * @return The number of reused filesystems
+     */
+    long getReused();
+
+    /**
+     * Get the number of filesystems that were closed instead of kept, because enough were idle or they couldn't be cleared.
+     *
+     * @return The number of discarded filesystems
+     */
+    long getDiscarded();
+
+    /**
+     * Get the share of filesystems that were taken from the pool rather than built.
+     *
+     * @return The reuse rate between 0 and 1
+     */
+    double getReuseRate();
+
+    /**
+     * Get the number of bytes of file content that were deleted by clearing filesystems that were given back.
+     *
+     * @return The reclaimed bytes
+     */
+    long getReclaimedBytes();
+
+    /**
+     * Get the number of bytes of file content still held by the idle filesystems.
+     * <p>
+     * This stays at zero while clearing works, anything else means the idle filesystems hold on to files of earlier
+     * tests. The idle filesystems are walked to count the bytes.
+     * </p>
+     *
+     * @return The retained bytes
+     */
+    long getRetainedBytes();
+
+}
@@ -80,14 +80,28 @@ public interface FileSystemResource {
         /**
          * Single file containing data from the supplied input stream.
          * <p>
-         * Because the embedded filesystem is recreated for every test we need to supply a new input stream
-         * for each test.
+         * The supplier is called whenever the resource is copied into the embedded filesystem, so it needs to
+         * supply a new input stream every time it is called.
          * </p>
          * @param streamSupplier Supplies the {@link InputStream} to populate the file
          * @return A list containing a single {@link FileSystemResource} for the file
          */
         List<FileSystemResource> withContent(Supplier<InputStream> streamSupplier);
 
+        /**
+         * Single file whose bytes are computed when they are read rather than stored.
+         * <p>
+         * The file reports its full size but takes no space in the in-memory filesystems, which makes it possible to
+         * test transfers and resumed downloads of files with many gigabytes. Use
+         * {@link ContentGenerator#matches(InputStream, long, long)} to check what a client received. The
+         * {@link FileSystemBackend#DISK} backend writes the generated bytes to disk.
+         * </p>
+         * @param size The size of the file in bytes
+         * @param generator Computes the bytes of the file from their offset
+         * @return A list containing a single {@link FileSystemResource} for the file
+         */
+        List<FileSystemResource> withGeneratedContent(long size, ContentGenerator generator);
+
         /**
          * Copy classpath resources into the embedded sftp filesystem.
          * <p>
@@ -110,6 +124,19 @@ public interface FileSystemResource {
          */
         List<FileSystemResource> fromPath(Path path);
 
+        /**
+         * Serve filesystem resources from the host without copying them into the embedded sftp filesystem.
+         * <p>
+         * The files are a read only lower layer, they are read from the host until a client modifies them and a
+         * reset only has to discard the modified copies. A host file is only open while a client has it open. The
+         * files should not change while the server is running. Mounting is supported by the in-memory filesystems,
+         * the {@link FileSystemBackend#DISK} backend copies the files like {@link #fromPath(Path)}.
+         * </p>
+         * @param path The path to the resource (either a file or directory)
+         * @return A list containing all the filesystem resources
+         */
+        List<FileSystemResource> mountPath(Path path);
+
     }
 
 }
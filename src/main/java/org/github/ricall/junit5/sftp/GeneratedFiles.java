@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp;
+
+import java.util.function.IntFunction;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Declares a large number of generated files in one directory.
+ * <p>
+ * The files are described by their count, a name pattern, a size for every index and a {@link ContentGenerator}, so
+ * declaring a million files doesn't create a million objects. Use it with
+ * {@link SftpServer#withGeneratedFiles(String, GeneratedFiles)}:
+ * </p>
+ * <pre>
+ *     withGeneratedFiles("/tmp/listing", GeneratedFiles.count(100_000)
+ *             .named("report-%06d.csv")
+ *             .sized(index -&gt; 1024 + index % 4096)
+ *             .generatedBy(ContentGenerator.pattern("a,b,c\n")))
+ * </pre>
+ */
+public final class GeneratedFiles {
+
+    private static final ContentGenerator ZEROS = ContentGenerator.ofOffset(offset -> 0);
+
+    private final transient int count;
+    private transient String namePattern = "file-%d";
+    private transient IntToLongFunction size = index -> 0;
+    private transient IntFunction<ContentGenerator> generator = index -> ZEROS;
+
+    private GeneratedFiles(final int count) {
+        this.count = count;
+    }
+
+    /**
+     * Declare a number of files, by default they are empty and named {@code file-0} to {@code file-<count - 1>}.
+     *
+     * @param count The number of files
+     * @return The declaration
+     */
+    public static GeneratedFiles count(final int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("The count can't be negative");
+        }
+        return new GeneratedFiles(count);
+    }
+
+    /**
+     * Name the files with a {@link String#format(String, Object...)} pattern that is given the index of the file.
+     *
+     * @param pattern The pattern, for example {@code file-%06d.txt}
+     * @return The declaration
+     */
+    public GeneratedFiles named(final String pattern) {
+        this.namePattern = pattern;
+        return this;
+    }
+
+    /**
+     * Give every file the same size.
+     *
+     * @param bytes The size of each file in bytes
+     * @return The declaration
+     */
+    public GeneratedFiles sized(final long bytes) {
+        return sized(index -> bytes);
+    }
+
+    /**
+     * Size the files by their index.
+     *
+     * @param sizes Returns the size in bytes of the file with an index
+     * @return The declaration
+     */
+    public GeneratedFiles sized(final IntToLongFunction sizes) {
+        this.size = sizes;
+        return this;
+    }
+
+    /**
+     * Generate the contents of every file with the same generator.
+     *
+     * @param contents The generator
+     * @return The declaration
+     */
+    public GeneratedFiles generatedBy(final ContentGenerator contents) {
+        return generatedBy(index -> contents);
+    }
+
+    /**
+     * Generate the contents of the files with a generator for their index, for example a seeded random generator.
+     *
+     * @param contents Returns the generator of the file with an index
+     * @return The declaration
+     */
+    public GeneratedFiles generatedBy(final IntFunction<ContentGenerator> contents) {
+        this.generator = contents;
+        return this;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public String getNamePattern() {
+        return namePattern;
+    }
+
+    /**
+     * Get the name of a file.
+     *
+     * @param index The index of the file
+     * @return The name of the file
+     */
+    public String nameOf(final int index) {
+        return String.format(namePattern, index);
+    }
+
+    /**
+     * Get the size of a file.
+     *
+     * @param index The index of the file
+     * @return The size of the file in bytes
+     */
+    public long sizeOf(final int index) {
+        final long bytes = size.applyAsLong(index);
+        if (bytes < 0) {
+            throw new IllegalArgumentException("The size of " + nameOf(index) + " can't be negative");
+        }
+        return bytes;
+    }
+
+    /**
+     * Get the generator of a file.
+     *
+     * @param index The index of the file
+     * @return The generator of the file
+     */
+    public ContentGenerator generatorOf(final int index) {
+        return generator.apply(index);
+    }
+
+}
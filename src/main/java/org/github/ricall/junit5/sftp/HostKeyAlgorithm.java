@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp;
+
+/**
+ * The algorithms that can be used to generate the host key of the embedded sftp server.
+ * <p>
+ * RSA keys are the most widely supported but are also the slowest to generate, ECDSA and Ed25519 keys are generated
+ * much faster. Ed25519 keys need {@code net.i2p.crypto:eddsa} on the classpath.
+ * </p>
+ */
+public enum HostKeyAlgorithm {
+
+    /** RSA host key using the sshd default key size. */
+    RSA("RSA", 0),
+
+    /** ECDSA host key on the NIST P-256 curve. */
+    ECDSA("EC", 256),
+
+    /** Ed25519 host key. */
+    ED25519("EdDSA", 0);
+
+    private final String keyAlgorithm;
+    private final int keySize;
+
+    HostKeyAlgorithm(final String keyAlgorithm, final int keySize) {
+        this.keyAlgorithm = keyAlgorithm;
+        this.keySize = keySize;
+    }
+
+    /**
+     * Get the name of the {@link java.security.KeyPairGenerator} algorithm.
+     *
+     * @return The key algorithm
+     */
+    public String getKeyAlgorithm() {
+        return keyAlgorithm;
+    }
+
+    /**
+     * Get the size of the generated keys.
+     *
+     * @return The key size, or 0 to use the default size of the algorithm
+     */
+    public int getKeySize() {
+        return keySize;
+    }
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp;
+
+/**
+ * Counters of the cache that shares generated host keys between servers, see {@link SftpServer#withHostKey(HostKeyAlgorithm)}.
+ * <p>
+ * There is a single cache in the JVM, so the counters include the host keys used by every server.
+ * </p>
+ */
+public interface HostKeyCacheMetrics {
+
+    /**
+     * Get the number of times a server reused a host key provider that was already cached.
+     *
+     * @return The number of cache hits
+     */
+    long getHits();
+
+    /**
+     * Get the number of host keys that have been generated.
+     *
+     * @return The number of generated keys
+     */
+    long getGeneratedKeys();
+
+    /**
+     * Get the total time spent generating host keys.
+     *
+     * @return The generation time in nanoseconds
+     */
+    long getGenerationNanos();
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp;
+
+/**
+ * The I/O backends the embedded sftp server can use to accept connections and move data.
+ * <p>
+ * NIO2 is built into sshd. MINA and Netty need the matching sshd module on the classpath and can handle many
+ * simultaneous sessions with fewer threads.
+ * </p>
+ */
+public enum IoBackend {
+
+    /** The sshd default, based on {@link java.nio.channels.AsynchronousChannelGroup}. */
+    NIO2("sshd-core", "org.apache.sshd.common.io.nio2.Nio2ServiceFactoryFactory"),
+
+    /** Apache MINA, needs {@code org.apache.sshd:sshd-mina}. */
+    MINA("sshd-mina", "org.apache.sshd.mina.MinaServiceFactoryFactory"),
+
+    /** Netty, needs {@code org.apache.sshd:sshd-netty}. */
+    NETTY("sshd-netty", "org.apache.sshd.netty.NettyIoServiceFactoryFactory");
+
+    private final String module;
+    private final String factoryClassName;
+
+    IoBackend(final String module, final String factoryClassName) {
+        this.module = module;
+        this.factoryClassName = factoryClassName;
+    }
+
+    /**
+     * Get the sshd module that provides the backend.
+     *
+     * @return The artifact id of the module
+     */
+    public String getModule() {
+        return module;
+    }
+
+    /**
+     * Get the sshd {@code IoServiceFactoryFactory} that creates the backend.
+     *
+     * @return The fully qualified class name of the factory
+     */
+    public String getFactoryClassName() {
+        return factoryClassName;
+    }
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp;
+
+/**
+ * Counters of the resource cache enabled by {@link SftpServer#withResourceCache(long)}.
+ * <p>
+ * There is a single cache in the JVM, so the counters include the resources read by every server that uses it.
+ * </p>
+ */
+public interface ResourceCacheMetrics {
+
+    /**
+     * Get the maximum number of bytes the cache holds, the largest size requested by the servers that use it.
+     *
+     * @return The maximum size of the cache
+     */
+    long getMaximumSize();
+
+    /**
+     * Get the number of bytes currently held by the cache.
+     *
+     * @return The size of the cache
+     */
+    long getSize();
+
+    /**
+     * Get the number of resources that were served from the cache.
+     *
+     * @return The number of cache hits
+     */
+    long getHits();
+
+    /**
+     * Get the number of resources that had to be read from their source.
+     *
+     * @return The number of cache misses
+     */
+    long getMisses();
+
+    /**
+     * Get the number of resources that were evicted to keep the cache within its maximum size.
+     *
+     * @return The number of evictions
+     */
+    long getEvictions();
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+
+/**
+ * Creates the filesystems an embedded sftp server serves its files from, in place of a {@link FileSystemBackend}.
+ * <p>
+ * Use {@link SftpServer#withFileSystemFactory(RootFileSystemFactory)} to serve the files from any NIO filesystem,
+ * such as Jimfs or a store of your own, and to compare it against the built-in backends. The server copies its
+ * resources into the filesystem, serves it through a journaling layer and resets it as described by
+ * {@link #getResetStrategy()}.
+ * </p>
+ * <pre>{@code
+ * SftpServer.defaultSftpServer()
+ *         .withFileSystemFactory((name, homeDirectory) -> {
+ *             FileSystem fileSystem = Jimfs.newFileSystem(name, Configuration.unix().toBuilder()
+ *                     .setWorkingDirectory(homeDirectory)
+ *                     .setAttributeViews("basic", "owner", "posix")
+ *                     .build());
+ *             Files.createDirectories(fileSystem.getPath(homeDirectory));
+ *             return fileSystem;
+ *         })
+ *         .build();
+ * }</pre>
+ */
+@FunctionalInterface
+public interface RootFileSystemFactory {
+
+    /**
+     * Create an empty filesystem.
+     * <p>
+     * The filesystem needs a single root {@code /}, has to use {@code /} as its separator and has to resolve relative
+     * paths against the home directory, which it needs to create. Permissions are only served when the filesystem
+     * supports the posix attribute view.
+     * </p>
+     *
+     * @param name A name that is unique to this filesystem
+     * @param homeDirectory The absolute directory that sftp clients start in
+     * @return The filesystem
+     * @throws IOException If the filesystem can't be created
+     */
+    FileSystem newFileSystem(String name, String homeDirectory) throws IOException;
+
+    /**
+     * Get how the filesystems are reset between tests.
+     *
+     * @return The reset strategy, {@link ResetStrategy#REVERT} unless overridden
+     */
+    default ResetStrategy getResetStrategy() {
+        return ResetStrategy.REVERT;
+    }
+
+    /**
+     * Release a filesystem that is no longer served, this closes it unless overridden.
+     *
+     * @param fileSystem The filesystem created by {@link #newFileSystem(String, String)}
+     * @throws IOException If the filesystem can't be released
+     */
+    default void release(final FileSystem fileSystem) throws IOException {
+        fileSystem.close();
+    }
+
+    /**
+     * The ways a filesystem can be reset to the state it had once the resources were copied into it.
+     */
+    enum ResetStrategy {
+
+        /**
+         * The paths that were changed are reverted in place, the filesystem is kept.
+         * <p>
+         * A filesystem that sessions are still using is not reverted, it is replaced like {@link #RECREATE} and
+         * released once those sessions have closed.
+         * </p>
+         */
+        REVERT,
+
+        /**
+         * A new filesystem is created and populated, the old one is released.
+         * <p>
+         * Suited to filesystems that are cheap to create, or that don't free the memory of deleted files.
+         * </p>
+         */
+        RECREATE
+
+    }
+
+}
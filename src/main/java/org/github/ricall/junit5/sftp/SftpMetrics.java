@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp;
+
+import java.time.Duration;
+
+/**
+ * Counts and latencies of the sftp operations clients performed against the server.
+ * <p>
+ * The metrics are reset before every test, so they only contain the operations of the current test. Latencies are
+ * the time the server spent handling an operation and do not include the time spent on the network or in the
+ * client, which helps to tell whether a slow test is caused by the client library or by the server.
+ * </p>
+ */
+public interface SftpMetrics {
+
+    /**
+     * The number of latency histogram buckets.
+     * <p>
+     * Bucket 0 counts operations that took less than 1&micro;s, bucket {@code n} counts operations that took at least
+     * 2<sup>n-1</sup>&micro;s and less than 2<sup>n</sup>&micro;s. The last bucket also counts all slower operations.
+     * </p>
+     */
+    int LATENCY_BUCKETS = 32;
+
+    /**
+     * Get the number of times an operation was performed.
+     *
+     * @param operation The operation
+     * @return The number of times the operation was performed
+     */
+    long getCount(SftpOperation operation);
+
+    /**
+     * Get the number of bytes clients read (downloaded) from files.
+     *
+     * @return The number of bytes read
+     */
+    long getBytesRead();
+
+    /**
+     * Get the number of bytes clients wrote (uploaded) to files.
+     *
+     * @return The number of bytes written
+     */
+    long getBytesWritten();
+
+    /**
+     * Get the total time spent performing an operation.
+     *
+     * @param operation The operation
+     * @return The total latency of the operation
+     */
+    Duration getTotalLatency(SftpOperation operation);
+
+    /**
+     * Get the latency histogram of an operation.
+     *
+     * @param operation The operation
+     * @return The number of operations in each of the {@link #LATENCY_BUCKETS} buckets
+     */
+    long[] getLatencyHistogram(SftpOperation operation);
+
+    /**
+     * Get an upper bound for a latency percentile of an operation.
+     * <p>
+     * The value is the upper bound of the histogram bucket the percentile falls in, so it is accurate to within a
+     * factor of two.
+     * </p>
+     *
+     * @param operation The operation
+     * @param percentile The percentile (between 0 and 100)
+     * @return The latency that percentile of the operations completed within, or zero if there were no operations
+     */
+    Duration getLatencyPercentile(SftpOperation operation, double percentile);
+
+    /**
+     * Reset all the counters and histograms to zero.
+     */
+    void reset();
+
+}
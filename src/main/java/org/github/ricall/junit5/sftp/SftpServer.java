@@ -24,6 +24,9 @@
 package org.github.ricall.junit5.sftp;
 
 import org.apache.sshd.common.keyprovider.KeyPairProvider;
+import org.github.ricall.junit5.sftp.implementation.FileSystemPool;
+import org.github.ricall.junit5.sftp.implementation.HostKeyCache;
+import org.github.ricall.junit5.sftp.implementation.ResourceCache;
 import org.github.ricall.junit5.sftp.implementation.SftpConfiguration;
 
 import java.nio.file.Path;
@@ -52,10 +55,12 @@ import java.util.List;
  * }
  * }</pre>>
  */
+@SuppressWarnings("PMD.TooManyMethods")
 public interface SftpServer {
 
     String DEFAULT_USERNAME = "username";
     String DEFAULT_PASSWORD = "password";
+    int ANY_FREE_PORT = 0;
 
     /**
      * Default builder for the embedded sftp server.
@@ -66,10 +71,43 @@ public interface SftpServer {
         return SftpConfiguration.configuration();
     }
 
+    /**
+     * Get the counters of the resource cache that is shared by every server in the JVM.
+     *
+     * @return The resource cache counters
+     * @see #withResourceCache(long)
+     */
+    static ResourceCacheMetrics resourceCacheMetrics() {
+        return ResourceCache.shared();
+    }
+
+    /**
+     * Get the counters of the host key cache that is shared by every server in the JVM.
+     *
+     * @return The host key cache counters
+     * @see #withHostKey(HostKeyAlgorithm)
+     */
+    static HostKeyCacheMetrics hostKeyCacheMetrics() {
+        return HostKeyCache.shared();
+    }
+
+    /**
+     * Get the counters of the pool of cleared heap and in-memory filesystems that is shared by every server in the JVM.
+     *
+     * @return The filesystem pool counters
+     */
+    static FileSystemPoolMetrics fileSystemPoolMetrics() {
+        return FileSystemPool.shared();
+    }
+
     /**
      * Set the port to use for the embedded sftp server.
+     * <p>
+     * Use {@link #ANY_FREE_PORT} to let the operating system pick a free port, the port that was bound is available
+     * from {@link EmbeddedSftpServer#getPort()} or by adding an {@link SftpPort} parameter to the test.
+     * </p>
      *
-     * @param port The port number (between 1 and 65535)
+     * @param port The port number (between 0 and 65535)
      * @return The configuration builder
      */
     SftpServer withPort(int port);
@@ -89,14 +127,28 @@ public interface SftpServer {
      * Add a list of resources to copy into the embedded sftp server for every test.
      * <p>
      * This method can be called multiple times so that any number of resources are copied.
-     * The filesystem is wiped after each test and the files are recopied so that one test
-     * will not impact another test
+     * The resources are copied once when the server starts and a snapshot of the filesystem is taken.
+     * After each test the filesystem is restored from that snapshot so that one test will not impact
+     * another test
      * </p>
      * @param resources A list of all the resources to copy
      * @return The configuration builder
      */
     SftpServer withResources(List<FileSystemResource> resources);
 
+    /**
+     * Add a directory of generated files to the embedded sftp server for every test.
+     * <p>
+     * The files are declared by their count, names, sizes and contents and are only created when the server starts,
+     * the in-memory filesystems create them in bulk without storing their bytes. Suited to listing tests with
+     * hundreds of thousands of entries. Like the resources, the files are restored after each test.
+     * </p>
+     * @param destination The path to the directory in the embedded sftp filesystem
+     * @param files The count, names, sizes and contents of the files
+     * @return The configuration builder
+     */
+    SftpServer withGeneratedFiles(String destination, GeneratedFiles files);
+
     /**
      * Add a list of authorized pub keys using a classpath resource.
      * <p>
@@ -125,6 +177,206 @@ public interface SftpServer {
      */
     SftpServer withKeyPairProvider(KeyPairProvider keyPairProvider);
 
+    /**
+     * Use a generated host key of the given algorithm.
+     * <p>
+     * Host keys are generated once per JVM and shared by every server that uses the same algorithm. When no host key
+     * is configured a shared RSA key is used.
+     * </p>
+     * @param algorithm The host key algorithm
+     * @return The configuration builder
+     */
+    SftpServer withHostKey(HostKeyAlgorithm algorithm);
+
+    /**
+     * Use a host key of the given algorithm that is stored in a file.
+     * <p>
+     * The key is read from the file if it exists, otherwise it is generated and written to the file. Using a build
+     * local file (e.g. {@code build/sftp-host-key}) lets test JVMs that are forked by the build reuse the same key.
+     * </p>
+     * @param algorithm The host key algorithm
+     * @param file The file to store the host key in
+     * @return The configuration builder
+     */
+    SftpServer withHostKey(HostKeyAlgorithm algorithm, Path file);
+
+    /**
+     * Prepare the filesystem for the next test on a background thread.
+     * <p>
+     * While a test is running a fresh filesystem is built and populated from the resources on a background thread.
+     * Resetting the filesystem then only has to swap the prepared filesystem in, which keeps the reset off the
+     * critical path for servers that are shared between tests.
+     * </p>
+     * @return The configuration builder
+     */
+    SftpServer withBackgroundReset();
+
+    /**
+     * Cache the contents of path and classpath resources across servers.
+     * <p>
+     * Resources created by {@code fromPath} and {@code fromClasspathResource}, including classpath resources inside
+     * jars, are read once into off-heap buffers that are shared by every server in the JVM, so servers that are
+     * started for every test method do not re-read the resources from disk. Resources created from text or streams
+     * are not cached. There is one cache in the JVM, it holds up to the largest size asked for by the servers that are
+     * running and evicts the least recently used contents once it is full. Servers started for every test method keep
+     * the cache until the last test of their class has finished, the cached contents are dropped once nothing uses the
+     * cache. Use {@link #resourceCacheMetrics()} to see the hit/miss counters.
+     * </p>
+     * @param maximumSize The maximum number of bytes to hold in the cache, shared with every other server
+     * @return The configuration builder
+     */
+    SftpServer withResourceCache(long maximumSize);
+
+    /**
+     * Limit the number of threads used to copy resources into the filesystem.
+     * <p>
+     * Large resource trees are copied by a pool of threads, this defaults to the number of available processors.
+     * </p>
+     * @param parallelism The maximum number of threads used to copy resources
+     * @return The configuration builder
+     */
+    SftpServer withImportParallelism(int parallelism);
+
+    /**
+     * Use the window, packet and buffer sizes of a throughput profile.
+     * <p>
+     * The sshd defaults throttle large transfers, use {@link ThroughputProfile#LARGE_FILES} when tests upload or
+     * download large files. Individual sizes can be overridden after choosing a profile.
+     * </p>
+     * @param profile The throughput profile
+     * @return The configuration builder
+     */
+    SftpServer withThroughputProfile(ThroughputProfile profile);
+
+    /**
+     * Set the number of bytes a client can send on a channel before it has to wait for the server.
+     *
+     * @param windowSize The channel window size in bytes
+     * @return The configuration builder
+     * @see ThroughputProfile#getWindowSize()
+     */
+    SftpServer withWindowSize(long windowSize);
+
+    /**
+     * Set the largest packet a client can send on a channel.
+     *
+     * @param maxPacketSize The maximum packet size in bytes
+     * @return The configuration builder
+     * @see ThroughputProfile#getMaxPacketSize()
+     */
+    SftpServer withMaxPacketSize(int maxPacketSize);
+
+    /**
+     * Set the largest block of a file that is returned for a single sftp read request.
+     *
+     * @param readBufferSize The read buffer size in bytes
+     * @return The configuration builder
+     * @see ThroughputProfile#getReadBufferSize()
+     */
+    SftpServer withReadBufferSize(int readBufferSize);
+
+    /**
+     * Set the size of the buffer that the NIO2 I/O backend reads incoming data, such as the blocks of an upload, into.
+     * <p>
+     * Only the default {@link IoBackend#NIO2} backend uses it, the MINA and Netty backends size their buffers themselves.
+     * </p>
+     *
+     * @param nio2ReadBufferSize The NIO2 read buffer size in bytes
+     * @return The configuration builder
+     * @see ThroughputProfile#getNio2ReadBufferSize()
+     */
+    SftpServer withNio2ReadBufferSize(int nio2ReadBufferSize);
+
+    /**
+     * Choose the I/O backend that accepts connections and moves data.
+     * <p>
+     * Defaults to {@link IoBackend#NIO2}, the other backends need their sshd module on the classpath.
+     * </p>
+     * @param backend The I/O backend
+     * @return The configuration builder
+     */
+    SftpServer withIoBackend(IoBackend backend);
+
+    /**
+     * Set the number of I/O worker threads.
+     * <p>
+     * Defaults to the number of available processors plus one.
+     * </p>
+     * @param workers The number of I/O worker threads
+     * @return The configuration builder
+     */
+    SftpServer withIoWorkers(int workers);
+
+    /**
+     * Keep a pool of threads that serve the sftp sessions.
+     * <p>
+     * By default a thread is started for every sftp session and stopped when the session ends. With a pool the
+     * threads are reused by later sessions and never more than {@code threads} are started. A session holds its thread
+     * until it closes, so sessions beyond the pool size wait until an earlier session has closed.
+     * </p>
+     * @param threads The number of threads to keep for sftp sessions
+     * @return The configuration builder
+     */
+    SftpServer withSessionThreads(int threads);
+
+    /**
+     * Serve the sftp sessions on virtual threads.
+     * <p>
+     * Every sftp session holds a thread for as long as it is open, with virtual threads thousands of concurrent
+     * sessions don't need thousands of platform threads. Needs Java 21 or later and replaces
+     * {@link #withSessionThreads(int)}.
+     * </p>
+     * @return The configuration builder
+     * @throws IllegalArgumentException If the JVM doesn't support virtual threads
+     */
+    SftpServer withVirtualThreads();
+
+    /**
+     * Choose the filesystem that holds the files served by the server.
+     * <p>
+     * Defaults to {@link FileSystemBackend#HEAP}, use {@link FileSystemBackend#OFF_HEAP} for tests that transfer very
+     * large files. The off-heap memory of deleted files is released when the filesystem is reset.
+     * </p>
+     * @param backend The filesystem backend
+     * @return The configuration builder
+     */
+    SftpServer withFileSystemBackend(FileSystemBackend backend);
+
+    /**
+     * Serve the files from filesystems created by a factory instead of a {@link FileSystemBackend}.
+     * <p>
+     * The factory also decides how the filesystem is reset between tests, see
+     * {@link RootFileSystemFactory#getResetStrategy()}. Mounted and generated resources are copied into the
+     * filesystem.
+     * </p>
+     * @param factory The factory that creates, resets and releases the filesystems
+     * @return The configuration builder
+     */
+    SftpServer withFileSystemFactory(RootFileSystemFactory factory);
+
+    /**
+     * Share the server with every test class in the JVM that uses the same configuration.
+     * <p>
+     * Shared servers are pooled by a fingerprint of their configuration and are kept running until the test run
+     * finishes. The filesystem is reset before a test class uses a pooled server, so classes do not see the changes
+     * made by classes that ran earlier. Shared servers should use {@link #ANY_FREE_PORT}, a test class fails to start if
+     * a shared server with a different configuration already holds its fixed port.
+     * </p>
+     * @return The configuration builder
+     */
+    SftpServer withSharedServer();
+
+    /**
+     * Give every test its own filesystem and credentials so tests can safely run concurrently.
+     * <p>
+     * A single server is shared by every test (and pooled like {@link #withSharedServer()}), each test gets a copy of
+     * the filesystem and a username/password pair that routes its sessions to that copy. Use
+     * {@link EmbeddedSftpServer#getUsername()} and {@link EmbeddedSftpServer#getPassword()} to connect.
+     * </p>
+     * @return The configuration builder
+     */
+    SftpServer withIsolatedTests();
+
     /**
      * Create a EmbeddedSftpServer that can be used for testing.
      *
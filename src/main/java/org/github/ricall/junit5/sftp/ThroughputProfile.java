@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp;
+
+/**
+ * Presets for the window, packet and buffer sizes that limit how fast files can be transferred.
+ * <p>
+ * The sshd defaults favour many small transfers over a network, transferring large files over loopback is mostly
+ * limited by how often the client has to wait for the window to be adjusted and by the size of each read.
+ * </p>
+ */
+public enum ThroughputProfile {
+
+    /** The sshd defaults. */
+    DEFAULT(2 * 1024 * 1024L, 32 * 1024, 63 * 1024, 32 * 1024),
+
+    /** Large windows, packets and buffers for transferring large files. */
+    LARGE_FILES(64 * 1024 * 1024L, 128 * 1024, 256 * 1024, 256 * 1024);
+
+    private final long windowSize;
+    private final int maxPacketSize;
+    private final int readBufferSize;
+    private final int nio2ReadBufferSize;
+
+    ThroughputProfile(final long windowSize, final int maxPacketSize, final int readBufferSize, final int nio2ReadBufferSize) {
+        this.windowSize = windowSize;
+        this.maxPacketSize = maxPacketSize;
+        this.readBufferSize = readBufferSize;
+        this.nio2ReadBufferSize = nio2ReadBufferSize;
+    }
+
+    /**
+     * Get the number of bytes a client can send on a channel before it has to wait for the server.
+     *
+     * @return The channel window size
+     */
+    public long getWindowSize() {
+        return windowSize;
+    }
+
+    /**
+     * Get the largest packet a client can send on a channel.
+     *
+     * @return The maximum packet size
+     */
+    public int getMaxPacketSize() {
+        return maxPacketSize;
+    }
+
+    /**
+     * Get the largest block of a file that is returned for a single sftp read request.
+     *
+     * @return The read buffer size
+     */
+    public int getReadBufferSize() {
+        return readBufferSize;
+    }
+
+    /**
+     * Get the size of the buffer that the NIO2 I/O backend reads incoming data, such as the blocks of an upload, into.
+     * <p>
+     * The MINA and Netty backends size their buffers themselves and ignore it.
+     * </p>
+     *
+     * @return The NIO2 read buffer size
+     */
+    public int getNio2ReadBufferSize() {
+        return nio2ReadBufferSize;
+    }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.implementation;
+
+import java.nio.file.FileSystem;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Builds and populates the next filesystem on a background thread while the current test is running.
+ * <p>
+ * The filesystems are populated from the baseline {@link FileSystemSnapshot} so that taking a prepared filesystem
+ * never has to wait for the configured resources to be copied. A filesystem that fails to be populated, or that is
+ * still prepared when the preparer is closed, is released rather than leaked.
+ * </p>
+ */
+@SuppressWarnings("PMD.DoNotUseThreads")
+public final class BackgroundFileSystemPreparer implements AutoCloseable {
+
+    private static final long TERMINATION_TIMEOUT_SECONDS = 30;
+
+    private final transient Supplier<FileSystem> fileSystemFactory;
+    private final transient FileSystemSnapshot baseline;
+    private final transient Consumer<FileSystem> release;
+    private final transient ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "sftp-filesystem-preparer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private transient CompletableFuture<FileSystem> next;
+
+    public BackgroundFileSystemPreparer(final Supplier<FileSystem> fileSystemFactory, final FileSystemSnapshot baseline,
+            final Consumer<FileSystem> release) {
+        this.fileSystemFactory = fileSystemFactory;
+        this.baseline = baseline;
+        this.release = release;
+        this.next = prepare();
+    }
+
+    private CompletableFuture<FileSystem> prepare() {
+        return CompletableFuture.supplyAsync(() -> {
+            final FileSystem fileSystem = fileSystemFactory.get();
+            try {
+                baseline.restore(fileSystem);
+            } catch (RuntimeException e) {
+                release.accept(fileSystem);
+                throw e;
+            }
+            return fileSystem;
+        }, executor);
+    }
+
+    /**
+     * Take the prepared filesystem and start preparing the next one.
+     *
+     * @return A filesystem that matches the baseline snapshot
+     */
+    public FileSystem take() {
+        final CompletableFuture<FileSystem> prepared = next;
+        next = prepare();
+        try {
+            return prepared.join();
+        } catch (CompletionException e) {
+            throw new ServerException("Failed to prepare FileSystem", e);
+        }
+    }
+
+    /**
+     * Stop preparing filesystems and release the one that has been prepared, waiting for it if it is still being built.
+     */
+    @Override
+    public void close() {
+        next.whenComplete((fileSystem, failure) -> {
+            if (fileSystem != null) {
+                release.accept(fileSystem);
+            }
+        });
+        executor.shutdownNow();
+        try {
+            if (!executor.awaitTermination(TERMINATION_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new ServerException("Timed out waiting for the FileSystem preparer to stop");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServerException("Interrupted while waiting for the FileSystem preparer to stop", e);
+        }
+    }
+
+}
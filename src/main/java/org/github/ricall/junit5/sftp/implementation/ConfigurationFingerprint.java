@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.implementation;
+
+import lombok.experimental.UtilityClass;
+import org.apache.sshd.common.keyprovider.KeyPairProvider;
+import org.apache.sshd.server.keyprovider.AbstractGeneratorHostKeyProvider;
+import org.github.ricall.junit5.sftp.FileSystemResource;
+import org.github.ricall.junit5.sftp.implementation.DefaultFileSystemResourceBuilder.GeneratedFileSystemResource;
+import org.github.ricall.junit5.sftp.implementation.DefaultFileSystemResourceBuilder.SimpleFileSystemResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Creates a fingerprint of a {@link SftpConfiguration} so servers with the same configuration can be shared.
+ * <p>
+ * Path resources are identified by whether they are mounted or copied, their source, size and modification time,
+ * generated resources by their size and the identity of their generator, every other resource is identified by its
+ * contents. Generators, factories and key providers are identified by an id that is unique to the instance, the
+ * instances are kept for the life of the JVM like the shared servers that use them.
+ * </p>
+ */
+@UtilityClass
+public final class ConfigurationFingerprint {
+
+    private static final String ALGORITHM = "SHA-256";
+    private static final char SEPARATOR = '\n';
+    private static final int BUFFER_SIZE = 8 * 1024;
+    private static final Map<Object, Long> IDENTITIES = new IdentityHashMap<>();
+
+    /**
+     * Create a fingerprint of the configuration.
+     *
+     * @param configuration The configuration to fingerprint
+     * @return A hex encoded digest of the configuration
+     */
+    public static String fingerprint(final SftpConfiguration configuration) {
+        final MessageDigest digest = newDigest();
+        update(digest, configuration.getPort());
+        for (final Map.Entry<String, String> user : configuration.getUsers().entrySet()) {
+            update(digest, user.getKey());
+            update(digest, user.getValue());
+        }
+        update(digest, configuration.getAuthorizedKeys());
+        update(digest, describe(configuration.getKeyPairProvider()));
+        update(digest, configuration.isBackgroundReset());
+        update(digest, configuration.getResourceCacheSize());
+        update(digest, configuration.getImportParallelism());
+        update(digest, configuration.getWindowSize());
+        update(digest, configuration.getMaxPacketSize());
+        update(digest, configuration.getReadBufferSize());
+        update(digest, configuration.getNio2ReadBufferSize());
+        update(digest, configuration.getIoBackend());
+        update(digest, configuration.getIoWorkers());
+        update(digest, configuration.getSessionThreads());
+        update(digest, configuration.isVirtualThreads());
+        update(digest, configuration.getFileSystemBackend());
+        if (configuration.getFileSystemFactory() != null) {
+            update(digest, identify(configuration.getFileSystemFactory()));
+        }
+        for (final FileSystemResource resource : configuration.getResources()) {
+            update(digest, resource.getDestination());
+            updateContent(digest, resource);
+        }
+        for (final GeneratedDirectory directory : configuration.getGeneratedDirectories()) {
+            update(digest, directory.getDestination());
+            update(digest, directory.getFiles().getCount());
+            update(digest, directory.getFiles().getNamePattern());
+            update(digest, identify(directory.getFiles()));
+        }
+        return toHex(digest.digest());
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new ServerException("Unable to create " + ALGORITHM + " digest", e);
+        }
+    }
+
+    private static String describe(final KeyPairProvider keyPairProvider) {
+        if (keyPairProvider instanceof AbstractGeneratorHostKeyProvider) {
+            final AbstractGeneratorHostKeyProvider generator = (AbstractGeneratorHostKeyProvider) keyPairProvider;
+            return keyPairProvider.getClass().getName() + generator.getAlgorithm() + generator.getPath();
+        }
+        return identify(keyPairProvider);
+    }
+
+    private static String identify(final Object value) {
+        synchronized (IDENTITIES) {
+            return value.getClass().getName() + '#' + IDENTITIES.computeIfAbsent(value, key -> (long) IDENTITIES.size());
+        }
+    }
+
+    private static void updateContent(final MessageDigest digest, final FileSystemResource resource) {
+        if (resource instanceof SimpleFileSystemResource && ((SimpleFileSystemResource) resource).getSource() != null) {
+            final SimpleFileSystemResource simple = (SimpleFileSystemResource) resource;
+            final Path source = simple.getSource();
+            try {
+                final BasicFileAttributes attributes = Files.readAttributes(source, BasicFileAttributes.class);
+                update(digest, simple.isMounted());
+                update(digest, source.toUri());
+                update(digest, attributes.size());
+                update(digest, attributes.lastModifiedTime());
+            } catch (IOException e) {
+                throw new ServerException("Failed to fingerprint " + source, e);
+            }
+        } else if (resource instanceof GeneratedFileSystemResource) {
+            final GeneratedFileSystemResource generated = (GeneratedFileSystemResource) resource;
+            update(digest, generated.getSize());
+            update(digest, identify(generated.getGenerator()));
+        } else {
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            try (InputStream input = resource.getInputStream()) {
+                int read = input.read(buffer);
+                while (read >= 0) {
+                    digest.update(buffer, 0, read);
+                    read = input.read(buffer);
+                }
+            } catch (IOException e) {
+                throw new ServerException("Failed to read contents of " + resource, e);
+            }
+        }
+    }
+
+    private static void update(final MessageDigest digest, final Object value) {
+        digest.update(String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) SEPARATOR);
+    }
+
+    private static String toHex(final byte[] bytes) {
+        final StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (final byte value : bytes) {
+            hex.append(String.format("%02x", value));
+        }
+        return hex.toString();
+    }
+
+}
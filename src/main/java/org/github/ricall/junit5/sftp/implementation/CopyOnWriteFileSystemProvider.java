@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.implementation;
+
+import org.apache.sshd.common.file.root.RootedPath;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+
+/**
+ * Journaling filesystem provider for filesystems rooted on disk whose files may be hard linked to a baseline.
+ * <p>
+ * A file that is still linked to the baseline is replaced by a private copy before it is written to or has its
+ * attributes changed, so updates never reach the baseline and a reset only has to link the file back.
+ * </p>
+ */
+public final class CopyOnWriteFileSystemProvider extends JournalingFileSystemProvider {
+
+    private static final String LINK_COUNT = "unix:nlink";
+
+    public CopyOnWriteFileSystemProvider(final FileSystemJournal journal, final String defaultDirectory) {
+        super(journal, defaultDirectory);
+    }
+
+    @Override
+    protected synchronized void beforeUpdate(final Path path) throws IOException {
+        final Path file = resolveLocalPath((RootedPath) path);
+        try {
+            if (!Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS)
+                    || ((Number) Files.getAttribute(file, LINK_COUNT, LinkOption.NOFOLLOW_LINKS)).intValue() < 2) {
+                return;
+            }
+        } catch (NoSuchFileException e) {
+            return;
+        }
+        final Path copy = file.resolveSibling("." + file.getFileName() + "." + UUID.randomUUID());
+        Files.copy(file, copy, StandardCopyOption.COPY_ATTRIBUTES);
+        Files.move(copy, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+}
@@ -23,35 +23,33 @@
 
 package org.github.ricall.junit5.sftp.implementation;
 
-import com.github.marschall.memoryfilesystem.MemoryFileSystemBuilder;
-import com.github.marschall.memoryfilesystem.StringTransformers;
 import org.apache.sshd.server.SshServer;
 import org.apache.sshd.server.config.keys.AuthorizedKeysAuthenticator;
 import org.apache.sshd.sftp.server.SftpSubsystemFactory;
 import org.github.ricall.junit5.sftp.EmbeddedSftpServer;
 import org.github.ricall.junit5.sftp.FileSystemResource;
+import org.github.ricall.junit5.sftp.GeneratedFiles;
+import org.junit.jupiter.api.extension.ExtensionContext.Store.CloseableResource;
 
 import java.io.IOException;
-import java.nio.file.FileSystem;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.attribute.PosixFileAttributeView;
 import java.util.Collections;
 import java.util.List;
-import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.github.ricall.junit5.sftp.SftpServer.DEFAULT_PASSWORD;
 import static org.github.ricall.junit5.sftp.SftpServer.DEFAULT_USERNAME;
 
-public final class DefaultEmbeddedSftpServer implements EmbeddedSftpServer {
-
-    private static final String PATH_SEPARATOR = "/";
-    private static final String SFTP_USER_AND_GROUP = "sftp";
-    private static final String HOME_DIRECTORY = "/home/sftp";
+public final class DefaultEmbeddedSftpServer implements EmbeddedSftpServer, CloseableResource {
 
     private transient final SftpConfiguration configuration;
-    private transient FileSystem fileSystem;
+    private transient final AtomicInteger isolatedServerCount = new AtomicInteger();
+    private transient final SftpOperationMetrics metrics = new SftpOperationMetrics();
+    private transient ResettableFileSystem fileSystem;
+    private transient SessionRouter router;
+    private transient int revertedEntryCount;
     private transient SshServer server;
+    private transient ResourceCache.Lease resourceCacheLease;
 
     public DefaultEmbeddedSftpServer(final SftpConfiguration configuration) {
         this.configuration = configuration;
@@ -63,18 +61,26 @@ public final class DefaultEmbeddedSftpServer implements EmbeddedSftpServer {
 
     @SuppressWarnings("PMD.CloseResource")
     public void startServer() {
-        fileSystem = createFileSystem();
+        if (configuration.getResourceCacheSize() > 0) {
+            resourceCacheLease = ResourceCache.shared().lease(configuration.getResourceCacheSize());
+        }
+        final ResettableFileSystem newFileSystem = new ResettableFileSystem(configuration);
+        final SessionRouter newRouter = new SessionRouter(configuration, newFileSystem::openSession, metrics);
 
         final SshServer newServer = SshServer.setUpDefaultServer();
         newServer.setPort(configuration.getPort());
-        newServer.setPasswordAuthenticator(configuration);
+        newServer.setPasswordAuthenticator(newRouter);
         if (configuration.getAuthorizedKeys() != null) {
             newServer.setPublickeyAuthenticator(new AuthorizedKeysAuthenticator(configuration.getAuthorizedKeys()));
         }
         newServer.setKeyPairProvider(configuration.getKeyPairProvider());
-        newServer.setSubsystemFactories(Collections.singletonList(new SftpSubsystemFactory()));
-        newServer.setFileSystemFactory(ReusableFileSystem.fileSystemFactory(fileSystem));
-        addResources(configuration.getResources());
+        final SftpSubsystemFactory subsystemFactory = MeasuredSftpSubsystemFactory.subsystemFactory(newRouter::metricsFor);
+        ServerTuning.configure(newServer, subsystemFactory, configuration);
+        newServer.setSubsystemFactories(Collections.singletonList(subsystemFactory));
+        newServer.setFileSystemFactory(ReusableFileSystem.fileSystemFactory(newRouter::fileSystemFor, ResettableFileSystem.HOME_DIRECTORY));
+        newFileSystem.initialise(configuration.getResources(), configuration.getGeneratedDirectories());
+        this.fileSystem = newFileSystem;
+        this.router = newRouter;
 
         try {
             newServer.start();
@@ -84,73 +90,97 @@ public final class DefaultEmbeddedSftpServer implements EmbeddedSftpServer {
         this.server = newServer;
     }
 
-    private FileSystem createFileSystem() {
-        try {
-            return MemoryFileSystemBuilder.newEmpty()
-                    .addRoot(PATH_SEPARATOR)
-                    .setSeparator(PATH_SEPARATOR)
-                    .addUser(SFTP_USER_AND_GROUP)
-                    .addGroup(SFTP_USER_AND_GROUP)
-                    .addFileAttributeView(PosixFileAttributeView.class)
-                    .setCurrentWorkingDirectory(HOME_DIRECTORY)
-                    .setStoreTransformer(StringTransformers.IDENTIY)
-                    .setCaseSensitive(true)
-                    .setSupportFileChannelOnDirectory(true)
-                    .addForbiddenCharacter((char) 0)
-                    .build("sftpFileSystem." + UUID.randomUUID());
-        } catch (IOException e) {
-            throw new ServerException("Failed to create FileSystem", e);
-        }
-    }
-
     @Override
     public void addResources(final List<FileSystemResource> resources) {
-        resources.forEach(resource -> {
-            final Path destination = fileSystem.getPath(resource.getDestination());
-            ensurePathExists(destination);
-
-            try {
-                Files.copy(resource.getInputStream(), destination);
-            } catch (IOException e) {
-                throw new ServerException("Failed to copy " + resource + " to FileSystem", e);
-            }
-        });
+        fileSystem.addResources(resources);
     }
 
-    private void ensurePathExists(final Path path) {
-        try {
-            final Path parent = path.getParent();
-            if (parent != null && !parent.equals(path.getRoot())) {
-                Files.createDirectories(parent);
-            }
-        } catch (IOException e) {
-            throw new ServerException("Failed to create folder " + path, e);
-        }
+    @Override
+    public void addGeneratedFiles(final String destination, final GeneratedFiles files) {
+        fileSystem.addGeneratedFiles(new GeneratedDirectory(destination, files));
     }
 
     @Override
     public void resetFileSystem() {
-        try {
-            fileSystem.close();
-            fileSystem = createFileSystem();
-            server.setFileSystemFactory(ReusableFileSystem.fileSystemFactory(fileSystem));
-            addResources(configuration.getResources());
-        } catch (IOException e) {
-            throw new ServerException("Failed to close FileSystem", e);
-        }
+        revertedEntryCount = fileSystem.reset();
+    }
+
+    @Override
+    public int getRevertedEntryCount() {
+        return revertedEntryCount;
     }
 
     @Override
     public Path pathFor(final String filename, final String... more) {
-        return fileSystem.getPath(filename, more);
+        return fileSystem.current().getPath(filename, more);
     }
 
+    @Override
+    public int getPort() {
+        return server.getPort();
+    }
+
+    @Override
+    public String getUsername() {
+        return configuration.getUsers().keySet().stream()
+                .findFirst()
+                .orElse(DEFAULT_USERNAME);
+    }
+
+    @Override
+    public String getPassword() {
+        return configuration.getUsers().get(getUsername());
+    }
+
+    @Override
+    public SftpOperationMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Create a view of the server with its own copy of the filesystem and its own credentials.
+     * <p>
+     * The view is populated from the baseline of the server, sessions that log in with its credentials are routed to
+     * its filesystem until it is closed.
+     * </p>
+     *
+     * @return The isolated server
+     */
+    @SuppressWarnings("PMD.CloseResource")
+    public IsolatedEmbeddedSftpServer openIsolatedServer() {
+        final ResettableFileSystem isolatedFileSystem = new ResettableFileSystem(configuration);
+        isolatedFileSystem.initialise(fileSystem.getBaseline());
+        final IsolatedEmbeddedSftpServer isolated = new IsolatedEmbeddedSftpServer(
+                getPort(),
+                getUsername() + "-" + isolatedServerCount.incrementAndGet(),
+                getPassword(),
+                isolatedFileSystem,
+                router::unregister);
+        router.register(isolated);
+        return isolated;
+    }
+
+    @SuppressWarnings("PMD.NullAssignment")
     public void stopServer() {
         try {
             server.stop(false);
+            fileSystem.close();
         } catch (IOException e) {
             throw new ServerException("Failed to stop SFTP server", e);
+        } finally {
+            if (resourceCacheLease != null) {
+                resourceCacheLease.close();
+                resourceCacheLease = null;
+            }
         }
     }
 
+    /**
+     * Stops the server once the extension context it is stored in is closed.
+     */
+    @Override
+    public void close() {
+        stopServer();
+    }
+
 }
@@ -23,12 +23,14 @@
 
 package org.github.ricall.junit5.sftp.implementation;
 
+import org.github.ricall.junit5.sftp.ContentGenerator;
 import org.github.ricall.junit5.sftp.FileSystemResource;
 import org.github.ricall.junit5.sftp.FileSystemResource.FileSystemResourceBuilder;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -65,6 +67,14 @@ public class DefaultFileSystemResourceBuilder implements FileSystemResourceBuild
         return singletonList(new SimpleFileSystemResource(destination, streamSupplier));
     }
 
+    @Override
+    public List<FileSystemResource> withGeneratedContent(final long size, final ContentGenerator generator) {
+        if (size < 0) {
+            throw new IllegalArgumentException("The size can't be negative");
+        }
+        return singletonList(new GeneratedFileSystemResource(destination, size, generator));
+    }
+
     @Override
     public List<FileSystemResource> fromClasspathResource(final String classpathResource) {
         return fromPath(classpathResourceToPath(classpathResource));
@@ -72,26 +82,27 @@ public class DefaultFileSystemResourceBuilder implements FileSystemResourceBuild
 
     @Override
     public List<FileSystemResource> fromPath(final Path path) {
-        return collectPathResources(path, true);
+        return collectPathResources(path, true, false);
     }
 
-    private List<FileSystemResource> recurseFromPath(final Path path) {
-        return collectPathResources(path, false);
+    @Override
+    public List<FileSystemResource> mountPath(final Path path) {
+        return collectPathResources(path, true, true);
     }
 
-    private List<FileSystemResource> collectPathResources(final Path path, final boolean isTopLevel) {
+    private List<FileSystemResource> collectPathResources(final Path path, final boolean isTopLevel, final boolean mounted) {
         final DefaultFileSystemResourceBuilder builder = builderFor(path, isTopLevel);
         if (Files.isDirectory(path)) {
             try {
                 return Files.list(path)
-                        .map(builder::recurseFromPath)
+                        .map(child -> builder.collectPathResources(child, false, mounted))
                         .flatMap(Collection::stream)
                         .collect(Collectors.toList());
             } catch (IOException e) {
                 throw new ServerException("Failed to list directory " + path, e);
             }
         } else {
-            return builder.withContent(asResource(path));
+            return singletonList(new SimpleFileSystemResource(builder.destination, asResource(path), path, mounted));
         }
     }
 
@@ -119,10 +130,23 @@ public class DefaultFileSystemResourceBuilder implements FileSystemResourceBuild
 
         private final String destination;
         private final transient Supplier<InputStream> resource;
+        private final transient Path source;
+        private final transient boolean mounted;
 
         public SimpleFileSystemResource(final String destination, final Supplier<InputStream> resource) {
+            this(destination, resource, null);
+        }
+
+        public SimpleFileSystemResource(final String destination, final Supplier<InputStream> resource, final Path source) {
+            this(destination, resource, source, false);
+        }
+
+        public SimpleFileSystemResource(final String destination, final Supplier<InputStream> resource, final Path source,
+                final boolean mounted) {
             this.destination = destination;
             this.resource = resource;
+            this.source = source;
+            this.mounted = mounted;
         }
 
         @Override
@@ -135,6 +159,104 @@ public class DefaultFileSystemResourceBuilder implements FileSystemResourceBuild
             return resource.get();
         }
 
+        /**
+         * Get the path the resource is read from.
+         *
+         * @return The source path, or {@code null} if the resource is not read from a path
+         */
+        public Path getSource() {
+            return source;
+        }
+
+        /**
+         * Check if the resource should be served from its source rather than copied.
+         *
+         * @return {@code true} if the resource was created by {@link FileSystemResourceBuilder#mountPath(Path)}
+         */
+        public boolean isMounted() {
+            return mounted;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("FileSystemResource(%s)", destination);
+        }
+
+    }
+
+    /**
+     * A file whose bytes are computed by a {@link ContentGenerator} rather than read from a source.
+     */
+    static final public class GeneratedFileSystemResource implements FileSystemResource {
+
+        private static final int BUFFER_SIZE = 64 * 1024;
+
+        private final String destination;
+        private final transient long size;
+        private final transient ContentGenerator generator;
+
+        public GeneratedFileSystemResource(final String destination, final long size, final ContentGenerator generator) {
+            this.destination = destination;
+            this.size = size;
+            this.generator = generator;
+        }
+
+        @Override
+        public String getDestination() {
+            return destination;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public ContentGenerator getGenerator() {
+            return generator;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new InputStream() {
+
+                private final ByteBuffer buffer = (ByteBuffer) ByteBuffer.allocate(BUFFER_SIZE).limit(0);
+                private long position;
+
+                private boolean fill() {
+                    if (buffer.hasRemaining()) {
+                        return true;
+                    }
+                    if (position >= size) {
+                        return false;
+                    }
+                    buffer.clear();
+                    buffer.limit((int) Math.min(buffer.capacity(), size - position));
+                    generator.generate(position, buffer);
+                    buffer.flip();
+                    position += buffer.remaining();
+                    return true;
+                }
+
+                @Override
+                public int read() {
+                    return fill() ? buffer.get() & 0xFF : -1;
+                }
+
+                @Override
+                public int read(final byte[] target, final int offset, final int length) {
+                    if (length == 0) {
+                        return 0;
+                    }
+                    if (!fill()) {
+                        return -1;
+                    }
+                    final int count = Math.min(length, buffer.remaining());
+                    buffer.get(target, offset, count);
+                    return count;
+                }
+
+            };
+        }
+
         @Override
         public String toString() {
             return String.format("FileSystemResource(%s)", destination);
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.implementation;
+
+import org.apache.sshd.common.file.root.RootedFileSystem;
+import org.apache.sshd.common.file.root.RootedFileSystemProvider;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A temporary directory on disk that holds the baseline and the filesystems served by an embedded server.
+ * <p>
+ * Every filesystem is rooted in its own directory next to the baseline, so the baseline files can be hard linked
+ * into it. Put {@code java.io.tmpdir} on a tmpfs mount to keep the files in memory without using the heap.
+ * </p>
+ */
+public final class DiskStore implements AutoCloseable {
+
+    private final transient Path directory;
+    private final transient boolean useLinks;
+    private final transient AtomicInteger rootCount = new AtomicInteger();
+
+    public DiskStore() {
+        try {
+            this.directory = Files.createTempDirectory("junit5-sftp");
+        } catch (IOException e) {
+            throw new ServerException("Failed to create temporary directory", e);
+        }
+        this.useLinks = directory.getFileSystem().supportedFileAttributeViews().contains("unix");
+    }
+
+    /**
+     * Check if the files are hard linked to the baseline rather than copied.
+     * <p>
+     * Links are only used when the platform reports link counts, that is how a linked file is detected before it is
+     * written to.
+     * </p>
+     *
+     * @return {@code true} if hard links are used
+     */
+    public boolean isUsingLinks() {
+        return useLinks;
+    }
+
+    /**
+     * Get the directory that holds the baseline files.
+     *
+     * @return The baseline directory
+     */
+    public Path getBaselineDirectory() {
+        return directory.resolve("baseline");
+    }
+
+    /**
+     * Create an empty filesystem rooted in a new directory.
+     *
+     * @param defaultDirectory The directory to create within the filesystem
+     * @return The rooted filesystem
+     */
+    public RootedFileSystem newFileSystem(final String defaultDirectory) {
+        final Path root = directory.resolve("root-" + rootCount.incrementAndGet());
+        try {
+            Files.createDirectories(root.resolve(defaultDirectory.substring(1)));
+            return (RootedFileSystem) new RootedFileSystemProvider().newFileSystem(root, Collections.emptyMap());
+        } catch (IOException e) {
+            throw new ServerException("Failed to create FileSystem", e);
+        }
+    }
+
+    /**
+     * Delete the directory of a filesystem that is no longer served.
+     *
+     * @param fileSystem The filesystem created by {@link #newFileSystem(String)}
+     */
+    public void delete(final FileSystem fileSystem) {
+        try {
+            deleteRecursively(((RootedFileSystem) fileSystem).getRoot());
+        } catch (IOException e) {
+            throw new ServerException("Failed to delete FileSystem", e);
+        }
+    }
+
+    private static void deleteRecursively(final Path path) throws IOException {
+        if (Files.notExists(path)) {
+            return;
+        }
+        Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(final Path dir, final IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+        });
+    }
+
+    @Override
+    public void close() throws IOException {
+        deleteRecursively(directory);
+    }
+
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.implementation;
+
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records the paths that have been mutated since the filesystem was last reset.
+ */
+public final class FileSystemJournal {
+
+    private final transient Set<String> paths = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Record a path as mutated.
+     *
+     * @param path The absolute path that has been created, written, moved, deleted or had its attributes changed
+     */
+    public void record(final Path path) {
+        paths.add(path.normalize().toString());
+    }
+
+    /**
+     * Check if any mutations have been recorded.
+     *
+     * @return {@code true} if nothing has been mutated
+     */
+    public boolean isEmpty() {
+        return paths.isEmpty();
+    }
+
+    /**
+     * Remove all the recorded paths from the journal.
+     *
+     * @return The paths that were recorded, in sorted order
+     */
+    public Set<String> drain() {
+        final Set<String> drained = new TreeSet<>(paths);
+        paths.removeAll(drained);
+        return drained;
+    }
+
+}
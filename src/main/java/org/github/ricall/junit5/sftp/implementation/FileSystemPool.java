@@ -0,0 +1,281 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.implementation;
+
+import org.github.ricall.junit5.sftp.FileSystemPoolMetrics;
+import org.github.ricall.junit5.sftp.implementation.memory.InMemoryFileSystem;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * JVM wide pool of empty filesystems that resets and servers take instead of building new ones.
+ * <p>
+ * A filesystem is cleared as soon as it is given back, every file and directory apart from the home directory is
+ * deleted, so the memory held by its files is reclaimed straight away rather than whenever the filesystem is garbage
+ * collected. Filesystems are pooled by kind, a filesystem is only handed out again to servers that would have built
+ * the same kind of filesystem. Up to {@link #getMaximumIdle()} cleared filesystems of each kind are kept, any more
+ * are closed, which also removes them from the registry of their provider.
+ * </p>
+ */
+@SuppressWarnings("PMD.DataClass")
+public final class FileSystemPool implements FileSystemPoolMetrics {
+
+    public static final int DEFAULT_MAXIMUM_IDLE = 4;
+
+    private static final FileSystemPool INSTANCE = new FileSystemPool(DEFAULT_MAXIMUM_IDLE);
+    private static final String ROOT = "/";
+
+    private final transient Map<String, Deque<FileSystem>> idle = new HashMap<>();
+    private transient int maximumIdle;
+    private transient long created;
+    private transient long reused;
+    private transient long discarded;
+    private transient long reclaimedBytes;
+
+    public FileSystemPool(final int maximumIdle) {
+        this.maximumIdle = maximumIdle;
+    }
+
+    /**
+     * Get the pool that is shared by every server in the JVM.
+     *
+     * @return The shared filesystem pool
+     */
+    public static FileSystemPool shared() {
+        return INSTANCE;
+    }
+
+    /**
+     * Take an empty filesystem of a kind, building a new one if none are idle.
+     *
+     * @param kind The kind of filesystem, filesystems are only reused for the same kind
+     * @param factory Builds a new filesystem when none are idle
+     * @return An empty filesystem
+     */
+    public FileSystem take(final String kind, final Supplier<FileSystem> factory) {
+        synchronized (idle) {
+            final Deque<FileSystem> fileSystems = idle.get(kind);
+            if (fileSystems != null && !fileSystems.isEmpty()) {
+                reused++;
+                return fileSystems.removeFirst();
+            }
+            created++;
+        }
+        return factory.get();
+    }
+
+    /**
+     * Clear a filesystem and keep it for reuse, or close it if enough filesystems of its kind are idle.
+     *
+     * @param kind The kind of filesystem it was taken as
+     * @param fileSystem The filesystem, it must not be used once it is given back
+     * @param homeDirectory The directory that is kept when the filesystem is cleared
+     * @throws IOException If the filesystem can't be closed
+     */
+    public void recycle(final String kind, final FileSystem fileSystem, final String homeDirectory) throws IOException {
+        final boolean keep;
+        synchronized (idle) {
+            keep = fileSystem.isOpen() && idle.getOrDefault(kind, new ArrayDeque<>()).size() < maximumIdle;
+        }
+        final long reclaimed = keep ? clear(fileSystem, homeDirectory) : -1;
+        synchronized (idle) {
+            if (reclaimed >= 0 && idle.computeIfAbsent(kind, key -> new ArrayDeque<>()).size() < maximumIdle) {
+                idle.get(kind).addLast(fileSystem);
+                reclaimedBytes += reclaimed;
+                return;
+            }
+            discarded++;
+        }
+        fileSystem.close();
+    }
+
+    private static long clear(final FileSystem fileSystem, final String homeDirectory) {
+        if (fileSystem instanceof InMemoryFileSystem) {
+            return ((InMemoryFileSystem) fileSystem).clear();
+        }
+        final Path home = fileSystem.getPath(homeDirectory);
+        final AtomicLong reclaimed = new AtomicLong();
+        try {
+            Files.walkFileTree(fileSystem.getPath(ROOT), new SimpleFileVisitor<Path>() {
+
+                @Override
+                public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+                    reclaimed.addAndGet(attrs.isRegularFile() ? attrs.size() : 0);
+                    Files.delete(file);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(final Path dir, final IOException exc) throws IOException {
+                    if (exc != null) {
+                        throw exc;
+                    }
+                    if (!home.startsWith(dir)) {
+                        Files.delete(dir);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+            });
+        } catch (IOException e) {
+            return -1;
+        }
+        return reclaimed.get();
+    }
+
+    /**
+     * Change the maximum number of idle filesystems kept of each kind, closing any that are no longer needed.
+     *
+     * @param maximumIdle The maximum number of idle filesystems of each kind
+     */
+    public void setMaximumIdle(final int maximumIdle) {
+        final List<FileSystem> closing = new ArrayList<>();
+        synchronized (idle) {
+            this.maximumIdle = maximumIdle;
+            for (final Deque<FileSystem> fileSystems : idle.values()) {
+                while (fileSystems.size() > maximumIdle) {
+                    closing.add(fileSystems.removeLast());
+                    discarded++;
+                }
+            }
+        }
+        closeAll(closing);
+    }
+
+    /**
+     * Close every idle filesystem and reset the counters.
+     */
+    public void clear() {
+        final List<FileSystem> closing = new ArrayList<>();
+        synchronized (idle) {
+            idle.values().forEach(closing::addAll);
+            idle.clear();
+            created = 0;
+            reused = 0;
+            discarded = 0;
+            reclaimedBytes = 0;
+        }
+        closeAll(closing);
+    }
+
+    private static void closeAll(final List<FileSystem> fileSystems) {
+        for (final FileSystem fileSystem : fileSystems) {
+            try {
+                fileSystem.close();
+            } catch (IOException e) {
+                throw new ServerException("Failed to close pooled FileSystem", e);
+            }
+        }
+    }
+
+    @Override
+    public int getMaximumIdle() {
+        synchronized (idle) {
+            return maximumIdle;
+        }
+    }
+
+    @Override
+    public int getIdle() {
+        synchronized (idle) {
+            return idle.values().stream().mapToInt(Deque::size).sum();
+        }
+    }
+
+    @Override
+    public long getCreated() {
+        synchronized (idle) {
+            return created;
+        }
+    }
+
+    @Override
+    public long getReused() {
+        synchronized (idle) {
+            return reused;
+        }
+    }
+
+    @Override
+    public long getDiscarded() {
+        synchronized (idle) {
+            return discarded;
+        }
+    }
+
+    @Override
+    public double getReuseRate() {
+        synchronized (idle) {
+            final long taken = created + reused;
+            return taken == 0 ? 0 : (double) reused / taken;
+        }
+    }
+
+    @Override
+    public long getReclaimedBytes() {
+        synchronized (idle) {
+            return reclaimedBytes;
+        }
+    }
+
+    @Override
+    public long getRetainedBytes() {
+        final List<FileSystem> fileSystems = new ArrayList<>();
+        synchronized (idle) {
+            idle.values().forEach(fileSystems::addAll);
+        }
+        final AtomicLong retained = new AtomicLong();
+        for (final FileSystem fileSystem : fileSystems) {
+            try {
+                Files.walkFileTree(fileSystem.getPath(ROOT), new SimpleFileVisitor<Path>() {
+
+                    @Override
+                    public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+                        retained.addAndGet(attrs.isRegularFile() ? attrs.size() : 0);
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                });
+            } catch (IOException e) {
+                throw new ServerException("Failed to measure pooled FileSystem", e);
+            }
+        }
+        return retained.get();
+    }
+
+}
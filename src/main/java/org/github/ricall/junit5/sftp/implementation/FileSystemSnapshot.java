@@ -0,0 +1,501 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.implementation;
+
+import org.apache.sshd.common.file.root.RootedFileSystem;
+import org.github.ricall.junit5.sftp.implementation.memory.InMemoryFileSystem;
+import org.github.ricall.junit5.sftp.implementation.memory.LowerLayer;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Immutable copy of a filesystem tree that can be used to restore the filesystem to a known state.
+ * <p>
+ * The snapshot is captured once after the configured resources have been loaded. Restoring is driven by the journal
+ * of the paths that were changed, only those paths and the entries below them are rewritten, so the file contents
+ * held by the snapshot are shared across every restore and never need to be re-read from their original source.
+ * Whether a file is unchanged is never decided by reading its bytes.
+ * </p>
+ * <p>
+ * Snapshots of a filesystem rooted in a directory on disk can keep their contents as hard links in a baseline
+ * directory, restoring a file then only has to link it back rather than copy its bytes. Files that an
+ * {@link InMemoryFileSystem} serves from a {@link LowerLayer} are remembered by their lower layer and mounted again.
+ * Capturing an {@link InMemoryFileSystem} moves the bytes of its other files into lower layers as well, so the
+ * snapshot and the filesystem share a single copy and a file is unchanged as long as it is served from its layer.
+ * </p>
+ */
+public final class FileSystemSnapshot {
+
+    private static final String ROOT = "/";
+
+    private final transient NavigableMap<String, Entry> entries;
+
+    private FileSystemSnapshot(final NavigableMap<String, Entry> entries) {
+        this.entries = Collections.unmodifiableNavigableMap(entries);
+    }
+
+    /**
+     * Capture the current state of the filesystem.
+     *
+     * @param fileSystem The filesystem to capture
+     * @return The snapshot of the filesystem
+     */
+    public static FileSystemSnapshot capture(final FileSystem fileSystem) {
+        final NavigableMap<String, Entry> entries = new TreeMap<>();
+        final List<Path> stored = new ArrayList<>();
+        try {
+            Files.walkFileTree(fileSystem.getPath(ROOT), new SimpleFileVisitor<Path>() {
+
+                @Override
+                public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) throws IOException {
+                    entries.put(dir.toString(), new Entry(null, attrs.lastModifiedTime(), Entry.permissionsOf(dir)));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+                    final LowerLayer lowerLayer = lowerLayerOf(file);
+                    if (lowerLayer == null && file.getFileSystem() instanceof InMemoryFileSystem) {
+                        // Mounted once the walk has finished, so the directories aren't changed while they are listed
+                        stored.add(file);
+                    }
+                    final Content content = lowerLayer == null ? new HeapContent(Files.readAllBytes(file)) : new LayeredContent(lowerLayer);
+                    entries.put(file.toString(), new Entry(content, attrs.lastModifiedTime(), Entry.permissionsOf(file)));
+                    return FileVisitResult.CONTINUE;
+                }
+
+            });
+            for (final Path file : stored) {
+                entries.put(file.toString(), entries.get(file.toString()).layered(file));
+            }
+        } catch (IOException e) {
+            throw new ServerException("Failed to capture FileSystem snapshot", e);
+        }
+        return new FileSystemSnapshot(entries);
+    }
+
+    private static LowerLayer lowerLayerOf(final Path file) throws IOException {
+        if (file.getFileSystem() instanceof InMemoryFileSystem) {
+            return ((InMemoryFileSystem) file.getFileSystem()).getLowerLayer(file);
+        }
+        return null;
+    }
+
+    /**
+     * Capture the current state of a filesystem that is rooted in a directory on disk.
+     * <p>
+     * Every file is hard linked into the baseline directory (or copied when the platform doesn't report link counts),
+     * so the snapshot holds no file contents on the heap. The files must be copied before they are written to, see
+     * {@link CopyOnWriteFileSystemProvider}.
+     * </p>
+     *
+     * @param fileSystem The rooted filesystem to capture
+     * @param baselineDirectory The empty directory to keep the contents in, on the same disk as the filesystem
+     * @param useLinks {@code true} to link the files into the baseline directory, {@code false} to copy them
+     * @return The snapshot of the filesystem
+     */
+    public static FileSystemSnapshot capture(final RootedFileSystem fileSystem, final Path baselineDirectory, final boolean useLinks) {
+        final NavigableMap<String, Entry> entries = new TreeMap<>();
+        try {
+            Files.walkFileTree(fileSystem.getPath(ROOT), new SimpleFileVisitor<Path>() {
+
+                @Override
+                public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) throws IOException {
+                    entries.put(dir.toString(), new Entry(null, attrs.lastModifiedTime(), Entry.permissionsOf(dir)));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+                    final Path baseline = resolve(baselineDirectory, file);
+                    Files.createDirectories(baseline.getParent());
+                    if (useLinks) {
+                        Files.createLink(baseline, resolve(fileSystem.getRoot(), file));
+                    } else {
+                        Files.copy(resolve(fileSystem.getRoot(), file), baseline, StandardCopyOption.COPY_ATTRIBUTES);
+                    }
+                    entries.put(file.toString(), new Entry(new LinkedContent(baseline, useLinks),
+                            attrs.lastModifiedTime(), Entry.permissionsOf(file)));
+                    return FileVisitResult.CONTINUE;
+                }
+
+            });
+        } catch (IOException e) {
+            throw new ServerException("Failed to capture FileSystem snapshot", e);
+        }
+        return new FileSystemSnapshot(entries);
+    }
+
+    private static Path resolve(final Path directory, final Path path) {
+        return directory.resolve(path.getRoot().relativize(path).toString());
+    }
+
+    /**
+     * Restore the filesystem back to the state held in this snapshot.
+     * <p>
+     * Every entry is treated as changed, so this is meant for populating a new filesystem. Files are only kept if
+     * they can be identified as unchanged without reading them.
+     * </p>
+     *
+     * @param fileSystem The filesystem to restore
+     * @return The number of entries that had to be deleted, rewritten or recreated
+     */
+    public int restore(final FileSystem fileSystem) {
+        return restore(fileSystem, Collections.singleton(ROOT));
+    }
+
+    /**
+     * Restore the given paths (and everything below them) back to the state held in this snapshot.
+     * <p>
+     * Files that are explicitly listed are always rewritten. Files below a listed directory may have been moved
+     * there, so they are rewritten unless they are still linked to or served from the snapshot's copy. Files that
+     * are neither can't have been changed and are left alone, only their permissions are checked.
+     * </p>
+     *
+     * @param fileSystem The filesystem to restore
+     * @param paths The absolute paths that have been mutated
+     * @return The number of entries that had to be deleted, rewritten or recreated
+     */
+    public int restore(final FileSystem fileSystem, final Collection<String> paths) {
+        final Restorer restorer = new Restorer(entries, new HashSet<>(paths));
+        try {
+            final Set<String> ancestors = existingAncestors(fileSystem, paths);
+            for (final String path : ancestors) {
+                if (!isWithinAny(fileSystem.getPath(path), ancestors)) {
+                    restoreTree(fileSystem, path, restorer);
+                }
+            }
+        } catch (IOException e) {
+            throw new ServerException("Failed to restore FileSystem snapshot", e);
+        }
+        return restorer.getRestored();
+    }
+
+    private static Set<String> existingAncestors(final FileSystem fileSystem, final Collection<String> paths) {
+        final Set<String> ancestors = new TreeSet<>();
+        for (final String path : paths) {
+            Path ancestor = fileSystem.getPath(path);
+            Path parent = ancestor.getParent();
+            while (parent != null && Files.notExists(ancestor, LinkOption.NOFOLLOW_LINKS)) {
+                ancestor = parent;
+                parent = ancestor.getParent();
+            }
+            ancestors.add(ancestor.toString());
+        }
+        return ancestors;
+    }
+
+    private static boolean isWithinAny(final Path path, final Set<String> parents) {
+        for (Path parent = path.getParent(); parent != null; parent = parent.getParent()) {
+            if (parents.contains(parent.toString())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void restoreTree(final FileSystem fileSystem, final String path, final Restorer restorer) throws IOException {
+        final Path start = fileSystem.getPath(path);
+        if (Files.exists(start, LinkOption.NOFOLLOW_LINKS)) {
+            Files.walkFileTree(start, restorer);
+        }
+        if (ROOT.equals(path)) {
+            restorer.restoreMissing(fileSystem, entries);
+        } else {
+            restorer.restoreMissing(fileSystem, entries.subMap(path, true, path, true));
+            restorer.restoreMissing(fileSystem, entries.subMap(path + ROOT, path + '0'));
+        }
+    }
+
+    private static final class Restorer extends SimpleFileVisitor<Path> {
+
+        private final transient Map<String, Entry> entries;
+        private final transient Set<String> forced;
+        private final transient Set<String> visited = new HashSet<>();
+        private transient int restored;
+
+        /* default */ Restorer(final Map<String, Entry> entries, final Set<String> forced) {
+            this.entries = entries;
+            this.forced = forced;
+        }
+
+        public int getRestored() {
+            return restored;
+        }
+
+        public void restoreMissing(final FileSystem fileSystem, final Map<String, Entry> missing) throws IOException {
+            for (final Map.Entry<String, Entry> entry : missing.entrySet()) {
+                if (!visited.contains(entry.getKey())) {
+                    entry.getValue().create(fileSystem.getPath(entry.getKey()));
+                    restored++;
+                }
+            }
+        }
+
+        private static void deleteRecursively(final Path path) throws IOException {
+            Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+
+                @Override
+                public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+                    Files.delete(file);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(final Path dir, final IOException exc) throws IOException {
+                    Files.delete(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+
+            });
+        }
+
+        private boolean isBelowForced(final Path path) {
+            for (Path parent = path; parent != null; parent = parent.getParent()) {
+                if (forced.contains(parent.toString())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) throws IOException {
+            final Entry entry = entries.get(dir.toString());
+            if (entry == null || !entry.isDirectory()) {
+                deleteRecursively(dir);
+                restored++;
+                return FileVisitResult.SKIP_SUBTREE;
+            }
+            visited.add(dir.toString());
+            if (entry.restorePermissions(dir)) {
+                restored++;
+            }
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+            final Entry entry = entries.get(file.toString());
+            if (entry == null || entry.isDirectory()) {
+                Files.delete(file);
+                restored++;
+                return FileVisitResult.CONTINUE;
+            }
+            visited.add(file.toString());
+            // Permissions first, a file that was made read only can't be rewritten
+            final boolean permissionsRestored = entry.restorePermissions(file);
+            final boolean contentRestored = isBelowForced(file) && entry.restoreContent(file, forced.contains(file.toString()));
+            if (permissionsRestored || contentRestored) {
+                restored++;
+            }
+            return FileVisitResult.CONTINUE;
+        }
+
+    }
+
+    /**
+     * The contents of a file held by the snapshot.
+     */
+    private interface Content {
+
+        /**
+         * Check whether a file is still the snapshot's copy of the contents, without reading its bytes.
+         *
+         * @param path The file
+         * @return {@code true} if the file is known to be unchanged, {@code false} if it needs to be rewritten
+         * @throws IOException If the file can't be checked
+         */
+        boolean isUnchanged(Path path) throws IOException;
+
+        void write(Path path, FileTime lastModifiedTime) throws IOException;
+
+    }
+
+    private static final class HeapContent implements Content {
+
+        private final transient byte[] bytes;
+
+        @SuppressWarnings("PMD.ArrayIsStoredDirectly")
+        /* default */ HeapContent(final byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public boolean isUnchanged(final Path path) {
+            // Nothing identifies a copy of the bytes, so the file is rewritten
+            return false;
+        }
+
+        /* default */ LowerLayer toLowerLayer() {
+            return LowerLayer.bytes(bytes);
+        }
+
+        @Override
+        public void write(final Path path, final FileTime lastModifiedTime) throws IOException {
+            Files.write(path, bytes);
+            Files.setLastModifiedTime(path, lastModifiedTime);
+        }
+
+    }
+
+    private static final class LinkedContent implements Content {
+
+        private final transient Path baseline;
+        private final transient boolean useLinks;
+
+        /* default */ LinkedContent(final Path baseline, final boolean useLinks) {
+            this.baseline = baseline;
+            this.useLinks = useLinks;
+        }
+
+        @Override
+        public boolean isUnchanged(final Path path) throws IOException {
+            // Files are copied before they are written to, so a file still linked to the baseline is unchanged
+            return useLinks && Files.isSameFile(resolve(((RootedFileSystem) path.getFileSystem()).getRoot(), path), baseline);
+        }
+
+        @Override
+        public void write(final Path path, final FileTime lastModifiedTime) throws IOException {
+            final Path target = resolve(((RootedFileSystem) path.getFileSystem()).getRoot(), path);
+            Files.deleteIfExists(target);
+            if (useLinks) {
+                Files.createLink(target, baseline);
+            } else {
+                Files.copy(baseline, target, StandardCopyOption.COPY_ATTRIBUTES);
+            }
+        }
+
+    }
+
+    private static final class LayeredContent implements Content {
+
+        private final transient LowerLayer lowerLayer;
+
+        /* default */ LayeredContent(final LowerLayer lowerLayer) {
+            this.lowerLayer = lowerLayer;
+        }
+
+        @Override
+        public boolean isUnchanged(final Path path) throws IOException {
+            return ((InMemoryFileSystem) path.getFileSystem()).getLowerLayer(path) == lowerLayer;
+        }
+
+        @Override
+        public void write(final Path path, final FileTime lastModifiedTime) throws IOException {
+            ((InMemoryFileSystem) path.getFileSystem()).mount(path, lowerLayer);
+            Files.setLastModifiedTime(path, lastModifiedTime);
+        }
+
+    }
+
+    private static final class Entry {
+
+        private final transient Content content;
+        private final transient FileTime lastModifiedTime;
+        private final transient Set<PosixFilePermission> permissions;
+
+        /* default */ Entry(final Content content, final FileTime lastModifiedTime, final Set<PosixFilePermission> permissions) {
+            this.content = content;
+            this.lastModifiedTime = lastModifiedTime;
+            this.permissions = permissions;
+        }
+
+        @SuppressWarnings("PMD.ReturnEmptyCollectionRatherThanNull")
+        public static Set<PosixFilePermission> permissionsOf(final Path path) throws IOException {
+            if (Files.getFileAttributeView(path, PosixFileAttributeView.class) == null) {
+                return null;
+            }
+            return Files.readAttributes(path, PosixFileAttributes.class).permissions();
+        }
+
+        public boolean isDirectory() {
+            return content == null;
+        }
+
+        public void create(final Path path) throws IOException {
+            if (isDirectory()) {
+                Files.createDirectory(path);
+            } else {
+                content.write(path, lastModifiedTime);
+            }
+            restorePermissions(path);
+        }
+
+        /**
+         * Serve the file from a lower layer holding the bytes of the snapshot, so they are only stored once.
+         *
+         * @param path The file in an {@link InMemoryFileSystem}
+         * @return The entry that remembers the lower layer
+         * @throws IOException If the file can't be mounted
+         */
+        public Entry layered(final Path path) throws IOException {
+            final Entry entry = new Entry(new LayeredContent(((HeapContent) content).toLowerLayer()), lastModifiedTime, permissions);
+            entry.content.write(path, lastModifiedTime);
+            entry.restorePermissions(path);
+            return entry;
+        }
+
+        public boolean restoreContent(final Path path, final boolean force) throws IOException {
+            if (!force && content.isUnchanged(path)) {
+                return false;
+            }
+            content.write(path, lastModifiedTime);
+            return true;
+        }
+
+        public boolean restorePermissions(final Path path) throws IOException {
+            if (permissions == null || Objects.equals(permissions, permissionsOf(path))) {
+                return false;
+            }
+            Files.setPosixFilePermissions(path, permissions);
+            return true;
+        }
+
+    }
+
+}
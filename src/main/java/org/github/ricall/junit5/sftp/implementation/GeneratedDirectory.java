@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.implementation;
+
+import org.github.ricall.junit5.sftp.FileSystemResource;
+import org.github.ricall.junit5.sftp.GeneratedFiles;
+import org.github.ricall.junit5.sftp.implementation.DefaultFileSystemResourceBuilder.GeneratedFileSystemResource;
+
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * A directory of files declared by {@link GeneratedFiles}, the files are only created when they are imported.
+ * <p>
+ * The directory is not a {@link FileSystemResource} because it has no contents of its own. The in-memory filesystems
+ * mount its files in bulk, the {@link ResourceImporter} copies them into the other backends one by one.
+ * </p>
+ */
+public final class GeneratedDirectory {
+
+    private final transient String destination;
+    private final transient GeneratedFiles files;
+
+    public GeneratedDirectory(final String destination, final GeneratedFiles files) {
+        this.destination = destination;
+        this.files = files;
+    }
+
+    public String getDestination() {
+        return destination;
+    }
+
+    public GeneratedFiles getFiles() {
+        return files;
+    }
+
+    /**
+     * Get a resource for every file, the resources are created as the list is read.
+     *
+     * @return The resources of the files in the directory
+     */
+    public List<FileSystemResource> expand() {
+        return new AbstractList<FileSystemResource>() {
+
+            @Override
+            public FileSystemResource get(final int index) {
+                return new GeneratedFileSystemResource(destination + "/" + files.nameOf(index), files.sizeOf(index),
+                        files.generatorOf(index));
+            }
+
+            @Override
+            public int size() {
+                return files.getCount();
+            }
+
+        };
+    }
+
+    @Override
+    public String toString() {
+        return String.format("GeneratedDirectory(%s/%s x %d)", destination, files.getNamePattern(), files.getCount());
+    }
+
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.implementation;
+
+import org.apache.sshd.common.keyprovider.KeyPairProvider;
+import org.apache.sshd.server.keyprovider.SimpleGeneratorHostKeyProvider;
+import org.github.ricall.junit5.sftp.HostKeyAlgorithm;
+import org.github.ricall.junit5.sftp.HostKeyCacheMetrics;
+
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * JVM wide cache of host key providers.
+ * <p>
+ * Every server that uses the same algorithm (and key file) shares a provider, so the host key is generated at most once
+ * per JVM rather than every time a server starts. Providers that are given a file store the key there and reuse it in
+ * later JVMs.
+ * </p>
+ */
+public final class HostKeyCache implements HostKeyCacheMetrics {
+
+    private static final HostKeyCache INSTANCE = new HostKeyCache();
+
+    private final transient Map<String, KeyPairProvider> providers = new ConcurrentHashMap<>();
+    private final transient AtomicLong hits = new AtomicLong();
+    private final transient AtomicLong generatedKeys = new AtomicLong();
+    private final transient AtomicLong generationNanos = new AtomicLong();
+
+    /**
+     * Get the cache that is shared by every server in the JVM.
+     *
+     * @return The shared host key cache
+     */
+    public static HostKeyCache shared() {
+        return INSTANCE;
+    }
+
+    /**
+     * Get the provider for host keys that are only held in memory.
+     *
+     * @param algorithm The host key algorithm
+     * @return The shared provider for the algorithm
+     */
+    public KeyPairProvider keyPairProvider(final HostKeyAlgorithm algorithm) {
+        return keyPairProvider(algorithm, null);
+    }
+
+    /**
+     * Get the provider for host keys that are stored in a file.
+     *
+     * @param algorithm The host key algorithm
+     * @param file The file the host key is read from, or written to once it has been generated
+     * @return The shared provider for the algorithm and file
+     */
+    public KeyPairProvider keyPairProvider(final HostKeyAlgorithm algorithm, final Path file) {
+        final String key = algorithm + ":" + file;
+        final KeyPairProvider provider = providers.get(key);
+        if (provider != null) {
+            hits.incrementAndGet();
+            return provider;
+        }
+        return providers.computeIfAbsent(key, ignored -> new TimedHostKeyProvider(algorithm, file, generatedKeys, generationNanos));
+    }
+
+    @Override
+    public long getHits() {
+        return hits.get();
+    }
+
+    @Override
+    public long getGeneratedKeys() {
+        return generatedKeys.get();
+    }
+
+    @Override
+    public long getGenerationNanos() {
+        return generationNanos.get();
+    }
+
+    private static final class TimedHostKeyProvider extends SimpleGeneratorHostKeyProvider {
+
+        private final transient AtomicLong generatedKeys;
+        private final transient AtomicLong generationNanos;
+
+        /* default */ TimedHostKeyProvider(final HostKeyAlgorithm algorithm, final Path file, final AtomicLong generatedKeys,
+                final AtomicLong generationNanos) {
+            super(file);
+            setAlgorithm(algorithm.getKeyAlgorithm());
+            setKeySize(algorithm.getKeySize());
+            this.generatedKeys = generatedKeys;
+            this.generationNanos = generationNanos;
+        }
+
+        @Override
+        protected KeyPair generateKeyPair(final String algorithm) throws GeneralSecurityException {
+            final long start = System.nanoTime();
+            final KeyPair keyPair = super.generateKeyPair(algorithm);
+            generationNanos.addAndGet(System.nanoTime() - start);
+            generatedKeys.incrementAndGet();
+            return keyPair;
+        }
+
+    }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.implementation;
+
+import org.github.ricall.junit5.sftp.EmbeddedSftpServer;
+import org.github.ricall.junit5.sftp.FileSystemResource;
+import org.github.ricall.junit5.sftp.GeneratedFiles;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A view of an embedded server that has its own filesystem and credentials.
+ * <p>
+ * Sessions that log in with the credentials of an isolated server are routed to its filesystem, so tests that run
+ * concurrently against the same server do not see each others changes.
+ * </p>
+ */
+public final class IsolatedEmbeddedSftpServer implements EmbeddedSftpServer, AutoCloseable {
+
+    private final transient int port;
+    private final transient String username;
+    private final transient String password;
+    private final transient ResettableFileSystem fileSystem;
+    private final transient Consumer<IsolatedEmbeddedSftpServer> onClose;
+    private final transient SftpOperationMetrics metrics = new SftpOperationMetrics();
+    private transient int revertedEntryCount;
+
+    public IsolatedEmbeddedSftpServer(final int port, final String username, final String password,
+            final ResettableFileSystem fileSystem, final Consumer<IsolatedEmbeddedSftpServer> onClose) {
+        this.port = port;
+        this.username = username;
+        this.password = password;
+        this.fileSystem = fileSystem;
+        this.onClose = onClose;
+    }
+
+    /**
+     * Get the filesystem sessions for this server are routed to.
+     *
+     * @return The isolated filesystem
+     */
+    public ResettableFileSystem getFileSystem() {
+        return fileSystem;
+    }
+
+    @Override
+    public int getPort() {
+        return port;
+    }
+
+    @Override
+    public String getUsername() {
+        return username;
+    }
+
+    @Override
+    public String getPassword() {
+        return password;
+    }
+
+    @Override
+    public SftpOperationMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public void addResources(final List<FileSystemResource> resources) {
+        fileSystem.addResources(resources);
+    }
+
+    @Override
+    public void addGeneratedFiles(final String destination, final GeneratedFiles files) {
+        fileSystem.addGeneratedFiles(new GeneratedDirectory(destination, files));
+    }
+
+    @Override
+    public void resetFileSystem() {
+        revertedEntryCount = fileSystem.reset();
+    }
+
+    @Override
+    public int getRevertedEntryCount() {
+        return revertedEntryCount;
+    }
+
+    @Override
+    public Path pathFor(final String filename, final String... more) {
+        return fileSystem.current().getPath(filename, more);
+    }
+
+    /**
+     * Stop routing sessions to this server, its filesystem is released once the sessions still using it have closed.
+     */
+    @Override
+    public void close() {
+        onClose.accept(this);
+        try {
+            fileSystem.close();
+        } catch (IOException e) {
+            throw new ServerException("Failed to close isolated FileSystem", e);
+        }
+    }
+
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.implementation;
+
+import org.apache.sshd.common.file.root.RootedFileSystem;
+import org.apache.sshd.common.file.root.RootedFileSystemProvider;
+import org.apache.sshd.common.file.root.RootedPath;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.CopyOption;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.FileAttributeView;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Rooted filesystem provider that records every mutation in a {@link FileSystemJournal}.
+ * <p>
+ * Both the sftp subsystem and {@link org.github.ricall.junit5.sftp.EmbeddedSftpServer#pathFor(String, String...)}
+ * access the filesystem through this provider, so the journal knows exactly which paths need to be reverted
+ * when the filesystem is reset.
+ * </p>
+ */
+@SuppressWarnings("PMD.TooManyMethods")
+public class JournalingFileSystemProvider extends RootedFileSystemProvider {
+
+    private final transient FileSystemJournal journal;
+    private final transient String defaultDirectory;
+
+    public JournalingFileSystemProvider(final FileSystemJournal journal, final String defaultDirectory) {
+        this.journal = journal;
+        this.defaultDirectory = defaultDirectory;
+    }
+
+    @Override
+    protected FileSystem newFileSystem(final Object src, final Path path, final Map<String, ?> env) {
+        return new JournalingFileSystem(this, path, env, defaultDirectory);
+    }
+
+    @Override
+    public FileStore getFileStore(final Path path) throws IOException {
+        return Files.getFileStore(((RootedPath) path).getFileSystem().getRoot());
+    }
+
+    private void record(final Path path) {
+        // Record the path as the rooted filesystem sees it, resets resolve it against the root filesystem
+        journal.record(path.toAbsolutePath());
+    }
+
+    private void record(final Path path, final Set<? extends OpenOption> options) throws IOException {
+        if (options.contains(StandardOpenOption.WRITE)
+                || options.contains(StandardOpenOption.APPEND)
+                || options.contains(StandardOpenOption.CREATE)
+                || options.contains(StandardOpenOption.CREATE_NEW)
+                || options.contains(StandardOpenOption.TRUNCATE_EXISTING)
+                || options.contains(StandardOpenOption.DELETE_ON_CLOSE)) {
+            record(path);
+            beforeUpdate(path);
+        }
+    }
+
+    /**
+     * Called before an existing file is written to or has its attributes changed.
+     *
+     * @param path The path that is about to be updated
+     * @throws IOException If the file could not be prepared for the update
+     */
+    protected void beforeUpdate(final Path path) throws IOException {
+        // Updates are applied in place by default
+    }
+
+    @Override
+    public OutputStream newOutputStream(final Path path, final OpenOption... options) throws IOException {
+        record(path);
+        beforeUpdate(path);
+        return super.newOutputStream(path, options);
+    }
+
+    @Override
+    public FileChannel newFileChannel(final Path path, final Set<? extends OpenOption> options, final FileAttribute<?>... attrs)
+            throws IOException {
+        record(path, options);
+        return super.newFileChannel(path, options, attrs);
+    }
+
+    @Override
+    @SuppressWarnings("PMD.DoNotUseThreads")
+    public AsynchronousFileChannel newAsynchronousFileChannel(final Path path, final Set<? extends OpenOption> options,
+            final ExecutorService executor, final FileAttribute<?>... attrs) throws IOException {
+        record(path, options);
+        return super.newAsynchronousFileChannel(path, options, executor, attrs);
+    }
+
+    @Override
+    public SeekableByteChannel newByteChannel(final Path path, final Set<? extends OpenOption> options, final FileAttribute<?>... attrs)
+            throws IOException {
+        record(path, options);
+        return super.newByteChannel(path, options, attrs);
+    }
+
+    @Override
+    public void createDirectory(final Path dir, final FileAttribute<?>... attrs) throws IOException {
+        record(dir);
+        super.createDirectory(dir, attrs);
+    }
+
+    @Override
+    public void createSymbolicLink(final Path link, final Path target, final FileAttribute<?>... attrs) throws IOException {
+        record(link);
+        super.createSymbolicLink(link, target, attrs);
+    }
+
+    @Override
+    public void createLink(final Path link, final Path existing) throws IOException {
+        record(link);
+        super.createLink(link, existing);
+    }
+
+    @Override
+    public void delete(final Path path) throws IOException {
+        record(path);
+        super.delete(path);
+    }
+
+    @Override
+    public boolean deleteIfExists(final Path path) throws IOException {
+        record(path);
+        return super.deleteIfExists(path);
+    }
+
+    @Override
+    public void copy(final Path source, final Path target, final CopyOption... options) throws IOException {
+        record(target);
+        super.copy(source, target, options);
+    }
+
+    @Override
+    public void move(final Path source, final Path target, final CopyOption... options) throws IOException {
+        record(source);
+        record(target);
+        super.move(source, target, options);
+    }
+
+    @Override
+    public void setAttribute(final Path path, final String attribute, final Object value, final LinkOption... options)
+            throws IOException {
+        record(path);
+        beforeUpdate(path);
+        super.setAttribute(path, attribute, value, options);
+    }
+
+    @Override
+    @SuppressWarnings("PMD.UseProperClassLoader")
+    public <V extends FileAttributeView> V getFileAttributeView(final Path path, final Class<V> type, final LinkOption... options) {
+        final V view = super.getFileAttributeView(path, type, options);
+        if (view == null) {
+            return null;
+        }
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, (proxy, method, args) -> {
+            if (method.getName().startsWith("set")) {
+                record(path);
+                beforeUpdate(path);
+            }
+            try {
+                return method.invoke(view, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }));
+    }
+
+    /**
+     * Rooted filesystem that resolves relative paths against the default directory rather than the root.
+     */
+    private static final class JournalingFileSystem extends RootedFileSystem {
+
+        private final transient String defaultDirectory;
+
+        /* default */ JournalingFileSystem(final RootedFileSystemProvider provider, final Path root, final Map<String, ?> env,
+                final String defaultDirectory) {
+            super(provider, root, env);
+            this.defaultDirectory = defaultDirectory;
+        }
+
+        @Override
+        public RootedPath getDefaultDir() {
+            return getPath(defaultDirectory);
+        }
+
+    }
+
+}
@@ -26,25 +26,43 @@ package org.github.ricall.junit5.sftp.implementation;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.Delegate;
 import org.github.ricall.junit5.sftp.EmbeddedSftpServer;
+import org.github.ricall.junit5.sftp.SftpPort;
 import org.junit.jupiter.api.extension.*;
 import org.junit.jupiter.api.extension.ExtensionContext.Namespace;
 import org.junit.jupiter.api.extension.ExtensionContext.Store;
 
+import static org.github.ricall.junit5.sftp.SftpServer.ANY_FREE_PORT;
+
 /**
  * Provides an EmbeddedSftpServer that can be used with JUnit 5.
  */
 @RequiredArgsConstructor
+@SuppressWarnings("PMD.TooManyMethods")
 public class LifecycleAwareEmbeddedSftpServer
-        implements EmbeddedSftpServer, BeforeAllCallback, BeforeEachCallback, AfterEachCallback, AfterAllCallback {
+        implements EmbeddedSftpServer, BeforeAllCallback, BeforeEachCallback, AfterEachCallback, AfterAllCallback, ParameterResolver {
 
     public static final String NAMESPACE = EmbeddedSftpServer.class.getName();
     public static final String SERVER_KEY = DefaultEmbeddedSftpServer.class.getName();
+    public static final String SHARED_SERVER_KEY_PREFIX = SERVER_KEY + ":";
+    public static final String SHARED_PORT_KEY_PREFIX = SERVER_KEY + ":port:";
+    public static final String RESOURCE_CACHE_KEY = ResourceCache.class.getName();
 
     private final SftpConfiguration configuration;
+    private final transient ThreadLocal<IsolatedEmbeddedSftpServer> isolatedServer = new ThreadLocal<>();
 
-    @Delegate
     private transient EmbeddedSftpServer server;
     private transient boolean serverPerMethod;
+    private transient String fingerprint;
+
+    @Delegate
+    @SuppressWarnings("PMD.UnusedPrivateMethod")
+    private EmbeddedSftpServer currentServer() {
+        final IsolatedEmbeddedSftpServer isolated = isolatedServer.get();
+        if (isolated == null) {
+            return server;
+        }
+        return isolated;
+    }
 
     @Override
     public void beforeAll(final ExtensionContext context) {
@@ -53,17 +71,24 @@ public class LifecycleAwareEmbeddedSftpServer
 
     @Override
     public void beforeEach(final ExtensionContext context) {
-        if (this.server == null) {
+        if (configuration.isIsolatedTests()) {
+            isolatedServer.set(sharedServer(context).openIsolatedServer());
+        } else if (this.server == null) {
             serverPerMethod = true;
+            leaseResourceCacheForClass(context);
             initialiseServer(context);
         } else {
             server.resetFileSystem();
+            server.getMetrics().reset();
         }
     }
 
     @Override
     public void afterEach(final ExtensionContext context) {
-        if (serverPerMethod) {
+        if (configuration.isIsolatedTests()) {
+            isolatedServer.get().close();
+            isolatedServer.remove();
+        } else if (serverPerMethod) {
             cleanupServer(context);
         }
     }
@@ -75,8 +100,38 @@ public class LifecycleAwareEmbeddedSftpServer
         }
     }
 
+    @Override
+    public boolean supportsParameter(final ParameterContext parameterContext, final ExtensionContext extensionContext) {
+        final Class<?> type = parameterContext.getParameter().getType();
+        return parameterContext.isAnnotated(SftpPort.class) && (type == int.class || type == Integer.class);
+    }
+
+    @Override
+    public Object resolveParameter(final ParameterContext parameterContext, final ExtensionContext extensionContext) {
+        return currentServer().getPort();
+    }
+
+    private void leaseResourceCacheForClass(final ExtensionContext context) {
+        // Keeps the cached resources between the servers of each test, the class store closes the lease after the last test
+        if (configuration.getResourceCacheSize() > 0 && !configuration.usesServerPool()) {
+            context.getParent().orElse(context).getStore(Namespace.create(NAMESPACE)).getOrComputeIfAbsent(RESOURCE_CACHE_KEY,
+                    key -> ResourceCache.shared().lease(configuration.getResourceCacheSize()), ResourceCache.Lease.class);
+        }
+    }
+
     private void initialiseServer(final ExtensionContext context) {
-        final Store store = context.getRoot().getStore(Namespace.create(NAMESPACE));
+        if (configuration.isIsolatedTests()) {
+            this.server = sharedServer(context);
+        } else if (configuration.isSharedServer()) {
+            this.server = sharedServer(context);
+            server.resetFileSystem();
+            server.getMetrics().reset();
+        } else {
+            this.server = classServer(context.getRoot().getStore(Namespace.create(NAMESPACE)));
+        }
+    }
+
+    private DefaultEmbeddedSftpServer classServer(final Store store) {
         DefaultEmbeddedSftpServer server = store.get(SERVER_KEY, DefaultEmbeddedSftpServer.class);
 
         if (server == null) {
@@ -84,15 +139,37 @@ public class LifecycleAwareEmbeddedSftpServer
             store.put(SERVER_KEY, server);
             server.startServer();
         }
-        this.server = server;
+        return server;
+    }
+
+    private DefaultEmbeddedSftpServer sharedServer(final ExtensionContext context) {
+        final Store store = context.getRoot().getStore(Namespace.create(NAMESPACE));
+        if (fingerprint == null) {
+            fingerprint = ConfigurationFingerprint.fingerprint(configuration);
+        }
+        if (configuration.getPort() != ANY_FREE_PORT) {
+            final String owner = store.getOrComputeIfAbsent(SHARED_PORT_KEY_PREFIX + configuration.getPort(),
+                    key -> fingerprint, String.class);
+            if (!fingerprint.equals(owner)) {
+                throw new ServerException("Port " + configuration.getPort() + " is already used by a shared server with a"
+                        + " different configuration, use ANY_FREE_PORT or the same configuration for both test classes");
+            }
+        }
+        return store.getOrComputeIfAbsent(SHARED_SERVER_KEY_PREFIX + fingerprint, key -> {
+            final DefaultEmbeddedSftpServer server = new DefaultEmbeddedSftpServer(configuration);
+            server.startServer();
+            return server;
+        }, DefaultEmbeddedSftpServer.class);
     }
 
     @SuppressWarnings("PMD.NullAssignment")
     private void cleanupServer(final ExtensionContext context) {
-        final Store store = context.getRoot().getStore(Namespace.create(NAMESPACE));
+        if (!configuration.usesServerPool()) {
+            final Store store = context.getRoot().getStore(Namespace.create(NAMESPACE));
 
-        store.get(SERVER_KEY, DefaultEmbeddedSftpServer.class).stopServer();
-        store.remove(SERVER_KEY);
+            store.get(SERVER_KEY, DefaultEmbeddedSftpServer.class).stopServer();
+            store.remove(SERVER_KEY);
+        }
         this.server = null;
     }
 
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.implementation;
+
+import org.apache.sshd.common.session.SessionContext;
+import org.apache.sshd.common.util.threads.CloseableExecutorService;
+import org.apache.sshd.server.channel.ChannelSession;
+import org.apache.sshd.server.command.Command;
+import org.apache.sshd.sftp.server.SftpErrorStatusDataHandler;
+import org.apache.sshd.sftp.server.SftpFileSystemAccessor;
+import org.apache.sshd.sftp.server.SftpSubsystem;
+import org.apache.sshd.sftp.server.SftpSubsystemFactory;
+import org.apache.sshd.sftp.server.UnsupportedAttributePolicy;
+import org.github.ricall.junit5.sftp.SftpOperation;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Sftp subsystem factory that records the operations of every session.
+ * <p>
+ * Most operations are timed by a {@link SftpMetricsListener}, sshd does not report stat requests to its listeners
+ * so those are timed by the subsystem itself.
+ * </p>
+ */
+public final class MeasuredSftpSubsystemFactory extends SftpSubsystemFactory {
+
+    private final transient Function<SessionContext, SftpOperationMetrics> metricsFor;
+
+    private MeasuredSftpSubsystemFactory(final Function<SessionContext, SftpOperationMetrics> metricsFor) {
+        this.metricsFor = metricsFor;
+        addSftpEventListener(new SftpMetricsListener(metricsFor));
+    }
+
+    /**
+     * Create a sftp subsystem factory that records the operations of each session.
+     *
+     * @param metricsFor Returns the metrics the operations of a session are recorded in
+     * @return The subsystem factory
+     */
+    public static SftpSubsystemFactory subsystemFactory(final Function<SessionContext, SftpOperationMetrics> metricsFor) {
+        return new MeasuredSftpSubsystemFactory(metricsFor);
+    }
+
+    @Override
+    public Command createSubsystem(final ChannelSession channel) {
+        final MeasuredSftpSubsystem subsystem = new MeasuredSftpSubsystem(resolveExecutorService(), getUnsupportedAttributePolicy(),
+                getFileSystemAccessor(), getErrorStatusDataHandler(), metricsFor);
+        getRegisteredListeners().forEach(subsystem::addSftpEventListener);
+        return subsystem;
+    }
+
+    private static final class MeasuredSftpSubsystem extends SftpSubsystem {
+
+        private final transient Function<SessionContext, SftpOperationMetrics> metricsFor;
+
+        @SuppressWarnings("PMD.DoNotUseThreads")
+        /* default */ MeasuredSftpSubsystem(final CloseableExecutorService executorService, final UnsupportedAttributePolicy policy,
+                final SftpFileSystemAccessor accessor, final SftpErrorStatusDataHandler errorStatusDataHandler,
+                final Function<SessionContext, SftpOperationMetrics> metricsFor) {
+            super(executorService, policy, accessor, errorStatusDataHandler);
+            this.metricsFor = metricsFor;
+        }
+
+        @Override
+        protected Map<String, Object> doStat(final int requestId, final String path, final int flags) throws IOException {
+            final long start = System.nanoTime();
+            try {
+                return super.doStat(requestId, path, flags);
+            } finally {
+                recordStat(start);
+            }
+        }
+
+        @Override
+        protected Map<String, Object> doLStat(final int requestId, final String path, final int flags) throws IOException {
+            final long start = System.nanoTime();
+            try {
+                return super.doLStat(requestId, path, flags);
+            } finally {
+                recordStat(start);
+            }
+        }
+
+        @Override
+        protected Map<String, Object> doFStat(final int requestId, final String handle, final int flags) throws IOException {
+            final long start = System.nanoTime();
+            try {
+                return super.doFStat(requestId, handle, flags);
+            } finally {
+                recordStat(start);
+            }
+        }
+
+        private void recordStat(final long start) {
+            metricsFor.apply(getServerSession()).record(SftpOperation.STAT, System.nanoTime() - start);
+        }
+
+    }
+
+}
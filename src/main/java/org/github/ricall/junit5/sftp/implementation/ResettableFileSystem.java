@@ -0,0 +1,465 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.implementation;
+
+import com.github.marschall.memoryfilesystem.MemoryFileSystemBuilder;
+import com.github.marschall.memoryfilesystem.StringTransformers;
+import org.apache.sshd.common.file.root.RootedFileSystem;
+import org.github.ricall.junit5.sftp.FileSystemBackend;
+import org.github.ricall.junit5.sftp.FileSystemResource;
+import org.github.ricall.junit5.sftp.RootFileSystemFactory;
+import org.github.ricall.junit5.sftp.RootFileSystemFactory.ResetStrategy;
+import org.github.ricall.junit5.sftp.implementation.DefaultFileSystemResourceBuilder.GeneratedFileSystemResource;
+import org.github.ricall.junit5.sftp.implementation.DefaultFileSystemResourceBuilder.SimpleFileSystemResource;
+import org.github.ricall.junit5.sftp.implementation.memory.ChunkPool;
+import org.github.ricall.junit5.sftp.implementation.memory.InMemoryFileSystem;
+import org.github.ricall.junit5.sftp.implementation.memory.LowerLayer;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The filesystem served by an embedded server, which can be reset back to the state it had once it was populated.
+ * <p>
+ * Every access goes through a journaling filesystem so a reset only has to revert the paths that were changed.
+ * Off-heap filesystems share a {@link ChunkPool}, so the chunks released by one test are reused by the next. Disk
+ * filesystems keep their baseline in a {@link DiskStore} and link the files back into place when they are reset.
+ * The in-memory backend uses an {@link InMemoryFileSystem} that keeps file contents in heap chunks. Mounted and
+ * generated resources are served by it without copying their bytes, so it is also used instead of the default heap
+ * filesystem when the configuration has any of them. Directories of generated files are added to it in bulk, the other
+ * backends copy every file.
+ * </p>
+ * <p>
+ * Heap and in-memory filesystems are taken from the shared {@link FileSystemPool} and given back to it once they are
+ * no longer served, so resets and servers reuse cleared filesystems instead of building new ones.
+ * </p>
+ * <p>
+ * A configured {@link RootFileSystemFactory} replaces the backend, its filesystems are either reverted in place or
+ * replaced by a newly populated filesystem on every reset.
+ * </p>
+ * <p>
+ * A reset that replaces the filesystem publishes the new root at once, sessions opened afterwards are served the fresh
+ * tree. Sessions that are still open keep the root they started with, it is only released once the last of them has
+ * closed, so a test does not have to wait for the clients of the previous test to disconnect. Reverting in place is
+ * only done while no session is using the root, otherwise the root is replaced by a newly populated one instead, so
+ * the clients of the previous test never see the tree change under them. Closing the filesystem releases the roots
+ * the same way, a root is only released, and the chunk pool or disk store it is stored in closed, once the sessions
+ * that are still using it have closed.
+ * </p>
+ */
+public final class ResettableFileSystem implements AutoCloseable {
+
+    public static final String HOME_DIRECTORY = "/home/sftp";
+
+    private static final String PATH_SEPARATOR = "/";
+    private static final String SFTP_USER_AND_GROUP = "sftp";
+    private static final int IN_USE = -1;
+
+    private final transient SftpConfiguration configuration;
+    private final transient RootFileSystemFactory factory;
+    private final transient AtomicReference<ServedFileSystem> served = new AtomicReference<>();
+    private final transient Set<ServedFileSystem> retired = ConcurrentHashMap.newKeySet();
+    private final transient AtomicBoolean storesClosed = new AtomicBoolean();
+    private final transient ChunkPool chunkPool;
+    private final transient DiskStore diskStore;
+    private final transient boolean inMemory;
+    private final transient String poolKind;
+    private transient FileSystemSnapshot baseline;
+    private transient BackgroundFileSystemPreparer preparer;
+    private transient volatile boolean closed;
+
+    public ResettableFileSystem(final SftpConfiguration configuration) {
+        this.configuration = configuration;
+        this.factory = configuration.getFileSystemFactory();
+        final FileSystemBackend backend = factory == null ? configuration.getFileSystemBackend() : null;
+        this.chunkPool = backend == FileSystemBackend.OFF_HEAP ? new ChunkPool() : null;
+        this.diskStore = backend == FileSystemBackend.DISK ? new DiskStore() : null;
+        this.inMemory = backend == FileSystemBackend.IN_MEMORY
+                || backend == FileSystemBackend.HEAP && (isAnyMounted(configuration.getResources())
+                        || !configuration.getGeneratedDirectories().isEmpty());
+        this.poolKind = backend == FileSystemBackend.HEAP || backend == FileSystemBackend.IN_MEMORY
+                ? (inMemory ? FileSystemBackend.IN_MEMORY : FileSystemBackend.HEAP).name()
+                : null;
+        this.served.set(new ServedFileSystem(createFileSystem()));
+    }
+
+    private FileSystem createFileSystem() {
+        return poolKind == null ? buildFileSystem() : FileSystemPool.shared().take(poolKind, this::buildFileSystem);
+    }
+
+    private FileSystem buildFileSystem() {
+        final String name = "sftpFileSystem." + UUID.randomUUID();
+        if (factory != null) {
+            try {
+                return factory.newFileSystem(name, HOME_DIRECTORY);
+            } catch (IOException e) {
+                throw new ServerException("Failed to create FileSystem", e);
+            }
+        }
+        if (chunkPool != null) {
+            return InMemoryFileSystem.offHeap(name, chunkPool, SFTP_USER_AND_GROUP, HOME_DIRECTORY);
+        }
+        if (diskStore != null) {
+            return diskStore.newFileSystem(HOME_DIRECTORY);
+        }
+        if (inMemory) {
+            return InMemoryFileSystem.onHeap(name, SFTP_USER_AND_GROUP, HOME_DIRECTORY);
+        }
+        try {
+            return MemoryFileSystemBuilder.newEmpty()
+                    .addRoot(PATH_SEPARATOR)
+                    .setSeparator(PATH_SEPARATOR)
+                    .addUser(SFTP_USER_AND_GROUP)
+                    .addGroup(SFTP_USER_AND_GROUP)
+                    .addFileAttributeView(PosixFileAttributeView.class)
+                    .setCurrentWorkingDirectory(HOME_DIRECTORY)
+                    .setStoreTransformer(StringTransformers.IDENTIY)
+                    .setCaseSensitive(true)
+                    .setSupportFileChannelOnDirectory(true)
+                    .addForbiddenCharacter((char) 0)
+                    .build(name);
+        } catch (IOException e) {
+            throw new ServerException("Failed to create FileSystem", e);
+        }
+    }
+
+    private FileSystem createJournalingFileSystem(final FileSystem root, final FileSystemJournal journal) {
+        try {
+            if (diskStore != null) {
+                final JournalingFileSystemProvider provider = diskStore.isUsingLinks()
+                        ? new CopyOnWriteFileSystemProvider(journal, HOME_DIRECTORY)
+                        : new JournalingFileSystemProvider(journal, HOME_DIRECTORY);
+                return provider.newFileSystem(((RootedFileSystem) root).getRoot(), Collections.emptyMap());
+            }
+            return new JournalingFileSystemProvider(journal, HOME_DIRECTORY)
+                    .newFileSystem(root.getPath(PATH_SEPARATOR), Collections.emptyMap());
+        } catch (IOException e) {
+            throw new ServerException("Failed to create journaling FileSystem", e);
+        }
+    }
+
+    /**
+     * Get the filesystem that is currently being served.
+     *
+     * @return The current filesystem
+     */
+    public FileSystem current() {
+        return served.get().journaling;
+    }
+
+    /**
+     * Get the filesystem for a new session, the root it is served from is kept until the session closes it.
+     *
+     * @return The current filesystem, closing it ends the session's use of the root
+     */
+    public FileSystem openSession() {
+        ServedFileSystem current;
+        do {
+            current = served.get();
+        } while (!current.open());
+        return new ReusableFileSystem(current.journaling, current::close);
+    }
+
+    /**
+     * Populate the filesystem and remember its state as the baseline that resets revert to.
+     *
+     * @param resources The resources to copy into the filesystem
+     * @param directories The directories of generated files to add to the filesystem
+     */
+    public void initialise(final List<FileSystemResource> resources, final List<GeneratedDirectory> directories) {
+        addResources(resources);
+        directories.forEach(this::addGeneratedFiles);
+        final ServedFileSystem current = served.get();
+        baseline = diskStore == null
+                ? FileSystemSnapshot.capture(current.root)
+                : FileSystemSnapshot.capture((RootedFileSystem) current.root, diskStore.getBaselineDirectory(), diskStore.isUsingLinks());
+        current.journal.drain();
+        if (configuration.isBackgroundReset()) {
+            preparer = new BackgroundFileSystemPreparer(this::createFileSystem, baseline, this::releaseUnused);
+        }
+    }
+
+    /**
+     * Populate the filesystem from the baseline of another filesystem.
+     *
+     * @param snapshot The baseline to copy, this also becomes the baseline resets revert to
+     */
+    public void initialise(final FileSystemSnapshot snapshot) {
+        final ServedFileSystem current = served.get();
+        baseline = snapshot;
+        snapshot.restore(current.root);
+        current.journal.drain();
+    }
+
+    /**
+     * Get the state the filesystem is reset to.
+     *
+     * @return The baseline snapshot
+     */
+    public FileSystemSnapshot getBaseline() {
+        return baseline;
+    }
+
+    /**
+     * Copy resources into the current filesystem.
+     *
+     * @param resources The resources to copy
+     */
+    public void addResources(final List<FileSystemResource> resources) {
+        final ServedFileSystem current = served.get();
+        final List<FileSystemResource> copied = new ArrayList<>(resources.size());
+        for (final FileSystemResource resource : resources) {
+            if (current.root instanceof InMemoryFileSystem && isMounted(resource)) {
+                mount(current, resource);
+            } else {
+                copied.add(resource);
+            }
+        }
+        importer(current).importResources(copied);
+    }
+
+    /**
+     * Add a directory of generated files to the current filesystem.
+     *
+     * @param directory The directory to add
+     */
+    public void addGeneratedFiles(final GeneratedDirectory directory) {
+        final ServedFileSystem current = served.get();
+        if (!(current.root instanceof InMemoryFileSystem)) {
+            importer(current).importGeneratedFiles(directory);
+            return;
+        }
+        final Path destination = current.root.getPath(directory.getDestination()).toAbsolutePath();
+        try {
+            Files.createDirectories(current.journaling.getPath(destination.toString()));
+            ((InMemoryFileSystem) current.root).mountAll(destination, directory.getFiles());
+        } catch (IOException e) {
+            throw new ServerException("Failed to mount " + directory + " in FileSystem", e);
+        }
+        current.journal.record(destination);
+    }
+
+    private ResourceImporter importer(final ServedFileSystem current) {
+        return new ResourceImporter(current.journaling, configuration.getResourceCacheSize() > 0, configuration.getImportParallelism());
+    }
+
+    private static boolean isMounted(final FileSystemResource resource) {
+        return resource instanceof GeneratedFileSystemResource
+                || resource instanceof SimpleFileSystemResource && ((SimpleFileSystemResource) resource).isMounted();
+    }
+
+    private static LowerLayer lowerLayerOf(final FileSystemResource resource) throws IOException {
+        if (resource instanceof GeneratedFileSystemResource) {
+            final GeneratedFileSystemResource generated = (GeneratedFileSystemResource) resource;
+            return LowerLayer.generated(generated.getSize(), generated.getGenerator());
+        }
+        return LowerLayer.hostFile(((SimpleFileSystemResource) resource).getSource());
+    }
+
+    private static boolean isAnyMounted(final List<FileSystemResource> resources) {
+        return resources.stream().anyMatch(ResettableFileSystem::isMounted);
+    }
+
+    private static void mount(final ServedFileSystem current, final FileSystemResource resource) {
+        final Path destination = current.root.getPath(resource.getDestination()).toAbsolutePath();
+        final InMemoryFileSystem inMemoryFileSystem = (InMemoryFileSystem) current.root;
+        try {
+            final Path journaled = current.journaling.getPath(destination.toString());
+            if (journaled.getParent() != null) {
+                Files.createDirectories(journaled.getParent());
+            }
+            inMemoryFileSystem.mount(destination, lowerLayerOf(resource));
+        } catch (IOException e) {
+            throw new ServerException("Failed to mount " + resource + " in FileSystem", e);
+        }
+        current.journal.record(destination);
+    }
+
+    /**
+     * Revert the filesystem back to the baseline.
+     *
+     * @return The number of entries that were reverted
+     */
+    public int reset() {
+        final ServedFileSystem current = served.get();
+        if (current.journal.isEmpty()) {
+            return 0;
+        }
+        if (preparer == null && (factory == null || factory.getResetStrategy() == ResetStrategy.REVERT)) {
+            final int revertedInPlace = current.revertUnlessInUse();
+            if (revertedInPlace != IN_USE) {
+                return revertedInPlace;
+            }
+        }
+        final int reverted = current.journal.drain().size();
+        swapFileSystem(preparer == null ? recreate() : preparer.take());
+        return reverted;
+    }
+
+    private FileSystem recreate() {
+        final FileSystem recreated = createFileSystem();
+        baseline.restore(recreated);
+        return recreated;
+    }
+
+    private void swapFileSystem(final FileSystem prepared) {
+        served.getAndSet(new ServedFileSystem(prepared)).retire();
+    }
+
+    private void reclaim(final FileSystem root) {
+        releaseUnused(root);
+        if (diskStore != null) {
+            diskStore.delete(root);
+        }
+    }
+
+    private void release(final FileSystem root) throws IOException {
+        if (poolKind != null) {
+            FileSystemPool.shared().recycle(poolKind, root, HOME_DIRECTORY);
+        } else if (factory == null) {
+            root.close();
+        } else {
+            factory.release(root);
+        }
+    }
+
+    private void releaseUnused(final FileSystem root) {
+        try {
+            release(root);
+        } catch (IOException e) {
+            throw new ServerException("Failed to close FileSystem", e);
+        }
+    }
+
+    /**
+     * Stop serving the filesystem, roots that sessions are still using are released once their last session closes.
+     *
+     * @throws IOException If the stores of the filesystem cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (preparer != null) {
+            preparer.close();
+        }
+        closed = true;
+        served.get().retire();
+        closeStoresOnceUnused();
+    }
+
+    private void closeStoresOnceUnused() throws IOException {
+        if (!closed || !retired.isEmpty() || !storesClosed.compareAndSet(false, true)) {
+            return;
+        }
+        if (chunkPool != null) {
+            chunkPool.close();
+        }
+        if (diskStore != null) {
+            diskStore.close();
+        }
+    }
+
+    /**
+     * A root filesystem with the journal of its changes and the number of sessions that are using it.
+     */
+    private final class ServedFileSystem {
+
+        private final transient FileSystem root;
+        private final transient FileSystemJournal journal = new FileSystemJournal();
+        private final transient FileSystem journaling;
+        private transient int sessions;
+        private transient boolean replaced;
+        private transient boolean released;
+
+        /* default */ ServedFileSystem(final FileSystem root) {
+            this.root = root;
+            this.journaling = createJournalingFileSystem(root, journal);
+        }
+
+        /**
+         * Revert the changes in place unless sessions are using the root, sessions that open meanwhile wait for it.
+         *
+         * @return The number of entries that were reverted, or {@link #IN_USE} if sessions are using the root
+         */
+        /* default */ int revertUnlessInUse() {
+            synchronized (this) {
+                if (sessions > 0) {
+                    return IN_USE;
+                }
+                return baseline.restore(root, journal.drain());
+            }
+        }
+
+        /* default */ boolean open() {
+            synchronized (this) {
+                if (replaced) {
+                    return false;
+                }
+                sessions++;
+                return true;
+            }
+        }
+
+        /* default */ void close() {
+            synchronized (this) {
+                sessions--;
+                if (!replaced || sessions > 0 || released) {
+                    return;
+                }
+                released = true;
+            }
+            reclaim(root);
+            retired.remove(this);
+            try {
+                closeStoresOnceUnused();
+            } catch (IOException e) {
+                throw new ServerException("Failed to close FileSystem", e);
+            }
+        }
+
+        /* default */ void retire() {
+            synchronized (this) {
+                replaced = true;
+                if (sessions > 0) {
+                    retired.add(this);
+                    return;
+                }
+                released = true;
+            }
+            reclaim(root);
+        }
+
+    }
+
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.implementation;
+
+import org.github.ricall.junit5.sftp.ResourceCacheMetrics;
+import org.junit.jupiter.api.extension.ExtensionContext.Store.CloseableResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * JVM wide cache of resource contents held in off-heap buffers.
+ * <p>
+ * Each source is read once and served from the cache until it is evicted or the source changes. The cache is
+ * bounded by the total number of bytes it holds, the least recently used entries are evicted first.
+ * </p>
+ * <p>
+ * Servers, and test classes that start a server for every test, hold a {@link Lease} with the size they were configured
+ * with while they use the cache. The cache is as large as the largest lease that is still held, it shrinks when that
+ * lease is closed, and the buffers are dropped once the last lease is closed.
+ * </p>
+ */
+@SuppressWarnings("PMD.DataClass")
+public final class ResourceCache implements ResourceCacheMetrics {
+
+    private static final ResourceCache INSTANCE = new ResourceCache(0);
+    private static final int INITIAL_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private final transient Map<Path, Entry> entries = new LinkedHashMap<>(INITIAL_CAPACITY, LOAD_FACTOR, true);
+    private final transient List<Lease> leases = new ArrayList<>();
+    private transient long baseSize;
+    private transient long maximumSize;
+    private transient long size;
+    private transient long hits;
+    private transient long misses;
+    private transient long evictions;
+
+    public ResourceCache(final long maximumSize) {
+        this.baseSize = maximumSize;
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * Get the cache that is shared by every server in the JVM.
+     *
+     * @return The shared resource cache
+     */
+    public static ResourceCache shared() {
+        return INSTANCE;
+    }
+
+    /**
+     * Get the contents of a source, reading it only if it is not already cached.
+     *
+     * @param source The path the contents are read from
+     * @param loader Supplies the stream used to read the contents on a cache miss
+     * @return A read-only buffer containing the contents of the source
+     */
+    public ByteBuffer read(final Path source, final Supplier<InputStream> loader) {
+        final BasicFileAttributes attributes = attributesOf(source);
+        synchronized (entries) {
+            final Entry entry = entries.get(source);
+            if (entry != null && entry.matches(attributes)) {
+                hits++;
+                return entry.getContent().duplicate();
+            }
+            misses++;
+        }
+
+        final ByteBuffer content = load(source, attributes.size(), loader);
+        synchronized (entries) {
+            final Entry previous = entries.remove(source);
+            if (previous != null) {
+                size -= previous.getContent().capacity();
+            }
+            if (content.capacity() <= maximumSize) {
+                entries.put(source, new Entry(content, attributes));
+                size += content.capacity();
+                evict();
+            }
+        }
+        return content.duplicate();
+    }
+
+    private static BasicFileAttributes attributesOf(final Path source) {
+        try {
+            return Files.readAttributes(source, BasicFileAttributes.class);
+        } catch (IOException e) {
+            throw new ServerException("Failed to read attributes of " + source, e);
+        }
+    }
+
+    private static ByteBuffer load(final Path source, final long expectedSize, final Supplier<InputStream> loader) {
+        if (expectedSize > Integer.MAX_VALUE) {
+            throw new ServerException("Unable to cache " + source + " as it is larger than 2GB");
+        }
+        final ByteBuffer buffer = ByteBuffer.allocateDirect((int) expectedSize);
+        try (ReadableByteChannel channel = Channels.newChannel(loader.get())) {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            throw new ServerException("Failed to read " + source, e);
+        }
+        buffer.flip();
+        return buffer.asReadOnlyBuffer();
+    }
+
+    private void evict() {
+        final Iterator<Entry> iterator = entries.values().iterator();
+        while (size > maximumSize && iterator.hasNext()) {
+            size -= iterator.next().getContent().capacity();
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Change the maximum number of bytes held by the cache when no lease asks for more, evicting entries if needed.
+     *
+     * @param maximumSize The maximum number of bytes to cache
+     */
+    public void setMaximumSize(final long maximumSize) {
+        synchronized (entries) {
+            this.baseSize = maximumSize;
+            resize();
+        }
+    }
+
+    /**
+     * Start using the cache, it holds up to the size of the lease until the lease is closed.
+     *
+     * @param maximumSize The maximum number of bytes the user wants to cache
+     * @return The lease, closing it stops using the cache
+     */
+    public Lease lease(final long maximumSize) {
+        final Lease lease = new Lease(maximumSize);
+        synchronized (entries) {
+            leases.add(lease);
+            resize();
+        }
+        return lease;
+    }
+
+    private void release(final Lease lease) {
+        synchronized (entries) {
+            if (!leases.remove(lease)) {
+                return;
+            }
+            if (leases.isEmpty()) {
+                // Nothing uses the cache anymore, drop the buffers so their memory can be reclaimed
+                entries.clear();
+                size = 0;
+            }
+            resize();
+        }
+    }
+
+    private void resize() {
+        long largest = baseSize;
+        for (final Lease lease : leases) {
+            largest = Math.max(largest, lease.requestedSize);
+        }
+        maximumSize = largest;
+        evict();
+    }
+
+    /**
+     * Remove every entry from the cache and reset the counters.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            size = 0;
+            hits = 0;
+            misses = 0;
+            evictions = 0;
+        }
+    }
+
+    @Override
+    public long getMaximumSize() {
+        synchronized (entries) {
+            return maximumSize;
+        }
+    }
+
+    @Override
+    public long getSize() {
+        synchronized (entries) {
+            return size;
+        }
+    }
+
+    @Override
+    public long getHits() {
+        synchronized (entries) {
+            return hits;
+        }
+    }
+
+    @Override
+    public long getMisses() {
+        synchronized (entries) {
+            return misses;
+        }
+    }
+
+    @Override
+    public long getEvictions() {
+        synchronized (entries) {
+            return evictions;
+        }
+    }
+
+    /**
+     * The use of the cache by a server or a test class, closing it gives up its share of the cache.
+     */
+    public final class Lease implements CloseableResource, AutoCloseable {
+
+        private final transient long requestedSize;
+
+        private Lease(final long requestedSize) {
+            this.requestedSize = requestedSize;
+        }
+
+        @Override
+        public void close() {
+            release(this);
+        }
+
+    }
+
+    private static final class Entry {
+
+        private final transient ByteBuffer content;
+        private final transient FileTime lastModifiedTime;
+        private final transient long length;
+
+        /* default */ Entry(final ByteBuffer content, final BasicFileAttributes attributes) {
+            this.content = content;
+            this.lastModifiedTime = attributes.lastModifiedTime();
+            this.length = attributes.size();
+        }
+
+        public ByteBuffer getContent() {
+            return content;
+        }
+
+        public boolean matches(final BasicFileAttributes attributes) {
+            return length == attributes.size() && Objects.equals(lastModifiedTime, attributes.lastModifiedTime());
+        }
+
+    }
+
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.implementation;
+
+import org.github.ricall.junit5.sftp.FileSystemResource;
+import org.github.ricall.junit5.sftp.implementation.DefaultFileSystemResourceBuilder.SimpleFileSystemResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Copies resources into a filesystem in bulk.
+ * <p>
+ * The parent directories of every resource are created once up front, the transfer buffers are reused by each
+ * thread, and large imports are split across a bounded pool so the sources are read in parallel.
+ * </p>
+ */
+@SuppressWarnings("PMD.DoNotUseThreads")
+public final class ResourceImporter {
+
+    /** Imports with fewer resources than this are copied on the calling thread. */
+    public static final int PARALLEL_THRESHOLD = 64;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final ThreadLocal<byte[]> BUFFERS = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+
+    private final transient FileSystem fileSystem;
+    private final transient boolean cached;
+    private final transient int parallelism;
+
+    /**
+     * Create an importer that writes to the given filesystem.
+     *
+     * @param fileSystem The filesystem to import the resources into
+     * @param cached {@code true} if path resources should be read through the shared {@link ResourceCache}
+     * @param parallelism The maximum number of threads used to copy the resources
+     */
+    public ResourceImporter(final FileSystem fileSystem, final boolean cached, final int parallelism) {
+        this.fileSystem = fileSystem;
+        this.cached = cached;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Copy the resources into the filesystem.
+     *
+     * @param resources The resources to copy
+     */
+    public void importResources(final List<FileSystemResource> resources) {
+        final List<Path> destinations = new ArrayList<>(resources.size());
+        for (final FileSystemResource resource : resources) {
+            destinations.add(fileSystem.getPath(resource.getDestination()));
+        }
+        createDirectories(destinations);
+
+        if (parallelism == 1 || resources.size() < PARALLEL_THRESHOLD) {
+            for (int index = 0; index < resources.size(); index++) {
+                copy(resources.get(index), destinations.get(index));
+            }
+        } else {
+            copyInParallel(resources, destinations);
+        }
+    }
+
+    /**
+     * Create a directory of generated files in the filesystem, every file is generated and written.
+     *
+     * @param directory The directory to create
+     */
+    public void importGeneratedFiles(final GeneratedDirectory directory) {
+        final Path destination = fileSystem.getPath(directory.getDestination());
+        try {
+            Files.createDirectories(destination);
+        } catch (IOException e) {
+            throw new ServerException("Failed to create folder " + destination, e);
+        }
+        importResources(directory.expand());
+    }
+
+    private static void createDirectories(final List<Path> destinations) {
+        final Set<Path> directories = new TreeSet<>();
+        for (final Path destination : destinations) {
+            final Path parent = destination.getParent();
+            if (parent != null && !parent.equals(destination.getRoot())) {
+                directories.add(parent);
+            }
+        }
+        for (final Path directory : directories) {
+            try {
+                Files.createDirectories(directory);
+            } catch (IOException e) {
+                throw new ServerException("Failed to create folder " + directory, e);
+            }
+        }
+    }
+
+    private void copyInParallel(final List<FileSystemResource> resources, final List<Path> destinations) {
+        final int threads = Math.min(parallelism, resources.size() / PARALLEL_THRESHOLD + 1);
+        final int batchSize = (resources.size() + threads - 1) / threads;
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            final Thread thread = new Thread(runnable, "sftp-resource-importer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            final List<CompletableFuture<Void>> batches = new ArrayList<>(threads);
+            for (int start = 0; start < resources.size(); start += batchSize) {
+                final int first = start;
+                final int end = Math.min(start + batchSize, resources.size());
+                batches.add(CompletableFuture.runAsync(() -> {
+                    for (int index = first; index < end; index++) {
+                        copy(resources.get(index), destinations.get(index));
+                    }
+                }, executor));
+            }
+            CompletableFuture.allOf(batches.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof ServerException) {
+                throw (ServerException) e.getCause();
+            }
+            throw new ServerException("Failed to import resources", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void copy(final FileSystemResource resource, final Path destination) {
+        final Path source = sourceOf(resource);
+        try {
+            if (cached && source != null) {
+                write(ResourceCache.shared().read(source, resource::getInputStream), destination);
+            } else {
+                write(resource, destination);
+            }
+        } catch (IOException e) {
+            throw new ServerException("Failed to copy " + resource + " to FileSystem", e);
+        }
+    }
+
+    private static Path sourceOf(final FileSystemResource resource) {
+        if (resource instanceof SimpleFileSystemResource) {
+            return ((SimpleFileSystemResource) resource).getSource();
+        }
+        return null;
+    }
+
+    private static void write(final ByteBuffer content, final Path destination) throws IOException {
+        try (SeekableByteChannel channel = Files.newByteChannel(destination, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            while (content.hasRemaining()) {
+                channel.write(content);
+            }
+        }
+    }
+
+    private static void write(final FileSystemResource resource, final Path destination) throws IOException {
+        final byte[] buffer = BUFFERS.get();
+        try (InputStream input = resource.getInputStream();
+             OutputStream output = Files.newOutputStream(destination, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            int read = input.read(buffer);
+            while (read >= 0) {
+                output.write(buffer, 0, read);
+                read = input.read(buffer);
+            }
+        }
+    }
+
+}
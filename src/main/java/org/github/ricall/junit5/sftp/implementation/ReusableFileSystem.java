@@ -32,13 +32,29 @@ import java.nio.file.*;
 import java.nio.file.attribute.UserPrincipalLookupService;
 import java.nio.file.spi.FileSystemProvider;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 public final class ReusableFileSystem extends FileSystem {
 
     private transient final FileSystem delegate;
+    private transient final Runnable onClose;
+    private transient final AtomicBoolean closed = new AtomicBoolean();
 
     public ReusableFileSystem(final FileSystem fileSystem) {
+        this(fileSystem, null);
+    }
+
+    /**
+     * Wrap a filesystem that is used by a single session.
+     *
+     * @param fileSystem The filesystem to delegate to
+     * @param onClose Run the first time the session closes the filesystem, or {@code null}
+     */
+    public ReusableFileSystem(final FileSystem fileSystem, final Runnable onClose) {
         this.delegate = fileSystem;
+        this.onClose = onClose;
     }
 
     @Override
@@ -48,7 +64,10 @@ public final class ReusableFileSystem extends FileSystem {
 
     @Override
     public void close() {
-        // Close is ignored allowing SftpSubsystemFactory to reuse the file system
+        // Close is not delegated allowing SftpSubsystemFactory to reuse the file system
+        if (onClose != null && closed.compareAndSet(false, true)) {
+            onClose.run();
+        }
     }
 
     @Override
@@ -102,16 +121,27 @@ public final class ReusableFileSystem extends FileSystem {
     }
 
     public static FileSystemFactory fileSystemFactory(final FileSystem fileSystem) {
+        return fileSystemFactory(() -> fileSystem);
+    }
+
+    public static FileSystemFactory fileSystemFactory(final Supplier<FileSystem> fileSystem) {
+        return fileSystemFactory(session -> fileSystem.get(), ResettableFileSystem.HOME_DIRECTORY);
+    }
+
+    public static FileSystemFactory fileSystemFactory(final Function<SessionContext, FileSystem> fileSystem, final String homeDirectory) {
         return new FileSystemFactory() {
 
             @Override
             public Path getUserHomeDir(final SessionContext session) {
-                return new MockPath("/home/sftp");
+                return new MockPath(homeDirectory);
             }
 
             @Override
             public FileSystem createFileSystem(final SessionContext session) {
-                return new ReusableFileSystem(fileSystem);
+                final FileSystem sessionFileSystem = fileSystem.apply(session);
+                return sessionFileSystem instanceof ReusableFileSystem
+                        ? sessionFileSystem
+                        : new ReusableFileSystem(sessionFileSystem);
             }
 
         };
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.implementation;
+
+import lombok.experimental.UtilityClass;
+import org.apache.sshd.common.io.IoServiceFactoryFactory;
+import org.apache.sshd.common.util.threads.NoCloseExecutor;
+import org.apache.sshd.common.util.threads.SshThreadPoolExecutor;
+import org.apache.sshd.common.util.threads.SshdThreadFactory;
+import org.apache.sshd.core.CoreModuleProperties;
+import org.apache.sshd.server.SshServer;
+import org.apache.sshd.sftp.SftpModuleProperties;
+import org.apache.sshd.sftp.server.SftpSubsystemFactory;
+import org.github.ricall.junit5.sftp.IoBackend;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies the throughput, I/O backend and threading options of a configuration to a server.
+ */
+@UtilityClass
+public class ServerTuning {
+
+    private static final String SESSION_THREAD_PREFIX = "sftp-session";
+
+    /**
+     * Configure the server and its sftp subsystem.
+     *
+     * @param server The server to configure
+     * @param subsystemFactory The sftp subsystem of the server
+     * @param configuration The configuration
+     */
+    public static void configure(final SshServer server, final SftpSubsystemFactory subsystemFactory, final SftpConfiguration configuration) {
+        CoreModuleProperties.WINDOW_SIZE.set(server, configuration.getWindowSize());
+        CoreModuleProperties.MAX_PACKET_SIZE.set(server, (long) configuration.getMaxPacketSize());
+        CoreModuleProperties.NIO2_READ_BUFFER_SIZE.set(server, configuration.getNio2ReadBufferSize());
+        SftpModuleProperties.MAX_READDATA_PACKET_LENGTH.set(server, configuration.getReadBufferSize());
+
+        CoreModuleProperties.NIO_WORKERS.set(server, configuration.getIoWorkers());
+        server.setIoServiceFactoryFactory(ioServiceFactoryFactory(configuration.getIoBackend()));
+
+        if (configuration.isVirtualThreads()) {
+            shareSessionThreads(server, subsystemFactory, VirtualThreads.newExecutor(SESSION_THREAD_PREFIX));
+        } else if (configuration.getSessionThreads() > 0) {
+            shareSessionThreads(server, subsystemFactory, sessionExecutor(configuration.getSessionThreads()));
+        }
+    }
+
+    /**
+     * Check whether the module of an I/O backend is on the classpath.
+     *
+     * @param backend The I/O backend
+     * @return true if the server can use the backend
+     */
+    public static boolean isAvailable(final IoBackend backend) {
+        try {
+            factoryClass(backend);
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Create the sshd factory of an I/O backend.
+     * <p>
+     * The factory is loaded by name rather than through sshd's built in list, which names the wrong MINA class in
+     * sshd 2.6.
+     * </p>
+     *
+     * @param backend The I/O backend
+     * @return The sshd factory
+     * @throws ServerException If the factory can't be created
+     */
+    public static IoServiceFactoryFactory ioServiceFactoryFactory(final IoBackend backend) {
+        try {
+            return factoryClass(backend).asSubclass(IoServiceFactoryFactory.class).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new ServerException("Failed to create the " + backend + " I/O backend", e);
+        }
+    }
+
+    @SuppressWarnings("PMD.UseProperClassLoader")
+    private static Class<?> factoryClass(final IoBackend backend) throws ClassNotFoundException {
+        return Class.forName(backend.getFactoryClassName(), false, ServerTuning.class.getClassLoader());
+    }
+
+    @SuppressWarnings({"PMD.CloseResource", "PMD.DoNotUseThreads"})
+    private static void shareSessionThreads(final SshServer server, final SftpSubsystemFactory subsystemFactory, final ExecutorService executor) {
+        subsystemFactory.setExecutorServiceProvider(() -> new NoCloseExecutor(executor));
+        server.addCloseFutureListener(future -> executor.shutdownNow());
+    }
+
+    @SuppressWarnings("PMD.DoNotUseThreads")
+    private static ExecutorService sessionExecutor(final int threads) {
+        return new SshThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), new SshdThreadFactory(SESSION_THREAD_PREFIX));
+    }
+
+}
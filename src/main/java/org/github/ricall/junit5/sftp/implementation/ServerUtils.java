@@ -25,24 +25,60 @@ package org.github.ricall.junit5.sftp.implementation;
 
 import lombok.experimental.UtilityClass;
 
+import java.io.IOException;
+import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.file.FileSystemAlreadyExistsException;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.FileSystems;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Collections;
 
 @UtilityClass
 public final class ServerUtils {
 
+    private static final Object JAR_LOCK = new Object();
+
+    /**
+     * Find a classpath resource as a path.
+     * <p>
+     * Resources inside jars are read through the zip filesystem of their jar, which is opened the first time a
+     * resource of the jar is needed and kept open for the life of the JVM.
+     * </p>
+     *
+     * @param classpathResource The name of the resource
+     * @return The path of the resource
+     */
     public static Path classpathResourceToPath(final String classpathResource) {
         final URL resource = ServerUtils.class.getResource(classpathResource);
         if (resource == null) {
             throw new ServerException("Unable to find classpath resource " + classpathResource);
         }
         try {
-            return Paths.get(resource.toURI());
+            return toPath(resource.toURI());
         } catch (URISyntaxException e) {
             throw new ServerException("Unable to access " + resource, e);
         }
     }
 
+    @SuppressWarnings("PMD.CloseResource")
+    private static Path toPath(final URI uri) {
+        try {
+            return Paths.get(uri);
+        } catch (FileSystemNotFoundException e) {
+            synchronized (JAR_LOCK) {
+                try {
+                    FileSystems.newFileSystem(uri, Collections.emptyMap());
+                } catch (FileSystemAlreadyExistsException ignored) {
+                    // Another resource of the same jar opened it first
+                } catch (IOException ioe) {
+                    throw new ServerException("Unable to open the jar of " + uri, ioe);
+                }
+            }
+            return Paths.get(uri);
+        }
+    }
+
 }
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.implementation;
+
+import org.apache.sshd.common.session.SessionContext;
+import org.apache.sshd.server.auth.password.PasswordAuthenticator;
+import org.apache.sshd.server.session.ServerSession;
+
+import java.nio.file.FileSystem;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Routes sessions to the filesystem and metrics of the isolated server whose credentials they logged in with.
+ * <p>
+ * Sessions that log in as one of the configured users are routed to the servers own filesystem and metrics.
+ * </p>
+ */
+@SuppressWarnings("PMD.CloseResource")
+public final class SessionRouter implements PasswordAuthenticator {
+
+    private final transient SftpConfiguration configuration;
+    private final transient Supplier<FileSystem> defaultFileSystem;
+    private final transient SftpOperationMetrics defaultMetrics;
+    private final transient Map<String, IsolatedEmbeddedSftpServer> routes = new ConcurrentHashMap<>();
+
+    public SessionRouter(final SftpConfiguration configuration, final Supplier<FileSystem> defaultFileSystem,
+            final SftpOperationMetrics defaultMetrics) {
+        this.configuration = configuration;
+        this.defaultFileSystem = defaultFileSystem;
+        this.defaultMetrics = defaultMetrics;
+    }
+
+    /**
+     * Route sessions that log in with the credentials of the isolated server to its filesystem.
+     *
+     * @param server The isolated server
+     */
+    public void register(final IsolatedEmbeddedSftpServer server) {
+        routes.put(server.getUsername(), server);
+    }
+
+    /**
+     * Stop routing sessions to the isolated server.
+     *
+     * @param server The isolated server
+     */
+    public void unregister(final IsolatedEmbeddedSftpServer server) {
+        routes.remove(server.getUsername(), server);
+    }
+
+    /**
+     * Get the filesystem a session is routed to.
+     *
+     * @param session The session
+     * @return The filesystem of the isolated server the session logged in to, otherwise the default filesystem, the
+     *         session closes it once it has finished with it
+     */
+    public FileSystem fileSystemFor(final SessionContext session) {
+        final IsolatedEmbeddedSftpServer server = routes.get(session.getUsername());
+        if (server == null) {
+            return defaultFileSystem.get();
+        }
+        return server.getFileSystem().openSession();
+    }
+
+    /**
+     * Get the metrics the operations of a session are recorded in.
+     *
+     * @param session The session
+     * @return The metrics of the isolated server the session logged in to, otherwise the default metrics
+     */
+    public SftpOperationMetrics metricsFor(final SessionContext session) {
+        final IsolatedEmbeddedSftpServer server = routes.get(session.getUsername());
+        if (server == null) {
+            return defaultMetrics;
+        }
+        return server.getMetrics();
+    }
+
+    @Override
+    public boolean authenticate(final String username, final String password, final ServerSession session) {
+        final IsolatedEmbeddedSftpServer server = routes.get(username);
+        if (server == null) {
+            return configuration.authenticate(username, password, session);
+        }
+        return Objects.equals(server.getPassword(), password);
+    }
+
+    @Override
+    public boolean handleClientPasswordChangeRequest(final ServerSession session, final String username, final String oldPassword,
+            final String newPassword) {
+        return configuration.handleClientPasswordChangeRequest(session, username, oldPassword, newPassword);
+    }
+
+}
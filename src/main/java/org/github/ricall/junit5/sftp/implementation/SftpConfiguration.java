@@ -25,12 +25,19 @@ package org.github.ricall.junit5.sftp.implementation;
 
 import lombok.Getter;
 import org.apache.sshd.common.keyprovider.KeyPairProvider;
+import org.apache.sshd.common.util.security.SecurityUtils;
+import org.apache.sshd.core.CoreModuleProperties;
 import org.apache.sshd.server.auth.password.PasswordAuthenticator;
-import org.apache.sshd.server.keyprovider.SimpleGeneratorHostKeyProvider;
 import org.apache.sshd.server.session.ServerSession;
 import org.github.ricall.junit5.sftp.EmbeddedSftpServer;
+import org.github.ricall.junit5.sftp.FileSystemBackend;
 import org.github.ricall.junit5.sftp.FileSystemResource;
+import org.github.ricall.junit5.sftp.GeneratedFiles;
+import org.github.ricall.junit5.sftp.HostKeyAlgorithm;
+import org.github.ricall.junit5.sftp.IoBackend;
+import org.github.ricall.junit5.sftp.RootFileSystemFactory;
 import org.github.ricall.junit5.sftp.SftpServer;
+import org.github.ricall.junit5.sftp.ThroughputProfile;
 
 import java.nio.file.Path;
 import java.util.*;
@@ -38,17 +45,35 @@ import java.util.*;
 import static org.github.ricall.junit5.sftp.implementation.ServerUtils.classpathResourceToPath;
 
 @Getter
-@SuppressWarnings("PMD.TooManyMethods")
+@SuppressWarnings({"PMD.GodClass", "PMD.TooManyFields", "PMD.TooManyMethods"})
 public final class SftpConfiguration implements SftpServer, PasswordAuthenticator {
 
-    private static final int MIN_PORT = 1;
+    private static final int MIN_PORT = ANY_FREE_PORT;
     private static final int MAX_PORT = 65_535;
+    private static final int MIN_IMPORT_PARALLELISM = 1;
+    private static final int MIN_THREADS = 1;
 
     private int port;
     private final Map<String, String> users = new LinkedHashMap<>();
     private final List<FileSystemResource> resources = new ArrayList<>();
-    private KeyPairProvider keyPairProvider = new SimpleGeneratorHostKeyProvider();
+    private final List<GeneratedDirectory> generatedDirectories = new ArrayList<>();
+    private KeyPairProvider keyPairProvider = HostKeyCache.shared().keyPairProvider(HostKeyAlgorithm.RSA);
     private Path authorizedKeys;
+    private boolean backgroundReset;
+    private long resourceCacheSize;
+    private int importParallelism = Runtime.getRuntime().availableProcessors();
+    private long windowSize = ThroughputProfile.DEFAULT.getWindowSize();
+    private int maxPacketSize = ThroughputProfile.DEFAULT.getMaxPacketSize();
+    private int readBufferSize = ThroughputProfile.DEFAULT.getReadBufferSize();
+    private int nio2ReadBufferSize = ThroughputProfile.DEFAULT.getNio2ReadBufferSize();
+    private IoBackend ioBackend = IoBackend.NIO2;
+    private int ioWorkers = CoreModuleProperties.NIO_WORKERS.getRequiredDefault();
+    private int sessionThreads;
+    private boolean virtualThreads;
+    private FileSystemBackend fileSystemBackend = FileSystemBackend.HEAP;
+    private RootFileSystemFactory fileSystemFactory;
+    private boolean sharedServer;
+    private boolean isolatedTests;
 
     public static SftpConfiguration configuration() {
         return new SftpConfiguration();
@@ -57,7 +82,7 @@ public final class SftpConfiguration implements SftpServer, PasswordAuthenticato
     @Override
     public SftpConfiguration withPort(final int port) {
         if (port < MIN_PORT || port > MAX_PORT) {
-            throw new IllegalArgumentException("Port needs to be between 1-65535");
+            throw new IllegalArgumentException("Port needs to be between 0-65535");
         }
         this.port = port;
         return this;
@@ -75,12 +100,32 @@ public final class SftpConfiguration implements SftpServer, PasswordAuthenticato
         return this;
     }
 
+    @Override
+    public SftpConfiguration withGeneratedFiles(final String destination, final GeneratedFiles files) {
+        this.generatedDirectories.add(new GeneratedDirectory(destination, files));
+        return this;
+    }
+
     @Override
     public SftpConfiguration withKeyPairProvider(final KeyPairProvider keyPairProvider) {
         this.keyPairProvider = keyPairProvider;
         return this;
     }
 
+    @Override
+    public SftpConfiguration withHostKey(final HostKeyAlgorithm algorithm) {
+        return withHostKey(algorithm, null);
+    }
+
+    @Override
+    public SftpConfiguration withHostKey(final HostKeyAlgorithm algorithm, final Path file) {
+        if (algorithm == HostKeyAlgorithm.ED25519 && !SecurityUtils.isEDDSACurveSupported()) {
+            throw new IllegalArgumentException("Ed25519 host keys need net.i2p.crypto:eddsa on the classpath");
+        }
+        this.keyPairProvider = HostKeyCache.shared().keyPairProvider(algorithm, file);
+        return this;
+    }
+
     @Override
     public SftpConfiguration withAuthorizedKeys(final String classpathResource) {
         return withAuthorizedKeys(classpathResourceToPath(classpathResource));
@@ -92,6 +137,137 @@ public final class SftpConfiguration implements SftpServer, PasswordAuthenticato
         return this;
     }
 
+    @Override
+    public SftpConfiguration withBackgroundReset() {
+        this.backgroundReset = true;
+        return this;
+    }
+
+    @Override
+    public SftpConfiguration withResourceCache(final long maximumSize) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("Resource cache size needs to be greater than 0");
+        }
+        this.resourceCacheSize = maximumSize;
+        return this;
+    }
+
+    @Override
+    public SftpConfiguration withImportParallelism(final int parallelism) {
+        if (parallelism < MIN_IMPORT_PARALLELISM) {
+            throw new IllegalArgumentException("Import parallelism needs to be at least 1");
+        }
+        this.importParallelism = parallelism;
+        return this;
+    }
+
+    @Override
+    public SftpConfiguration withThroughputProfile(final ThroughputProfile profile) {
+        return withWindowSize(profile.getWindowSize())
+                .withMaxPacketSize(profile.getMaxPacketSize())
+                .withReadBufferSize(profile.getReadBufferSize())
+                .withNio2ReadBufferSize(profile.getNio2ReadBufferSize());
+    }
+
+    @Override
+    public SftpConfiguration withWindowSize(final long windowSize) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("Window size needs to be greater than 0");
+        }
+        this.windowSize = windowSize;
+        return this;
+    }
+
+    @Override
+    public SftpConfiguration withMaxPacketSize(final int maxPacketSize) {
+        if (maxPacketSize <= 0) {
+            throw new IllegalArgumentException("Max packet size needs to be greater than 0");
+        }
+        this.maxPacketSize = maxPacketSize;
+        return this;
+    }
+
+    @Override
+    public SftpConfiguration withReadBufferSize(final int readBufferSize) {
+        if (readBufferSize <= 0) {
+            throw new IllegalArgumentException("Read buffer size needs to be greater than 0");
+        }
+        this.readBufferSize = readBufferSize;
+        return this;
+    }
+
+    @Override
+    public SftpConfiguration withNio2ReadBufferSize(final int nio2ReadBufferSize) {
+        if (nio2ReadBufferSize <= 0) {
+            throw new IllegalArgumentException("NIO2 read buffer size needs to be greater than 0");
+        }
+        this.nio2ReadBufferSize = nio2ReadBufferSize;
+        return this;
+    }
+
+    @Override
+    public SftpConfiguration withIoBackend(final IoBackend backend) {
+        if (!ServerTuning.isAvailable(backend)) {
+            throw new IllegalArgumentException(backend + " I/O backend needs org.apache.sshd:" + backend.getModule() + " on the classpath");
+        }
+        this.ioBackend = backend;
+        return this;
+    }
+
+    @Override
+    public SftpConfiguration withIoWorkers(final int workers) {
+        if (workers < MIN_THREADS) {
+            throw new IllegalArgumentException("Number of I/O workers needs to be at least 1");
+        }
+        this.ioWorkers = workers;
+        return this;
+    }
+
+    @Override
+    public SftpConfiguration withSessionThreads(final int threads) {
+        if (threads < MIN_THREADS) {
+            throw new IllegalArgumentException("Number of session threads needs to be at least 1");
+        }
+        this.sessionThreads = threads;
+        return this;
+    }
+
+    @Override
+    public SftpConfiguration withVirtualThreads() {
+        if (!VirtualThreads.isSupported()) {
+            throw new IllegalArgumentException("Virtual threads need Java 21 or later");
+        }
+        this.virtualThreads = true;
+        return this;
+    }
+
+    @Override
+    public SftpConfiguration withFileSystemBackend(final FileSystemBackend backend) {
+        this.fileSystemBackend = backend;
+        return this;
+    }
+
+    @Override
+    public SftpConfiguration withFileSystemFactory(final RootFileSystemFactory factory) {
+        if (factory == null) {
+            throw new IllegalArgumentException("FileSystem factory can't be null");
+        }
+        this.fileSystemFactory = factory;
+        return this;
+    }
+
+    @Override
+    public SftpConfiguration withSharedServer() {
+        this.sharedServer = true;
+        return this;
+    }
+
+    @Override
+    public SftpConfiguration withIsolatedTests() {
+        this.isolatedTests = true;
+        return this;
+    }
+
     @Override
     public boolean authenticate(
             final String username,
@@ -118,6 +294,10 @@ public final class SftpConfiguration implements SftpServer, PasswordAuthenticato
         return new LifecycleAwareEmbeddedSftpServer(this);
     }
 
+    public boolean usesServerPool() {
+        return sharedServer || isolatedTests;
+    }
+
     public boolean noAuthenticationDefined() {
         return authorizedKeys == null && users.isEmpty();
     }
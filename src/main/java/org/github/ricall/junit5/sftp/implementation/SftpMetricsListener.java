@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.implementation;
+
+import org.apache.sshd.common.session.SessionContext;
+import org.apache.sshd.server.session.ServerSession;
+import org.apache.sshd.sftp.server.AbstractSftpEventListenerAdapter;
+import org.apache.sshd.sftp.server.DirectoryHandle;
+import org.apache.sshd.sftp.server.FileHandle;
+import org.apache.sshd.sftp.server.Handle;
+import org.github.ricall.junit5.sftp.SftpOperation;
+
+import java.nio.file.CopyOption;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Times the sftp operations that sshd reports to its event listeners.
+ * <p>
+ * sshd handles the requests of a session one at a time on a single thread and reports the start and the end of an
+ * operation on that thread, so the start times are kept in a per thread array rather than per request.
+ * </p>
+ */
+@SuppressWarnings("PMD.TooManyMethods")
+public final class SftpMetricsListener extends AbstractSftpEventListenerAdapter {
+
+    private static final int OPERATIONS = SftpOperation.values().length;
+
+    private final transient Function<SessionContext, SftpOperationMetrics> metricsFor;
+    private final transient ThreadLocal<long[]> startTimes = ThreadLocal.withInitial(() -> new long[OPERATIONS]);
+
+    public SftpMetricsListener(final Function<SessionContext, SftpOperationMetrics> metricsFor) {
+        this.metricsFor = metricsFor;
+    }
+
+    @Override
+    public void opening(final ServerSession session, final String remoteHandle, final Handle localHandle) {
+        start(SftpOperation.OPEN);
+    }
+
+    @Override
+    public void open(final ServerSession session, final String remoteHandle, final Handle localHandle) {
+        stop(session, SftpOperation.OPEN);
+    }
+
+    @Override
+    public void openFailed(final ServerSession session, final String remotePath, final Path localPath, final boolean isDirectory,
+            final Throwable thrown) {
+        stop(session, SftpOperation.OPEN);
+    }
+
+    @Override
+    public void readingEntries(final ServerSession session, final String remoteHandle, final DirectoryHandle localHandle) {
+        start(SftpOperation.READDIR);
+    }
+
+    @Override
+    public void readEntries(final ServerSession session, final String remoteHandle, final DirectoryHandle localHandle,
+            final Map<String, Path> entries) {
+        stop(session, SftpOperation.READDIR);
+    }
+
+    @Override
+    public void reading(final ServerSession session, final String remoteHandle, final FileHandle localHandle, final long offset,
+            final byte[] data, final int dataOffset, final int dataLen) {
+        start(SftpOperation.READ);
+    }
+
+    @Override
+    @SuppressWarnings("checkstyle:ParameterNumber")
+    public void read(final ServerSession session, final String remoteHandle, final FileHandle localHandle, final long offset,
+            final byte[] data, final int dataOffset, final int dataLen, final int readLen, final Throwable thrown) {
+        stop(session, SftpOperation.READ).recordRead(Math.max(readLen, 0));
+    }
+
+    @Override
+    public void writing(final ServerSession session, final String remoteHandle, final FileHandle localHandle, final long offset,
+            final byte[] data, final int dataOffset, final int dataLen) {
+        start(SftpOperation.WRITE);
+    }
+
+    @Override
+    @SuppressWarnings("checkstyle:ParameterNumber")
+    public void written(final ServerSession session, final String remoteHandle, final FileHandle localHandle, final long offset,
+            final byte[] data, final int dataOffset, final int dataLen, final Throwable thrown) {
+        final SftpOperationMetrics metrics = stop(session, SftpOperation.WRITE);
+        if (thrown == null) {
+            metrics.recordWritten(dataLen);
+        }
+    }
+
+    @Override
+    public void moving(final ServerSession session, final Path srcPath, final Path dstPath, final Collection<CopyOption> opts) {
+        start(SftpOperation.RENAME);
+    }
+
+    @Override
+    public void moved(final ServerSession session, final Path srcPath, final Path dstPath, final Collection<CopyOption> opts,
+            final Throwable thrown) {
+        stop(session, SftpOperation.RENAME);
+    }
+
+    @Override
+    public void removing(final ServerSession session, final Path path, final boolean isDirectory) {
+        start(SftpOperation.REMOVE);
+    }
+
+    @Override
+    public void removed(final ServerSession session, final Path path, final boolean isDirectory, final Throwable thrown) {
+        stop(session, SftpOperation.REMOVE);
+    }
+
+    private void start(final SftpOperation operation) {
+        startTimes.get()[operation.ordinal()] = System.nanoTime();
+    }
+
+    private SftpOperationMetrics stop(final SessionContext session, final SftpOperation operation) {
+        final SftpOperationMetrics metrics = metricsFor.apply(session);
+        metrics.record(operation, System.nanoTime() - startTimes.get()[operation.ordinal()]);
+        return metrics;
+    }
+
+}
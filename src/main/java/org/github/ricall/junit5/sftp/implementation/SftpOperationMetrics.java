@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.implementation;
+
+import org.github.ricall.junit5.sftp.SftpMetrics;
+import org.github.ricall.junit5.sftp.SftpOperation;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.LongStream;
+
+/**
+ * Records the sftp operations performed against a server.
+ * <p>
+ * Recording an operation only updates striped counters and a fixed size histogram, so it does not allocate and does
+ * not contend between sessions.
+ * </p>
+ */
+public final class SftpOperationMetrics implements SftpMetrics {
+
+    private static final int OPERATIONS = SftpOperation.values().length;
+    private static final long NANOS_PER_MICRO = 1_000;
+    private static final double MAXIMUM_PERCENTILE = 100;
+
+    private final transient LongAdder[] counts = adders(OPERATIONS);
+    private final transient LongAdder[] totalNanos = adders(OPERATIONS);
+    private final transient AtomicLongArray histograms = new AtomicLongArray(OPERATIONS * LATENCY_BUCKETS);
+    private final transient LongAdder bytesRead = new LongAdder();
+    private final transient LongAdder bytesWritten = new LongAdder();
+
+    private static LongAdder[] adders(final int size) {
+        final LongAdder[] adders = new LongAdder[size];
+        for (int index = 0; index < size; index++) {
+            adders[index] = new LongAdder();
+        }
+        return adders;
+    }
+
+    /**
+     * Get the histogram bucket of a latency.
+     *
+     * @param nanos The latency in nanoseconds
+     * @return The bucket index
+     */
+    public static int bucketOf(final long nanos) {
+        final int bucket = Long.SIZE - Long.numberOfLeadingZeros(Math.max(nanos, 0) / NANOS_PER_MICRO);
+        return Math.min(bucket, LATENCY_BUCKETS - 1);
+    }
+
+    /**
+     * Record that an operation was performed.
+     *
+     * @param operation The operation
+     * @param nanos How long the operation took in nanoseconds
+     */
+    public void record(final SftpOperation operation, final long nanos) {
+        final int index = operation.ordinal();
+        counts[index].increment();
+        totalNanos[index].add(nanos);
+        histograms.incrementAndGet(index * LATENCY_BUCKETS + bucketOf(nanos));
+    }
+
+    /**
+     * Record bytes that were read from a file.
+     *
+     * @param bytes The number of bytes
+     */
+    public void recordRead(final long bytes) {
+        bytesRead.add(bytes);
+    }
+
+    /**
+     * Record bytes that were written to a file.
+     *
+     * @param bytes The number of bytes
+     */
+    public void recordWritten(final long bytes) {
+        bytesWritten.add(bytes);
+    }
+
+    @Override
+    public long getCount(final SftpOperation operation) {
+        return counts[operation.ordinal()].sum();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    @Override
+    public Duration getTotalLatency(final SftpOperation operation) {
+        return Duration.ofNanos(totalNanos[operation.ordinal()].sum());
+    }
+
+    @Override
+    public long[] getLatencyHistogram(final SftpOperation operation) {
+        final int offset = operation.ordinal() * LATENCY_BUCKETS;
+        final long[] histogram = new long[LATENCY_BUCKETS];
+        for (int bucket = 0; bucket < LATENCY_BUCKETS; bucket++) {
+            histogram[bucket] = histograms.get(offset + bucket);
+        }
+        return histogram;
+    }
+
+    @Override
+    public Duration getLatencyPercentile(final SftpOperation operation, final double percentile) {
+        if (percentile < 0 || percentile > MAXIMUM_PERCENTILE) {
+            throw new IllegalArgumentException("Percentile needs to be between 0-100");
+        }
+        final long[] histogram = getLatencyHistogram(operation);
+        final long total = LongStream.of(histogram).sum();
+        if (total == 0) {
+            return Duration.ZERO;
+        }
+        final long rank = Math.max((long) Math.ceil(total * percentile / MAXIMUM_PERCENTILE), 1);
+        int bucket = 0;
+        long seen = histogram[0];
+        while (seen < rank && bucket < LATENCY_BUCKETS - 1) {
+            bucket++;
+            seen += histogram[bucket];
+        }
+        return Duration.ofNanos(NANOS_PER_MICRO << bucket);
+    }
+
+    @Override
+    public void reset() {
+        for (int index = 0; index < OPERATIONS; index++) {
+            counts[index].reset();
+            totalNanos[index].reset();
+        }
+        for (int index = 0; index < histograms.length(); index++) {
+            histograms.set(index, 0);
+        }
+        bytesRead.reset();
+        bytesWritten.reset();
+    }
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.implementation;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Creates executors that run every task on a new virtual thread.
+ * <p>
+ * This is the Java 8 version, which has no virtual threads. The multi-release jar replaces it with the version in
+ * {@code src/main/java21} on Java 21 and later.
+ * </p>
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * Check whether the JVM supports virtual threads.
+     *
+     * @return true if {@link #newExecutor(String)} can be used
+     */
+    public static boolean isSupported() {
+        return false;
+    }
+
+    /**
+     * Create an executor that starts a virtual thread for every task.
+     *
+     * @param prefix The prefix of the thread names
+     * @return The executor
+     * @throws ServerException If the JVM doesn't support virtual threads
+     */
+    public static ExecutorService newExecutor(final String prefix) {
+        throw new ServerException("Virtual threads need Java 21 or later");
+    }
+
+}
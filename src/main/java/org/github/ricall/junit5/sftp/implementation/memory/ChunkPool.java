@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.implementation.memory;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of fixed size direct buffers that hold the contents of off-heap files.
+ * <p>
+ * Chunks released by deleted or truncated files are kept for the next file that is written, up to a maximum number
+ * of bytes. Chunks that are not kept are freed straight away rather than waiting for the garbage collector, so the
+ * direct memory of large files is returned when the filesystem is reset.
+ * </p>
+ */
+public final class ChunkPool implements AutoCloseable {
+
+    /** The size of every pooled chunk. */
+    public static final int CHUNK_SIZE = 1024 * 1024;
+
+    /** The default number of bytes kept in the pool. */
+    public static final long DEFAULT_MAXIMUM_POOLED = 64L * CHUNK_SIZE;
+
+    private static final Deallocator DEALLOCATOR = Deallocator.create();
+
+    private final transient int chunkSize;
+    private final transient int maximumPooledChunks;
+    private final transient Deque<ByteBuffer> pooled = new ConcurrentLinkedDeque<>();
+    private final transient AtomicInteger pooledChunks = new AtomicInteger();
+    private final transient AtomicLong allocatedBytes = new AtomicLong();
+    private volatile boolean closed;
+
+    public ChunkPool() {
+        this(CHUNK_SIZE, DEFAULT_MAXIMUM_POOLED);
+    }
+
+    /**
+     * Create a pool of chunks.
+     *
+     * @param chunkSize The size of every chunk in bytes
+     * @param maximumPooled The maximum number of bytes to keep in the pool
+     */
+    public ChunkPool(final int chunkSize, final long maximumPooled) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size needs to be greater than 0");
+        }
+        this.chunkSize = chunkSize;
+        this.maximumPooledChunks = (int) Math.min(Integer.MAX_VALUE, maximumPooled / chunkSize);
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Get the number of bytes of direct memory allocated by the pool that have not been freed.
+     *
+     * @return The allocated bytes, including the chunks that are held by files
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes.get();
+    }
+
+    /**
+     * Get the number of bytes held in the pool waiting to be reused.
+     *
+     * @return The pooled bytes
+     */
+    public long getPooledBytes() {
+        return (long) pooledChunks.get() * chunkSize;
+    }
+
+    /**
+     * Take a full size chunk, reusing a pooled chunk if there is one.
+     * <p>
+     * The contents of a reused chunk are undefined.
+     * </p>
+     *
+     * @return A cleared chunk of {@link #getChunkSize()} bytes
+     */
+    public ByteBuffer take() {
+        final ByteBuffer chunk = pooled.poll();
+        if (chunk == null) {
+            return allocate(chunkSize);
+        }
+        pooledChunks.decrementAndGet();
+        chunk.clear();
+        return chunk;
+    }
+
+    /**
+     * Allocate a chunk that is smaller than the pooled chunks, used for the contents of small files.
+     *
+     * @param capacity The capacity of the chunk in bytes
+     * @return A new chunk
+     */
+    public ByteBuffer allocate(final int capacity) {
+        final ByteBuffer chunk = ByteBuffer.allocateDirect(capacity);
+        allocatedBytes.addAndGet(capacity);
+        return chunk;
+    }
+
+    /**
+     * Give a chunk back once no file uses it.
+     * <p>
+     * Full size chunks are pooled while there is room, every other chunk is freed.
+     * </p>
+     *
+     * @param chunk The chunk that is no longer used
+     */
+    public void give(final ByteBuffer chunk) {
+        if (!closed && chunk.capacity() == chunkSize) {
+            if (pooledChunks.incrementAndGet() <= maximumPooledChunks) {
+                pooled.push(chunk);
+                return;
+            }
+            pooledChunks.decrementAndGet();
+        }
+        free(chunk);
+    }
+
+    private void free(final ByteBuffer chunk) {
+        allocatedBytes.addAndGet(-chunk.capacity());
+        DEALLOCATOR.free(chunk);
+    }
+
+    /**
+     * Free every pooled chunk, chunks that are given back afterwards are freed straight away.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        ByteBuffer chunk = pooled.poll();
+        while (chunk != null) {
+            pooledChunks.decrementAndGet();
+            free(chunk);
+            chunk = pooled.poll();
+        }
+    }
+
+    /**
+     * Frees direct buffers without waiting for the garbage collector.
+     * <p>
+     * Uses {@code sun.misc.Unsafe.invokeCleaner} on Java 9 and later and the buffer's cleaner on Java 8. When neither
+     * is accessible the buffer is left to the garbage collector.
+     * </p>
+     */
+    @SuppressWarnings({"PMD.AvoidAccessibilityAlteration", "PMD.AvoidCatchingGenericException"})
+    private static final class Deallocator {
+
+        private final transient Object unsafe;
+        private final transient Method invokeCleaner;
+
+        private Deallocator(final Object unsafe, final Method invokeCleaner) {
+            this.unsafe = unsafe;
+            this.invokeCleaner = invokeCleaner;
+        }
+
+        /* default */ static Deallocator create() {
+            try {
+                final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                final Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                return new Deallocator(theUnsafe.get(null), unsafeClass.getMethod("invokeCleaner", ByteBuffer.class));
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                return new Deallocator(null, null);
+            }
+        }
+
+        /* default */ void free(final ByteBuffer buffer) {
+            try {
+                if (invokeCleaner != null) {
+                    invokeCleaner.invoke(unsafe, buffer);
+                } else {
+                    final Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                    cleanerMethod.setAccessible(true);
+                    final Object cleaner = cleanerMethod.invoke(buffer);
+                    if (cleaner != null) {
+                        cleaner.getClass().getMethod("clean").invoke(cleaner);
+                    }
+                }
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                // The buffer is freed by the garbage collector instead
+            }
+        }
+
+    }
+
+}
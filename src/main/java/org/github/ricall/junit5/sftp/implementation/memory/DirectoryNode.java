@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.implementation.memory;
+
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * A directory, the entries are changed while holding the lock for the directory and read without a lock.
+ * <p>
+ * The entries are kept sorted by name, which gives listings a stable order and lets them resume after the last name
+ * they returned instead of copying every name up front.
+ * </p>
+ */
+final class DirectoryNode extends Node {
+
+    private final transient NavigableMap<String, Node> entries = new ConcurrentSkipListMap<>();
+
+    /* default */ DirectoryNode(final Set<PosixFilePermission> permissions, final InMemoryPrincipal owner) {
+        super(permissions, owner);
+    }
+
+    @Override
+    public boolean isDirectory() {
+        return true;
+    }
+
+    @Override
+    public boolean isRegularFile() {
+        return false;
+    }
+
+    @Override
+    public boolean isSymbolicLink() {
+        return false;
+    }
+
+    @Override
+    public long size() {
+        return 0;
+    }
+
+    public Node get(final String name) {
+        return entries.get(name);
+    }
+
+    public void put(final String name, final Node node) {
+        entries.put(name, node);
+        modified();
+    }
+
+    public Node remove(final String name) {
+        final Node removed = entries.remove(name);
+        modified();
+        return removed;
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * Get the names of the entries in sorted order.
+     *
+     * @return A copy of the names
+     */
+    public List<String> names() {
+        return new ArrayList<>(entries.keySet());
+    }
+
+    /**
+     * Get the next names of the entries in sorted order.
+     *
+     * @param cursor The last name that was already returned, or {@code null} to start from the first entry
+     * @param limit The maximum number of names to return
+     * @return A copy of up to {@code limit} names that sort after the cursor
+     */
+    public List<String> namesAfter(final String cursor, final int limit) {
+        final List<String> names = new ArrayList<>();
+        for (final String name : cursor == null ? entries.keySet() : entries.tailMap(cursor, false).keySet()) {
+            if (names.size() == limit) {
+                break;
+            }
+            names.add(name);
+        }
+        return names;
+    }
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.implementation.memory;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Storage for the bytes of a regular file in an {@link InMemoryFileSystem}.
+ * <p>
+ * Implementations are not thread safe, the file that owns the content serialises access to it. Content that says
+ * it is {@link #isConcurrentlyReadable() concurrently readable} is read without the file lock.
+ * </p>
+ */
+public interface FileContent {
+
+    /**
+     * Get the number of bytes stored.
+     *
+     * @return The size of the content in bytes
+     */
+    long size();
+
+    /**
+     * Check if the content can be read while it is written or released.
+     *
+     * @return {@code true} if reads and the size can be used without holding the file lock
+     */
+    default boolean isConcurrentlyReadable() {
+        return false;
+    }
+
+    /**
+     * Copy bytes starting at a position into a buffer.
+     *
+     * @param position The position of the first byte to read
+     * @param target The buffer to copy the bytes into
+     * @return The number of bytes copied, or -1 if the position is at or beyond the end of the content
+     */
+    int read(long position, ByteBuffer target);
+
+    /**
+     * Copy the remaining bytes of a buffer into the content starting at a position.
+     * <p>
+     * Writing beyond the end of the content grows it, any gap between the old end and the position reads as zeros.
+     * </p>
+     *
+     * @param position The position to write the first byte to
+     * @param source The buffer to copy the bytes from
+     * @return The number of bytes written
+     */
+    int write(long position, ByteBuffer source);
+
+    /**
+     * Shrink the content, this has no effect if the content is already smaller.
+     *
+     * @param size The new size in bytes
+     */
+    void truncate(long size);
+
+    /**
+     * Called when a channel opens the file that owns the content.
+     */
+    default void opened() {
+        // Nothing is held for open channels by default
+    }
+
+    /**
+     * Called when a channel that opened the file that owns the content is closed.
+     */
+    default void closed() {
+        // Nothing is held for open channels by default
+    }
+
+    /**
+     * Release the storage held by the content, the content is empty afterwards.
+     */
+    void release();
+
+}
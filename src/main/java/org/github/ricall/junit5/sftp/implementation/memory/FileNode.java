@@ -0,0 +1,336 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.implementation.memory;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * A regular file.
+ * <p>
+ * Reads and writes are guarded by a lock per file, so sessions that transfer different files don't contend with each
+ * other. The content is released once the file has been removed from every directory and every channel that has it
+ * open is closed.
+ * </p>
+ * <p>
+ * Content that is {@link FileContent#isConcurrentlyReadable() concurrently readable} is read without the lock, so
+ * sessions that download the same file don't wait for each other or for a session that uploads it.
+ * </p>
+ * <p>
+ * A file that is mounted from the host or generated is served from its read only {@link LowerLayer}, which is
+ * copied into new content the first time the file is modified.
+ * </p>
+ */
+final class FileNode extends Node {
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private final transient ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile FileContent content;
+    private transient LowerLayer lowerLayer;
+    private transient Supplier<FileContent> copyUp;
+    private transient List<FileLock> locks;
+    private transient int links;
+    private transient int openChannels;
+    private transient boolean released;
+
+    /* default */ FileNode(final FileContent content, final Set<PosixFilePermission> permissions, final InMemoryPrincipal owner) {
+        super(permissions, owner);
+        this.content = content;
+    }
+
+    /* default */ FileNode(final LowerLayer lowerLayer, final Supplier<FileContent> copyUp, final Set<PosixFilePermission> permissions,
+            final InMemoryPrincipal owner) {
+        this(lowerLayer.newContent(), permissions, owner);
+        this.lowerLayer = lowerLayer;
+        this.copyUp = copyUp;
+    }
+
+    /**
+     * Get the lower layer the content is still served from.
+     *
+     * @return The lower layer, or {@code null} if the file has its own content
+     */
+    public LowerLayer getLowerLayer() {
+        final Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return lowerLayer;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isDirectory() {
+        return false;
+    }
+
+    @Override
+    public boolean isRegularFile() {
+        return true;
+    }
+
+    @Override
+    public boolean isSymbolicLink() {
+        return false;
+    }
+
+    @Override
+    public long size() {
+        final FileContent current = content;
+        if (current.isConcurrentlyReadable()) {
+            return current.size();
+        }
+        final Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return content.size();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Copy bytes starting at a position into a buffer.
+     *
+     * @param position The position of the first byte to read
+     * @param target The buffer to copy the bytes into
+     * @return The number of bytes copied, or -1 at the end of the file
+     */
+    public int read(final long position, final ByteBuffer target) {
+        final FileContent current = content;
+        if (current.isConcurrentlyReadable()) {
+            return current.read(position, target);
+        }
+        final Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return content.read(position, target);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Copy the remaining bytes of a buffer into the file starting at a position.
+     *
+     * @param position The position to write the first byte to
+     * @param source The buffer to copy the bytes from
+     * @return The number of bytes written
+     */
+    public int write(final long position, final ByteBuffer source) {
+        final Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            final int written = writable(Long.MAX_VALUE).write(position, source);
+            modified();
+            return written;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Copy the remaining bytes of a buffer to the end of the file.
+     *
+     * @param source The buffer to copy the bytes from
+     * @return The size of the file after the bytes were written
+     */
+    public long append(final ByteBuffer source) {
+        final Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            writable(Long.MAX_VALUE).write(content.size(), source);
+            modified();
+            return content.size();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Shrink the file.
+     *
+     * @param size The new size in bytes
+     */
+    public void truncate(final long size) {
+        final Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            if (lowerLayer == null || size < content.size()) {
+                writable(size).truncate(size);
+            }
+            modified();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private FileContent writable(final long limit) {
+        if (lowerLayer == null) {
+            return content;
+        }
+        final FileContent copy = copyUp.get();
+        final ByteBuffer buffer = ByteBuffer.allocate(COPY_BUFFER_SIZE);
+        final long end = Math.min(limit, content.size());
+        long position = 0;
+        while (position < end) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), end - position));
+            final int read = content.read(position, buffer);
+            if (read <= 0) {
+                break;
+            }
+            buffer.flip();
+            copy.write(position, buffer);
+            position += read;
+        }
+        content.release();
+        content = copy;
+        lowerLayer = null;
+        copyUp = null;
+        return content;
+    }
+
+    /**
+     * Copy the content of this file to the end of another file.
+     *
+     * @param target The file to copy the content to
+     */
+    public void copyTo(final FileNode target) {
+        final ByteBuffer buffer = ByteBuffer.allocate(COPY_BUFFER_SIZE);
+        long position = 0;
+        int read = read(position, buffer);
+        while (read > 0) {
+            buffer.flip();
+            target.write(position, buffer);
+            buffer.clear();
+            position += read;
+            read = read(position, buffer);
+        }
+    }
+
+    /**
+     * Record that the file has been added to a directory.
+     */
+    public synchronized void link() {
+        links++;
+    }
+
+    /**
+     * Record that the file has been removed from a directory.
+     */
+    public synchronized void unlink() {
+        links--;
+        releaseIfUnused();
+    }
+
+    /**
+     * Record that a channel has opened the file.
+     *
+     * @return {@code false} if the file was removed and its content released before it could be opened
+     */
+    public synchronized boolean open() {
+        if (released) {
+            return false;
+        }
+        openChannels++;
+        content.opened();
+        return true;
+    }
+
+    /**
+     * Record that a channel has closed the file.
+     */
+    public synchronized void close() {
+        openChannels--;
+        content.closed();
+        releaseIfUnused();
+    }
+
+    /**
+     * Hold a lock on a region of the file.
+     *
+     * @param lock The lock to hold
+     * @return {@code false} if the region overlaps a lock that is already held
+     */
+    public synchronized boolean addLock(final FileLock lock) {
+        if (locks == null) {
+            locks = new ArrayList<>();
+        }
+        for (final FileLock held : locks) {
+            if (held.overlaps(lock.position(), lock.size())) {
+                return false;
+            }
+        }
+        locks.add(lock);
+        return true;
+    }
+
+    /**
+     * Release a lock on a region of the file.
+     *
+     * @param lock The lock to release
+     */
+    public synchronized void removeLock(final FileLock lock) {
+        if (locks != null) {
+            locks.remove(lock);
+        }
+    }
+
+    /**
+     * Release every lock a channel holds.
+     *
+     * @param channel The channel that is closing
+     */
+    public synchronized void removeLocks(final FileChannel channel) {
+        if (locks != null) {
+            locks.removeIf(lock -> lock.channel() == channel);
+        }
+    }
+
+    private void releaseIfUnused() {
+        if (links <= 0 && openChannels <= 0) {
+            released = true;
+            final Lock writeLock = lock.writeLock();
+            writeLock.lock();
+            try {
+                content.release();
+            } finally {
+                writeLock.unlock();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.implementation.memory;
+
+import org.github.ricall.junit5.sftp.ContentGenerator;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Read only file content whose bytes are computed by a {@link ContentGenerator} whenever they are read.
+ */
+final class GeneratedContent implements FileContent {
+
+    private final transient long size;
+    private final transient ContentGenerator generator;
+
+    /* default */ GeneratedContent(final long size, final ContentGenerator generator) {
+        this.size = size;
+        this.generator = generator;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public boolean isConcurrentlyReadable() {
+        return true;
+    }
+
+    @Override
+    public int read(final long position, final ByteBuffer target) {
+        if (position >= size) {
+            return -1;
+        }
+        final int length = (int) Math.min(target.remaining(), size - position);
+        final ByteBuffer generated = target.duplicate();
+        generated.limit(generated.position() + length);
+        generator.generate(position, generated);
+        target.position(target.position() + length);
+        return length;
+    }
+
+    @Override
+    public int write(final long position, final ByteBuffer source) {
+        throw new UnsupportedOperationException("Generated files are read only");
+    }
+
+    @Override
+    public void truncate(final long newSize) {
+        throw new UnsupportedOperationException("Generated files are read only");
+    }
+
+    @Override
+    public void release() {
+        // Nothing is stored
+    }
+
+}
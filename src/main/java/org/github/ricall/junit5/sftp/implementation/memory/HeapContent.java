@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.implementation.memory;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * File content that is stored in fixed size byte arrays on the heap.
+ * <p>
+ * Appending to a file adds chunks rather than copying its bytes into a larger array, and a write only allocates the
+ * chunks it touches, so writes that arrive out of order leave holes that read as zeros until they are filled. Small
+ * files use a single chunk that doubles in size until it reaches the chunk size. Bytes beyond the end of the content
+ * are always zero, which lets writes past the end skip filling the gap.
+ * </p>
+ * <p>
+ * The chunk table and size are published together as a {@link Version} after every change, so reads don't need the
+ * file lock. The bytes a published version covers are never changed: a write below the end of the file copies the
+ * chunks it touches and the chunk table before it changes them, and truncating copies the last chunk before clearing
+ * it. Appends only fill bytes past the published size, so streaming uploads still write in place.
+ * </p>
+ */
+final class HeapContent implements FileContent {
+
+    /* default */ static final int CHUNK_SIZE = 64 * 1024;
+
+    private static final int CHUNK_SHIFT = 16;
+    private static final int MINIMUM_CAPACITY = 64;
+    private static final int MAXIMUM_CHUNKS = Integer.MAX_VALUE - 8;
+    private static final byte[][] NO_CHUNKS = new byte[0][];
+    private static final byte[] ZEROS = new byte[CHUNK_SIZE];
+
+    private static final Version EMPTY = new Version(NO_CHUNKS, 0);
+
+    private volatile Version version = EMPTY;
+
+    @Override
+    public long size() {
+        return version.size;
+    }
+
+    @Override
+    public boolean isConcurrentlyReadable() {
+        return true;
+    }
+
+    @Override
+    public int read(final long position, final ByteBuffer target) {
+        final Version current = version;
+        if (position >= current.size) {
+            return -1;
+        }
+        final byte[][] chunks = current.chunks;
+        final int length = (int) Math.min(target.remaining(), current.size - position);
+        long offset = position;
+        int remaining = length;
+        while (remaining > 0) {
+            final int start = offsetInChunk(offset);
+            final int count = Math.min(remaining, CHUNK_SIZE - start);
+            final byte[] chunk = chunks[chunkIndex(offset)];
+            target.put(chunk == null ? ZEROS : chunk, chunk == null ? 0 : start, count);
+            offset += count;
+            remaining -= count;
+        }
+        return length;
+    }
+
+    @Override
+    public int write(final long position, final ByteBuffer source) {
+        final int length = source.remaining();
+        final long end = position + length;
+        if (length == 0) {
+            return 0;
+        }
+        final Version current = version;
+        final int visible = chunkCount(current.size);
+        byte[][] chunks = ensureCapacity(current.chunks, end);
+        long offset = position;
+        while (source.hasRemaining()) {
+            final int index = chunkIndex(offset);
+            final int start = offsetInChunk(offset);
+            final int count = Math.min(source.remaining(), CHUNK_SIZE - start);
+            byte[] chunk = chunks[index];
+            if (chunk == null || offset < current.size && chunk == current.chunks[index]) {
+                // Readers of the current version may be reading the chunk, so the bytes are written to a copy
+                chunk = chunk == null
+                        ? new byte[index == 0 ? capacityFor(Math.max(end, current.size)) : CHUNK_SIZE]
+                        : chunk.clone();
+                if (index < visible && chunks == current.chunks) {
+                    chunks = chunks.clone();
+                }
+                chunks[index] = chunk;
+            }
+            source.get(chunk, start, count);
+            offset += count;
+        }
+        version = new Version(chunks, Math.max(current.size, end));
+        return length;
+    }
+
+    @Override
+    public void truncate(final long newSize) {
+        final Version current = version;
+        if (newSize >= current.size) {
+            return;
+        }
+        final int required = chunkCount(newSize);
+        final byte[][] chunks = required == 0 ? NO_CHUNKS : Arrays.copyOf(current.chunks, required);
+        final byte[] last = required == 0 ? null : chunks[required - 1];
+        if (last != null) {
+            final byte[] cleared = last.clone();
+            Arrays.fill(cleared, offsetInChunk(newSize - 1) + 1, cleared.length, (byte) 0);
+            chunks[required - 1] = cleared;
+        }
+        version = new Version(chunks, newSize);
+    }
+
+    @Override
+    public void release() {
+        version = EMPTY;
+    }
+
+    private static byte[][] ensureCapacity(final byte[][] current, final long end) {
+        final int required = chunkCount(end);
+        byte[][] chunks = current;
+        if (required > chunks.length) {
+            chunks = Arrays.copyOf(chunks, (int) Math.max(required, Math.min(MAXIMUM_CHUNKS, 2L * chunks.length)));
+        }
+        final byte[] first = chunks[0];
+        if (first != null && first.length < CHUNK_SIZE && end > first.length) {
+            if (chunks == current) {
+                chunks = chunks.clone();
+            }
+            chunks[0] = Arrays.copyOf(first, capacityFor(end));
+        }
+        return chunks;
+    }
+
+    private static int capacityFor(final long end) {
+        if (end >= CHUNK_SIZE) {
+            return CHUNK_SIZE;
+        }
+        return Math.max(MINIMUM_CAPACITY, Integer.highestOneBit((int) end - 1) << 1);
+    }
+
+    private static int chunkIndex(final long offset) {
+        return (int) (offset >>> CHUNK_SHIFT);
+    }
+
+    private static int offsetInChunk(final long offset) {
+        return (int) (offset & CHUNK_SIZE - 1);
+    }
+
+    private static int chunkCount(final long size) {
+        final long count = (size + CHUNK_SIZE - 1) >>> CHUNK_SHIFT;
+        if (count > MAXIMUM_CHUNKS) {
+            throw new IllegalStateException("Files kept on the heap are limited to " + (long) MAXIMUM_CHUNKS * CHUNK_SIZE + " bytes");
+        }
+        return (int) count;
+    }
+
+    /**
+     * The chunk table and size of the content at one point in time.
+     */
+    private static final class Version {
+
+        private final transient byte[][] chunks;
+        private final transient long size;
+
+        /* default */ Version(final byte[][] chunks, final long size) {
+            this.chunks = chunks;
+            this.size = size;
+        }
+
+    }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.implementation.memory;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Lists a directory in batches, each batch resumes after the last name of the previous one.
+ * <p>
+ * Opening the stream doesn't copy the names of the entries and batches are read without a lock, so listing a
+ * directory with millions of entries doesn't hold up other operations. The listing is weakly consistent, entries that
+ * are added or removed while it is iterated may or may not be returned.
+ * </p>
+ */
+final class InMemoryDirectoryStream implements DirectoryStream<Path> {
+
+    /* default */ static final int BATCH_SIZE = 1024;
+
+    private final transient InMemoryPath directory;
+    private final transient DirectoryNode node;
+    private final transient Filter<? super Path> filter;
+    private transient boolean iterated;
+    private volatile boolean closed;
+
+    /* default */ InMemoryDirectoryStream(final InMemoryPath directory, final DirectoryNode node,
+            final Filter<? super Path> filter) {
+        this.directory = directory;
+        this.node = node;
+        this.filter = filter;
+    }
+
+    @Override
+    public Iterator<Path> iterator() {
+        if (iterated || closed) {
+            throw new IllegalStateException("Directory stream can only be iterated once");
+        }
+        iterated = true;
+        return new Iterator<Path>() {
+
+            private final Deque<Path> pending = new ArrayDeque<>();
+            private String cursor;
+            private boolean exhausted;
+
+            @Override
+            public boolean hasNext() {
+                while (pending.isEmpty() && !exhausted && !closed) {
+                    final List<String> names = node.namesAfter(cursor, BATCH_SIZE);
+                    exhausted = names.size() < BATCH_SIZE;
+                    for (final String name : names) {
+                        cursor = name;
+                        accept(pending, directory.resolve(name));
+                    }
+                }
+                return !pending.isEmpty();
+            }
+
+            @Override
+            public Path next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return pending.removeFirst();
+            }
+
+        };
+    }
+
+    private void accept(final Deque<Path> pending, final Path path) {
+        try {
+            if (filter.accept(path)) {
+                pending.addLast(path);
+            }
+        } catch (IOException e) {
+            throw new DirectoryIteratorException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+}
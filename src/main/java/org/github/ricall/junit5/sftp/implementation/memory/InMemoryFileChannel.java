@@ -0,0 +1,304 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.implementation.memory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.NonReadableChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A channel that reads and writes a file of an {@link InMemoryFileSystem}.
+ */
+@SuppressWarnings("PMD.TooManyMethods")
+final class InMemoryFileChannel extends FileChannel {
+
+    private static final int TRANSFER_BUFFER_SIZE = 64 * 1024;
+
+    private final transient InMemoryFileSystem fileSystem;
+    private final transient InMemoryPath path;
+    private final transient FileNode file;
+    private final transient boolean readable;
+    private final transient boolean writable;
+    private final transient boolean append;
+    private final transient boolean deleteOnClose;
+    private final transient Object positionLock = new Object();
+    private transient long position;
+
+    /* default */ InMemoryFileChannel(final InMemoryFileSystem fileSystem, final InMemoryPath path, final FileNode file,
+            final boolean readable, final boolean writable, final boolean append, final boolean deleteOnClose) {
+        this.fileSystem = fileSystem;
+        this.path = path;
+        this.file = file;
+        this.readable = readable;
+        this.writable = writable;
+        this.append = append;
+        this.deleteOnClose = deleteOnClose;
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!isOpen()) {
+            throw new ClosedChannelException();
+        }
+    }
+
+    private void ensureReadable() throws ClosedChannelException {
+        ensureOpen();
+        if (!readable) {
+            throw new NonReadableChannelException();
+        }
+    }
+
+    private void ensureWritable() throws ClosedChannelException {
+        ensureOpen();
+        if (!writable) {
+            throw new NonWritableChannelException();
+        }
+    }
+
+    @Override
+    public int read(final ByteBuffer target) throws IOException {
+        ensureReadable();
+        synchronized (positionLock) {
+            final int read = read(target, position);
+            if (read > 0) {
+                position += read;
+            }
+            return read;
+        }
+    }
+
+    @Override
+    public long read(final ByteBuffer[] targets, final int offset, final int length) throws IOException {
+        long total = 0;
+        for (int index = offset; index < offset + length; index++) {
+            final int read = read(targets[index]);
+            if (read < 0) {
+                return total == 0 ? -1 : total;
+            }
+            total += read;
+            if (targets[index].hasRemaining()) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public int write(final ByteBuffer source) throws IOException {
+        ensureWritable();
+        synchronized (positionLock) {
+            final int length = source.remaining();
+            if (append) {
+                position = file.append(source);
+            } else {
+                position += file.write(position, source);
+            }
+            return length;
+        }
+    }
+
+    @Override
+    public long write(final ByteBuffer[] sources, final int offset, final int length) throws IOException {
+        long total = 0;
+        for (int index = offset; index < offset + length; index++) {
+            total += write(sources[index]);
+        }
+        return total;
+    }
+
+    @Override
+    public long position() throws IOException {
+        ensureOpen();
+        synchronized (positionLock) {
+            return position;
+        }
+    }
+
+    @Override
+    public FileChannel position(final long newPosition) throws IOException {
+        ensureOpen();
+        if (newPosition < 0) {
+            throw new IllegalArgumentException("Position needs to be at least 0");
+        }
+        synchronized (positionLock) {
+            position = newPosition;
+        }
+        return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+        ensureOpen();
+        return file.size();
+    }
+
+    @Override
+    public FileChannel truncate(final long size) throws IOException {
+        if (size < 0) {
+            throw new IllegalArgumentException("Size needs to be at least 0");
+        }
+        ensureWritable();
+        file.truncate(size);
+        synchronized (positionLock) {
+            position = Math.min(position, size);
+        }
+        return this;
+    }
+
+    @Override
+    public void force(final boolean metaData) throws IOException {
+        ensureOpen();
+    }
+
+    @Override
+    public long transferTo(final long start, final long count, final WritableByteChannel target) throws IOException {
+        ensureReadable();
+        final ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(count, TRANSFER_BUFFER_SIZE));
+        long transferred = 0;
+        while (transferred < count) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), count - transferred));
+            final int read = file.read(start + transferred, buffer);
+            if (read <= 0) {
+                break;
+            }
+            buffer.flip();
+            transferred += target.write(buffer);
+            if (buffer.hasRemaining()) {
+                break;
+            }
+        }
+        return transferred;
+    }
+
+    @Override
+    public long transferFrom(final ReadableByteChannel source, final long start, final long count) throws IOException {
+        ensureWritable();
+        if (start > file.size()) {
+            return 0;
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(count, TRANSFER_BUFFER_SIZE));
+        long transferred = 0;
+        while (transferred < count) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), count - transferred));
+            final int read = source.read(buffer);
+            if (read <= 0) {
+                break;
+            }
+            buffer.flip();
+            transferred += file.write(start + transferred, buffer);
+        }
+        return transferred;
+    }
+
+    @Override
+    public int read(final ByteBuffer target, final long start) throws IOException {
+        if (start < 0) {
+            throw new IllegalArgumentException("Position needs to be at least 0");
+        }
+        ensureReadable();
+        if (!target.hasRemaining()) {
+            return 0;
+        }
+        return file.read(start, target);
+    }
+
+    @Override
+    public int write(final ByteBuffer source, final long start) throws IOException {
+        if (start < 0) {
+            throw new IllegalArgumentException("Position needs to be at least 0");
+        }
+        ensureWritable();
+        return file.write(start, source);
+    }
+
+    @Override
+    public MappedByteBuffer map(final MapMode mode, final long start, final long size) {
+        throw new UnsupportedOperationException("InMemoryFileSystem files can't be memory mapped");
+    }
+
+    @Override
+    public FileLock lock(final long start, final long size, final boolean shared) throws IOException {
+        ensureOpen();
+        if (shared && !readable) {
+            throw new NonReadableChannelException();
+        }
+        if (!shared && !writable) {
+            throw new NonWritableChannelException();
+        }
+        final FileLock lock = new InMemoryFileLock(this, start, size, shared);
+        if (!file.addLock(lock)) {
+            throw new OverlappingFileLockException();
+        }
+        return lock;
+    }
+
+    @Override
+    public FileLock tryLock(final long start, final long size, final boolean shared) throws IOException {
+        return lock(start, size, shared);
+    }
+
+    @Override
+    protected void implCloseChannel() throws IOException {
+        file.removeLocks(this);
+        file.close();
+        if (deleteOnClose) {
+            fileSystem.delete(path, false);
+        }
+    }
+
+    /**
+     * A lock on a region of a file, locks only exclude other channels in the same JVM.
+     */
+    private static final class InMemoryFileLock extends FileLock {
+
+        private volatile boolean valid = true;
+
+        /* default */ InMemoryFileLock(final InMemoryFileChannel channel, final long position, final long size, final boolean shared) {
+            super(channel, position, size, shared);
+        }
+
+        @Override
+        public boolean isValid() {
+            return valid && channel().isOpen();
+        }
+
+        @Override
+        public void release() {
+            valid = false;
+            ((InMemoryFileChannel) channel()).file.removeLock(this);
+        }
+
+    }
+
+}
@@ -0,0 +1,936 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.implementation.memory;
+
+import org.github.ricall.junit5.sftp.ContentGenerator;
+import org.github.ricall.junit5.sftp.GeneratedFiles;
+
+import java.io.IOException;
+import java.nio.file.ClosedFileSystemException;
+import java.nio.file.CopyOption;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemException;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.NotLinkException;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipalLookupService;
+import java.nio.file.spi.FileSystemProvider;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory filesystem whose file contents are kept in pluggable {@link FileContent} storage.
+ * <p>
+ * The tree is built for many sessions that work in different directories at the same time. Paths are resolved and
+ * directories are listed without taking a lock. A change locks only the directories it adds entries to or removes
+ * entries from, using a fixed set of {@link StripedLocks}, after which the paths are resolved again to check that
+ * they still lead to the same directories. Moving a directory is the only change that locks the whole tree, as it
+ * has to check that the directory isn't moved into itself. File contents have a lock per file, and contents that
+ * allow it are read without one, so transfers of different files run in parallel.
+ * </p>
+ * <p>
+ * Every node is owned by a single user and group, which matches the single user view the embedded server gives its
+ * clients. Permissions are recorded and reported but not enforced. Paths that are parsed from a single string are
+ * interned, as the SFTP subsystem parses the same few paths over and over again.
+ * </p>
+ * <p>
+ * The directory that was listed last is remembered, so reading the attributes of its entries while the listing is
+ * sent to a client finds them without walking the tree again. Any change to the tree makes it walk the tree again.
+ * </p>
+ * <p>
+ * Files can be mounted into the tree from a {@link LowerLayer}, they are read from the host or generated until they
+ * are first modified and copied into the filesystem's own storage.
+ * </p>
+ */
+@SuppressWarnings({"PMD.GodClass", "PMD.TooManyMethods", "PMD.ExcessiveImports"})
+public final class InMemoryFileSystem extends FileSystem {
+
+    private static final String SEPARATOR = "/";
+    private static final String CURRENT = ".";
+    private static final String PARENT = "..";
+    private static final int MAX_SYMBOLIC_LINKS = 40;
+    private static final int LOCK_STRIPES = 64;
+    private static final int INTERNED_PATHS = 16 * 1024;
+    private static final Set<String> VIEWS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            NodeAttributes.BASIC, NodeAttributes.OWNER, NodeAttributes.POSIX)));
+    private static final Set<PosixFilePermission> DIRECTORY_PERMISSIONS = PosixFilePermissions.fromString("rwxr-xr-x");
+    private static final Set<PosixFilePermission> FILE_PERMISSIONS = PosixFilePermissions.fromString("rw-r--r--");
+    private static final Set<PosixFilePermission> LINK_PERMISSIONS = PosixFilePermissions.fromString("rwxrwxrwx");
+
+    private final transient String name;
+    private final transient InMemoryFileSystemProvider provider;
+    private final transient Supplier<FileContent> contentFactory;
+    private final transient InMemoryPrincipal owner;
+    private final transient DirectoryNode root;
+    private final transient InMemoryPath rootDirectory;
+    private final transient InMemoryPath defaultDirectory;
+    private final transient InMemoryFileStore fileStore;
+    private final transient ReadWriteLock treeLock = new ReentrantReadWriteLock();
+    private final transient StripedLocks directoryLocks = new StripedLocks(LOCK_STRIPES);
+    private final transient AtomicLong treeVersion = new AtomicLong();
+    private final transient Map<String, InMemoryPath> paths = new ConcurrentHashMap<>();
+    private volatile boolean open = true;
+    private volatile ListedDirectory listedDirectory;
+
+    /**
+     * Create an empty filesystem.
+     *
+     * @param name The name of the filesystem, used as the authority of its URIs
+     * @param contentFactory Creates the storage for every new file
+     * @param owner The user and group that own every file
+     * @param defaultDirectory The absolute directory relative paths are resolved against, it is created if needed
+     */
+    public InMemoryFileSystem(final String name, final Supplier<FileContent> contentFactory, final String owner,
+            final String defaultDirectory) {
+        this.name = name;
+        this.provider = new InMemoryFileSystemProvider(this);
+        this.contentFactory = contentFactory;
+        this.owner = new InMemoryPrincipal(owner);
+        this.root = new DirectoryNode(DIRECTORY_PERMISSIONS, this.owner);
+        this.rootDirectory = InMemoryPath.parse(this, SEPARATOR);
+        this.defaultDirectory = InMemoryPath.parse(this, defaultDirectory);
+        this.fileStore = new InMemoryFileStore(name);
+        if (!this.defaultDirectory.isAbsolute()) {
+            throw new IllegalArgumentException("Default directory " + defaultDirectory + " needs to be absolute");
+        }
+        createDefaultDirectory();
+    }
+
+    private void createDefaultDirectory() {
+        DirectoryNode directory = root;
+        for (final String directoryName : defaultDirectory.names()) {
+            final DirectoryNode child = new DirectoryNode(DIRECTORY_PERMISSIONS, owner);
+            directory.put(directoryName, child);
+            directory = child;
+        }
+    }
+
+    /**
+     * Create an empty filesystem that keeps file contents in off-heap chunks.
+     *
+     * @param name The name of the filesystem
+     * @param chunkPool The pool the chunks are taken from and given back to
+     * @param owner The user and group that own every file
+     * @param defaultDirectory The absolute directory relative paths are resolved against
+     * @return The filesystem
+     */
+    public static InMemoryFileSystem offHeap(final String name, final ChunkPool chunkPool, final String owner,
+            final String defaultDirectory) {
+        return new InMemoryFileSystem(name, () -> new OffHeapContent(chunkPool), owner, defaultDirectory);
+    }
+
+    /**
+     * Create an empty filesystem that keeps file contents in byte arrays on the heap.
+     *
+     * @param name The name of the filesystem
+     * @param owner The user and group that own every file
+     * @param defaultDirectory The absolute directory relative paths are resolved against
+     * @return The filesystem
+     */
+    public static InMemoryFileSystem onHeap(final String name, final String owner, final String defaultDirectory) {
+        return new InMemoryFileSystem(name, HeapContent::new, owner, defaultDirectory);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /* default */ InMemoryPath getDefaultDirectory() {
+        return defaultDirectory;
+    }
+
+    @Override
+    public FileSystemProvider provider() {
+        return provider;
+    }
+
+    /**
+     * Close the filesystem and release the contents of every file that isn't open.
+     */
+    @Override
+    public void close() {
+        final Lock writeLock = treeLock.writeLock();
+        writeLock.lock();
+        try {
+            if (open) {
+                open = false;
+                release(root);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Remove every file and directory apart from the default directory, so the filesystem can be used again.
+     * <p>
+     * The contents of files that aren't open are released straight away, files that are still open are released when
+     * they are closed.
+     * </p>
+     *
+     * @return The number of bytes that were stored in the files that were removed
+     */
+    public long clear() {
+        final Lock writeLock = treeLock.writeLock();
+        writeLock.lock();
+        try {
+            if (!open) {
+                throw new ClosedFileSystemException();
+            }
+            final long released = release(root);
+            for (final String entry : root.names()) {
+                root.remove(entry);
+            }
+            createDefaultDirectory();
+            listedDirectory = null;
+            paths.clear();
+            return released;
+        } finally {
+            treeVersion.incrementAndGet();
+            writeLock.unlock();
+        }
+    }
+
+    private static long release(final DirectoryNode directory) {
+        long released = 0;
+        for (final String entry : directory.names()) {
+            final Node node = directory.get(entry);
+            if (node instanceof FileNode) {
+                final FileNode file = (FileNode) node;
+                released += file.getLowerLayer() == null ? file.size() : 0;
+                file.unlink();
+            } else if (node instanceof DirectoryNode) {
+                released += release((DirectoryNode) node);
+            }
+        }
+        return released;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return false;
+    }
+
+    @Override
+    public String getSeparator() {
+        return SEPARATOR;
+    }
+
+    @Override
+    public Iterable<Path> getRootDirectories() {
+        return Collections.singletonList(rootDirectory);
+    }
+
+    @Override
+    public Iterable<FileStore> getFileStores() {
+        return Collections.singletonList(fileStore);
+    }
+
+    /* default */ FileStore getFileStore() {
+        return fileStore;
+    }
+
+    @Override
+    public Set<String> supportedFileAttributeViews() {
+        return VIEWS;
+    }
+
+    @Override
+    public Path getPath(final String first, final String... more) {
+        if (more.length > 0) {
+            return InMemoryPath.parse(this, first, more);
+        }
+        InMemoryPath path = paths.get(first);
+        if (path == null) {
+            if (paths.size() >= INTERNED_PATHS) {
+                paths.clear();
+            }
+            path = InMemoryPath.parse(this, first);
+            paths.put(first, path);
+        }
+        return path;
+    }
+
+    @Override
+    public PathMatcher getPathMatcher(final String syntaxAndPattern) {
+        final int colon = syntaxAndPattern.indexOf(':');
+        if (colon <= 0) {
+            throw new IllegalArgumentException("Pattern " + syntaxAndPattern + " needs to be in the form syntax:pattern");
+        }
+        final String syntax = syntaxAndPattern.substring(0, colon);
+        final String pattern = syntaxAndPattern.substring(colon + 1);
+        final Pattern regex;
+        if ("glob".equalsIgnoreCase(syntax)) {
+            regex = Pattern.compile(globToRegex(pattern));
+        } else if ("regex".equalsIgnoreCase(syntax)) {
+            regex = Pattern.compile(pattern);
+        } else {
+            throw new UnsupportedOperationException("Syntax " + syntax + " is not supported");
+        }
+        return path -> regex.matcher(path.toString()).matches();
+    }
+
+    @SuppressWarnings({"PMD.AvoidReassigningLoopVariables", "PMD.CyclomaticComplexity"})
+    private static String globToRegex(final String glob) {
+        final StringBuilder regex = new StringBuilder();
+        boolean inGroup = false;
+        for (int index = 0; index < glob.length(); index++) {
+            final char character = glob.charAt(index);
+            if (character == '*' && index + 1 < glob.length() && glob.charAt(index + 1) == '*') {
+                regex.append(".*");
+                index++;
+            } else if (character == '*') {
+                regex.append("[^/]*");
+            } else if (character == '?') {
+                regex.append("[^/]");
+            } else if (character == '{') {
+                regex.append("(?:");
+                inGroup = true;
+            } else if (character == '}' && inGroup) {
+                regex.append(')');
+                inGroup = false;
+            } else if (character == ',' && inGroup) {
+                regex.append('|');
+            } else if (character == '[') {
+                final int end = glob.indexOf(']', index + 1);
+                if (end < 0) {
+                    throw new IllegalArgumentException("Unclosed character class in " + glob);
+                }
+                final String characters = glob.substring(index + 1, end);
+                regex.append('[').append(characters.startsWith("!") ? "^" + characters.substring(1) : characters).append(']');
+                index = end;
+            } else if (character == '\\' && index + 1 < glob.length()) {
+                index++;
+                regex.append(Pattern.quote(String.valueOf(glob.charAt(index))));
+            } else {
+                regex.append(Pattern.quote(String.valueOf(character)));
+            }
+        }
+        return regex.toString();
+    }
+
+    @Override
+    public UserPrincipalLookupService getUserPrincipalLookupService() {
+        return new UserPrincipalLookupService() {
+
+            @Override
+            public InMemoryPrincipal lookupPrincipalByName(final String principal) {
+                return new InMemoryPrincipal(principal);
+            }
+
+            @Override
+            public InMemoryPrincipal lookupPrincipalByGroupName(final String group) {
+                return new InMemoryPrincipal(group);
+            }
+
+        };
+    }
+
+    @Override
+    public WatchService newWatchService() {
+        throw new UnsupportedOperationException("InMemoryFileSystem does not support watch services");
+    }
+
+    /**
+     * Find the node a path refers to.
+     *
+     * @param path The path
+     * @param followLinks {@code true} if a symbolic link at the end of the path should be followed
+     * @return The node
+     * @throws IOException If the path does not exist
+     */
+    /* default */ Node lookup(final InMemoryPath path, final boolean followLinks) throws IOException {
+        final Node listed = lookupListed(path, followLinks);
+        return listed == null ? existing(resolve(path, followLinks), path).node : listed;
+    }
+
+    private Node lookupListed(final InMemoryPath path, final boolean followLinks) {
+        final ListedDirectory listed = listedDirectory;
+        if (!open || listed == null || listed.version != treeVersion.get()) {
+            return null;
+        }
+        final List<String> names = ((InMemoryPath) path.toAbsolutePath()).names();
+        if (!listed.isParentOf(names)) {
+            return null;
+        }
+        final Node node = listed.directory.get(names.get(names.size() - 1));
+        return node == null || followLinks && node.isSymbolicLink() ? null : node;
+    }
+
+    /**
+     * Serve a file from a lower layer without storing its bytes.
+     * <p>
+     * Any file that already exists at the path is replaced, the parent directory needs to exist.
+     * </p>
+     *
+     * @param path The path of the file in this filesystem
+     * @param lowerLayer The host file or generator that supplies the bytes
+     * @throws IOException If the path can't be created
+     */
+    public void mount(final Path path, final LowerLayer lowerLayer) throws IOException {
+        final FileNode file = new FileNode(lowerLayer, contentFactory, FILE_PERMISSIONS, owner);
+        if (lowerLayer.getLastModifiedTime() != null) {
+            file.setTimes(lowerLayer.getLastModifiedTime(), null, null);
+        }
+        final InMemoryPath target = InMemoryPath.toInMemoryPath(path);
+        withDirectoriesLocked(false, resolutions -> {
+            replace(resolutions[0], target, true);
+            add(resolutions[0], file);
+            return null;
+        }, target);
+    }
+
+    /**
+     * Serve every file of a {@link GeneratedFiles} in a directory without storing their bytes.
+     * <p>
+     * The files are added while the directory is locked once, and files that have the same size and generator share their
+     * {@link LowerLayer}. Any files that already exist with the same names are replaced, the directory needs to exist.
+     * </p>
+     *
+     * @param directory The directory the files are added to
+     * @param files The files
+     * @throws IOException If the directory doesn't exist or a file can't be replaced
+     */
+    public void mountAll(final Path directory, final GeneratedFiles files) throws IOException {
+        final InMemoryPath target = InMemoryPath.toInMemoryPath(directory);
+        withDirectoriesLocked(true, resolutions -> {
+            final Node node = existing(resolutions[0], target).node;
+            if (!node.isDirectory()) {
+                throw new NotDirectoryException(target.toString());
+            }
+            final DirectoryNode parent = (DirectoryNode) node;
+            LowerLayer lowerLayer = null;
+            for (int index = 0; index < files.getCount(); index++) {
+                final long size = files.sizeOf(index);
+                final ContentGenerator generator = files.generatorOf(index);
+                if (lowerLayer == null || !lowerLayer.isGeneratedBy(size, generator)) {
+                    lowerLayer = LowerLayer.generated(size, generator);
+                }
+                final String fileName = files.nameOf(index);
+                if (fileName.isEmpty() || fileName.contains(SEPARATOR) || CURRENT.equals(fileName) || PARENT.equals(fileName)) {
+                    throw new FileSystemException(target.toString(), fileName, "Not a valid name for a generated file");
+                }
+                final Resolution resolution = new Resolution(parent, fileName, parent.get(fileName), Collections.emptyList());
+                if (resolution.node != null) {
+                    replace(resolution, target.resolve(fileName), true);
+                }
+                add(resolution, new FileNode(lowerLayer, contentFactory, FILE_PERMISSIONS, owner));
+            }
+            return null;
+        }, target);
+    }
+
+    /**
+     * Get the lower layer a path is still served from.
+     *
+     * @param path The path of the file in this filesystem
+     * @return The lower layer, or {@code null} if the path isn't a mounted file or the file has been modified
+     * @throws IOException If the path doesn't exist
+     */
+    public LowerLayer getLowerLayer(final Path path) throws IOException {
+        final Node node = lookup(InMemoryPath.toInMemoryPath(path), false);
+        return node instanceof FileNode ? ((FileNode) node).getLowerLayer() : null;
+    }
+
+    /* default */ InMemoryPath toRealPath(final InMemoryPath path, final boolean followLinks) throws IOException {
+        final Resolution resolution = existing(resolve(path, followLinks), path);
+        return InMemoryPath.parse(this, SEPARATOR + String.join(SEPARATOR, resolution.names));
+    }
+
+    /* default */ boolean isSameFile(final InMemoryPath path, final InMemoryPath other) throws IOException {
+        return existing(resolve(path, true), path).node == existing(resolve(other, true), other).node;
+    }
+
+    /* default */ void createDirectory(final InMemoryPath path, final FileAttribute<?>... attributes) throws IOException {
+        final DirectoryNode directory = new DirectoryNode(DIRECTORY_PERMISSIONS, owner);
+        NodeAttributes.apply(directory, attributes);
+        withDirectoriesLocked(false, resolutions -> {
+            add(missing(resolutions[0], path), directory);
+            return null;
+        }, path);
+    }
+
+    /* default */ void createSymbolicLink(final InMemoryPath link, final Path target, final FileAttribute<?>... attributes)
+            throws IOException {
+        final LinkNode node = new LinkNode(target.toString(), LINK_PERMISSIONS, owner);
+        NodeAttributes.apply(node, attributes);
+        withDirectoriesLocked(false, resolutions -> {
+            add(missing(resolutions[0], link), node);
+            return null;
+        }, link);
+    }
+
+    /* default */ void createLink(final InMemoryPath link, final InMemoryPath existing) throws IOException {
+        withDirectoriesLocked(false, resolutions -> {
+            final Node node = existing(resolve(existing, true), existing).node;
+            if (!node.isRegularFile()) {
+                throw new FileSystemException(existing.toString(), link.toString(), "Hard links can only be created to files");
+            }
+            add(missing(resolutions[0], link), node);
+            return null;
+        }, link, existing);
+    }
+
+    /* default */ Path readSymbolicLink(final InMemoryPath link) throws IOException {
+        final Node node = lookup(link, false);
+        if (!node.isSymbolicLink()) {
+            throw new NotLinkException(link.toString());
+        }
+        return getPath(((LinkNode) node).getTarget());
+    }
+
+    /* default */ boolean delete(final InMemoryPath path, final boolean required) throws IOException {
+        return withDirectoriesLocked(false, resolutions -> {
+            final Resolution resolution = resolutions[0];
+            if (resolution.node == null) {
+                if (required) {
+                    throw new NoSuchFileException(path.toString());
+                }
+                return false;
+            }
+            remove(resolution, path);
+            return true;
+        }, path);
+    }
+
+    /* default */ void copy(final InMemoryPath source, final InMemoryPath target, final CopyOption... options) throws IOException {
+        final List<CopyOption> copyOptions = Arrays.asList(options);
+        final boolean followLinks = !copyOptions.contains(LinkOption.NOFOLLOW_LINKS);
+        withDirectoriesLocked(false, resolutions -> {
+            final Node node = existing(resolve(source, followLinks), source).node;
+            final Resolution destination = resolutions[0];
+            if (destination.node == node) {
+                return null;
+            }
+            replace(destination, target, copyOptions.contains(StandardCopyOption.REPLACE_EXISTING));
+            final Node copy = copyOf(node);
+            if (copyOptions.contains(StandardCopyOption.COPY_ATTRIBUTES)) {
+                copy.copyAttributes(node);
+            }
+            add(destination, copy);
+            return null;
+        }, target);
+    }
+
+    private Node copyOf(final Node node) {
+        if (node.isDirectory()) {
+            return new DirectoryNode(node.getPermissions(), owner);
+        }
+        if (node.isSymbolicLink()) {
+            return new LinkNode(((LinkNode) node).getTarget(), node.getPermissions(), owner);
+        }
+        final LowerLayer lowerLayer = ((FileNode) node).getLowerLayer();
+        if (lowerLayer != null) {
+            return new FileNode(lowerLayer, contentFactory, node.getPermissions(), owner);
+        }
+        final FileNode copy = new FileNode(contentFactory.get(), node.getPermissions(), owner);
+        ((FileNode) node).copyTo(copy);
+        return copy;
+    }
+
+    /* default */ void move(final InMemoryPath source, final InMemoryPath target, final CopyOption... options) throws IOException {
+        final boolean replaceExisting = Arrays.asList(options).contains(StandardCopyOption.REPLACE_EXISTING);
+        final Node node = resolve(source, false).node;
+        final boolean moved = node != null && !node.isDirectory() && withDirectoriesLocked(false,
+                resolutions -> move(resolutions[0], resolutions[1], source, target, replaceExisting, false), source, target);
+        if (!moved) {
+            withTreeLocked(() -> move(resolve(source, false), resolve(target, false), source, target, replaceExisting, true));
+        }
+    }
+
+    private static boolean move(final Resolution source, final Resolution target, final InMemoryPath sourcePath,
+            final InMemoryPath targetPath, final boolean replaceExisting, final boolean treeLocked) throws IOException {
+        final Resolution from = existing(source, sourcePath);
+        if (from.node.isDirectory() && !treeLocked) {
+            return false;
+        }
+        if (from.parent == null) {
+            throw new FileSystemException(sourcePath.toString(), targetPath.toString(), "The root directory can't be moved");
+        }
+        if (target.node == from.node) {
+            return true;
+        }
+        if (from.node.isDirectory() && target.names.size() > from.names.size()
+                && target.names.subList(0, from.names.size()).equals(from.names)) {
+            throw new FileSystemException(sourcePath.toString(), targetPath.toString(), "A directory can't be moved into itself");
+        }
+        replace(target, targetPath, replaceExisting);
+        from.parent.remove(from.name);
+        target.parent.put(target.name, from.node);
+        return true;
+    }
+
+    /* default */ DirectoryStream<Path> newDirectoryStream(final InMemoryPath directory,
+            final DirectoryStream.Filter<? super Path> filter) throws IOException {
+        final long version = treeVersion.get();
+        final Node found = existing(resolve(directory, true), directory).node;
+        if (!found.isDirectory()) {
+            throw new NotDirectoryException(directory.toString());
+        }
+        final DirectoryNode node = (DirectoryNode) found;
+        listedDirectory = ListedDirectory.of((InMemoryPath) directory.toAbsolutePath(), node, version);
+        return new InMemoryDirectoryStream(directory, node, filter);
+    }
+
+    /* default */ InMemoryFileChannel newFileChannel(final InMemoryPath path, final Set<? extends OpenOption> options,
+            final FileAttribute<?>... attributes) throws IOException {
+        final boolean append = options.contains(StandardOpenOption.APPEND);
+        final boolean write = append || options.contains(StandardOpenOption.WRITE);
+        final boolean read = options.contains(StandardOpenOption.READ) || !write;
+        if (append && (options.contains(StandardOpenOption.READ) || options.contains(StandardOpenOption.TRUNCATE_EXISTING))) {
+            throw new IllegalArgumentException("APPEND can't be combined with READ or TRUNCATE_EXISTING");
+        }
+        final boolean createNew = write && options.contains(StandardOpenOption.CREATE_NEW);
+        final boolean create = createNew || write && options.contains(StandardOpenOption.CREATE);
+        final boolean followLinks = !createNew && !options.contains(LinkOption.NOFOLLOW_LINKS);
+
+        final FileNode file;
+        if (create) {
+            final FileNode created = new FileNode(contentFactory.get(), FILE_PERMISSIONS, owner);
+            NodeAttributes.apply(created, attributes);
+            file = withDirectoriesLocked(followLinks, resolutions -> open(resolutions[0], path, write, created, createNew), path);
+        } else {
+            file = open(resolve(path, followLinks), path, write, null, false);
+        }
+        if (write && options.contains(StandardOpenOption.TRUNCATE_EXISTING)) {
+            file.truncate(0);
+        }
+        return new InMemoryFileChannel(this, path, file, read, write, append, options.contains(StandardOpenOption.DELETE_ON_CLOSE));
+    }
+
+    private FileNode open(final Resolution resolution, final InMemoryPath path, final boolean write, final FileNode created,
+            final boolean createNew) throws IOException {
+        final FileNode file;
+        if (resolution.node == null) {
+            if (created == null) {
+                throw new NoSuchFileException(path.toString());
+            }
+            add(resolution, created);
+            file = created;
+        } else if (createNew) {
+            throw new FileAlreadyExistsException(path.toString());
+        } else if (resolution.node.isDirectory()) {
+            if (write) {
+                throw new FileSystemException(path.toString(), null, "Is a directory");
+            }
+            file = new FileNode(contentFactory.get(), FILE_PERMISSIONS, owner);
+        } else if (resolution.node.isSymbolicLink()) {
+            throw new FileSystemException(path.toString(), null, "Too many levels of symbolic links");
+        } else {
+            file = (FileNode) resolution.node;
+        }
+        if (!file.open()) {
+            throw new NoSuchFileException(path.toString());
+        }
+        return file;
+    }
+
+    private Resolution resolve(final InMemoryPath path, final boolean followLinks) throws IOException {
+        if (!open) {
+            throw new ClosedFileSystemException();
+        }
+        final Deque<String> pending = new ArrayDeque<>(((InMemoryPath) path.toAbsolutePath()).names());
+        final Deque<DirectoryNode> parents = new ArrayDeque<>();
+        final List<String> names = new ArrayList<>();
+        Node current = root;
+        int links = 0;
+        while (!pending.isEmpty()) {
+            final String entry = pending.removeFirst();
+            if (PARENT.equals(entry) && !parents.isEmpty()) {
+                current = parents.pop();
+                names.remove(names.size() - 1);
+            } else if (!CURRENT.equals(entry) && !PARENT.equals(entry)) {
+                if (!current.isDirectory()) {
+                    throw new NotDirectoryException(path.toString());
+                }
+                final DirectoryNode directory = (DirectoryNode) current;
+                final Node node = directory.get(entry);
+                if (node == null) {
+                    if (!pending.isEmpty()) {
+                        throw new NoSuchFileException(path.toString());
+                    }
+                    names.add(entry);
+                    return new Resolution(directory, entry, null, names);
+                }
+                if (node.isSymbolicLink() && (followLinks || !pending.isEmpty())) {
+                    links++;
+                    if (links > MAX_SYMBOLIC_LINKS) {
+                        throw new FileSystemException(path.toString(), null, "Too many levels of symbolic links");
+                    }
+                    final InMemoryPath target = InMemoryPath.parse(this, ((LinkNode) node).getTarget());
+                    if (target.isAbsolute()) {
+                        current = root;
+                        parents.clear();
+                        names.clear();
+                    }
+                    final List<String> targetNames = target.names();
+                    for (int index = targetNames.size() - 1; index >= 0; index--) {
+                        pending.addFirst(targetNames.get(index));
+                    }
+                } else {
+                    parents.push(directory);
+                    names.add(entry);
+                    current = node;
+                }
+            }
+        }
+        return new Resolution(parents.peek(), names.isEmpty() ? null : names.get(names.size() - 1), current, names);
+    }
+
+    private static Resolution existing(final Resolution resolution, final InMemoryPath path) throws NoSuchFileException {
+        if (resolution.node == null) {
+            throw new NoSuchFileException(path.toString());
+        }
+        return resolution;
+    }
+
+    private static Resolution missing(final Resolution resolution, final InMemoryPath path) throws FileAlreadyExistsException {
+        if (resolution.node != null) {
+            throw new FileAlreadyExistsException(path.toString());
+        }
+        return resolution;
+    }
+
+    private static void add(final Resolution resolution, final Node node) {
+        resolution.parent.put(resolution.name, node);
+        if (node instanceof FileNode) {
+            ((FileNode) node).link();
+        }
+    }
+
+    private static void remove(final Resolution resolution, final Path path) throws IOException {
+        if (resolution.parent == null) {
+            throw new FileSystemException(path.toString(), null, "The root directory can't be removed");
+        }
+        if (resolution.node.isDirectory() && !((DirectoryNode) resolution.node).isEmpty()) {
+            throw new DirectoryNotEmptyException(path.toString());
+        }
+        resolution.parent.remove(resolution.name);
+        if (resolution.node instanceof FileNode) {
+            ((FileNode) resolution.node).unlink();
+        }
+    }
+
+    private static void replace(final Resolution destination, final Path target, final boolean replaceExisting) throws IOException {
+        if (destination.node != null) {
+            if (!replaceExisting) {
+                throw new FileAlreadyExistsException(target.toString());
+            }
+            remove(destination, target);
+        } else if (destination.parent == null) {
+            throw new FileSystemException(target.toString(), null, "The root directory can't be replaced");
+        }
+    }
+
+    /**
+     * Run a change while the directories it changes are locked.
+     * <p>
+     * The paths are resolved without a lock, then the directories that contain them, and the paths themselves if they
+     * are directories, are locked and the paths are resolved again. If they lead to other directories by then the
+     * directories they lead to now are locked instead.
+     * </p>
+     *
+     * @param followLinks {@code true} if symbolic links at the end of the paths should be followed
+     * @param operation The change, given the resolution of each path in order
+     * @param targets The paths the change is made to
+     * @param <T> The result of the change
+     * @return The result of the change
+     * @throws IOException If a path can't be resolved or the change fails
+     */
+    private <T> T withDirectoriesLocked(final boolean followLinks, final DirectoryOperation<T> operation,
+            final InMemoryPath... targets) throws IOException {
+        final Lock readLock = treeLock.readLock();
+        readLock.lock();
+        try {
+            List<DirectoryNode> directories = directoriesOf(resolveAll(targets, followLinks));
+            while (true) {
+                final int[] stripes = directoryLocks.lock(directories);
+                try {
+                    final Resolution[] resolutions = resolveAll(targets, followLinks);
+                    final List<DirectoryNode> locked = directories;
+                    directories = directoriesOf(resolutions);
+                    if (isSame(directories, locked)) {
+                        return operation.apply(resolutions);
+                    }
+                } finally {
+                    directoryLocks.unlock(stripes);
+                }
+            }
+        } finally {
+            treeVersion.incrementAndGet();
+            readLock.unlock();
+        }
+    }
+
+    private <T> T withTreeLocked(final TreeOperation<T> operation) throws IOException {
+        final Lock writeLock = treeLock.writeLock();
+        writeLock.lock();
+        try {
+            return operation.apply();
+        } finally {
+            treeVersion.incrementAndGet();
+            writeLock.unlock();
+        }
+    }
+
+    private Resolution[] resolveAll(final InMemoryPath[] targets, final boolean followLinks) throws IOException {
+        final Resolution[] resolutions = new Resolution[targets.length];
+        for (int index = 0; index < targets.length; index++) {
+            resolutions[index] = resolve(targets[index], followLinks);
+        }
+        return resolutions;
+    }
+
+    private static List<DirectoryNode> directoriesOf(final Resolution... resolutions) {
+        final List<DirectoryNode> directories = new ArrayList<>(2 * resolutions.length);
+        for (final Resolution resolution : resolutions) {
+            if (resolution.parent != null) {
+                directories.add(resolution.parent);
+            }
+            if (resolution.node instanceof DirectoryNode) {
+                directories.add((DirectoryNode) resolution.node);
+            }
+        }
+        return directories;
+    }
+
+    private static boolean isSame(final List<DirectoryNode> directories, final List<DirectoryNode> other) {
+        if (directories.size() != other.size()) {
+            return false;
+        }
+        for (int index = 0; index < directories.size(); index++) {
+            if (directories.get(index) != other.get(index)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * An operation on the tree that runs while the whole tree is locked.
+     *
+     * @param <T> The result of the operation
+     */
+    @FunctionalInterface
+    private interface TreeOperation<T> {
+
+        T apply() throws IOException;
+
+    }
+
+    /**
+     * A change to some directories that runs while they are locked.
+     *
+     * @param <T> The result of the change
+     */
+    @FunctionalInterface
+    private interface DirectoryOperation<T> {
+
+        T apply(Resolution... resolutions) throws IOException;
+
+    }
+
+    /**
+     * A directory that was listed, along with the version of the tree it was found in.
+     */
+    private static final class ListedDirectory {
+
+        private final transient List<String> names;
+        private final transient DirectoryNode directory;
+        private final transient long version;
+
+        private ListedDirectory(final List<String> names, final DirectoryNode directory, final long version) {
+            this.names = names;
+            this.directory = directory;
+            this.version = version;
+        }
+
+        /* default */ static ListedDirectory of(final InMemoryPath path, final DirectoryNode directory, final long version) {
+            return isNormal(path.names()) ? new ListedDirectory(path.names(), directory, version) : null;
+        }
+
+        private static boolean isNormal(final List<String> names) {
+            return !names.contains(CURRENT) && !names.contains(PARENT);
+        }
+
+        /* default */ boolean isParentOf(final List<String> path) {
+            return path.size() == names.size() + 1 && isNormal(path.subList(names.size(), path.size()))
+                    && path.subList(0, names.size()).equals(names);
+        }
+
+    }
+
+    /**
+     * The outcome of walking a path through the tree.
+     */
+    private static final class Resolution {
+
+        private final transient DirectoryNode parent;
+        private final transient String name;
+        private final transient Node node;
+        private final transient List<String> names;
+
+        /* default */ Resolution(final DirectoryNode parent, final String name, final Node node, final List<String> names) {
+            this.parent = parent;
+            this.name = name;
+            this.node = node;
+            this.names = names;
+        }
+
+    }
+
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.implementation.memory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.AccessMode;
+import java.nio.file.CopyOption;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.LinkOption;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.FileAttributeView;
+import java.nio.file.attribute.FileOwnerAttributeView;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.spi.FileSystemProvider;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+
+import static org.github.ricall.junit5.sftp.implementation.memory.InMemoryPath.toInMemoryPath;
+
+/**
+ * The provider of a single {@link InMemoryFileSystem}.
+ * <p>
+ * The provider isn't installed, filesystems are created directly and every filesystem has its own provider.
+ * </p>
+ */
+@SuppressWarnings("PMD.TooManyMethods")
+final class InMemoryFileSystemProvider extends FileSystemProvider {
+
+    private static final String SCHEME = "memory";
+
+    private final transient InMemoryFileSystem fileSystem;
+
+    /* default */ InMemoryFileSystemProvider(final InMemoryFileSystem fileSystem) {
+        this.fileSystem = fileSystem;
+    }
+
+    /* default */ static boolean followLinks(final LinkOption... options) {
+        return !Arrays.asList(options).contains(LinkOption.NOFOLLOW_LINKS);
+    }
+
+    private static InMemoryFileSystem fileSystemOf(final InMemoryPath path) {
+        return path.getFileSystem();
+    }
+
+    @Override
+    public String getScheme() {
+        return SCHEME;
+    }
+
+    @Override
+    public FileSystem newFileSystem(final URI uri, final Map<String, ?> env) {
+        throw new UnsupportedOperationException("Create an InMemoryFileSystem directly");
+    }
+
+    @Override
+    public FileSystem getFileSystem(final URI uri) {
+        if (fileSystem.getName().equals(uri.getAuthority())) {
+            return fileSystem;
+        }
+        throw new FileSystemNotFoundException(uri.toString());
+    }
+
+    @Override
+    public Path getPath(final URI uri) {
+        return getFileSystem(uri).getPath(uri.getPath());
+    }
+
+    @Override
+    public SeekableByteChannel newByteChannel(final Path path, final Set<? extends OpenOption> options, final FileAttribute<?>... attrs)
+            throws IOException {
+        return newFileChannel(path, options, attrs);
+    }
+
+    @Override
+    public FileChannel newFileChannel(final Path path, final Set<? extends OpenOption> options, final FileAttribute<?>... attrs)
+            throws IOException {
+        final InMemoryPath file = toInMemoryPath(path);
+        return fileSystemOf(file).newFileChannel(file, options, attrs);
+    }
+
+    @Override
+    public DirectoryStream<Path> newDirectoryStream(final Path dir, final DirectoryStream.Filter<? super Path> filter) throws IOException {
+        final InMemoryPath directory = toInMemoryPath(dir);
+        return fileSystemOf(directory).newDirectoryStream(directory, filter);
+    }
+
+    @Override
+    public void createDirectory(final Path dir, final FileAttribute<?>... attrs) throws IOException {
+        final InMemoryPath directory = toInMemoryPath(dir);
+        fileSystemOf(directory).createDirectory(directory, attrs);
+    }
+
+    @Override
+    public void createSymbolicLink(final Path link, final Path target, final FileAttribute<?>... attrs) throws IOException {
+        final InMemoryPath symbolicLink = toInMemoryPath(link);
+        fileSystemOf(symbolicLink).createSymbolicLink(symbolicLink, target, attrs);
+    }
+
+    @Override
+    public void createLink(final Path link, final Path existing) throws IOException {
+        final InMemoryPath hardLink = toInMemoryPath(link);
+        fileSystemOf(hardLink).createLink(hardLink, toInMemoryPath(existing));
+    }
+
+    @Override
+    public Path readSymbolicLink(final Path link) throws IOException {
+        final InMemoryPath symbolicLink = toInMemoryPath(link);
+        return fileSystemOf(symbolicLink).readSymbolicLink(symbolicLink);
+    }
+
+    @Override
+    public void delete(final Path path) throws IOException {
+        final InMemoryPath file = toInMemoryPath(path);
+        fileSystemOf(file).delete(file, true);
+    }
+
+    @Override
+    public boolean deleteIfExists(final Path path) throws IOException {
+        final InMemoryPath file = toInMemoryPath(path);
+        return fileSystemOf(file).delete(file, false);
+    }
+
+    @Override
+    public void copy(final Path source, final Path target, final CopyOption... options) throws IOException {
+        final InMemoryPath from = toInMemoryPath(source);
+        fileSystemOf(from).copy(from, sameFileSystem(from, target), options);
+    }
+
+    @Override
+    public void move(final Path source, final Path target, final CopyOption... options) throws IOException {
+        final InMemoryPath from = toInMemoryPath(source);
+        fileSystemOf(from).move(from, sameFileSystem(from, target), options);
+    }
+
+    private static InMemoryPath sameFileSystem(final InMemoryPath source, final Path target) throws IOException {
+        final InMemoryPath path = toInMemoryPath(target);
+        if (path.getFileSystem() != source.getFileSystem()) {
+            throw new IOException("Unable to copy " + source + " to a different InMemoryFileSystem");
+        }
+        return path;
+    }
+
+    @Override
+    public boolean isSameFile(final Path path, final Path other) throws IOException {
+        if (path.equals(other)) {
+            return true;
+        }
+        if (!(path instanceof InMemoryPath) || !(other instanceof InMemoryPath) || path.getFileSystem() != other.getFileSystem()) {
+            return false;
+        }
+        final InMemoryPath file = (InMemoryPath) path;
+        return fileSystemOf(file).isSameFile(file, (InMemoryPath) other);
+    }
+
+    @Override
+    public boolean isHidden(final Path path) {
+        final Path name = toInMemoryPath(path).getFileName();
+        return name != null && name.toString().startsWith(".");
+    }
+
+    @Override
+    public FileStore getFileStore(final Path path) throws IOException {
+        final InMemoryPath file = toInMemoryPath(path);
+        fileSystemOf(file).lookup(file, true);
+        return fileSystemOf(file).getFileStore();
+    }
+
+    @Override
+    public void checkAccess(final Path path, final AccessMode... modes) throws IOException {
+        final InMemoryPath file = toInMemoryPath(path);
+        fileSystemOf(file).lookup(file, true);
+    }
+
+    @Override
+    public <V extends FileAttributeView> V getFileAttributeView(final Path path, final Class<V> type, final LinkOption... options) {
+        final String view;
+        if (type == BasicFileAttributeView.class) {
+            view = NodeAttributes.BASIC;
+        } else if (type == FileOwnerAttributeView.class) {
+            view = NodeAttributes.OWNER;
+        } else if (type == PosixFileAttributeView.class) {
+            view = NodeAttributes.POSIX;
+        } else {
+            return null;
+        }
+        return type.cast(new NodeAttributeView(toInMemoryPath(path), followLinks(options), view));
+    }
+
+    @Override
+    public <A extends BasicFileAttributes> A readAttributes(final Path path, final Class<A> type, final LinkOption... options)
+            throws IOException {
+        if (type != BasicFileAttributes.class && type != PosixFileAttributes.class) {
+            throw new UnsupportedOperationException("Attributes " + type.getName() + " are not supported");
+        }
+        final InMemoryPath file = toInMemoryPath(path);
+        return type.cast(new NodeAttributes(fileSystemOf(file).lookup(file, followLinks(options))));
+    }
+
+    @Override
+    public Map<String, Object> readAttributes(final Path path, final String attributes, final LinkOption... options) throws IOException {
+        final InMemoryPath file = toInMemoryPath(path);
+        return NodeAttributes.read(fileSystemOf(file).lookup(file, followLinks(options)), attributes);
+    }
+
+    @Override
+    public void setAttribute(final Path path, final String attribute, final Object value, final LinkOption... options)
+            throws IOException {
+        final InMemoryPath file = toInMemoryPath(path);
+        NodeAttributes.write(fileSystemOf(file).lookup(file, followLinks(options)), attribute, value);
+    }
+
+}
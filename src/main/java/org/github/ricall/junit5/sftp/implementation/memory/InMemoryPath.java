@@ -0,0 +1,315 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.implementation.memory;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.ProviderMismatchException;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A path in an {@link InMemoryFileSystem}, made up of an optional root and a list of names.
+ */
+@SuppressWarnings("PMD.TooManyMethods")
+final class InMemoryPath implements Path {
+
+    private static final String SEPARATOR = "/";
+    private static final String CURRENT = ".";
+    private static final String PARENT = "..";
+
+    private final transient InMemoryFileSystem fileSystem;
+    private final transient boolean absolute;
+    private final transient List<String> names;
+
+    private InMemoryPath(final InMemoryFileSystem fileSystem, final boolean absolute, final List<String> names) {
+        this.fileSystem = fileSystem;
+        this.absolute = absolute;
+        this.names = names;
+    }
+
+    /**
+     * Parse a path, empty names are ignored.
+     *
+     * @param fileSystem The filesystem the path belongs to
+     * @param first The first part of the path
+     * @param more The remaining parts of the path
+     * @return The path
+     */
+    /* default */ static InMemoryPath parse(final InMemoryFileSystem fileSystem, final String first, final String... more) {
+        final List<String> names = new ArrayList<>();
+        addNames(names, first);
+        for (final String part : more) {
+            addNames(names, part);
+        }
+        return new InMemoryPath(fileSystem, first.startsWith(SEPARATOR), names);
+    }
+
+    private static void addNames(final List<String> names, final String part) {
+        for (final String name : part.split(SEPARATOR)) {
+            if (!name.isEmpty()) {
+                names.add(name);
+            }
+        }
+    }
+
+    /* default */ static InMemoryPath toInMemoryPath(final Path path) {
+        if (path instanceof InMemoryPath) {
+            return (InMemoryPath) path;
+        }
+        throw new ProviderMismatchException("Path " + path + " does not belong to an InMemoryFileSystem");
+    }
+
+    /* default */ List<String> names() {
+        return names;
+    }
+
+    @Override
+    public InMemoryFileSystem getFileSystem() {
+        return fileSystem;
+    }
+
+    @Override
+    public boolean isAbsolute() {
+        return absolute;
+    }
+
+    @Override
+    public Path getRoot() {
+        return absolute ? new InMemoryPath(fileSystem, true, new ArrayList<>()) : null;
+    }
+
+    @Override
+    public Path getFileName() {
+        if (names.isEmpty()) {
+            return null;
+        }
+        return new InMemoryPath(fileSystem, false, names.subList(names.size() - 1, names.size()));
+    }
+
+    @Override
+    public Path getParent() {
+        if (names.isEmpty() || names.size() == 1 && !absolute) {
+            return null;
+        }
+        return new InMemoryPath(fileSystem, absolute, names.subList(0, names.size() - 1));
+    }
+
+    @Override
+    public int getNameCount() {
+        return names.size();
+    }
+
+    @Override
+    public Path getName(final int index) {
+        return subpath(index, index + 1);
+    }
+
+    @Override
+    public Path subpath(final int beginIndex, final int endIndex) {
+        if (beginIndex < 0 || endIndex > names.size() || beginIndex >= endIndex) {
+            throw new IllegalArgumentException("Invalid subpath " + beginIndex + "-" + endIndex + " of " + this);
+        }
+        return new InMemoryPath(fileSystem, false, names.subList(beginIndex, endIndex));
+    }
+
+    @Override
+    public boolean startsWith(final Path other) {
+        if (!(other instanceof InMemoryPath)) {
+            return false;
+        }
+        final InMemoryPath path = (InMemoryPath) other;
+        return path.fileSystem == fileSystem
+                && path.absolute == absolute
+                && path.names.size() <= names.size()
+                && names.subList(0, path.names.size()).equals(path.names);
+    }
+
+    @Override
+    public boolean startsWith(final String other) {
+        return startsWith(fileSystem.getPath(other));
+    }
+
+    @Override
+    public boolean endsWith(final Path other) {
+        if (!(other instanceof InMemoryPath)) {
+            return false;
+        }
+        final InMemoryPath path = (InMemoryPath) other;
+        if (path.absolute) {
+            return equals(path);
+        }
+        return path.fileSystem == fileSystem
+                && path.names.size() <= names.size()
+                && names.subList(names.size() - path.names.size(), names.size()).equals(path.names);
+    }
+
+    @Override
+    public boolean endsWith(final String other) {
+        return endsWith(fileSystem.getPath(other));
+    }
+
+    @Override
+    public Path normalize() {
+        final List<String> normalized = new ArrayList<>(names.size());
+        for (final String name : names) {
+            if (PARENT.equals(name)) {
+                if (!normalized.isEmpty() && !PARENT.equals(normalized.get(normalized.size() - 1))) {
+                    normalized.remove(normalized.size() - 1);
+                } else if (!absolute) {
+                    normalized.add(name);
+                }
+            } else if (!CURRENT.equals(name)) {
+                normalized.add(name);
+            }
+        }
+        return new InMemoryPath(fileSystem, absolute, normalized);
+    }
+
+    @Override
+    public Path resolve(final Path other) {
+        final InMemoryPath path = toInMemoryPath(other);
+        if (path.absolute) {
+            return path;
+        }
+        if (path.names.isEmpty()) {
+            return this;
+        }
+        final List<String> resolved = new ArrayList<>(names);
+        resolved.addAll(path.names);
+        return new InMemoryPath(fileSystem, absolute, resolved);
+    }
+
+    @Override
+    public Path resolve(final String other) {
+        return resolve(fileSystem.getPath(other));
+    }
+
+    @Override
+    public Path resolveSibling(final Path other) {
+        final Path parent = getParent();
+        return parent == null ? other : parent.resolve(other);
+    }
+
+    @Override
+    public Path resolveSibling(final String other) {
+        return resolveSibling(fileSystem.getPath(other));
+    }
+
+    @Override
+    public Path relativize(final Path other) {
+        final InMemoryPath path = toInMemoryPath(other);
+        if (path.absolute != absolute) {
+            throw new IllegalArgumentException("Cannot relativize " + other + " against " + this);
+        }
+        int common = 0;
+        while (common < names.size() && common < path.names.size() && names.get(common).equals(path.names.get(common))) {
+            common++;
+        }
+        final List<String> relative = new ArrayList<>();
+        for (int index = common; index < names.size(); index++) {
+            relative.add(PARENT);
+        }
+        relative.addAll(path.names.subList(common, path.names.size()));
+        return new InMemoryPath(fileSystem, false, relative);
+    }
+
+    @Override
+    public URI toUri() {
+        try {
+            return new URI(fileSystem.provider().getScheme(), fileSystem.getName(), toAbsolutePath().toString(), null);
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException("Unable to create URI for " + this, e);
+        }
+    }
+
+    @Override
+    public Path toAbsolutePath() {
+        if (absolute) {
+            return this;
+        }
+        return fileSystem.getDefaultDirectory().resolve(this);
+    }
+
+    @Override
+    public Path toRealPath(final LinkOption... options) throws IOException {
+        return fileSystem.toRealPath(this, InMemoryFileSystemProvider.followLinks(options));
+    }
+
+    @Override
+    public File toFile() {
+        throw new UnsupportedOperationException("InMemoryFileSystem paths can't be converted to files");
+    }
+
+    @Override
+    public WatchKey register(final WatchService watcher, final WatchEvent.Kind<?>[] events, final WatchEvent.Modifier... modifiers) {
+        throw new UnsupportedOperationException("InMemoryFileSystem does not support watch services");
+    }
+
+    @Override
+    public WatchKey register(final WatchService watcher, final WatchEvent.Kind<?>... events) {
+        return register(watcher, events, new WatchEvent.Modifier[0]);
+    }
+
+    @Override
+    public Iterator<Path> iterator() {
+        final List<Path> elements = new ArrayList<>(names.size());
+        for (int index = 0; index < names.size(); index++) {
+            elements.add(getName(index));
+        }
+        return elements.iterator();
+    }
+
+    @Override
+    public int compareTo(final Path other) {
+        return toString().compareTo(other.toString());
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        return other instanceof InMemoryPath
+                && ((InMemoryPath) other).fileSystem == fileSystem
+                && toString().equals(other.toString());
+    }
+
+    @Override
+    public int hashCode() {
+        return toString().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        final String joined = String.join(SEPARATOR, names);
+        return absolute ? SEPARATOR + joined : joined;
+    }
+
+}
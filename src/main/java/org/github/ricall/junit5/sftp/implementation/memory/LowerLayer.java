@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.implementation.memory;
+
+import org.github.ricall.junit5.sftp.ContentGenerator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+/**
+ * The read only source of a file that is served without storing its bytes.
+ * <p>
+ * A file is either mounted from the host, generated or held in a byte array. It is served from its lower layer until it
+ * is first modified, then its bytes are copied into the filesystem's own storage.
+ * </p>
+ */
+public final class LowerLayer {
+
+    private final transient Path source;
+    private final transient ContentGenerator generator;
+    private final transient long size;
+    private final transient FileTime lastModifiedTime;
+
+    private LowerLayer(final Path source, final ContentGenerator generator, final long size, final FileTime lastModifiedTime) {
+        this.source = source;
+        this.generator = generator;
+        this.size = size;
+        this.lastModifiedTime = lastModifiedTime;
+    }
+
+    /**
+     * Serve a file on the host, the file is expected not to change.
+     *
+     * @param source The file on the host
+     * @return The lower layer
+     * @throws IOException If the size of the file can't be read
+     */
+    public static LowerLayer hostFile(final Path source) throws IOException {
+        return new LowerLayer(source, null, Files.size(source), Files.getLastModifiedTime(source));
+    }
+
+    /**
+     * Serve generated bytes.
+     *
+     * @param size The size of the file in bytes
+     * @param generator Computes the bytes of the file
+     * @return The lower layer
+     */
+    public static LowerLayer generated(final long size, final ContentGenerator generator) {
+        if (size < 0) {
+            throw new IllegalArgumentException("The size can't be negative");
+        }
+        return new LowerLayer(null, generator, size, null);
+    }
+
+    /**
+     * Serve bytes that are already held on the heap.
+     *
+     * @param bytes The bytes of the file, they are not copied so they must not be changed afterwards
+     * @return The lower layer
+     */
+    public static LowerLayer bytes(final byte[] bytes) {
+        return new LowerLayer(null, (offset, target) -> target.put(bytes, (int) offset, target.remaining()), bytes.length, null);
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Get the time the file was last modified.
+     *
+     * @return The modification time of the host file, or {@code null} for generated files
+     */
+    public FileTime getLastModifiedTime() {
+        return lastModifiedTime;
+    }
+
+    /* default */ boolean isGeneratedBy(final long size, final ContentGenerator generator) {
+        return source == null && this.size == size && this.generator == generator;
+    }
+
+    /* default */ FileContent newContent() {
+        return source == null ? new GeneratedContent(size, generator) : new MountedContent(source, size);
+    }
+
+    @Override
+    public String toString() {
+        return source == null ? "LowerLayer(generated " + size + " bytes)" : "LowerLayer(" + source + ")";
+    }
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.implementation.memory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read only file content that is served from a file on the host.
+ * <p>
+ * This is the lower layer of a mounted directory. Reads are positional reads on a channel of the host file, the file
+ * that owns the content copies it into writable storage before it is first modified. The host channel is only open
+ * while channels of the file or reads are using it, so mounted files that aren't being read don't hold a file
+ * descriptor.
+ * </p>
+ */
+final class MountedContent implements FileContent {
+
+    private final transient Path source;
+    private final transient long size;
+    private transient FileChannel channel;
+    private transient int users;
+
+    /* default */ MountedContent(final Path source, final long size) {
+        this.source = source;
+        this.size = size;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public int read(final long position, final ByteBuffer target) {
+        if (position >= size) {
+            return -1;
+        }
+        final ByteBuffer limited = target.duplicate();
+        limited.limit((int) Math.min(target.limit(), target.position() + size - position));
+        try {
+            final int read = acquire().read(limited, position);
+            if (read > 0) {
+                target.position(target.position() + read);
+            }
+            return read;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + source, e);
+        } finally {
+            closed();
+        }
+    }
+
+    private synchronized FileChannel acquire() throws IOException {
+        users++;
+        if (channel == null) {
+            channel = FileChannel.open(source, StandardOpenOption.READ);
+        }
+        return channel;
+    }
+
+    @Override
+    public synchronized void opened() {
+        users++;
+    }
+
+    @Override
+    public synchronized void closed() {
+        users = Math.max(0, users - 1);
+        if (users == 0) {
+            release();
+        }
+    }
+
+    /* default */ synchronized boolean isOpen() {
+        return channel != null;
+    }
+
+    @Override
+    public int write(final long position, final ByteBuffer source) {
+        throw new UnsupportedOperationException("Mounted files are read only");
+    }
+
+    @Override
+    public void truncate(final long newSize) {
+        throw new UnsupportedOperationException("Mounted files are read only");
+    }
+
+    @Override
+    public synchronized void release() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to close " + source, e);
+            }
+            channel = null;
+        }
+    }
+
+}
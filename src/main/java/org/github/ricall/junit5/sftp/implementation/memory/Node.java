@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.implementation.memory;
+
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.Collections;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An entry in an {@link InMemoryFileSystem} along with its attributes.
+ * <p>
+ * The attributes are volatile so they can be read without holding the filesystem lock.
+ * </p>
+ */
+abstract class Node {
+
+    private static final AtomicLong FILE_KEYS = new AtomicLong();
+    private static final PosixFilePermission[] PERMISSIONS = PosixFilePermission.values();
+    private static final List<Set<PosixFilePermission>> SHARED_PERMISSIONS = sharedPermissions();
+
+    private final transient long fileKey = FILE_KEYS.incrementAndGet();
+    private volatile FileTime creationTime;
+    private volatile FileTime lastModifiedTime;
+    private volatile FileTime lastAccessTime;
+    private volatile Set<PosixFilePermission> permissions;
+    private volatile InMemoryPrincipal owner;
+    private volatile InMemoryPrincipal group;
+
+    /* default */ Node(final Set<PosixFilePermission> permissions, final InMemoryPrincipal owner) {
+        final FileTime now = now();
+        this.creationTime = now;
+        this.lastModifiedTime = now;
+        this.lastAccessTime = now;
+        this.owner = owner;
+        this.group = owner;
+        setPermissions(permissions);
+    }
+
+    private static List<Set<PosixFilePermission>> sharedPermissions() {
+        final List<Set<PosixFilePermission>> shared = new ArrayList<>(1 << PERMISSIONS.length);
+        for (int mask = 0; mask < 1 << PERMISSIONS.length; mask++) {
+            final Set<PosixFilePermission> permissions = EnumSet.noneOf(PosixFilePermission.class);
+            for (final PosixFilePermission permission : PERMISSIONS) {
+                if ((mask & 1 << permission.ordinal()) != 0) {
+                    permissions.add(permission);
+                }
+            }
+            shared.add(Collections.unmodifiableSet(permissions));
+        }
+        return Collections.unmodifiableList(shared);
+    }
+
+    /* default */ static FileTime now() {
+        return FileTime.fromMillis(System.currentTimeMillis());
+    }
+
+    public abstract boolean isDirectory();
+
+    public abstract boolean isRegularFile();
+
+    public abstract boolean isSymbolicLink();
+
+    public abstract long size();
+
+    public Object fileKey() {
+        return fileKey;
+    }
+
+    public FileTime getCreationTime() {
+        return creationTime;
+    }
+
+    public FileTime getLastModifiedTime() {
+        return lastModifiedTime;
+    }
+
+    public FileTime getLastAccessTime() {
+        return lastAccessTime;
+    }
+
+    /**
+     * Update the times of the node, times that are {@code null} are left unchanged.
+     *
+     * @param lastModified The new last modified time
+     * @param lastAccess The new last access time
+     * @param create The new creation time
+     */
+    public void setTimes(final FileTime lastModified, final FileTime lastAccess, final FileTime create) {
+        if (lastModified != null) {
+            this.lastModifiedTime = lastModified;
+        }
+        if (lastAccess != null) {
+            this.lastAccessTime = lastAccess;
+        }
+        if (create != null) {
+            this.creationTime = create;
+        }
+    }
+
+    /**
+     * Mark the node as modified now.
+     */
+    public void modified() {
+        this.lastModifiedTime = now();
+    }
+
+    public Set<PosixFilePermission> getPermissions() {
+        return permissions;
+    }
+
+    /**
+     * Set the permissions, nodes with the same permissions share a single unmodifiable set.
+     *
+     * @param permissions The new permissions
+     */
+    public final void setPermissions(final Set<PosixFilePermission> permissions) {
+        int mask = 0;
+        for (final PosixFilePermission permission : permissions) {
+            mask |= 1 << permission.ordinal();
+        }
+        this.permissions = SHARED_PERMISSIONS.get(mask);
+    }
+
+    public InMemoryPrincipal getOwner() {
+        return owner;
+    }
+
+    public void setOwner(final InMemoryPrincipal owner) {
+        this.owner = owner;
+    }
+
+    public InMemoryPrincipal getGroup() {
+        return group;
+    }
+
+    public void setGroup(final InMemoryPrincipal group) {
+        this.group = group;
+    }
+
+    /**
+     * Copy the times and permissions of another node.
+     *
+     * @param source The node to copy the attributes from
+     */
+    public void copyAttributes(final Node source) {
+        setTimes(source.getLastModifiedTime(), source.getLastAccessTime(), source.getCreationTime());
+        setPermissions(source.getPermissions());
+        setOwner(source.getOwner());
+        setGroup(source.getGroup());
+    }
+
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.implementation.memory;
+
+import java.io.IOException;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.GroupPrincipal;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.Set;
+
+/**
+ * The basic, owner and posix attribute views of a path, the path is looked up every time the view is used.
+ */
+final class NodeAttributeView implements PosixFileAttributeView {
+
+    private final transient InMemoryPath path;
+    private final transient boolean followLinks;
+    private final transient String name;
+
+    /* default */ NodeAttributeView(final InMemoryPath path, final boolean followLinks, final String name) {
+        this.path = path;
+        this.followLinks = followLinks;
+        this.name = name;
+    }
+
+    private Node node() throws IOException {
+        return path.getFileSystem().lookup(path, followLinks);
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public PosixFileAttributes readAttributes() throws IOException {
+        return new NodeAttributes(node());
+    }
+
+    @Override
+    public void setTimes(final FileTime lastModifiedTime, final FileTime lastAccessTime, final FileTime createTime) throws IOException {
+        node().setTimes(lastModifiedTime, lastAccessTime, createTime);
+    }
+
+    @Override
+    public void setPermissions(final Set<PosixFilePermission> permissions) throws IOException {
+        node().setPermissions(permissions);
+    }
+
+    @Override
+    public void setGroup(final GroupPrincipal group) throws IOException {
+        node().setGroup(InMemoryPrincipal.of(group));
+    }
+
+    @Override
+    public UserPrincipal getOwner() throws IOException {
+        return node().getOwner();
+    }
+
+    @Override
+    public void setOwner(final UserPrincipal owner) throws IOException {
+        node().setOwner(InMemoryPrincipal.of(owner));
+    }
+
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.implementation.memory;
+
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.GroupPrincipal;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The attributes of a node at the time they were read, along with the conversions to and from named attributes.
+ */
+@SuppressWarnings("PMD.TooManyMethods")
+final class NodeAttributes implements PosixFileAttributes {
+
+    /* default */ static final String BASIC = "basic";
+    /* default */ static final String OWNER = "owner";
+    /* default */ static final String POSIX = "posix";
+
+    private static final String LAST_MODIFIED_TIME = "lastModifiedTime";
+    private static final String LAST_ACCESS_TIME = "lastAccessTime";
+    private static final String CREATION_TIME = "creationTime";
+    private static final String PERMISSIONS = "permissions";
+    private static final String GROUP = "group";
+    private static final String ALL = "*";
+    private static final List<String> BASIC_NAMES = Arrays.asList(LAST_MODIFIED_TIME, LAST_ACCESS_TIME, CREATION_TIME, "size",
+            "isRegularFile", "isDirectory", "isSymbolicLink", "isOther", "fileKey");
+    private static final List<String> OWNER_NAMES = Arrays.asList(OWNER);
+    private static final List<String> POSIX_NAMES = Arrays.asList(LAST_MODIFIED_TIME, LAST_ACCESS_TIME, CREATION_TIME, "size",
+            "isRegularFile", "isDirectory", "isSymbolicLink", "isOther", "fileKey", PERMISSIONS, OWNER, GROUP);
+
+    private final transient Node node;
+    private final transient FileTime lastModifiedTime;
+    private final transient FileTime lastAccessTime;
+    private final transient FileTime creationTime;
+    private final transient long size;
+    private final transient Set<PosixFilePermission> permissions;
+    private final transient InMemoryPrincipal owner;
+    private final transient InMemoryPrincipal group;
+
+    /* default */ NodeAttributes(final Node node) {
+        this.node = node;
+        this.lastModifiedTime = node.getLastModifiedTime();
+        this.lastAccessTime = node.getLastAccessTime();
+        this.creationTime = node.getCreationTime();
+        this.size = node.size();
+        this.permissions = node.getPermissions();
+        this.owner = node.getOwner();
+        this.group = node.getGroup();
+    }
+
+    @Override
+    public FileTime lastModifiedTime() {
+        return lastModifiedTime;
+    }
+
+    @Override
+    public FileTime lastAccessTime() {
+        return lastAccessTime;
+    }
+
+    @Override
+    public FileTime creationTime() {
+        return creationTime;
+    }
+
+    @Override
+    public boolean isRegularFile() {
+        return node.isRegularFile();
+    }
+
+    @Override
+    public boolean isDirectory() {
+        return node.isDirectory();
+    }
+
+    @Override
+    public boolean isSymbolicLink() {
+        return node.isSymbolicLink();
+    }
+
+    @Override
+    public boolean isOther() {
+        return false;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public Object fileKey() {
+        return node.fileKey();
+    }
+
+    @Override
+    public UserPrincipal owner() {
+        return owner;
+    }
+
+    @Override
+    public GroupPrincipal group() {
+        return group;
+    }
+
+    @Override
+    public Set<PosixFilePermission> permissions() {
+        return permissions;
+    }
+
+    /**
+     * Read named attributes of a node.
+     *
+     * @param node The node to read
+     * @param attributes The attributes in the form {@code [view:]name[,name...]} or {@code [view:]*}
+     * @return The values keyed by attribute name
+     */
+    /* default */ static Map<String, Object> read(final Node node, final String attributes) {
+        final int colon = attributes.indexOf(':');
+        final String view = colon < 0 ? BASIC : attributes.substring(0, colon);
+        final String names = attributes.substring(colon + 1);
+        final List<String> supported = namesOf(view);
+        final NodeAttributes values = new NodeAttributes(node);
+        if (ALL.equals(names)) {
+            final Map<String, Object> result = new LinkedHashMap<>(supported.size() * 2);
+            for (final String name : supported) {
+                result.put(name, values.valueOf(name));
+            }
+            return result;
+        }
+        final Map<String, Object> result = new LinkedHashMap<>();
+        for (final String name : names.split(",")) {
+            if (!supported.contains(name)) {
+                throw new IllegalArgumentException("Attribute " + view + ":" + name + " is not supported");
+            }
+            result.put(name, values.valueOf(name));
+        }
+        return result;
+    }
+
+    private static List<String> namesOf(final String view) {
+        if (BASIC.equals(view)) {
+            return BASIC_NAMES;
+        }
+        if (OWNER.equals(view)) {
+            return OWNER_NAMES;
+        }
+        if (POSIX.equals(view)) {
+            return POSIX_NAMES;
+        }
+        throw new UnsupportedOperationException("View " + view + " is not supported");
+    }
+
+    @SuppressWarnings("PMD.CyclomaticComplexity")
+    private Object valueOf(final String name) {
+        switch (name) {
+            case LAST_MODIFIED_TIME:
+                return lastModifiedTime();
+            case LAST_ACCESS_TIME:
+                return lastAccessTime();
+            case CREATION_TIME:
+                return creationTime();
+            case "size":
+                return size();
+            case "isRegularFile":
+                return isRegularFile();
+            case "isDirectory":
+                return isDirectory();
+            case "isSymbolicLink":
+                return isSymbolicLink();
+            case "isOther":
+                return isOther();
+            case PERMISSIONS:
+                return permissions();
+            case OWNER:
+                return owner();
+            case GROUP:
+                return group();
+            default:
+                return fileKey();
+        }
+    }
+
+    /**
+     * Change a named attribute of a node.
+     *
+     * @param node The node to change
+     * @param attribute The attribute in the form {@code [view:]name}
+     * @param value The new value of the attribute
+     */
+    @SuppressWarnings("unchecked")
+    /* default */ static void write(final Node node, final String attribute, final Object value) {
+        final int colon = attribute.indexOf(':');
+        final String view = colon < 0 ? BASIC : attribute.substring(0, colon);
+        final String name = attribute.substring(colon + 1);
+        namesOf(view);
+        if (LAST_MODIFIED_TIME.equals(name) && !OWNER.equals(view)) {
+            node.setTimes((FileTime) value, null, null);
+        } else if (LAST_ACCESS_TIME.equals(name) && !OWNER.equals(view)) {
+            node.setTimes(null, (FileTime) value, null);
+        } else if (CREATION_TIME.equals(name) && !OWNER.equals(view)) {
+            node.setTimes(null, null, (FileTime) value);
+        } else if (PERMISSIONS.equals(name) && POSIX.equals(view)) {
+            node.setPermissions((Set<PosixFilePermission>) value);
+        } else if (OWNER.equals(name) && !BASIC.equals(view)) {
+            node.setOwner(InMemoryPrincipal.of((UserPrincipal) value));
+        } else if (GROUP.equals(name) && POSIX.equals(view)) {
+            node.setGroup(InMemoryPrincipal.of((GroupPrincipal) value));
+        } else {
+            throw new IllegalArgumentException("Attribute " + attribute + " can't be changed");
+        }
+    }
+
+    /**
+     * Apply the initial attributes of a node that is being created.
+     *
+     * @param node The new node
+     * @param attributes The attributes to apply
+     */
+    /* default */ static void apply(final Node node, final FileAttribute<?>... attributes) {
+        for (final FileAttribute<?> attribute : attributes) {
+            if (!attribute.name().startsWith(POSIX + ":") && !attribute.name().startsWith(OWNER + ":")) {
+                throw new UnsupportedOperationException("Attribute " + attribute.name() + " can't be set when creating a file");
+            }
+            write(node, attribute.name(), attribute.value());
+        }
+    }
+
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.implementation.memory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * File content that is stored in direct buffers taken from a {@link ChunkPool}.
+ * <p>
+ * Small files start with a right sized chunk that grows until it reaches the pool's chunk size, larger files are
+ * made up of full size chunks. Nothing but the list of chunks lives on the heap, so multi gigabyte files don't need
+ * a large heap and aren't copied around by the garbage collector.
+ * </p>
+ */
+final class OffHeapContent implements FileContent {
+
+    private static final int MINIMUM_CAPACITY = 4 * 1024;
+    private static final byte[] ZEROS = new byte[8 * 1024];
+
+    private final transient ChunkPool pool;
+    private final transient int chunkSize;
+    private final transient List<ByteBuffer> chunks = new ArrayList<>();
+    private transient long size;
+
+    /* default */ OffHeapContent(final ChunkPool pool) {
+        this.pool = pool;
+        this.chunkSize = pool.getChunkSize();
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public int read(final long position, final ByteBuffer target) {
+        if (position >= size) {
+            return -1;
+        }
+        int read = 0;
+        long offset = position;
+        while (target.hasRemaining() && offset < size) {
+            final ByteBuffer chunk = chunkAt(offset);
+            final int start = (int) (offset % chunkSize);
+            final int length = (int) Math.min(Math.min(target.remaining(), chunkSize - start), size - offset);
+            chunk.limit(start + length);
+            chunk.position(start);
+            target.put(chunk);
+            offset += length;
+            read += length;
+        }
+        return read;
+    }
+
+    @Override
+    public int write(final long position, final ByteBuffer source) {
+        final int length = source.remaining();
+        final long end = position + length;
+        ensureCapacity(end);
+        if (position > size) {
+            fill(size, position);
+        }
+        long offset = position;
+        while (source.hasRemaining()) {
+            final ByteBuffer chunk = chunkAt(offset);
+            final int start = (int) (offset % chunkSize);
+            final int count = Math.min(source.remaining(), chunk.capacity() - start);
+            final ByteBuffer part = source.duplicate();
+            part.limit(part.position() + count);
+            chunk.position(start);
+            chunk.put(part);
+            source.position(source.position() + count);
+            offset += count;
+        }
+        size = Math.max(size, end);
+        return length;
+    }
+
+    @Override
+    public void truncate(final long newSize) {
+        if (newSize >= size) {
+            return;
+        }
+        size = newSize;
+        final long required = (newSize + chunkSize - 1) / chunkSize;
+        while (chunks.size() > required) {
+            pool.give(chunks.remove(chunks.size() - 1));
+        }
+    }
+
+    @Override
+    public void release() {
+        truncate(0);
+    }
+
+    private ByteBuffer chunkAt(final long offset) {
+        return chunks.get((int) (offset / chunkSize)).duplicate();
+    }
+
+    private long capacity() {
+        if (chunks.isEmpty()) {
+            return 0;
+        }
+        return (long) (chunks.size() - 1) * chunkSize + chunks.get(chunks.size() - 1).capacity();
+    }
+
+    private void ensureCapacity(final long required) {
+        if (required <= capacity()) {
+            return;
+        }
+        if (required < chunkSize) {
+            final int grown = Math.max(MINIMUM_CAPACITY, Integer.highestOneBit((int) required - 1) << 1);
+            replaceFirstChunk(grown < chunkSize ? pool.allocate(grown) : pool.take());
+            return;
+        }
+        if (!chunks.isEmpty() && chunks.get(0).capacity() < chunkSize) {
+            replaceFirstChunk(pool.take());
+        }
+        while (capacity() < required) {
+            chunks.add(pool.take());
+        }
+    }
+
+    private void replaceFirstChunk(final ByteBuffer replacement) {
+        if (chunks.isEmpty()) {
+            chunks.add(replacement);
+            return;
+        }
+        final ByteBuffer previous = chunks.get(0);
+        final ByteBuffer content = previous.duplicate();
+        content.limit((int) size);
+        content.position(0);
+        replacement.put(content);
+        replacement.clear();
+        chunks.set(0, replacement);
+        pool.give(previous);
+    }
+
+    private void fill(final long from, final long to) {
+        long offset = from;
+        while (offset < to) {
+            final ByteBuffer chunk = chunkAt(offset);
+            final int start = (int) (offset % chunkSize);
+            final int count = (int) Math.min(Math.min(ZEROS.length, chunk.capacity() - start), to - offset);
+            chunk.position(start);
+            chunk.put(ZEROS, 0, count);
+            offset += count;
+        }
+    }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.implementation.memory;
+
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed set of locks that objects are spread over by their identity.
+ * <p>
+ * Operations lock the stripes of every object they change in ascending order, so operations on unrelated objects
+ * rarely wait for each other and operations that share objects can't deadlock.
+ * </p>
+ */
+final class StripedLocks {
+
+    private final transient ReentrantLock[] locks;
+
+    /* default */ StripedLocks(final int stripes) {
+        if (Integer.bitCount(stripes) != 1) {
+            throw new IllegalArgumentException("The number of stripes needs to be a power of two");
+        }
+        this.locks = new ReentrantLock[stripes];
+        for (int index = 0; index < stripes; index++) {
+            locks[index] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Lock the stripes of some objects.
+     *
+     * @param keys The objects to lock
+     * @return The stripes that were locked, to be given to {@link #unlock(int[])}
+     */
+    public int[] lock(final List<?> keys) {
+        final int[] stripes = keys.stream().mapToInt(this::stripeOf).distinct().sorted().toArray();
+        for (final int stripe : stripes) {
+            locks[stripe].lock();
+        }
+        return stripes;
+    }
+
+    /**
+     * Unlock stripes that were locked by {@link #lock(List)}.
+     *
+     * @param stripes The stripes to unlock
+     */
+    public void unlock(final int[] stripes) {
+        for (int index = stripes.length - 1; index >= 0; index--) {
+            locks[stripes[index]].unlock();
+        }
+    }
+
+    private int stripeOf(final Object key) {
+        final int hash = System.identityHashCode(key);
+        return (hash ^ hash >>> 16) & locks.length - 1;
+    }
+
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ContentGeneratorTest {
+
+    private static byte[] generate(final ContentGenerator generator, final long offset, final int length) {
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        generator.generate(offset, buffer);
+        assertThat(buffer.hasRemaining()).isFalse();
+        return buffer.array();
+    }
+
+    @Test
+    public void verifyRandomBytesCanBeGeneratedFromAnyOffset() {
+        final byte[] bytes = generate(ContentGenerator.random(42), 0, 100);
+
+        assertThat(generate(ContentGenerator.random(42), 13, 50)).isEqualTo(Arrays.copyOfRange(bytes, 13, 63));
+        assertThat(generate(ContentGenerator.random(43), 0, 100)).isNotEqualTo(bytes);
+    }
+
+    @Test
+    public void verifyPatternsAreRepeated() {
+        assertThat(generate(ContentGenerator.pattern("abc"), 2, 7)).isEqualTo("cabcabc".getBytes());
+        assertThat(generate(ContentGenerator.ofOffset(offset -> (int) offset), 254, 4)).isEqualTo(new byte[] {-2, -1, 0, 1});
+    }
+
+    @Test
+    public void verifyStreamsAreMatchedAgainstTheGeneratedBytes() throws IOException {
+        final ContentGenerator generator = ContentGenerator.random(7);
+        final byte[] bytes = generate(generator, 0, 200_000);
+
+        assertThat(generator.matches(new ByteArrayInputStream(bytes), 0, bytes.length)).isTrue();
+        assertThat(generator.matches(new ByteArrayInputStream(bytes, 100, bytes.length - 100), 100, bytes.length - 100)).isTrue();
+        assertThat(generator.matches(new ByteArrayInputStream(bytes, 0, bytes.length - 1), 0, bytes.length)).isFalse();
+        assertThat(generator.matches(new ByteArrayInputStream(bytes), 0, bytes.length - 1)).isFalse();
+
+        bytes[150_000]++;
+        assertThat(generator.matches(new ByteArrayInputStream(bytes), 0, bytes.length)).isFalse();
+    }
+
+}
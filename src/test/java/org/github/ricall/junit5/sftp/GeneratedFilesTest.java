@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+class GeneratedFilesTest {
+
+    @Test
+    public void verifyFilesAreDescribedByTheirIndex() {
+        final ContentGenerator generator = ContentGenerator.pattern("abc");
+        final GeneratedFiles files = GeneratedFiles.count(3)
+                .named("data-%02d.txt")
+                .sized(index -> index * 10L)
+                .generatedBy(generator);
+
+        assertThat(files.getCount()).isEqualTo(3);
+        assertThat(files.nameOf(2)).isEqualTo("data-02.txt");
+        assertThat(files.sizeOf(2)).isEqualTo(20);
+        assertThat(files.generatorOf(1)).isSameAs(generator);
+    }
+
+    @Test
+    public void verifyTheFilesAreEmptyByDefault() {
+        final GeneratedFiles files = GeneratedFiles.count(2);
+
+        assertThat(files.nameOf(1)).isEqualTo("file-1");
+        assertThat(files.sizeOf(1)).isEqualTo(0);
+    }
+
+    @Test
+    public void verifyCountsAndSizesCantBeNegative() {
+        assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> GeneratedFiles.count(-1));
+        assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> GeneratedFiles.count(1).sized(-1).sizeOf(0));
+    }
+
+}
@@ -41,6 +41,7 @@ import static org.github.ricall.junit5.sftp.FileSystemResource.resourceAt;
 public class TestEmbeddedSftpServer {
 
     public static final String TEMP_FILE = "/tmp/file1.txt";
+    public static final String SAMPLE_FILE = "sample file.txt";
 
     @RegisterExtension
     public final EmbeddedSftpServer sftpServer = SftpServer.defaultSftpServer()
@@ -73,13 +74,13 @@ public class TestEmbeddedSftpServer {
     @Test
     public void verifyClientCanWriteAsSimpleTextFile() throws Exception {
         try (SftpClient client = getSftpClient()) {
-            final Path path = sftpServer.pathFor("sample file.txt");
+            final Path path = sftpServer.pathFor(SAMPLE_FILE);
             assertThat(Files.exists(path)).isEqualTo(false);
 
-            client.writeFile("sample file.txt", "Sample file contents");
+            client.writeFile(SAMPLE_FILE, "Sample file contents");
 
             assertThat(Files.exists(path)).isEqualTo(true);
-            assertThat(client.readFile("sample file.txt")).isEqualTo("Sample file contents");
+            assertThat(client.readFile(SAMPLE_FILE)).isEqualTo("Sample file contents");
         }
     }
 
@@ -130,4 +131,34 @@ public class TestEmbeddedSftpServer {
         assertThat(Files.isDirectory(sftpServer.pathFor("/home/sftp"))).isTrue();
     }
 
+    @Test
+    public void verifyOnlyChangedEntriesAreReverted() throws Exception {
+        sftpServer.resetFileSystem();
+        assertThat(sftpServer.getRevertedEntryCount()).isEqualTo(0);
+
+        try (SftpClient client = getSftpClient()) {
+            assertThat(client.readFile("/tmp/data/file1.txt")).isEqualTo("file 1 contents");
+            client.writeFile(SAMPLE_FILE, "Sample file contents");
+        }
+        Files.delete(sftpServer.pathFor("/tmp/data/file2.txt"));
+
+        sftpServer.resetFileSystem();
+        assertThat(sftpServer.getRevertedEntryCount()).isEqualTo(2);
+        assertThat(Files.exists(sftpServer.pathFor(SAMPLE_FILE))).isFalse();
+        assertThat(Files.exists(sftpServer.pathFor("/tmp/data/file2.txt"))).isTrue();
+    }
+
+    @Test
+    public void verifyOpenSessionsDoNotSeeTheFileSystemReverted() throws Exception {
+        try (SftpClient lingering = getSftpClient()) {
+            lingering.writeFile(SAMPLE_FILE, "Sample file contents");
+
+            sftpServer.resetFileSystem();
+
+            assertThat(sftpServer.getRevertedEntryCount()).isEqualTo(1);
+            assertThat(Files.exists(sftpServer.pathFor(SAMPLE_FILE))).isFalse();
+            assertThat(lingering.readFile(SAMPLE_FILE)).isEqualTo("Sample file contents");
+        }
+    }
+
 }
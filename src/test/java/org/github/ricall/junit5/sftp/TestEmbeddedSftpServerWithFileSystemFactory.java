@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp;
+
+import com.github.marschall.memoryfilesystem.MemoryFileSystemBuilder;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.SftpException;
+import org.github.ricall.junit5.sftp.client.SftpClient;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.github.ricall.junit5.sftp.FileSystemResource.resourceAt;
+
+public class TestEmbeddedSftpServerWithFileSystemFactory {
+
+    private static final String UPLOADED_FILE = "/tmp/data/upload.txt";
+
+    private final CountingFactory factory = new CountingFactory();
+
+    @RegisterExtension
+    public final EmbeddedSftpServer sftpServer = SftpServer.defaultSftpServer()
+            .withPort(SftpServer.ANY_FREE_PORT)
+            .withUser("user", "pass")
+            .withResources(resourceAt("/tmp/data").fromClasspathResource("/data"))
+            .withFileSystemFactory(factory)
+            .build();
+
+    private SftpClient getSftpClient() throws JSchException {
+        return SftpClient.builder()
+                .connectAs("user", "pass")
+                .port(sftpServer.getPort())
+                .build();
+    }
+
+    @Test
+    public void verifyFilesAreServedFromTheFactoryFileSystem() throws Exception {
+        try (SftpClient client = getSftpClient()) {
+            client.getChannel().put(new ByteArrayInputStream("uploaded".getBytes(StandardCharsets.UTF_8)), UPLOADED_FILE);
+        }
+
+        assertThat(Files.readAllLines(sftpServer.pathFor(UPLOADED_FILE))).containsExactly("uploaded");
+        assertThat(factory.created.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void verifyResetRecreatesTheFileSystem() throws Exception {
+        try (SftpClient client = getSftpClient()) {
+            client.getChannel().put(new ByteArrayInputStream("uploaded".getBytes(StandardCharsets.UTF_8)), UPLOADED_FILE);
+        }
+
+        sftpServer.resetFileSystem();
+
+        assertThat(Files.exists(sftpServer.pathFor(UPLOADED_FILE))).isFalse();
+        assertThat(Files.readAllLines(sftpServer.pathFor("/tmp/data/file1.txt"))).containsExactly("file 1 contents");
+        assertThat(factory.created.get()).isEqualTo(2);
+        assertThat(factory.awaitReleased(1)).isEqualTo(1);
+    }
+
+    @Test
+    public void verifyResetDoesNotWaitForOpenSessions() throws Exception {
+        try (SftpClient lingering = getSftpClient()) {
+            lingering.getChannel().put(new ByteArrayInputStream("uploaded".getBytes(StandardCharsets.UTF_8)), UPLOADED_FILE);
+
+            sftpServer.resetFileSystem();
+
+            try (SftpClient client = getSftpClient()) {
+                assertThatExceptionOfType(SftpException.class).isThrownBy(() -> client.getChannel().stat(UPLOADED_FILE));
+                assertThat(client.readFile("/tmp/data/file1.txt")).isEqualTo("file 1 contents");
+            }
+            assertThat(lingering.readFile(UPLOADED_FILE)).isEqualTo("uploaded");
+            assertThat(factory.released.get()).isEqualTo(0);
+        }
+
+        assertThat(factory.awaitReleased(1)).isEqualTo(1);
+    }
+
+    /**
+     * Creates MemoryFileSystems and counts how many were created and released.
+     */
+    private static final class CountingFactory implements RootFileSystemFactory {
+
+        private final AtomicInteger created = new AtomicInteger();
+        private final AtomicInteger released = new AtomicInteger();
+
+        @Override
+        public FileSystem newFileSystem(final String name, final String homeDirectory) throws IOException {
+            created.incrementAndGet();
+            return MemoryFileSystemBuilder.newLinux()
+                    .setCurrentWorkingDirectory(homeDirectory)
+                    .build(name);
+        }
+
+        @Override
+        public ResetStrategy getResetStrategy() {
+            return ResetStrategy.RECREATE;
+        }
+
+        @Override
+        public void release(final FileSystem fileSystem) throws IOException {
+            released.incrementAndGet();
+            fileSystem.close();
+        }
+
+        /**
+         * Filesystems are released once their sessions have closed, which the server notices after the client has
+         * disconnected.
+         */
+        private int awaitReleased(final int count) throws InterruptedException {
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (released.get() < count && System.nanoTime() < deadline) {
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+            return released.get();
+        }
+
+    }
+
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.JSchException;
+import org.github.ricall.junit5.sftp.client.SftpClient;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.github.ricall.junit5.sftp.FileSystemResource.resourceAt;
+
+public class TestEmbeddedSftpServerWithGeneratedContent {
+
+    private static final long FILE_SIZE = 3L * 1024 * 1024 * 1024 + 17;
+    private static final long RESUME_OFFSET = FILE_SIZE - 1024 * 1024;
+    private static final String LARGE_FILE = "/tmp/large.bin";
+    private static final String SMALL_FILE = "/tmp/small.bin";
+    private static final ContentGenerator GENERATOR = ContentGenerator.random(1234);
+
+    @RegisterExtension
+    public final EmbeddedSftpServer sftpServer = SftpServer.defaultSftpServer()
+            .withPort(SftpServer.ANY_FREE_PORT)
+            .withUser("user", "pass")
+            .withResources(resourceAt(LARGE_FILE).withGeneratedContent(FILE_SIZE, GENERATOR))
+            .withResources(resourceAt(SMALL_FILE).withGeneratedContent(100_000, GENERATOR))
+            .build();
+
+    private SftpClient getSftpClient() throws JSchException {
+        return SftpClient.builder()
+                .connectAs("user", "pass")
+                .port(sftpServer.getPort())
+                .build();
+    }
+
+    @Test
+    public void verifyGeneratedFilesReportTheirSize() throws Exception {
+        try (SftpClient client = getSftpClient()) {
+            assertThat(client.getChannel().stat(LARGE_FILE).getSize()).isEqualTo(FILE_SIZE);
+        }
+        assertThat(Files.size(sftpServer.pathFor(LARGE_FILE))).isEqualTo(FILE_SIZE);
+    }
+
+    @Test
+    public void verifyGeneratedFilesCanBeDownloaded() throws Exception {
+        try (SftpClient client = getSftpClient(); InputStream input = client.getChannel().get(SMALL_FILE)) {
+            assertThat(GENERATOR.matches(input, 0, 100_000)).isTrue();
+        }
+    }
+
+    @Test
+    public void verifyDownloadsCanBeResumedAtAnyOffset() throws Exception {
+        try (SftpClient client = getSftpClient();
+             InputStream input = client.getChannel().get(LARGE_FILE, null, RESUME_OFFSET)) {
+            assertThat(GENERATOR.matches(input, RESUME_OFFSET, FILE_SIZE - RESUME_OFFSET)).isTrue();
+        }
+    }
+
+    @Test
+    public void verifyModifiedFilesAreGeneratedAgainAfterAReset() throws Exception {
+        try (SftpClient client = getSftpClient()) {
+            client.getChannel().put(new ByteArrayInputStream(new byte[10]), SMALL_FILE, ChannelSftp.APPEND);
+            assertThat(client.getChannel().stat(SMALL_FILE).getSize()).isEqualTo(100_010);
+        }
+
+        sftpServer.resetFileSystem();
+
+        try (InputStream input = Files.newInputStream(sftpServer.pathFor(SMALL_FILE))) {
+            assertThat(GENERATOR.matches(input, 0, 100_000)).isTrue();
+        }
+    }
+
+}
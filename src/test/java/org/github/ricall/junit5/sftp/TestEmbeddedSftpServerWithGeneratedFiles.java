@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp;
+
+import com.jcraft.jsch.JSchException;
+import org.github.ricall.junit5.sftp.client.SftpClient;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestEmbeddedSftpServerWithGeneratedFiles {
+
+    private static final int FILE_COUNT = 10_000;
+    private static final String LISTING = "/tmp/listing";
+    private static final String LAST_FILE = "/tmp/listing/report-09999.csv";
+
+    @RegisterExtension
+    public final EmbeddedSftpServer sftpServer = SftpServer.defaultSftpServer()
+            .withPort(SftpServer.ANY_FREE_PORT)
+            .withUser("user", "pass")
+            .withGeneratedFiles(LISTING, GeneratedFiles.count(FILE_COUNT)
+                    .named("report-%05d.csv")
+                    .sized(index -> 100 + index)
+                    .generatedBy(ContentGenerator::random))
+            .build();
+
+    private SftpClient getSftpClient() throws JSchException {
+        return SftpClient.builder()
+                .connectAs("user", "pass")
+                .port(sftpServer.getPort())
+                .build();
+    }
+
+    @Test
+    public void verifyEveryFileIsListed() throws Exception {
+        try (SftpClient client = getSftpClient()) {
+            // the listing includes . and ..
+            assertThat(client.getChannel().ls(LISTING)).hasSize(FILE_COUNT + 2);
+            assertThat(client.getChannel().stat(LAST_FILE).getSize()).isEqualTo(100 + FILE_COUNT - 1);
+        }
+    }
+
+    @Test
+    public void verifyFilesCanBeDownloaded() throws Exception {
+        try (SftpClient client = getSftpClient(); InputStream input = client.getChannel().get(LAST_FILE)) {
+            assertThat(ContentGenerator.random(FILE_COUNT - 1).matches(input, 0, 100 + FILE_COUNT - 1)).isTrue();
+        }
+    }
+
+    @Test
+    public void verifyDeletedFilesAreRestoredAfterAReset() throws Exception {
+        try (SftpClient client = getSftpClient()) {
+            client.getChannel().rm(LAST_FILE);
+        }
+
+        sftpServer.resetFileSystem();
+
+        try (Stream<?> files = Files.list(sftpServer.pathFor(LISTING))) {
+            assertThat(files.count()).isEqualTo(FILE_COUNT);
+        }
+    }
+
+    @Test
+    public void verifyGeneratedFilesCanBeAddedDuringATest() throws Exception {
+        sftpServer.addGeneratedFiles("/tmp/added", GeneratedFiles.count(10).named("added-%d.txt").sized(5));
+
+        try (SftpClient client = getSftpClient()) {
+            assertThat(client.getChannel().stat("/tmp/added/added-9.txt").getSize()).isEqualTo(5);
+        }
+
+        sftpServer.resetFileSystem();
+
+        assertThat(Files.exists(sftpServer.pathFor("/tmp/added"))).isFalse();
+    }
+
+}
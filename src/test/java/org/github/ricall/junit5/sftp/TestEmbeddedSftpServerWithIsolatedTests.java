@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp;
+
+import com.jcraft.jsch.JSchException;
+import org.github.ricall.junit5.sftp.client.SftpClient;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.parallel.Execution;
+
+import java.nio.file.Files;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.github.ricall.junit5.sftp.FileSystemResource.resourceAt;
+import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
+import static org.junit.jupiter.api.parallel.ExecutionMode.CONCURRENT;
+
+@Execution(CONCURRENT)
+@TestInstance(PER_CLASS)
+public class TestEmbeddedSftpServerWithIsolatedTests {
+
+    private static final String SHARED_FILE = "/tmp/data/file1.txt";
+
+    @RegisterExtension
+    public final EmbeddedSftpServer sftpServer = SftpServer.defaultSftpServer()
+            .withPort(SftpServer.ANY_FREE_PORT)
+            .withUser("user", "pass")
+            .withResources(resourceAt("/tmp/data").fromClasspathResource("/data"))
+            .withIsolatedTests()
+            .build();
+
+    private SftpClient getSftpClient() throws JSchException {
+        return SftpClient.builder()
+                .connectAs(sftpServer.getUsername(), sftpServer.getPassword())
+                .port(sftpServer.getPort())
+                .build();
+    }
+
+    private void verifyTestOnlySeesItsOwnChanges(final int test) throws Exception {
+        assertThat(sftpServer.getUsername()).startsWith("user-");
+        try (SftpClient client = getSftpClient()) {
+            assertThat(client.readFile(SHARED_FILE)).isEqualTo("file 1 contents");
+
+            for (int index = 0; index < 20; index++) {
+                client.writeFile(SHARED_FILE, "test " + test + " write " + index);
+                client.writeFile("/tmp/test" + test + ".txt", "test " + test);
+
+                assertThat(client.readFile(SHARED_FILE)).isEqualTo("test " + test + " write " + index);
+            }
+        }
+        for (int other = 1; other <= 4; other++) {
+            assertThat(Files.exists(sftpServer.pathFor("/tmp/test" + other + ".txt"))).isEqualTo(other == test);
+        }
+    }
+
+    @Test
+    public void verifyFirstTestIsIsolated() throws Exception {
+        verifyTestOnlySeesItsOwnChanges(1);
+    }
+
+    @Test
+    public void verifySecondTestIsIsolated() throws Exception {
+        verifyTestOnlySeesItsOwnChanges(2);
+    }
+
+    @Test
+    public void verifyThirdTestIsIsolated() throws Exception {
+        verifyTestOnlySeesItsOwnChanges(3);
+    }
+
+    @Test
+    public void verifyFourthTestIsIsolated() throws Exception {
+        verifyTestOnlySeesItsOwnChanges(4);
+    }
+
+    @Test
+    public void verifyConfiguredUsersSeeTheServerFileSystem(@SftpPort final int port) throws Exception {
+        try (SftpClient client = SftpClient.builder().connectAs("user", "pass").port(port).build()) {
+            assertThat(client.readFile(SHARED_FILE)).isEqualTo("file 1 contents");
+        }
+    }
+
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp;
+
+import com.jcraft.jsch.JSchException;
+import org.github.ricall.junit5.sftp.client.SftpClient;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.github.ricall.junit5.sftp.FileSystemResource.resourceAt;
+
+public class TestEmbeddedSftpServerWithMetrics {
+
+    private static final String UPLOADED_CONTENTS = "uploaded contents";
+    private static final String UPLOADED_FILE = "/tmp/data/upload.txt";
+
+    @RegisterExtension
+    public final static EmbeddedSftpServer SFTP_SERVER = SftpServer.defaultSftpServer()
+            .withPort(SftpServer.ANY_FREE_PORT)
+            .withUser("user", "pass")
+            .withResources(resourceAt("/tmp/data").fromClasspathResource("/data"))
+            .build();
+
+    private SftpClient getSftpClient() throws JSchException {
+        return SftpClient.builder()
+                .connectAs("user", "pass")
+                .port(SFTP_SERVER.getPort())
+                .build();
+    }
+
+    @Test
+    public void verifyOperationsAreRecorded() throws Exception {
+        try (SftpClient client = getSftpClient()) {
+            client.writeFile(UPLOADED_FILE, UPLOADED_CONTENTS);
+            assertThat(client.readFile("/tmp/data/file1.txt")).isEqualTo("file 1 contents");
+            assertThat(client.getChannel().ls("/tmp/data")).isNotEmpty();
+            assertThat(client.getChannel().stat("/tmp/data/file2.txt").getSize()).isEqualTo(15);
+            client.getChannel().rename(UPLOADED_FILE, "/tmp/data/renamed.txt");
+            client.getChannel().rm("/tmp/data/renamed.txt");
+        }
+
+        final SftpMetrics metrics = SFTP_SERVER.getMetrics();
+        for (final SftpOperation operation : SftpOperation.values()) {
+            assertThat(metrics.getCount(operation)).as(operation.name()).isGreaterThan(0);
+            assertThat(metrics.getLatencyPercentile(operation, 100)).as(operation.name()).isGreaterThan(Duration.ZERO);
+        }
+        assertThat(metrics.getBytesWritten()).isEqualTo(UPLOADED_CONTENTS.length());
+        assertThat(metrics.getBytesRead()).isGreaterThanOrEqualTo("file 1 contents".length());
+    }
+
+    @Test
+    public void verifyMetricsAreResetBeforeEachTest() throws Exception {
+        try (SftpClient client = getSftpClient()) {
+            client.writeFile(UPLOADED_FILE, UPLOADED_CONTENTS);
+        }
+
+        final SftpMetrics metrics = SFTP_SERVER.getMetrics();
+        assertThat(metrics.getBytesWritten()).isEqualTo(UPLOADED_CONTENTS.length());
+        assertThat(metrics.getCount(SftpOperation.RENAME)).isZero();
+        assertThat(metrics.getCount(SftpOperation.REMOVE)).isZero();
+    }
+
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp;
+
+import com.jcraft.jsch.JSchException;
+import org.github.ricall.junit5.sftp.client.SftpClient;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.io.ByteArrayInputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.github.ricall.junit5.sftp.FileSystemResource.resourceAt;
+
+public class TestEmbeddedSftpServerWithMountedResources {
+
+    private static final String FILE1 = "/tmp/data/file1.txt";
+    private static final String FILE2 = "/tmp/data/file2.txt";
+
+    @RegisterExtension
+    public final EmbeddedSftpServer sftpServer = SftpServer.defaultSftpServer()
+            .withPort(SftpServer.ANY_FREE_PORT)
+            .withUser("user", "pass")
+            .withResources(resourceAt("/tmp/data").mountPath(dataDirectory()))
+            .build();
+
+    private static Path dataDirectory() {
+        try {
+            return Paths.get(TestEmbeddedSftpServerWithMountedResources.class.getResource("/data").toURI());
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private SftpClient getSftpClient() throws JSchException {
+        return SftpClient.builder()
+                .connectAs("user", "pass")
+                .port(sftpServer.getPort())
+                .build();
+    }
+
+    @Test
+    public void verifyMountedResourcesAreServed() throws Exception {
+        try (SftpClient client = getSftpClient()) {
+            assertThat(client.readFile(FILE1)).isEqualTo("file 1 contents");
+            assertThat(client.readFile(FILE2)).isEqualTo("file 2 contents");
+        }
+    }
+
+    @Test
+    public void verifyChangesDoNotReachTheHostAndAreReset() throws Exception {
+        try (SftpClient client = getSftpClient()) {
+            client.getChannel().put(new ByteArrayInputStream("overwritten".getBytes(StandardCharsets.UTF_8)), FILE1);
+            client.getChannel().rm(FILE2);
+            assertThat(client.readFile(FILE1)).isEqualTo("overwritten");
+        }
+        assertThat(Files.readAllLines(dataDirectory().resolve("file1.txt"))).containsExactly("file 1 contents");
+        assertThat(Files.exists(dataDirectory().resolve("file2.txt"))).isTrue();
+
+        sftpServer.resetFileSystem();
+
+        assertThat(Files.readAllLines(sftpServer.pathFor(FILE1))).containsExactly("file 1 contents");
+        assertThat(Files.readAllLines(sftpServer.pathFor(FILE2))).containsExactly("file 2 contents");
+    }
+
+}
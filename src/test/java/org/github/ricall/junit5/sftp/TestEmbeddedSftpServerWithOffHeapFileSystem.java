@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.JSchException;
+import org.apache.commons.io.IOUtils;
+import org.github.ricall.junit5.sftp.client.SftpClient;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.github.ricall.junit5.sftp.FileSystemResource.resourceAt;
+
+public class TestEmbeddedSftpServerWithOffHeapFileSystem {
+
+    private static final int FILE_SIZE = 4 * 1024 * 1024 + 123;
+    private static final String UPLOADED_FILE = "/tmp/data/upload.bin";
+    private static final String RENAMED_FILE = "/tmp/data/renamed.bin";
+
+    @RegisterExtension
+    public final EmbeddedSftpServer sftpServer = SftpServer.defaultSftpServer()
+            .withPort(SftpServer.ANY_FREE_PORT)
+            .withUser("user", "pass")
+            .withResources(resourceAt("/tmp/data").fromClasspathResource("/data"))
+            .withFileSystemBackend(FileSystemBackend.OFF_HEAP)
+            .build();
+
+    private SftpClient getSftpClient() throws JSchException {
+        return SftpClient.builder()
+                .connectAs("user", "pass")
+                .port(sftpServer.getPort())
+                .build();
+    }
+
+    private static byte[] randomContents() {
+        final byte[] contents = new byte[FILE_SIZE];
+        ThreadLocalRandom.current().nextBytes(contents);
+        return contents;
+    }
+
+    @Test
+    public void verifyResourcesAreServed() throws Exception {
+        try (SftpClient client = getSftpClient()) {
+            assertThat(client.readFile("/tmp/data/file1.txt")).isEqualTo("file 1 contents");
+
+            final List<String> names = new ArrayList<>();
+            for (final Object entry : client.getChannel().ls("/tmp/data")) {
+                names.add(((ChannelSftp.LsEntry) entry).getFilename());
+            }
+            assertThat(names).contains("file1.txt", "file2.txt", "success", "failure");
+        }
+    }
+
+    @Test
+    public void verifyLargeFilesCanBeUploadedAndDownloaded() throws Exception {
+        final byte[] contents = randomContents();
+        try (SftpClient client = getSftpClient()) {
+            client.getChannel().put(new ByteArrayInputStream(contents), UPLOADED_FILE);
+            client.getChannel().rename(UPLOADED_FILE, RENAMED_FILE);
+            assertThat(Files.readAllBytes(sftpServer.pathFor(RENAMED_FILE))).isEqualTo(contents);
+
+            try (InputStream input = client.getChannel().get(RENAMED_FILE)) {
+                assertThat(IOUtils.toByteArray(input)).isEqualTo(contents);
+            }
+        }
+    }
+
+    @Test
+    public void verifyUploadsAreRemovedByAReset() throws Exception {
+        try (SftpClient client = getSftpClient()) {
+            client.getChannel().put(new ByteArrayInputStream(randomContents()), UPLOADED_FILE);
+            client.getChannel().rm("/tmp/data/file2.txt");
+        }
+
+        sftpServer.resetFileSystem();
+
+        assertThat(Files.exists(sftpServer.pathFor(UPLOADED_FILE))).isFalse();
+        assertThat(Files.readAllLines(sftpServer.pathFor("/tmp/data/file2.txt"))).containsExactly("file 2 contents");
+    }
+
+}
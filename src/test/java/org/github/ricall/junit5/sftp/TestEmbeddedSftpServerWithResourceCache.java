@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp;
+
+import com.jcraft.jsch.JSchException;
+import org.github.ricall.junit5.sftp.client.SftpClient;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.github.ricall.junit5.sftp.FileSystemResource.resourceAt;
+
+public class TestEmbeddedSftpServerWithResourceCache {
+
+    @RegisterExtension
+    public final EmbeddedSftpServer sftpServer = SftpServer.defaultSftpServer()
+            .withPort(SftpServer.ANY_FREE_PORT)
+            .withUser("user", "pass")
+            .withResources(resourceAt("/tmp/data").fromClasspathResource("/data"))
+            .withResourceCache(1024 * 1024)
+            .build();
+
+    private SftpClient getSftpClient() throws JSchException {
+        return SftpClient.builder()
+                .connectAs("user", "pass")
+                .port(sftpServer.getPort())
+                .build();
+    }
+
+    @Test
+    public void verifyResourcesAreServedFromTheCache() throws Exception {
+        try (SftpClient client = getSftpClient()) {
+            assertThat(client.readFile("/tmp/data/file1.txt")).isEqualTo("file 1 contents");
+            assertThat(client.readFile("/tmp/data/file2.txt")).isEqualTo("file 2 contents");
+        }
+        final ResourceCacheMetrics metrics = SftpServer.resourceCacheMetrics();
+        assertThat(metrics.getMaximumSize()).isGreaterThanOrEqualTo(1024 * 1024);
+        assertThat(metrics.getSize()).isGreaterThan(0);
+        assertThat(metrics.getHits() + metrics.getMisses()).isGreaterThanOrEqualTo(2);
+    }
+
+    @Test
+    public void verifyCachedResourcesCanBeModified() throws Exception {
+        try (SftpClient client = getSftpClient()) {
+            client.writeFile("/tmp/data/file1.txt", "modified");
+            assertThat(client.readFile("/tmp/data/file1.txt")).isEqualTo("modified");
+        }
+    }
+
+}
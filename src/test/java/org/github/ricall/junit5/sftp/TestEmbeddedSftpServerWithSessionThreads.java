@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp;
+
+import com.jcraft.jsch.JSchException;
+import org.github.ricall.junit5.sftp.client.SftpClient;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.github.ricall.junit5.sftp.FileSystemResource.resourceAt;
+
+public class TestEmbeddedSftpServerWithSessionThreads {
+
+    private static final int SESSIONS = 4;
+    private static final long WAIT_MILLIS = 500;
+    private static final long SERVE_SECONDS = 10;
+
+    @RegisterExtension
+    public final EmbeddedSftpServer sftpServer = SftpServer.defaultSftpServer()
+            .withPort(SftpServer.ANY_FREE_PORT)
+            .withUser("user", "pass")
+            .withResources(resourceAt("/tmp/data").fromClasspathResource("/data"))
+            .withIoBackend(IoBackend.NIO2)
+            .withIoWorkers(2)
+            .withSessionThreads(2)
+            .build();
+
+    private SftpClient getSftpClient() throws JSchException {
+        return SftpClient.builder()
+                .connectAs("user", "pass")
+                .port(sftpServer.getPort())
+                .build();
+    }
+
+    @Test
+    public void verifySequentialSessionsReuseThePool() throws Exception {
+        for (int session = 0; session < SESSIONS; session++) {
+            try (SftpClient client = getSftpClient()) {
+                assertThat(client.readFile("/tmp/data/file1.txt")).isEqualTo("file 1 contents");
+            }
+        }
+    }
+
+    @Test
+    @SuppressWarnings("PMD.CloseResource")
+    public void verifySessionsBeyondThePoolWaitForAThread() throws Exception {
+        final SftpClient first = getSftpClient();
+        final SftpClient second = getSftpClient();
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<SftpClient> third = executor.submit(this::getSftpClient);
+            assertThatExceptionOfType(TimeoutException.class)
+                    .isThrownBy(() -> third.get(WAIT_MILLIS, TimeUnit.MILLISECONDS));
+
+            first.close();
+            try (SftpClient client = third.get(SERVE_SECONDS, TimeUnit.SECONDS)) {
+                assertThat(client.readFile("/tmp/data/file2.txt")).isEqualTo("file 2 contents");
+            }
+        } finally {
+            first.close();
+            second.close();
+            executor.shutdownNow();
+        }
+    }
+
+}
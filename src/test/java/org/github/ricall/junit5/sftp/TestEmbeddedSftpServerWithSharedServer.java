@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp;
+
+import com.jcraft.jsch.JSchException;
+import org.github.ricall.junit5.sftp.client.SftpClient;
+import org.junit.jupiter.api.MethodOrderer.OrderAnnotation;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.github.ricall.junit5.sftp.FileSystemResource.resourceAt;
+
+@TestMethodOrder(OrderAnnotation.class)
+public class TestEmbeddedSftpServerWithSharedServer {
+
+    private static final String SHARED_FILE = "/tmp/file.txt";
+    private static final AtomicInteger FIRST_PORT = new AtomicInteger();
+
+    @RegisterExtension
+    public final EmbeddedSftpServer sftpServer = SftpServer.defaultSftpServer()
+            .withPort(SftpServer.ANY_FREE_PORT)
+            .withUser("user", "pass")
+            .withResources(resourceAt("/tmp/data").fromClasspathResource("/data"))
+            .withResources(resourceAt(SHARED_FILE).withText("shared file"))
+            .withHostKey(HostKeyAlgorithm.ECDSA)
+            .withSharedServer()
+            .build();
+
+    private SftpClient getSftpClient() throws JSchException {
+        return SftpClient.builder()
+                .connectAs("user", "pass")
+                .port(sftpServer.getPort())
+                .build();
+    }
+
+    @Test
+    @Order(1)
+    public void verifyClientCanModifySharedServer() throws Exception {
+        FIRST_PORT.set(sftpServer.getPort());
+        try (SftpClient client = getSftpClient()) {
+            assertThat(client.readFile(SHARED_FILE)).isEqualTo("shared file");
+            client.writeFile(SHARED_FILE, "modified");
+            client.writeFile("/tmp/new.txt", "new file");
+        }
+        assertThat(SftpServer.hostKeyCacheMetrics().getGeneratedKeys()).isGreaterThan(0);
+    }
+
+    @Test
+    @Order(2)
+    public void verifyServerIsReusedAndReset() throws Exception {
+        // Sessions of the previous test may still be closing, so the reset can have replaced the filesystem
+        assertThat(sftpServer.getPort()).isEqualTo(FIRST_PORT.get());
+        assertThat(Files.exists(sftpServer.pathFor("/tmp/new.txt"))).isFalse();
+        try (SftpClient client = getSftpClient()) {
+            assertThat(client.readFile(SHARED_FILE)).isEqualTo("shared file");
+            assertThat(client.readFile("/tmp/data/file1.txt")).isEqualTo("file 1 contents");
+        }
+    }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp;
+
+import com.jcraft.jsch.JSchException;
+import org.github.ricall.junit5.sftp.client.SftpClient;
+import org.github.ricall.junit5.sftp.implementation.VirtualThreads;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.github.ricall.junit5.sftp.FileSystemResource.resourceAt;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class TestEmbeddedSftpServerWithVirtualThreads {
+
+    private static final int SESSIONS = 16;
+
+    @RegisterExtension
+    public final EmbeddedSftpServer sftpServer = withVirtualThreads(SftpServer.defaultSftpServer()
+            .withPort(SftpServer.ANY_FREE_PORT)
+            .withUser("user", "pass")
+            .withResources(resourceAt("/tmp/data").fromClasspathResource("/data")))
+            .build();
+
+    private static SftpServer withVirtualThreads(final SftpServer server) {
+        return VirtualThreads.isSupported() ? server.withVirtualThreads() : server;
+    }
+
+    private SftpClient getSftpClient() throws JSchException {
+        return SftpClient.builder()
+                .connectAs("user", "pass")
+                .port(sftpServer.getPort())
+                .build();
+    }
+
+    @BeforeEach
+    public void requireVirtualThreads() {
+        assumeTrue(VirtualThreads.isSupported(), "Virtual threads need Java 21 or later");
+    }
+
+    @Test
+    public void verifySessionsAreServedOnVirtualThreads() throws Exception {
+        try (SftpClient client = getSftpClient()) {
+            assertThat(client.readFile("/tmp/data/file1.txt")).isEqualTo("file 1 contents");
+        }
+    }
+
+    @Test
+    @SuppressWarnings("PMD.CloseResource")
+    public void verifyConcurrentSessionsAreServed() throws Exception {
+        final List<SftpClient> clients = new ArrayList<>();
+        try {
+            for (int session = 0; session < SESSIONS; session++) {
+                clients.add(getSftpClient());
+            }
+            for (final SftpClient client : clients) {
+                assertThat(client.readFile("/tmp/data/file2.txt")).isEqualTo("file 2 contents");
+            }
+        } finally {
+            clients.forEach(SftpClient::close);
+        }
+    }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.implementation;
+
+import com.github.marschall.memoryfilesystem.MemoryFileSystemBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+@SuppressWarnings("PMD.CloseResource")
+class BackgroundFileSystemPreparerTest {
+
+    private static final String FILE = "/tmp/file.txt";
+
+    private final List<FileSystem> released = new CopyOnWriteArrayList<>();
+
+    private static FileSystem newFileSystem() {
+        try {
+            return MemoryFileSystemBuilder.newLinux().build();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static FileSystemSnapshot baseline() throws IOException {
+        try (FileSystem fileSystem = newFileSystem()) {
+            Files.createDirectories(fileSystem.getPath("/tmp"));
+            Files.write(fileSystem.getPath(FILE), "baseline".getBytes(StandardCharsets.UTF_8));
+            return FileSystemSnapshot.capture(fileSystem);
+        }
+    }
+
+    @Test
+    public void verifyPreparedFileSystemsMatchTheBaseline() throws IOException {
+        final BackgroundFileSystemPreparer preparer = new BackgroundFileSystemPreparer(
+                BackgroundFileSystemPreparerTest::newFileSystem, baseline(), released::add);
+
+        final FileSystem prepared = preparer.take();
+        preparer.close();
+
+        assertThat(Files.readAllBytes(prepared.getPath(FILE))).isEqualTo("baseline".getBytes(StandardCharsets.UTF_8));
+        // The next filesystem is only released if it was started before the preparer was closed
+        assertThat(released).hasSizeLessThanOrEqualTo(1).doesNotContain(prepared);
+    }
+
+    @Test
+    public void verifyFileSystemsThatFailToBePreparedAreReleased() throws IOException {
+        final List<FileSystem> created = new CopyOnWriteArrayList<>();
+        final BackgroundFileSystemPreparer preparer = new BackgroundFileSystemPreparer(() -> {
+            final FileSystem fileSystem = newFileSystem();
+            created.add(fileSystem);
+            try {
+                fileSystem.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return fileSystem;
+        }, baseline(), released::add);
+
+        assertThatExceptionOfType(ServerException.class).isThrownBy(preparer::take);
+        preparer.close();
+
+        assertThat(released).containsExactlyElementsOf(created);
+    }
+
+}
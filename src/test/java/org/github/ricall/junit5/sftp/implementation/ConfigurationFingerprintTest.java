@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.implementation;
+
+import org.github.ricall.junit5.sftp.ContentGenerator;
+import org.github.ricall.junit5.sftp.FileSystemBackend;
+import org.github.ricall.junit5.sftp.GeneratedFiles;
+import org.github.ricall.junit5.sftp.SftpServer;
+import org.github.ricall.junit5.sftp.ThroughputProfile;
+import org.junit.jupiter.api.Test;
+
+import java.net.URISyntaxException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.github.ricall.junit5.sftp.FileSystemResource.resourceAt;
+
+class ConfigurationFingerprintTest {
+
+    private static final String TEXT = "text";
+
+    private static SftpConfiguration configuration(final int port, final String text) {
+        return (SftpConfiguration) SftpServer.defaultSftpServer()
+                .withPort(port)
+                .withUser("user", "pass")
+                .withResources(resourceAt("/tmp/data").fromClasspathResource("/data"))
+                .withResources(resourceAt("/tmp/file.txt").withText(text));
+    }
+
+    @Test
+    public void verifyMatchingConfigurationsHaveTheSameFingerprint() {
+        assertThat(ConfigurationFingerprint.fingerprint(configuration(3022, TEXT)))
+                .isEqualTo(ConfigurationFingerprint.fingerprint(configuration(3022, TEXT)))
+                .hasSize(64);
+    }
+
+    @Test
+    public void verifyDifferentPortsHaveDifferentFingerprints() {
+        assertThat(ConfigurationFingerprint.fingerprint(configuration(3022, TEXT)))
+                .isNotEqualTo(ConfigurationFingerprint.fingerprint(configuration(3023, TEXT)));
+    }
+
+    @Test
+    public void verifyDifferentResourcesHaveDifferentFingerprints() {
+        assertThat(ConfigurationFingerprint.fingerprint(configuration(3022, TEXT)))
+                .isNotEqualTo(ConfigurationFingerprint.fingerprint(configuration(3022, "other text")));
+    }
+
+    @Test
+    public void verifyDifferentOptionsHaveDifferentFingerprints() {
+        assertThat(ConfigurationFingerprint.fingerprint(configuration(3022, TEXT)))
+                .isNotEqualTo(ConfigurationFingerprint.fingerprint(configuration(3022, TEXT).withBackgroundReset()));
+        assertThat(ConfigurationFingerprint.fingerprint(configuration(3022, TEXT)))
+                .isNotEqualTo(ConfigurationFingerprint.fingerprint(configuration(3022, TEXT).withThroughputProfile(ThroughputProfile.LARGE_FILES)));
+        assertThat(ConfigurationFingerprint.fingerprint(configuration(3022, TEXT)))
+                .isNotEqualTo(ConfigurationFingerprint.fingerprint(configuration(3022, TEXT).withSessionThreads(2)));
+        assertThat(ConfigurationFingerprint.fingerprint(configuration(3022, TEXT)))
+                .isNotEqualTo(ConfigurationFingerprint.fingerprint(configuration(3022, TEXT).withFileSystemBackend(FileSystemBackend.OFF_HEAP)));
+        assertThat(ConfigurationFingerprint.fingerprint(configuration(3022, TEXT)))
+                .isNotEqualTo(ConfigurationFingerprint.fingerprint(configuration(3022, TEXT)
+                        .withFileSystemFactory((name, home) -> FileSystems.getDefault())));
+        if (VirtualThreads.isSupported()) {
+            assertThat(ConfigurationFingerprint.fingerprint(configuration(3022, TEXT)))
+                    .isNotEqualTo(ConfigurationFingerprint.fingerprint(configuration(3022, TEXT).withVirtualThreads()));
+        }
+    }
+
+    @Test
+    public void verifyMountedAndCopiedDirectoriesHaveDifferentFingerprints() throws URISyntaxException {
+        final Path data = Paths.get(ConfigurationFingerprintTest.class.getResource("/data").toURI());
+        final SftpConfiguration copied = (SftpConfiguration) configuration(3022, TEXT).withResources(resourceAt("/tmp/host").fromPath(data));
+        final SftpConfiguration mounted = (SftpConfiguration) configuration(3022, TEXT).withResources(resourceAt("/tmp/host").mountPath(data));
+
+        assertThat(ConfigurationFingerprint.fingerprint(copied))
+                .isEqualTo(ConfigurationFingerprint.fingerprint(copied))
+                .isNotEqualTo(ConfigurationFingerprint.fingerprint(mounted));
+    }
+
+    @Test
+    public void verifyGeneratedResourcesAreNotRead() {
+        final ContentGenerator generator = (offset, target) -> {
+            throw new AssertionError("Generated content should not be read");
+        };
+        final SftpConfiguration configuration = (SftpConfiguration) configuration(3022, TEXT)
+                .withResources(resourceAt("/tmp/large.bin").withGeneratedContent(Long.MAX_VALUE, generator))
+                .withGeneratedFiles("/tmp/listing", GeneratedFiles.count(1_000_000).generatedBy(generator));
+
+        assertThat(ConfigurationFingerprint.fingerprint(configuration))
+                .isEqualTo(ConfigurationFingerprint.fingerprint(configuration))
+                .isNotEqualTo(ConfigurationFingerprint.fingerprint(configuration(3022, TEXT)));
+    }
+
+    @Test
+    public void verifyGeneratorsAreIdentifiedByInstance() {
+        final ContentGenerator generator = (offset, target) -> { };
+        final ContentGenerator other = (offset, target) -> { };
+
+        assertThat(ConfigurationFingerprint.fingerprint(generated(generator)))
+                .isEqualTo(ConfigurationFingerprint.fingerprint(generated(generator)))
+                .isNotEqualTo(ConfigurationFingerprint.fingerprint(generated(other)));
+    }
+
+    private static SftpConfiguration generated(final ContentGenerator generator) {
+        return (SftpConfiguration) configuration(3022, TEXT)
+                .withResources(resourceAt("/tmp/large.bin").withGeneratedContent(1024, generator));
+    }
+
+}
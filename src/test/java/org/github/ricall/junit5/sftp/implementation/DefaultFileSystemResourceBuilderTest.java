@@ -23,6 +23,7 @@
 
 package org.github.ricall.junit5.sftp.implementation;
 
+import org.github.ricall.junit5.sftp.ContentGenerator;
 import org.github.ricall.junit5.sftp.FileSystemResource;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -30,6 +31,7 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.FileSystem;
 import java.nio.file.Path;
 import java.nio.file.attribute.BasicFileAttributes;
@@ -97,4 +99,17 @@ class DefaultFileSystemResourceBuilderTest {
                 .withMessageStartingWith("Failed to read");
     }
 
+    @Test
+    public void verifyGeneratedResourcesStreamTheGeneratedBytes() throws Exception {
+        final ContentGenerator generator = ContentGenerator.random(99);
+        final List<FileSystemResource> resources = builder.withGeneratedContent(300_000, generator);
+
+        assertThat(resources).hasSize(1);
+        try (InputStream input = resources.get(0).getInputStream()) {
+            assertThat(generator.matches(input, 0, 300_000)).isTrue();
+        }
+        assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> builder.withGeneratedContent(-1, generator));
+    }
+
 }
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.implementation;
+
+import org.apache.sshd.common.file.root.RootedFileSystem;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class DiskStoreTest {
+
+    private static final String HOME = "/home/sftp";
+    private static final String FILE = "/home/sftp/file.txt";
+    private static final String CONTENTS = "file contents";
+    private static final String MODIFIED = "modified";
+
+    private final FileSystemJournal journal = new FileSystemJournal();
+    private final DiskStore store = new DiskStore();
+
+    private RootedFileSystem rootFileSystem;
+    private FileSystem fileSystem;
+    private FileSystemSnapshot snapshot;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        assumeTrue(store.isUsingLinks());
+        rootFileSystem = store.newFileSystem(HOME);
+        Files.write(rootFileSystem.getPath(FILE), bytes(CONTENTS));
+        snapshot = FileSystemSnapshot.capture(rootFileSystem, store.getBaselineDirectory(), true);
+
+        fileSystem = new CopyOnWriteFileSystemProvider(journal, HOME)
+                .newFileSystem(rootFileSystem.getRoot(), Collections.emptyMap());
+    }
+
+    @AfterEach
+    public void cleanup() throws IOException {
+        store.close();
+    }
+
+    private static byte[] bytes(final String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private Path baseline() {
+        return store.getBaselineDirectory().resolve("home/sftp/file.txt");
+    }
+
+    private Path path(final String path) {
+        return fileSystem.getPath(path);
+    }
+
+    @Test
+    public void verifyTheBaselineIsLinked() throws IOException {
+        assertThat(Files.getAttribute(baseline(), "unix:nlink")).isEqualTo(2);
+        assertThat(Files.readAllBytes(baseline())).isEqualTo(bytes(CONTENTS));
+    }
+
+    @Test
+    public void verifyWritesAreNotVisibleInTheBaseline() throws IOException {
+        Files.write(path(FILE), bytes(MODIFIED), StandardOpenOption.APPEND);
+
+        assertThat(Files.readAllBytes(path(FILE))).isEqualTo(bytes(CONTENTS + MODIFIED));
+        assertThat(Files.readAllBytes(baseline())).isEqualTo(bytes(CONTENTS));
+        assertThat(Files.getAttribute(baseline(), "unix:nlink")).isEqualTo(1);
+    }
+
+    @Test
+    public void verifyAttributeChangesAreNotVisibleInTheBaseline() throws IOException {
+        final String permissions = PosixFilePermissions.toString(Files.getPosixFilePermissions(baseline()));
+
+        Files.setPosixFilePermissions(path(FILE), PosixFilePermissions.fromString("r--------"));
+
+        assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(baseline()))).isEqualTo(permissions);
+    }
+
+    @Test
+    public void verifyRestoringLinksTheBaselineBackIntoPlace() throws IOException {
+        Files.write(path(FILE), bytes(MODIFIED));
+        Files.write(path("/home/sftp/new.txt"), bytes(MODIFIED));
+        Files.write(rootFileSystem.getPath("/home/sftp/untracked.txt"), bytes(MODIFIED));
+
+        final List<String> touched = new ArrayList<>(journal.drain());
+        assertThat(touched).containsExactly(FILE, "/home/sftp/new.txt");
+        assertThat(snapshot.restore(rootFileSystem, touched)).isEqualTo(2);
+        assertThat(Files.readAllBytes(path(FILE))).isEqualTo(bytes(CONTENTS));
+        assertThat(Files.exists(path("/home/sftp/new.txt"))).isFalse();
+        assertThat(Files.exists(path("/home/sftp/untracked.txt"))).isTrue();
+        assertThat(Files.getAttribute(baseline(), "unix:nlink")).isEqualTo(2);
+    }
+
+    @Test
+    public void verifyNewFileSystemsAreRestoredFromTheBaseline() throws IOException {
+        final RootedFileSystem next = store.newFileSystem(HOME);
+        snapshot.restore(next);
+
+        assertThat(Files.readAllBytes(next.getPath(FILE))).isEqualTo(bytes(CONTENTS));
+        assertThat(Files.getAttribute(baseline(), "unix:nlink")).isEqualTo(3);
+
+        store.delete(next);
+        assertThat(Files.exists(next.getRoot())).isFalse();
+    }
+
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.implementation;
+
+import com.github.marschall.memoryfilesystem.MemoryFileSystemBuilder;
+import org.github.ricall.junit5.sftp.implementation.memory.InMemoryFileSystem;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FileSystemPoolTest {
+
+    private static final String KIND = "kind";
+    private static final String HOME = "/home/sftp";
+
+    private final FileSystemPool pool = new FileSystemPool(1);
+
+    @AfterEach
+    public void cleanup() {
+        pool.clear();
+    }
+
+    private static Supplier<FileSystem> inMemory() {
+        return () -> InMemoryFileSystem.onHeap("pooled", "sftp", HOME);
+    }
+
+    private static Supplier<FileSystem> memoryFileSystem() {
+        return () -> {
+            try {
+                return MemoryFileSystemBuilder.newLinux().setCurrentWorkingDirectory(HOME).build();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    private static void populate(final FileSystem fileSystem) throws IOException {
+        Files.createDirectories(fileSystem.getPath("/tmp/data"));
+        Files.write(fileSystem.getPath("/tmp/data/file.txt"), new byte[10]);
+        Files.write(fileSystem.getPath(HOME, "home.txt"), new byte[5]);
+    }
+
+    @Test
+    public void verifyFileSystemsAreClearedAndReused() throws IOException {
+        final FileSystem fileSystem = pool.take(KIND, inMemory());
+        populate(fileSystem);
+
+        pool.recycle(KIND, fileSystem, HOME);
+
+        assertThat(pool.getIdle()).isEqualTo(1);
+        assertThat(pool.getReclaimedBytes()).isEqualTo(15);
+        assertThat(pool.getRetainedBytes()).isEqualTo(0);
+        assertThat(pool.take(KIND, inMemory())).isSameAs(fileSystem);
+        assertThat(Files.isDirectory(fileSystem.getPath(HOME))).isTrue();
+        assertThat(Files.exists(fileSystem.getPath("/tmp"))).isFalse();
+        assertThat(pool.getCreated()).isEqualTo(1);
+        assertThat(pool.getReused()).isEqualTo(1);
+        assertThat(pool.getReuseRate()).isEqualTo(0.5);
+    }
+
+    @Test
+    public void verifyOtherFileSystemsAreClearedByWalkingThem() throws IOException {
+        final FileSystem fileSystem = pool.take(KIND, memoryFileSystem());
+        populate(fileSystem);
+
+        pool.recycle(KIND, fileSystem, HOME);
+
+        assertThat(pool.getReclaimedBytes()).isEqualTo(15);
+        assertThat(pool.take(KIND, memoryFileSystem())).isSameAs(fileSystem);
+        assertThat(Files.isDirectory(fileSystem.getPath(HOME))).isTrue();
+        assertThat(Files.exists(fileSystem.getPath("/tmp"))).isFalse();
+        fileSystem.close();
+    }
+
+    @Test
+    public void verifyFileSystemsAreOnlyReusedForTheSameKind() throws IOException {
+        final FileSystem fileSystem = pool.take(KIND, inMemory());
+        pool.recycle(KIND, fileSystem, HOME);
+
+        final FileSystem other = pool.take("other", inMemory());
+
+        assertThat(other).isNotEqualTo(fileSystem);
+        assertThat(pool.getCreated()).isEqualTo(2);
+        other.close();
+    }
+
+    @Test
+    public void verifyFileSystemsBeyondTheMaximumAreClosed() throws IOException {
+        final FileSystem first = pool.take(KIND, inMemory());
+        final FileSystem second = pool.take(KIND, inMemory());
+
+        pool.recycle(KIND, first, HOME);
+        pool.recycle(KIND, second, HOME);
+
+        assertThat(pool.getIdle()).isEqualTo(1);
+        assertThat(pool.getDiscarded()).isEqualTo(1);
+        assertThat(first.isOpen()).isTrue();
+        assertThat(second.isOpen()).isFalse();
+
+        pool.setMaximumIdle(0);
+
+        assertThat(pool.getIdle()).isEqualTo(0);
+        assertThat(first.isOpen()).isFalse();
+    }
+
+}
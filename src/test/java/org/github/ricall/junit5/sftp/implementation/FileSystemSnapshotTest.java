@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.implementation;
+
+import com.github.marschall.memoryfilesystem.MemoryFileSystemBuilder;
+import org.github.ricall.junit5.sftp.implementation.memory.InMemoryFileSystem;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SuppressWarnings("PMD.TooManyMethods")
+class FileSystemSnapshotTest {
+
+    private static final String DATA = "/tmp/data";
+    private static final String FILE1 = "/tmp/data/file1.txt";
+    private static final String FILE2 = "/tmp/data/file2.txt";
+    private static final String FILE1_CONTENTS = "file 1 contents";
+    private static final String FILE2_CONTENTS = "file 2 contents";
+    private static final String MODIFIED = "modified";
+
+    private FileSystem fileSystem;
+    private FileSystemSnapshot snapshot;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        fileSystem = MemoryFileSystemBuilder.newLinux()
+                .addFileAttributeView(PosixFileAttributeView.class)
+                .build("snapshotTest");
+        Files.createDirectories(path(DATA));
+        Files.write(path(FILE1), bytes(FILE1_CONTENTS));
+        Files.write(path(FILE2), bytes(FILE2_CONTENTS));
+
+        snapshot = FileSystemSnapshot.capture(fileSystem);
+    }
+
+    @AfterEach
+    public void cleanup() throws IOException {
+        fileSystem.close();
+    }
+
+    private Path path(final String path) {
+        return fileSystem.getPath(path);
+    }
+
+    private static byte[] bytes(final String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void verifyUnchangedFileSystemRestoresNothing() {
+        assertThat(snapshot.restore(fileSystem, Collections.emptyList())).isEqualTo(0);
+    }
+
+    @Test
+    public void verifyModifiedFilesAreRestored() throws IOException {
+        Files.write(path(FILE1), bytes(MODIFIED));
+
+        assertThat(snapshot.restore(fileSystem, Collections.singletonList(FILE1))).isEqualTo(1);
+        assertThat(Files.readAllBytes(path(FILE1))).isEqualTo(bytes(FILE1_CONTENTS));
+    }
+
+    @Test
+    public void verifyRewritesThatKeepTheSizeAndTimeAreRestored() throws IOException {
+        final FileTime lastModifiedTime = Files.getLastModifiedTime(path(FILE1));
+        Files.write(path(FILE1), bytes(FILE2_CONTENTS));
+        Files.setLastModifiedTime(path(FILE1), lastModifiedTime);
+
+        assertThat(snapshot.restore(fileSystem, Collections.singletonList(FILE1))).isEqualTo(1);
+        assertThat(Files.readAllBytes(path(FILE1))).isEqualTo(bytes(FILE1_CONTENTS));
+    }
+
+    @Test
+    public void verifyFilesMovedBelowARestoredDirectoryAreRestored() throws IOException {
+        final FileTime lastModifiedTime = Files.getLastModifiedTime(path(FILE1));
+        Files.move(path(DATA), path("/tmp/moved"));
+        Files.createDirectory(path("/tmp/other"));
+        Files.write(path("/tmp/other/file1.txt"), bytes(FILE2_CONTENTS));
+        Files.setLastModifiedTime(path("/tmp/other/file1.txt"), lastModifiedTime);
+        Files.move(path("/tmp/other"), path(DATA));
+
+        snapshot.restore(fileSystem, Arrays.asList(DATA, "/tmp/moved", "/tmp/other", "/tmp/other/file1.txt"));
+
+        assertThat(Files.exists(path("/tmp/moved"))).isFalse();
+        assertThat(Files.readAllBytes(path(FILE1))).isEqualTo(bytes(FILE1_CONTENTS));
+        assertThat(Files.readAllBytes(path(FILE2))).isEqualTo(bytes(FILE2_CONTENTS));
+    }
+
+    @Test
+    public void verifyFilesThatWereNotChangedAreNotRewritten() throws IOException {
+        Files.write(path(FILE2), bytes(MODIFIED));
+        Files.write(path("/tmp/data/file3.txt"), bytes("new file"));
+
+        assertThat(snapshot.restore(fileSystem, Collections.singletonList("/tmp/data/file3.txt"))).isEqualTo(1);
+        assertThat(Files.readAllBytes(path(FILE2))).isEqualTo(bytes(MODIFIED));
+    }
+
+    @Test
+    public void verifyTheWholeTreeIsRestoredIntoAnEmptyFileSystem() throws IOException {
+        try (FileSystem empty = MemoryFileSystemBuilder.newLinux().addFileAttributeView(PosixFileAttributeView.class).build("emptyTest")) {
+            snapshot.restore(empty);
+
+            assertThat(Files.readAllBytes(empty.getPath(FILE1))).isEqualTo(bytes(FILE1_CONTENTS));
+            assertThat(Files.readAllBytes(empty.getPath(FILE2))).isEqualTo(bytes(FILE2_CONTENTS));
+        }
+    }
+
+    @Test
+    public void verifyInMemoryFilesShareTheirBytesWithTheSnapshot() throws IOException {
+        try (InMemoryFileSystem inMemory = InMemoryFileSystem.onHeap("inMemoryTest", "sftp", "/")) {
+            Files.createDirectories(inMemory.getPath(DATA));
+            Files.write(inMemory.getPath(FILE1), bytes(FILE1_CONTENTS));
+            Files.write(inMemory.getPath(FILE2), bytes(FILE2_CONTENTS));
+            final FileTime lastModifiedTime = Files.getLastModifiedTime(inMemory.getPath(FILE1));
+            final FileSystemSnapshot inMemorySnapshot = FileSystemSnapshot.capture(inMemory);
+
+            assertThat(inMemory.getLowerLayer(inMemory.getPath(FILE1))).isNotNull();
+            assertThat(Files.getLastModifiedTime(inMemory.getPath(FILE1))).isEqualTo(lastModifiedTime);
+            Files.write(inMemory.getPath(FILE1), bytes(FILE2_CONTENTS));
+            Files.setLastModifiedTime(inMemory.getPath(FILE1), lastModifiedTime);
+
+            assertThat(inMemorySnapshot.restore(inMemory, Collections.singletonList(DATA))).isEqualTo(1);
+            assertThat(Files.readAllBytes(inMemory.getPath(FILE1))).isEqualTo(bytes(FILE1_CONTENTS));
+            assertThat(Files.readAllBytes(inMemory.getPath(FILE2))).isEqualTo(bytes(FILE2_CONTENTS));
+        }
+    }
+
+    @Test
+    public void verifyDeletedFilesAndDirectoriesAreRecreated() throws IOException {
+        Files.delete(path(FILE1));
+        Files.delete(path(FILE2));
+        Files.delete(path(DATA));
+
+        assertThat(snapshot.restore(fileSystem, Arrays.asList(FILE1, FILE2, DATA))).isEqualTo(3);
+        assertThat(Files.readAllBytes(path(FILE1))).isEqualTo(bytes(FILE1_CONTENTS));
+        assertThat(Files.readAllBytes(path(FILE2))).isEqualTo(bytes(FILE2_CONTENTS));
+    }
+
+    @Test
+    public void verifyNewFilesAndDirectoriesAreRemoved() throws IOException {
+        Files.createDirectories(path("/tmp/data/new/folder"));
+        Files.write(path("/tmp/data/new/folder/file.txt"), bytes("new file"));
+        Files.write(path("/tmp/file.txt"), bytes("new file"));
+
+        assertThat(snapshot.restore(fileSystem, Arrays.asList("/tmp/data/new", "/tmp/data/new/folder",
+                "/tmp/data/new/folder/file.txt", "/tmp/file.txt"))).isEqualTo(2);
+        assertThat(Files.exists(path("/tmp/data/new"))).isFalse();
+        assertThat(Files.exists(path("/tmp/file.txt"))).isFalse();
+        assertThat(Files.exists(path(FILE1))).isTrue();
+    }
+
+    @Test
+    public void verifyReplacedEntriesAreRestored() throws IOException {
+        Files.delete(path(FILE1));
+        Files.createDirectory(path(FILE1));
+
+        assertThat(snapshot.restore(fileSystem, Collections.singletonList(FILE1))).isEqualTo(2);
+        assertThat(Files.isRegularFile(path(FILE1))).isTrue();
+    }
+
+    @Test
+    public void verifyPermissionsAreRestored() throws IOException {
+        final Path file = path(FILE1);
+        final String permissions = PosixFilePermissions.toString(Files.getPosixFilePermissions(file));
+        Files.setPosixFilePermissions(file, PosixFilePermissions.fromString("r--------"));
+
+        assertThat(snapshot.restore(fileSystem, Collections.singletonList(FILE1))).isEqualTo(1);
+        assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(file))).isEqualTo(permissions);
+    }
+
+    @Test
+    public void verifyOnlyTheRequestedPathsAreRestored() throws IOException {
+        Files.write(path(FILE1), bytes(MODIFIED));
+        Files.write(path(FILE2), bytes(MODIFIED));
+        Files.write(path("/tmp/data/file3.txt"), bytes("new file"));
+
+        assertThat(snapshot.restore(fileSystem, Arrays.asList(FILE1, "/tmp/data/file3.txt"))).isEqualTo(2);
+        assertThat(Files.readAllBytes(path(FILE1))).isEqualTo(bytes(FILE1_CONTENTS));
+        assertThat(Files.readAllBytes(path(FILE2))).isEqualTo(bytes(MODIFIED));
+        assertThat(Files.exists(path("/tmp/data/file3.txt"))).isFalse();
+    }
+
+    @Test
+    public void verifyDeletedParentsAreRestored() throws IOException {
+        Files.move(path(DATA), path("/tmp/moved"));
+
+        assertThat(snapshot.restore(fileSystem, Arrays.asList(DATA, "/tmp/moved"))).isEqualTo(4);
+        assertThat(Files.exists(path("/tmp/moved"))).isFalse();
+        assertThat(Files.readAllBytes(path(FILE1))).isEqualTo(bytes(FILE1_CONTENTS));
+        assertThat(Files.readAllBytes(path(FILE2))).isEqualTo(bytes(FILE2_CONTENTS));
+    }
+
+}
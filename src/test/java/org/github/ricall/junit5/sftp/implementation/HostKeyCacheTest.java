@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.implementation;
+
+import org.apache.sshd.common.keyprovider.KeyPairProvider;
+import org.github.ricall.junit5.sftp.HostKeyAlgorithm;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HostKeyCacheTest {
+
+    private final HostKeyCache cache = new HostKeyCache();
+
+    private static KeyPair keyPairOf(final KeyPairProvider provider) throws Exception {
+        return provider.loadKeys(null).iterator().next();
+    }
+
+    @Test
+    public void verifyKeysAreOnlyGeneratedOnce() throws Exception {
+        final KeyPairProvider first = cache.keyPairProvider(HostKeyAlgorithm.ECDSA);
+        final KeyPairProvider second = cache.keyPairProvider(HostKeyAlgorithm.ECDSA);
+
+        assertThat(second).isSameAs(first);
+        assertThat(keyPairOf(second).getPublic()).isEqualTo(keyPairOf(first).getPublic());
+        assertThat(cache.getHits()).isEqualTo(1);
+        assertThat(cache.getGeneratedKeys()).isEqualTo(1);
+        assertThat(cache.getGenerationNanos()).isGreaterThan(0);
+    }
+
+    @Test
+    public void verifyKeysAreGeneratedForEachAlgorithm() throws Exception {
+        assertThat(keyPairOf(cache.keyPairProvider(HostKeyAlgorithm.RSA)).getPublic().getAlgorithm()).isEqualTo("RSA");
+        assertThat(keyPairOf(cache.keyPairProvider(HostKeyAlgorithm.ECDSA)).getPublic().getAlgorithm()).isEqualTo("EC");
+        assertThat(keyPairOf(cache.keyPairProvider(HostKeyAlgorithm.ED25519)).getPublic().getAlgorithm()).isEqualTo("EdDSA");
+        assertThat(cache.getGeneratedKeys()).isEqualTo(3);
+    }
+
+    @Test
+    public void verifyKeysArePersisted(@TempDir final Path directory) throws Exception {
+        final Path file = directory.resolve("host-key");
+        final KeyPair generated = keyPairOf(cache.keyPairProvider(HostKeyAlgorithm.ECDSA, file));
+        assertThat(Files.exists(file)).isTrue();
+
+        final HostKeyCache otherJvm = new HostKeyCache();
+        assertThat(keyPairOf(otherJvm.keyPairProvider(HostKeyAlgorithm.ECDSA, file)).getPublic()).isEqualTo(generated.getPublic());
+        assertThat(otherJvm.getGeneratedKeys()).isEqualTo(0);
+    }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.implementation;
+
+import com.github.marschall.memoryfilesystem.MemoryFileSystemBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JournalingFileSystemProviderTest {
+
+    private static final String HOME_FILE = "/home/sftp/file.txt";
+    private static final String MOVED_FILE = "/tmp/moved.txt";
+
+    private final FileSystemJournal journal = new FileSystemJournal();
+
+    private FileSystem rootFileSystem;
+    private FileSystem fileSystem;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        rootFileSystem = MemoryFileSystemBuilder.newLinux()
+                .addFileAttributeView(PosixFileAttributeView.class)
+                .build("journalTest");
+        Files.createDirectories(rootFileSystem.getPath("/home/sftp"));
+        Files.write(rootFileSystem.getPath(HOME_FILE), bytes("file contents"));
+
+        fileSystem = new JournalingFileSystemProvider(journal, "/home/sftp")
+                .newFileSystem(rootFileSystem.getPath("/"), Collections.emptyMap());
+    }
+
+    @AfterEach
+    public void cleanup() throws IOException {
+        rootFileSystem.close();
+    }
+
+    private static byte[] bytes(final String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void verifyReadsAreNotRecorded() throws IOException {
+        final Path file = fileSystem.getPath(HOME_FILE);
+
+        assertThat(Files.readAllBytes(file)).isEqualTo(bytes("file contents"));
+        assertThat(Files.getPosixFilePermissions(file)).isNotEmpty();
+        assertThat(Files.getFileAttributeView(file, PosixFileAttributeView.class).readAttributes().size()).isEqualTo(13);
+        assertThat(journal.isEmpty()).isTrue();
+    }
+
+    @Test
+    public void verifyRelativePathsResolveAgainstTheDefaultDirectory() throws IOException {
+        Files.write(fileSystem.getPath("relative.txt"), bytes("relative"));
+
+        assertThat(Files.exists(rootFileSystem.getPath("/home/sftp/relative.txt"))).isTrue();
+        assertThat(journal.drain()).containsExactly("/home/sftp/relative.txt");
+    }
+
+    @Test
+    public void verifyMutationsAreRecorded() throws IOException {
+        Files.createDirectory(fileSystem.getPath("/tmp"));
+        Files.write(fileSystem.getPath("/tmp/new.txt"), bytes("new"));
+        Files.move(fileSystem.getPath("/tmp/new.txt"), fileSystem.getPath(MOVED_FILE));
+        Files.copy(fileSystem.getPath(MOVED_FILE), fileSystem.getPath("/tmp/copied.txt"));
+        Files.delete(fileSystem.getPath(MOVED_FILE));
+
+        assertThat(journal.drain()).containsExactly("/tmp", "/tmp/copied.txt", MOVED_FILE, "/tmp/new.txt");
+        assertThat(journal.isEmpty()).isTrue();
+    }
+
+    @Test
+    public void verifyAttributeChangesAreRecorded() throws IOException {
+        final Path file = fileSystem.getPath(HOME_FILE);
+
+        Files.setPosixFilePermissions(file, PosixFilePermissions.fromString("rw-------"));
+        assertThat(journal.drain()).containsExactly(HOME_FILE);
+
+        Files.setLastModifiedTime(file, FileTime.fromMillis(0));
+        assertThat(journal.drain()).containsExactly(HOME_FILE);
+    }
+
+}
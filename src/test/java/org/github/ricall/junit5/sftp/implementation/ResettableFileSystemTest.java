@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.implementation;
+
+import org.github.ricall.junit5.sftp.FileSystemBackend;
+import org.github.ricall.junit5.sftp.SftpServer;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.github.ricall.junit5.sftp.FileSystemResource.resourceAt;
+
+@SuppressWarnings("PMD.CloseResource")
+class ResettableFileSystemTest {
+
+    private static final String FILE = "/tmp/file.txt";
+
+    private static ResettableFileSystem fileSystem(final FileSystemBackend backend) {
+        final SftpConfiguration configuration = (SftpConfiguration) SftpServer.defaultSftpServer()
+                .withResources(resourceAt(FILE).withText("baseline"))
+                .withFileSystemBackend(backend);
+        final ResettableFileSystem fileSystem = new ResettableFileSystem(configuration);
+        fileSystem.initialise(configuration.getResources(), Collections.emptyList());
+        return fileSystem;
+    }
+
+    private static String read(final FileSystem fileSystem) throws Exception {
+        return new String(Files.readAllBytes(fileSystem.getPath(FILE)), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void verifySessionsKeepTheirRootWhenTheFileSystemIsReset() throws Exception {
+        try (ResettableFileSystem fileSystem = fileSystem(FileSystemBackend.OFF_HEAP)) {
+            final FileSystem session = fileSystem.openSession();
+            Files.write(session.getPath(FILE), "modified".getBytes(StandardCharsets.UTF_8));
+
+            assertThat(fileSystem.reset()).isEqualTo(1);
+
+            assertThat(read(session)).isEqualTo("modified");
+            assertThat(read(fileSystem.current())).isEqualTo("baseline");
+            session.close();
+        }
+    }
+
+    @Test
+    public void verifySessionsKeepTheirRootWhenTheFileSystemIsClosed() throws Exception {
+        final ResettableFileSystem fileSystem = fileSystem(FileSystemBackend.OFF_HEAP);
+        final FileSystem session = fileSystem.openSession();
+        final Path file = session.getPath(FILE);
+
+        fileSystem.close();
+
+        assertThat(read(session)).isEqualTo("baseline");
+        Files.write(file, "written after close".getBytes(StandardCharsets.UTF_8));
+        assertThat(read(session)).isEqualTo("written after close");
+        session.close();
+    }
+
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.implementation;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ResourceCacheTest {
+
+    private static final String FILE = "file.txt";
+    private static final String TEN_BYTES = "0123456789";
+
+    private final ResourceCache cache = new ResourceCache(32);
+    private final AtomicInteger reads = new AtomicInteger();
+    private Path directory;
+
+    @BeforeEach
+    public void setup(@TempDir final Path directory) {
+        this.directory = directory;
+    }
+
+    private Path file(final String name, final String content) throws IOException {
+        return Files.write(directory.resolve(name), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Supplier<InputStream> loader(final Path path) {
+        return () -> {
+            reads.incrementAndGet();
+            try {
+                return Files.newInputStream(path);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    private static String asString(final ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void verifyContentsAreOnlyReadOnce() throws IOException {
+        final Path file = file(FILE, "cached contents");
+
+        assertThat(asString(cache.read(file, loader(file)))).isEqualTo("cached contents");
+        assertThat(asString(cache.read(file, loader(file)))).isEqualTo("cached contents");
+
+        assertThat(reads.get()).isEqualTo(1);
+        assertThat(cache.getMisses()).isEqualTo(1);
+        assertThat(cache.getHits()).isEqualTo(1);
+        assertThat(cache.getSize()).isEqualTo(15);
+    }
+
+    @Test
+    public void verifyChangedSourcesAreReadAgain() throws IOException {
+        final Path file = file(FILE, "original");
+        cache.read(file, loader(file));
+
+        file(FILE, "modified contents");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(0));
+
+        assertThat(asString(cache.read(file, loader(file)))).isEqualTo("modified contents");
+        assertThat(reads.get()).isEqualTo(2);
+        assertThat(cache.getSize()).isEqualTo(17);
+    }
+
+    @Test
+    public void verifyLeastRecentlyUsedEntriesAreEvicted() throws IOException {
+        final Path first = file("first.txt", TEN_BYTES);
+        final Path second = file("second.txt", TEN_BYTES);
+        final Path third = file("third.txt", TEN_BYTES);
+        final Path fourth = file("fourth.txt", TEN_BYTES);
+
+        cache.read(first, loader(first));
+        cache.read(second, loader(second));
+        cache.read(third, loader(third));
+        cache.read(first, loader(first));
+        cache.read(fourth, loader(fourth));
+
+        assertThat(cache.getEvictions()).isEqualTo(1);
+        assertThat(cache.getSize()).isEqualTo(30);
+
+        cache.read(first, loader(first));
+        cache.read(second, loader(second));
+        assertThat(reads.get()).isEqualTo(5);
+    }
+
+    @Test
+    public void verifySourcesLargerThanTheCacheAreNotCached() throws IOException {
+        final Path file = file("large.txt", "this file is larger than the cache size");
+
+        cache.read(file, loader(file));
+        cache.read(file, loader(file));
+
+        assertThat(reads.get()).isEqualTo(2);
+        assertThat(cache.getSize()).isEqualTo(0);
+    }
+
+    @Test
+    public void verifyTheCacheIsAsLargeAsTheLargestLease() {
+        final ResourceCache.Lease small = cache.lease(16);
+        assertThat(cache.getMaximumSize()).isEqualTo(32);
+
+        final ResourceCache.Lease large = cache.lease(64);
+        assertThat(cache.getMaximumSize()).isEqualTo(64);
+
+        large.close();
+        assertThat(cache.getMaximumSize()).isEqualTo(32);
+        small.close();
+    }
+
+    @Test
+    public void verifyContentsAreDroppedWhenTheLastLeaseIsClosed() throws IOException {
+        final Path file = file(FILE, TEN_BYTES);
+        final ResourceCache.Lease first = cache.lease(64);
+        final ResourceCache.Lease second = cache.lease(64);
+        cache.read(file, loader(file));
+
+        first.close();
+        first.close();
+        assertThat(cache.getSize()).isEqualTo(10);
+
+        second.close();
+        assertThat(cache.getSize()).isEqualTo(0);
+        cache.read(file, loader(file));
+        assertThat(reads.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void verifyShrinkingTheCacheEvictsEntries() throws IOException {
+        final Path file = file(FILE, TEN_BYTES);
+        cache.read(file, loader(file));
+
+        cache.setMaximumSize(5);
+        assertThat(cache.getMaximumSize()).isEqualTo(5);
+        assertThat(cache.getSize()).isEqualTo(0);
+        assertThat(cache.getEvictions()).isEqualTo(1);
+
+        cache.clear();
+        assertThat(cache.getEvictions()).isEqualTo(0);
+        assertThat(cache.getMisses()).isEqualTo(0);
+    }
+
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.implementation;
+
+import com.github.marschall.memoryfilesystem.MemoryFileSystemBuilder;
+import org.github.ricall.junit5.sftp.ContentGenerator;
+import org.github.ricall.junit5.sftp.FileSystemResource;
+import org.github.ricall.junit5.sftp.GeneratedFiles;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.github.ricall.junit5.sftp.FileSystemResource.resourceAt;
+
+class ResourceImporterTest {
+
+    private FileSystem fileSystem;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        fileSystem = MemoryFileSystemBuilder.newLinux().build("importerTest");
+    }
+
+    @AfterEach
+    public void cleanup() throws IOException {
+        fileSystem.close();
+    }
+
+    private static List<FileSystemResource> resources(final int count) {
+        return IntStream.range(0, count)
+                .mapToObj(index -> resourceAt(String.format("/data/%d/file%d.txt", index % 10, index)).withText("file " + index))
+                .flatMap(List::stream)
+                .collect(Collectors.toList());
+    }
+
+    private String contentsOf(final String path) throws IOException {
+        return new String(Files.readAllBytes(fileSystem.getPath(path)), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void verifySmallImportsAreCopied() throws IOException {
+        new ResourceImporter(fileSystem, false, 4).importResources(resources(5));
+
+        assertThat(contentsOf("/data/0/file0.txt")).isEqualTo("file 0");
+        assertThat(contentsOf("/data/4/file4.txt")).isEqualTo("file 4");
+    }
+
+    @Test
+    public void verifyLargeImportsAreCopiedInParallel() throws IOException {
+        new ResourceImporter(fileSystem, false, 4).importResources(resources(1000));
+
+        for (int index = 0; index < 1000; index++) {
+            assertThat(contentsOf(String.format("/data/%d/file%d.txt", index % 10, index))).isEqualTo("file " + index);
+        }
+    }
+
+    @Test
+    public void verifyGeneratedFilesAreWritten() throws IOException {
+        final ResourceImporter importer = new ResourceImporter(fileSystem, false, 4);
+
+        importer.importGeneratedFiles(new GeneratedDirectory("/listing", GeneratedFiles.count(100)
+                .named("file-%02d.txt")
+                .sized(3)
+                .generatedBy(ContentGenerator.pattern("abc"))));
+        importer.importGeneratedFiles(new GeneratedDirectory("/empty", GeneratedFiles.count(0)));
+
+        assertThat(contentsOf("/listing/file-99.txt")).isEqualTo("abc");
+        try (Stream<?> files = Files.list(fileSystem.getPath("/listing"))) {
+            assertThat(files.count()).isEqualTo(100);
+        }
+        assertThat(Files.isDirectory(fileSystem.getPath("/empty"))).isTrue();
+    }
+
+    @Test
+    public void verifyFailuresAreReported() {
+        final ResourceImporter importer = new ResourceImporter(fileSystem, false, 1);
+        importer.importResources(resourceAt("/file.txt").withText("original"));
+
+        assertThatExceptionOfType(ServerException.class)
+                .isThrownBy(() -> importer.importResources(resourceAt("/file.txt").withText("duplicate")))
+                .withMessage("Failed to copy FileSystemResource(/file.txt) to FileSystem");
+    }
+
+    @Test
+    public void verifyFailuresAreReportedFromParallelImports() {
+        final ResourceImporter importer = new ResourceImporter(fileSystem, false, 4);
+        importer.importResources(singletonList(resources(100).get(50)));
+
+        assertThatExceptionOfType(ServerException.class)
+                .isThrownBy(() -> importer.importResources(resources(100)))
+                .withMessage("Failed to copy FileSystemResource(/data/0/file50.txt) to FileSystem");
+    }
+
+}
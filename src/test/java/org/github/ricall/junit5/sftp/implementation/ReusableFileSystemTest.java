@@ -36,6 +36,7 @@ import java.io.IOException;
 import java.nio.file.*;
 import java.nio.file.attribute.UserPrincipalLookupService;
 import java.nio.file.spi.FileSystemProvider;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static java.util.Collections.singleton;
 import static java.util.Collections.singletonList;
@@ -75,6 +76,17 @@ class ReusableFileSystemTest {
         fileSystem.close();
     }
 
+    @Test
+    public void verifyCloseRunsTheCallbackOnce() {
+        final AtomicInteger closed = new AtomicInteger();
+        final ReusableFileSystem sessionFileSystem = new ReusableFileSystem(delegate, closed::incrementAndGet);
+
+        sessionFileSystem.close();
+        sessionFileSystem.close();
+
+        assertThat(closed.get()).isEqualTo(1);
+    }
+
     @Test
     public void verifyIsOpenIsDelegatedAsExpected() {
         when(delegate.isOpen()).thenReturn(true);
@@ -189,4 +201,9 @@ class ReusableFileSystemTest {
         assertThat(newFileSystem).isInstanceOf(ReusableFileSystem.class);
     }
 
+    @Test
+    public void verifyFileSystemFactoryKeepsSessionFileSystems() throws IOException {
+        assertThat(fileSystemFactory(fileSystem).createFileSystem(null)).isSameAs(fileSystem);
+    }
+
 }
@@ -23,8 +23,13 @@
 
 package org.github.ricall.junit5.sftp.implementation;
 
+import org.github.ricall.junit5.sftp.FileSystemBackend;
 import org.github.ricall.junit5.sftp.FileSystemResource;
+import org.github.ricall.junit5.sftp.HostKeyAlgorithm;
+import org.github.ricall.junit5.sftp.IoBackend;
+import org.github.ricall.junit5.sftp.RootFileSystemFactory;
 import org.github.ricall.junit5.sftp.SftpServer;
+import org.github.ricall.junit5.sftp.ThroughputProfile;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 
@@ -32,6 +37,7 @@ import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
 
+@SuppressWarnings("PMD.TooManyMethods")
 class SftpConfigurationTest {
 
     private static final String USER = "user";
@@ -45,11 +51,14 @@ class SftpConfigurationTest {
     @Test
     public void verifyWeCanSetThePort() {
         assertThatExceptionOfType(IllegalArgumentException.class)
-                .isThrownBy(() -> configuration.withPort(0))
-                .withMessage("Port needs to be between 1-65535");
+                .isThrownBy(() -> configuration.withPort(-1))
+                .withMessage("Port needs to be between 0-65535");
         assertThatExceptionOfType(IllegalArgumentException.class)
                 .isThrownBy(() -> configuration.withPort(65_536))
-                .withMessage("Port needs to be between 1-65535");
+                .withMessage("Port needs to be between 0-65535");
+
+        assertThat(configuration.withPort(SftpServer.ANY_FREE_PORT)).isSameAs(configuration);
+        assertThat(configuration.getPort()).isEqualTo(0);
 
         assertThat(configuration.withPort(1)).isSameAs(configuration);
         assertThat(configuration.getPort()).isEqualTo(1);
@@ -71,6 +80,146 @@ class SftpConfigurationTest {
         assertThat(configuration.getResources()).contains(resource);
     }
 
+    @Test
+    public void verifyWeCanEnableBackgroundReset() {
+        assertThat(configuration.isBackgroundReset()).isEqualTo(false);
+        assertThat(configuration.withBackgroundReset()).isSameAs(configuration);
+        assertThat(configuration.isBackgroundReset()).isEqualTo(true);
+    }
+
+    @Test
+    public void verifyWeCanEnableTheResourceCache() {
+        assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> configuration.withResourceCache(0))
+                .withMessage("Resource cache size needs to be greater than 0");
+
+        assertThat(configuration.getResourceCacheSize()).isEqualTo(0);
+        assertThat(configuration.withResourceCache(1024)).isSameAs(configuration);
+        assertThat(configuration.getResourceCacheSize()).isEqualTo(1024);
+    }
+
+    @Test
+    public void verifyWeCanSetTheImportParallelism() {
+        assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> configuration.withImportParallelism(0))
+                .withMessage("Import parallelism needs to be at least 1");
+
+        assertThat(configuration.getImportParallelism()).isEqualTo(Runtime.getRuntime().availableProcessors());
+        assertThat(configuration.withImportParallelism(2)).isSameAs(configuration);
+        assertThat(configuration.getImportParallelism()).isEqualTo(2);
+    }
+
+    @Test
+    public void verifyWeCanChooseThroughputProfiles() {
+        assertThat(configuration.getWindowSize()).isEqualTo(ThroughputProfile.DEFAULT.getWindowSize());
+        assertThat(configuration.getMaxPacketSize()).isEqualTo(ThroughputProfile.DEFAULT.getMaxPacketSize());
+        assertThat(configuration.getReadBufferSize()).isEqualTo(ThroughputProfile.DEFAULT.getReadBufferSize());
+        assertThat(configuration.getNio2ReadBufferSize()).isEqualTo(ThroughputProfile.DEFAULT.getNio2ReadBufferSize());
+
+        assertThat(configuration.withThroughputProfile(ThroughputProfile.LARGE_FILES).withReadBufferSize(1024)).isSameAs(configuration);
+        assertThat(configuration.getWindowSize()).isEqualTo(ThroughputProfile.LARGE_FILES.getWindowSize());
+        assertThat(configuration.getMaxPacketSize()).isEqualTo(ThroughputProfile.LARGE_FILES.getMaxPacketSize());
+        assertThat(configuration.getReadBufferSize()).isEqualTo(1024);
+        assertThat(configuration.getNio2ReadBufferSize()).isEqualTo(ThroughputProfile.LARGE_FILES.getNio2ReadBufferSize());
+    }
+
+    @Test
+    public void verifyThroughputSizesMustBePositive() {
+        assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> configuration.withWindowSize(0))
+                .withMessage("Window size needs to be greater than 0");
+        assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> configuration.withMaxPacketSize(0))
+                .withMessage("Max packet size needs to be greater than 0");
+        assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> configuration.withReadBufferSize(0))
+                .withMessage("Read buffer size needs to be greater than 0");
+        assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> configuration.withNio2ReadBufferSize(0))
+                .withMessage("NIO2 read buffer size needs to be greater than 0");
+    }
+
+    @Test
+    public void verifyWeCanChooseTheIoBackend() {
+        assertThat(configuration.getIoBackend()).isEqualTo(IoBackend.NIO2);
+        assertThat(configuration.withIoBackend(IoBackend.NIO2)).isSameAs(configuration);
+
+        assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> configuration.withIoBackend(IoBackend.MINA))
+                .withMessage("MINA I/O backend needs org.apache.sshd:sshd-mina on the classpath");
+    }
+
+    @Test
+    public void verifyWeCanSizeTheThreads() {
+        assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> configuration.withIoWorkers(0))
+                .withMessage("Number of I/O workers needs to be at least 1");
+        assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> configuration.withSessionThreads(0))
+                .withMessage("Number of session threads needs to be at least 1");
+
+        assertThat(configuration.getIoWorkers()).isEqualTo(Runtime.getRuntime().availableProcessors() + 1);
+        assertThat(configuration.getSessionThreads()).isEqualTo(0);
+        assertThat(configuration.withIoWorkers(2).withSessionThreads(4)).isSameAs(configuration);
+        assertThat(configuration.getIoWorkers()).isEqualTo(2);
+        assertThat(configuration.getSessionThreads()).isEqualTo(4);
+    }
+
+    @Test
+    public void verifyWeCanUseVirtualThreadsWhenSupported() {
+        assertThat(configuration.isVirtualThreads()).isEqualTo(false);
+        if (VirtualThreads.isSupported()) {
+            assertThat(configuration.withVirtualThreads()).isSameAs(configuration);
+            assertThat(configuration.isVirtualThreads()).isEqualTo(true);
+        } else {
+            assertThatExceptionOfType(IllegalArgumentException.class)
+                    .isThrownBy(configuration::withVirtualThreads)
+                    .withMessage("Virtual threads need Java 21 or later");
+            assertThat(configuration.isVirtualThreads()).isEqualTo(false);
+        }
+    }
+
+    @Test
+    public void verifyWeCanChooseTheFileSystemBackend() {
+        assertThat(configuration.getFileSystemBackend()).isEqualTo(FileSystemBackend.HEAP);
+        assertThat(configuration.withFileSystemBackend(FileSystemBackend.OFF_HEAP)).isSameAs(configuration);
+        assertThat(configuration.getFileSystemBackend()).isEqualTo(FileSystemBackend.OFF_HEAP);
+    }
+
+    @Test
+    public void verifyWeCanSupplyAFileSystemFactory() {
+        final RootFileSystemFactory factory = Mockito.mock(RootFileSystemFactory.class);
+
+        assertThat(configuration.getFileSystemFactory()).isNull();
+        assertThat(configuration.withFileSystemFactory(factory)).isSameAs(configuration);
+        assertThat(configuration.getFileSystemFactory()).isSameAs(factory);
+        assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> configuration.withFileSystemFactory(null));
+    }
+
+    @Test
+    public void verifyWeCanShareTheServer() {
+        assertThat(configuration.isSharedServer()).isEqualTo(false);
+        assertThat(configuration.withSharedServer()).isSameAs(configuration);
+        assertThat(configuration.isSharedServer()).isEqualTo(true);
+    }
+
+    @Test
+    public void verifyWeCanIsolateTests() {
+        assertThat(configuration.usesServerPool()).isEqualTo(false);
+        assertThat(configuration.withIsolatedTests()).isSameAs(configuration);
+        assertThat(configuration.isIsolatedTests()).isEqualTo(true);
+        assertThat(configuration.usesServerPool()).isEqualTo(true);
+    }
+
+    @Test
+    public void verifyWeCanUseCachedHostKeys() {
+        assertThat(configuration.getKeyPairProvider()).isSameAs(HostKeyCache.shared().keyPairProvider(HostKeyAlgorithm.RSA));
+
+        assertThat(configuration.withHostKey(HostKeyAlgorithm.ECDSA)).isSameAs(configuration);
+        assertThat(configuration.getKeyPairProvider()).isSameAs(HostKeyCache.shared().keyPairProvider(HostKeyAlgorithm.ECDSA));
+    }
+
     @Test
     public void verifyUserAuthentication() {
         assertThat(configuration.authenticate(USER, PASS, null)).isEqualTo(false);
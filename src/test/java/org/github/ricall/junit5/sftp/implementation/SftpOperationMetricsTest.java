@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.implementation;
+
+import org.github.ricall.junit5.sftp.SftpMetrics;
+import org.github.ricall.junit5.sftp.SftpOperation;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+class SftpOperationMetricsTest {
+
+    private final SftpOperationMetrics metrics = new SftpOperationMetrics();
+
+    @Test
+    public void verifyLatenciesAreBucketedByPowersOfTwoMicroseconds() {
+        assertThat(SftpOperationMetrics.bucketOf(-1)).isEqualTo(0);
+        assertThat(SftpOperationMetrics.bucketOf(999)).isEqualTo(0);
+        assertThat(SftpOperationMetrics.bucketOf(1_000)).isEqualTo(1);
+        assertThat(SftpOperationMetrics.bucketOf(3_999)).isEqualTo(2);
+        assertThat(SftpOperationMetrics.bucketOf(4_000)).isEqualTo(3);
+        assertThat(SftpOperationMetrics.bucketOf(Long.MAX_VALUE)).isEqualTo(SftpMetrics.LATENCY_BUCKETS - 1);
+    }
+
+    @Test
+    public void verifyOperationsAreCountedSeparately() {
+        metrics.record(SftpOperation.READ, 500);
+        metrics.record(SftpOperation.READ, 1_500);
+        metrics.record(SftpOperation.WRITE, 2_500);
+
+        assertThat(metrics.getCount(SftpOperation.READ)).isEqualTo(2);
+        assertThat(metrics.getCount(SftpOperation.WRITE)).isEqualTo(1);
+        assertThat(metrics.getCount(SftpOperation.STAT)).isZero();
+        assertThat(metrics.getTotalLatency(SftpOperation.READ)).isEqualTo(Duration.ofNanos(2_000));
+        assertThat(metrics.getLatencyHistogram(SftpOperation.READ)).startsWith(1, 1, 0);
+        assertThat(metrics.getLatencyHistogram(SftpOperation.WRITE)).startsWith(0, 0, 1);
+    }
+
+    @Test
+    public void verifyPercentilesAreTheUpperBoundOfTheirBucket() {
+        for (int index = 0; index < 99; index++) {
+            metrics.record(SftpOperation.OPEN, 10_000);
+        }
+        metrics.record(SftpOperation.OPEN, TimeUnit.SECONDS.toNanos(1));
+
+        assertThat(metrics.getLatencyPercentile(SftpOperation.OPEN, 50)).isEqualTo(Duration.ofNanos(16_000));
+        assertThat(metrics.getLatencyPercentile(SftpOperation.OPEN, 99)).isEqualTo(Duration.ofNanos(16_000));
+        assertThat(metrics.getLatencyPercentile(SftpOperation.OPEN, 100)).isGreaterThan(Duration.ofSeconds(1));
+        assertThat(metrics.getLatencyPercentile(SftpOperation.REMOVE, 50)).isEqualTo(Duration.ZERO);
+    }
+
+    @Test
+    public void verifyInvalidPercentilesAreRejected() {
+        assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> metrics.getLatencyPercentile(SftpOperation.OPEN, 101))
+                .withMessage("Percentile needs to be between 0-100");
+    }
+
+    @Test
+    public void verifyResetClearsEverything() {
+        metrics.record(SftpOperation.RENAME, 1_000);
+        metrics.recordRead(10);
+        metrics.recordWritten(20);
+        assertThat(metrics.getBytesRead()).isEqualTo(10);
+        assertThat(metrics.getBytesWritten()).isEqualTo(20);
+
+        metrics.reset();
+
+        assertThat(metrics.getCount(SftpOperation.RENAME)).isZero();
+        assertThat(metrics.getTotalLatency(SftpOperation.RENAME)).isEqualTo(Duration.ZERO);
+        assertThat(metrics.getLatencyHistogram(SftpOperation.RENAME)).containsOnly(0);
+        assertThat(metrics.getBytesRead()).isZero();
+        assertThat(metrics.getBytesWritten()).isZero();
+    }
+
+}
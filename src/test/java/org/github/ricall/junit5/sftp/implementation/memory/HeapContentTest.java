@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.implementation.memory;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HeapContentTest {
+
+    private static final int CHUNK_SIZE = HeapContent.CHUNK_SIZE;
+    private static final int PACKET_SIZE = 32 * 1024;
+
+    private final FileContent content = new HeapContent();
+
+    private static byte[] pattern(final int size) {
+        final byte[] bytes = new byte[size];
+        for (int index = 0; index < size; index++) {
+            bytes[index] = (byte) (index % 251 + 1);
+        }
+        return bytes;
+    }
+
+    private static byte[] readAll(final FileContent content) {
+        final ByteBuffer buffer = ByteBuffer.allocate((int) content.size());
+        content.read(0, buffer);
+        return buffer.array();
+    }
+
+    @Test
+    public void verifyAppendedPacketsCanBeReadBackAcrossChunks() {
+        final byte[] bytes = pattern(3 * CHUNK_SIZE + 17);
+
+        for (int offset = 0; offset < bytes.length; offset += PACKET_SIZE) {
+            content.write(offset, ByteBuffer.wrap(bytes, offset, Math.min(PACKET_SIZE, bytes.length - offset)));
+        }
+
+        assertThat(content.size()).isEqualTo(bytes.length);
+        assertThat(readAll(content)).isEqualTo(bytes);
+        final ByteBuffer spanning = ByteBuffer.allocate(100);
+        assertThat(content.read(CHUNK_SIZE - 50, spanning)).isEqualTo(100);
+        assertThat(spanning.array()).isEqualTo(Arrays.copyOfRange(bytes, CHUNK_SIZE - 50, CHUNK_SIZE + 50));
+        assertThat(content.read(bytes.length, ByteBuffer.allocate(1))).isEqualTo(-1);
+    }
+
+    @Test
+    public void verifyWritesCanArriveOutOfOrder() {
+        final byte[] bytes = pattern(4 * PACKET_SIZE + 10);
+
+        for (final int packet : new int[] {2, 4, 0, 3, 1}) {
+            final int offset = packet * PACKET_SIZE;
+            content.write(offset, ByteBuffer.wrap(bytes, offset, Math.min(PACKET_SIZE, bytes.length - offset)));
+            assertThat(content.size()).isGreaterThanOrEqualTo((long) offset);
+        }
+
+        assertThat(readAll(content)).isEqualTo(bytes);
+    }
+
+    @Test
+    public void verifyHolesReadAsZeros() {
+        content.write(10, ByteBuffer.wrap(new byte[] {1}));
+        content.write(2L * CHUNK_SIZE + 10, ByteBuffer.wrap(new byte[] {2}));
+
+        final byte[] expected = new byte[2 * CHUNK_SIZE + 11];
+        expected[10] = 1;
+        expected[2 * CHUNK_SIZE + 10] = 2;
+        assertThat(readAll(content)).isEqualTo(expected);
+    }
+
+    @Test
+    public void verifyTruncatedBytesReadAsZerosWhenTheFileGrowsAgain() {
+        final byte[] bytes = pattern(2 * CHUNK_SIZE);
+        content.write(0, ByteBuffer.wrap(bytes));
+
+        content.truncate(CHUNK_SIZE + 5);
+        assertThat(readAll(content)).isEqualTo(Arrays.copyOf(bytes, CHUNK_SIZE + 5));
+
+        content.write(2L * CHUNK_SIZE, ByteBuffer.wrap(new byte[] {42}));
+        final byte[] expected = Arrays.copyOf(bytes, 2 * CHUNK_SIZE + 1);
+        Arrays.fill(expected, CHUNK_SIZE + 5, 2 * CHUNK_SIZE, (byte) 0);
+        expected[2 * CHUNK_SIZE] = 42;
+        assertThat(readAll(content)).isEqualTo(expected);
+
+        content.release();
+        assertThat(content.size()).isEqualTo(0);
+        assertThat(content.read(0, ByteBuffer.allocate(1))).isEqualTo(-1);
+    }
+
+    @Test
+    public void verifyReadsDuringAppendsOnlySeeWrittenBytes() throws InterruptedException {
+        final byte[] bytes = pattern(16 * CHUNK_SIZE);
+        final AtomicBoolean consistent = new AtomicBoolean(true);
+        final Thread reader = new Thread(() -> {
+            while (content.size() < bytes.length) {
+                final long size = content.size();
+                final ByteBuffer buffer = ByteBuffer.allocate(PACKET_SIZE);
+                final long position = Math.max(0, size - PACKET_SIZE);
+                final int read = content.read(position, buffer);
+                for (int index = 0; index < read; index++) {
+                    if (buffer.get(index) != bytes[(int) position + index]) {
+                        consistent.set(false);
+                    }
+                }
+            }
+        });
+        reader.start();
+
+        for (int offset = 0; offset < bytes.length; offset += PACKET_SIZE) {
+            content.write(offset, ByteBuffer.wrap(bytes, offset, PACKET_SIZE));
+        }
+        reader.join();
+
+        assertThat(content.isConcurrentlyReadable()).isTrue();
+        assertThat(consistent.get()).isTrue();
+    }
+
+    @Test
+    public void verifyReadsDuringOverwritesSeeWholeWrites() throws InterruptedException {
+        final byte[] first = new byte[2 * PACKET_SIZE];
+        final byte[] second = new byte[first.length];
+        Arrays.fill(first, (byte) 1);
+        Arrays.fill(second, (byte) 2);
+        final long position = CHUNK_SIZE - PACKET_SIZE;
+        content.write(position, ByteBuffer.wrap(first));
+        final AtomicBoolean writing = new AtomicBoolean(true);
+        final AtomicBoolean consistent = new AtomicBoolean(true);
+        final Thread reader = new Thread(() -> {
+            final ByteBuffer buffer = ByteBuffer.allocate(first.length);
+            while (writing.get()) {
+                buffer.clear();
+                content.read(position, buffer);
+                for (int index = 1; index < first.length; index++) {
+                    if (buffer.get(index) != buffer.get(0)) {
+                        consistent.set(false);
+                    }
+                }
+            }
+        });
+        reader.start();
+
+        for (int count = 0; count < 2000; count++) {
+            content.write(position, ByteBuffer.wrap(count % 2 == 0 ? second : first));
+        }
+        writing.set(false);
+        reader.join();
+
+        assertThat(consistent.get()).isTrue();
+    }
+
+}
@@ -0,0 +1,373 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.implementation.memory;
+
+import org.github.ricall.junit5.sftp.ContentGenerator;
+import org.github.ricall.junit5.sftp.GeneratedFiles;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedFileSystemException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+@SuppressWarnings("PMD.TooManyMethods")
+class InMemoryFileSystemTest {
+
+    private static final String HOME = "/home/sftp";
+    private static final String DATA = "/tmp/data";
+    private static final String FILE = "/tmp/data/file.txt";
+    private static final String MOVED = "/tmp/moved.txt";
+    private static final String GENERATED = "/generated.bin";
+    private static final String CONTENTS = "file contents";
+    private static final int SESSIONS = 8;
+    private static final int FILES_PER_SESSION = 200;
+
+    private final ChunkPool pool = new ChunkPool();
+    private final InMemoryFileSystem fileSystem = InMemoryFileSystem.offHeap("inMemoryTest", pool, "sftp", HOME);
+
+    @AfterEach
+    public void cleanup() {
+        fileSystem.close();
+        pool.close();
+    }
+
+    private Path path(final String path) {
+        return fileSystem.getPath(path);
+    }
+
+    private static byte[] bytes(final String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void writeFile() throws IOException {
+        Files.createDirectories(path(DATA));
+        Files.write(path(FILE), bytes(CONTENTS));
+    }
+
+    @Test
+    public void verifyTheDefaultDirectoryIsCreated() throws IOException {
+        assertThat(Files.isDirectory(path(HOME))).isTrue();
+
+        Files.write(path("relative.txt"), bytes(CONTENTS));
+
+        assertThat(Files.readAllBytes(path("/home/sftp/relative.txt"))).isEqualTo(bytes(CONTENTS));
+        assertThat(path("relative.txt").toAbsolutePath().toString()).isEqualTo("/home/sftp/relative.txt");
+    }
+
+    @Test
+    public void verifyFilesCanBeWrittenAndRead() throws IOException {
+        writeFile();
+        Files.write(path(FILE), bytes(" appended"), StandardOpenOption.APPEND);
+
+        assertThat(new String(Files.readAllBytes(path(FILE)), StandardCharsets.UTF_8)).isEqualTo(CONTENTS + " appended");
+        assertThat(Files.size(path(FILE))).isEqualTo(CONTENTS.length() + 9);
+        assertThatExceptionOfType(FileAlreadyExistsException.class)
+                .isThrownBy(() -> Files.write(path(FILE), bytes(CONTENTS), StandardOpenOption.CREATE_NEW));
+        assertThatExceptionOfType(NoSuchFileException.class)
+                .isThrownBy(() -> Files.readAllBytes(path("/tmp/missing.txt")));
+    }
+
+    @Test
+    public void verifyDirectoriesCanBeListed() throws IOException {
+        writeFile();
+        Files.createDirectory(path("/tmp/data/child"));
+
+        final List<String> names = new ArrayList<>();
+        Files.newDirectoryStream(path(DATA)).forEach(entry -> names.add(entry.toString()));
+
+        assertThat(names).containsExactly("/tmp/data/child", FILE);
+        assertThatExceptionOfType(DirectoryNotEmptyException.class).isThrownBy(() -> Files.delete(path(DATA)));
+    }
+
+    @Test
+    public void verifyFilesCanBeMovedCopiedAndDeleted() throws IOException {
+        writeFile();
+
+        Files.move(path(FILE), path(MOVED));
+        Files.copy(path(MOVED), path(FILE));
+        Files.delete(path(MOVED));
+
+        assertThat(Files.exists(path(MOVED))).isFalse();
+        assertThat(Files.readAllBytes(path(FILE))).isEqualTo(bytes(CONTENTS));
+        assertThatExceptionOfType(FileSystemException.class).isThrownBy(() -> Files.move(path("/tmp"), path("/tmp/data/tmp")));
+    }
+
+    @Test
+    public void verifySymbolicLinksAreFollowed() throws IOException {
+        writeFile();
+        Files.createSymbolicLink(path("/link"), path(DATA));
+
+        assertThat(Files.isSymbolicLink(path("/link"))).isTrue();
+        assertThat(Files.readSymbolicLink(path("/link")).toString()).isEqualTo(DATA);
+        assertThat(Files.readAllBytes(path("/link/file.txt"))).isEqualTo(bytes(CONTENTS));
+        assertThat(path("/link/file.txt").toRealPath().toString()).isEqualTo(FILE);
+    }
+
+    @Test
+    public void verifyAttributesCanBeChanged() throws IOException {
+        writeFile();
+        final Path file = path(FILE);
+
+        Files.setPosixFilePermissions(file, PosixFilePermissions.fromString("r--------"));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(1000));
+
+        assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(file))).isEqualTo("r--------");
+        assertThat(Files.getLastModifiedTime(file).toMillis()).isEqualTo(1000);
+        assertThat(Files.getOwner(file).getName()).isEqualTo("sftp");
+        assertThat(Files.readAttributes(file, "posix:*")).containsEntry("size", (long) CONTENTS.length());
+    }
+
+    @Test
+    public void verifyOpenFilesCanBeReadAfterTheyAreDeleted() throws IOException {
+        writeFile();
+
+        try (SeekableByteChannel channel = Files.newByteChannel(path(FILE))) {
+            Files.delete(path(FILE));
+            final ByteBuffer buffer = ByteBuffer.allocate(CONTENTS.length());
+            channel.read(buffer);
+
+            assertThat(buffer.array()).isEqualTo(bytes(CONTENTS));
+        }
+    }
+
+    @Test
+    public void verifyMountedFilesAreReadFromTheHost(@TempDir final Path directory) throws IOException {
+        final Path source = Files.write(directory.resolve("host.txt"), bytes(CONTENTS));
+        Files.createDirectories(path(DATA));
+
+        fileSystem.mount(path(FILE), LowerLayer.hostFile(source));
+        Files.copy(path(FILE), path(MOVED));
+
+        assertThat(Files.readAllBytes(path(FILE))).isEqualTo(bytes(CONTENTS));
+        assertThat(Files.getLastModifiedTime(path(FILE))).isEqualTo(Files.getLastModifiedTime(source));
+        assertThat(fileSystem.getLowerLayer(path(FILE))).isNotNull();
+        assertThat(fileSystem.getLowerLayer(path(MOVED))).isSameAs(fileSystem.getLowerLayer(path(FILE)));
+        assertThat(pool.getAllocatedBytes()).isEqualTo(0);
+    }
+
+    @Test
+    public void verifyMountedFilesAreCopiedWhenModified(@TempDir final Path directory) throws IOException {
+        final Path source = Files.write(directory.resolve("host.txt"), bytes(CONTENTS));
+        Files.createDirectories(path(DATA));
+        fileSystem.mount(path(FILE), LowerLayer.hostFile(source));
+
+        Files.write(path(FILE), bytes(" appended"), StandardOpenOption.APPEND);
+
+        assertThat(new String(Files.readAllBytes(path(FILE)), StandardCharsets.UTF_8)).isEqualTo(CONTENTS + " appended");
+        assertThat(Files.readAllBytes(source)).isEqualTo(bytes(CONTENTS));
+        assertThat(fileSystem.getLowerLayer(path(FILE))).isNull();
+
+        fileSystem.mount(path(FILE), LowerLayer.hostFile(source));
+        assertThat(Files.readAllBytes(path(FILE))).isEqualTo(bytes(CONTENTS));
+    }
+
+    @Test
+    public void verifyGeneratedFilesAreNotStored() throws IOException {
+        final long size = 10L * ChunkPool.CHUNK_SIZE;
+        fileSystem.mount(path(GENERATED), LowerLayer.generated(size, ContentGenerator.pattern("0123456789")));
+
+        try (SeekableByteChannel channel = Files.newByteChannel(path(GENERATED))) {
+            final ByteBuffer buffer = ByteBuffer.allocate(4);
+            channel.position(size - 3).read(buffer);
+
+            assertThat(buffer.position()).isEqualTo(3);
+            assertThat(new String(buffer.array(), 0, 3, StandardCharsets.UTF_8)).isEqualTo("789");
+        }
+        assertThat(Files.size(path(GENERATED))).isEqualTo(size);
+        assertThat(pool.getAllocatedBytes()).isEqualTo(0);
+
+        Files.write(path(GENERATED), bytes(CONTENTS), StandardOpenOption.TRUNCATE_EXISTING);
+        assertThat(Files.readAllBytes(path(GENERATED))).isEqualTo(bytes(CONTENTS));
+    }
+
+    @Test
+    public void verifyGeneratedFilesAreMountedInBulk() throws IOException {
+        Files.createDirectories(path(DATA));
+        fileSystem.mountAll(path(DATA), GeneratedFiles.count(1000)
+                .named("file-%03d.bin")
+                .sized(index -> index < 500 ? 10 : index)
+                .generatedBy(ContentGenerator.pattern("0123456789")));
+
+        try (Stream<Path> files = Files.list(path(DATA))) {
+            assertThat(files.count()).isEqualTo(1000);
+        }
+        assertThat(Files.size(path(DATA + "/file-999.bin"))).isEqualTo(999);
+        assertThat(Files.readAllBytes(path(DATA + "/file-000.bin"))).isEqualTo(bytes("0123456789"));
+        assertThat(fileSystem.getLowerLayer(path(DATA + "/file-001.bin")))
+                .isSameAs(fileSystem.getLowerLayer(path(DATA + "/file-499.bin")));
+        assertThat(pool.getAllocatedBytes()).isEqualTo(0);
+        assertThatExceptionOfType(FileSystemException.class)
+                .isThrownBy(() -> fileSystem.mountAll(path(DATA), GeneratedFiles.count(1).named("nested/%d")));
+    }
+
+    @Test
+    public void verifyLargeDirectoriesAreListedInOrder() throws IOException {
+        final int count = 3 * InMemoryDirectoryStream.BATCH_SIZE + 5;
+        Files.createDirectories(path(DATA));
+        fileSystem.mountAll(path(DATA), GeneratedFiles.count(count).named("file-%05d").sized(10));
+
+        final List<String> names = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(path(DATA))) {
+            for (final Path entry : entries) {
+                names.add(entry.getFileName().toString());
+                assertThat(Files.size(entry)).isEqualTo(10);
+            }
+        }
+
+        assertThat(names.size()).isEqualTo(count);
+        assertThat(names.get(0)).isEqualTo("file-00000");
+        assertThat(names.get(count - 1)).isEqualTo(String.format("file-%05d", count - 1));
+    }
+
+    @Test
+    public void verifyEntriesRemovedWhileListingAreNotReturned() throws IOException {
+        final int count = InMemoryDirectoryStream.BATCH_SIZE + 1;
+        final Path last = path(String.format("%s/file-%05d", DATA, count - 1));
+        Files.createDirectories(path(DATA));
+        fileSystem.mountAll(path(DATA), GeneratedFiles.count(count).named("file-%05d"));
+
+        int listed = 0;
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(path(DATA))) {
+            final Iterator<Path> iterator = entries.iterator();
+            iterator.next();
+            listed++;
+            assertThat(Files.exists(last)).isTrue();
+            Files.delete(last);
+            assertThat(Files.exists(last)).isFalse();
+            while (iterator.hasNext()) {
+                iterator.next();
+                listed++;
+            }
+        }
+
+        assertThat(listed).isEqualTo(count - 1);
+    }
+
+    @Test
+    public void verifyClosingReleasesTheContents() throws IOException {
+        writeFile();
+        Files.write(path("/large.bin"), new byte[3 * ChunkPool.CHUNK_SIZE]);
+        assertThat(pool.getAllocatedBytes()).isGreaterThanOrEqualTo(3L * ChunkPool.CHUNK_SIZE);
+
+        fileSystem.close();
+        pool.close();
+
+        assertThat(pool.getAllocatedBytes()).isEqualTo(0);
+        assertThatExceptionOfType(ClosedFileSystemException.class).isThrownBy(() -> Files.readAllBytes(path(FILE)));
+    }
+
+    @Test
+    public void verifySessionsCanChangeTheTreeConcurrently() throws Exception {
+        Files.createDirectories(path(DATA));
+        Files.createDirectories(path("/tmp/moving/child"));
+        final ExecutorService executor = Executors.newFixedThreadPool(SESSIONS + 1);
+        try {
+            final List<Future<?>> sessions = new ArrayList<>();
+            for (int session = 0; session < SESSIONS; session++) {
+                final String directory = "/session-" + session;
+                sessions.add(executor.submit(() -> {
+                    Files.createDirectory(path(directory));
+                    for (int index = 0; index < FILES_PER_SESSION; index++) {
+                        Files.write(path(directory + "/upload.tmp"), bytes(directory + index));
+                        Files.move(path(directory + "/upload.tmp"), path(directory + "/file-" + index));
+                        Files.write(path(DATA + directory + "-" + index), bytes(CONTENTS));
+                        if (index % 2 == 0) {
+                            Files.delete(path(directory + "/file-" + index));
+                        }
+                    }
+                    return null;
+                }));
+            }
+            sessions.add(executor.submit(() -> {
+                for (int index = 0; index < FILES_PER_SESSION; index++) {
+                    Files.move(path("/tmp/moving"), path("/tmp/renamed"));
+                    Files.move(path("/tmp/renamed"), path("/tmp/moving"));
+                }
+                return null;
+            }));
+            for (final Future<?> session : sessions) {
+                session.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        for (int session = 0; session < SESSIONS; session++) {
+            try (Stream<Path> files = Files.list(path("/session-" + session))) {
+                assertThat(files.count()).isEqualTo(FILES_PER_SESSION / 2L);
+            }
+            assertThat(Files.readAllBytes(path("/session-" + session + "/file-1"))).isEqualTo(bytes("/session-" + session + 1));
+        }
+        try (Stream<Path> files = Files.list(path(DATA))) {
+            assertThat(files.count()).isEqualTo((long) SESSIONS * FILES_PER_SESSION);
+        }
+        assertThat(Files.isDirectory(path("/tmp/moving/child"))).isTrue();
+    }
+
+    @Test
+    public void verifyPathsAreInterned() {
+        assertThat(path(FILE)).isSameAs(path(FILE));
+        assertThat(path(FILE).getFileName().toString()).isEqualTo("file.txt");
+        assertThat(fileSystem.getPath("/tmp", "data")).isEqualTo(path(DATA));
+    }
+
+    @Test
+    public void verifyClearingKeepsOnlyTheDefaultDirectory() throws IOException {
+        writeFile();
+        Files.write(path(HOME + "/home.txt"), bytes(CONTENTS));
+
+        assertThat(fileSystem.clear()).isEqualTo(2L * CONTENTS.length());
+        assertThat(Files.isDirectory(path(HOME))).isTrue();
+        assertThat(Files.exists(path(HOME + "/home.txt"))).isFalse();
+        assertThat(Files.exists(path("/tmp"))).isFalse();
+
+        writeFile();
+        assertThat(Files.readAllBytes(path(FILE))).isEqualTo(bytes(CONTENTS));
+    }
+
+}
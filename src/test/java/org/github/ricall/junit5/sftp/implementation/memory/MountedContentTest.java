@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.implementation.memory;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MountedContentTest {
+
+    private static final byte[] CONTENTS = "file contents".getBytes(StandardCharsets.UTF_8);
+
+    private static MountedContent mount(final Path directory) throws IOException {
+        final Path source = Files.write(directory.resolve("host.txt"), CONTENTS);
+        return new MountedContent(source, CONTENTS.length);
+    }
+
+    @Test
+    public void verifyReadsDoNotHoldTheHostFileOpen(@TempDir final Path directory) throws IOException {
+        final MountedContent content = mount(directory);
+        final ByteBuffer buffer = ByteBuffer.allocate(CONTENTS.length);
+
+        assertThat(content.read(0, buffer)).isEqualTo(CONTENTS.length);
+
+        assertThat(buffer.array()).isEqualTo(CONTENTS);
+        assertThat(content.isOpen()).isFalse();
+    }
+
+    @Test
+    public void verifyTheHostFileIsOpenUntilTheLastChannelCloses(@TempDir final Path directory) throws IOException {
+        final MountedContent content = mount(directory);
+        content.opened();
+        content.opened();
+
+        content.read(0, ByteBuffer.allocate(CONTENTS.length));
+        assertThat(content.isOpen()).isTrue();
+        content.closed();
+        assertThat(content.isOpen()).isTrue();
+        content.closed();
+
+        assertThat(content.isOpen()).isFalse();
+        content.closed();
+        content.read(0, ByteBuffer.allocate(CONTENTS.length));
+        assertThat(content.isOpen()).isFalse();
+    }
+
+}
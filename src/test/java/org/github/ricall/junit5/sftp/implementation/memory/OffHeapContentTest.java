@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2021 Richard Allwood
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.github.ricall.junit5.sftp.implementation.memory;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OffHeapContentTest {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final ChunkPool pool = new ChunkPool(CHUNK_SIZE, 2L * CHUNK_SIZE);
+
+    @AfterEach
+    public void cleanup() {
+        pool.close();
+    }
+
+    private static byte[] pattern(final int size) {
+        final byte[] bytes = new byte[size];
+        for (int index = 0; index < size; index++) {
+            bytes[index] = (byte) (index % 251 + 1);
+        }
+        return bytes;
+    }
+
+    private static byte[] readAll(final FileContent content) {
+        final ByteBuffer buffer = ByteBuffer.allocate((int) content.size());
+        content.read(0, buffer);
+        return buffer.array();
+    }
+
+    @Test
+    public void verifyContentSpanningChunksCanBeReadBack() {
+        final FileContent content = new OffHeapContent(pool);
+        final byte[] bytes = pattern(3 * CHUNK_SIZE + 17);
+
+        assertThat(content.write(0, ByteBuffer.wrap(bytes))).isEqualTo(bytes.length);
+
+        assertThat(content.size()).isEqualTo(bytes.length);
+        assertThat(readAll(content)).isEqualTo(bytes);
+        assertThat(content.read(bytes.length, ByteBuffer.allocate(1))).isEqualTo(-1);
+    }
+
+    @Test
+    public void verifySmallContentGrowsIntoFullChunks() {
+        final FileContent content = new OffHeapContent(pool);
+        final byte[] bytes = pattern(CHUNK_SIZE + 1);
+
+        for (int offset = 0; offset < bytes.length; offset += 1000) {
+            content.write(offset, ByteBuffer.wrap(bytes, offset, Math.min(1000, bytes.length - offset)));
+        }
+
+        assertThat(readAll(content)).isEqualTo(bytes);
+        assertThat(pool.getAllocatedBytes()).isEqualTo(2L * CHUNK_SIZE);
+    }
+
+    @Test
+    public void verifyGapsReadAsZerosWhenChunksAreReused() {
+        final FileContent previous = new OffHeapContent(pool);
+        previous.write(0, ByteBuffer.wrap(pattern(2 * CHUNK_SIZE)));
+        previous.release();
+
+        final FileContent content = new OffHeapContent(pool);
+        content.write(CHUNK_SIZE + 10, ByteBuffer.wrap(new byte[] {42}));
+
+        final byte[] expected = new byte[CHUNK_SIZE + 11];
+        expected[CHUNK_SIZE + 10] = 42;
+        assertThat(readAll(content)).isEqualTo(expected);
+    }
+
+    @Test
+    public void verifyTruncatedChunksAreReturnedToThePool() {
+        final FileContent content = new OffHeapContent(pool);
+        final byte[] bytes = pattern(4 * CHUNK_SIZE);
+        content.write(0, ByteBuffer.wrap(bytes));
+
+        content.truncate(CHUNK_SIZE + 5);
+
+        assertThat(readAll(content)).isEqualTo(Arrays.copyOf(bytes, CHUNK_SIZE + 5));
+        assertThat(pool.getPooledBytes()).isEqualTo(2L * CHUNK_SIZE);
+        assertThat(pool.getAllocatedBytes()).isEqualTo(4L * CHUNK_SIZE);
+
+        content.release();
+        assertThat(content.size()).isEqualTo(0);
+        assertThat(pool.getPooledBytes()).isEqualTo(2L * CHUNK_SIZE);
+        assertThat(pool.getAllocatedBytes()).isEqualTo(2L * CHUNK_SIZE);
+
+        pool.close();
+        assertThat(pool.getAllocatedBytes()).isEqualTo(0);
+    }
+
+}